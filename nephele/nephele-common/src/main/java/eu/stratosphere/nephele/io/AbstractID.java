@@ -18,6 +18,7 @@ package eu.stratosphere.nephele.io;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import eu.stratosphere.nephele.util.StringUtils;
 
@@ -39,7 +40,7 @@ public abstract class AbstractID implements IOReadableWritable {
 	/**
 	 * The size of the ID in byte.
 	 */
-	protected static final int SIZE = 2 * SIZE_OF_LONG;
+	public static final int SIZE = 2 * SIZE_OF_LONG;
 
 	/**
 	 * The upper part of the actual ID.
@@ -224,6 +225,31 @@ public abstract class AbstractID implements IOReadableWritable {
 		out.writeLong(this.upperPart);
 	}
 
+	/**
+	 * Reads the ID from the given byte buffer. The buffer's position is advanced by {@link #SIZE} bytes.
+	 * 
+	 * @param buffer
+	 *        the byte buffer to read the ID from
+	 */
+	public void read(final ByteBuffer buffer) {
+
+		this.lowerPart = buffer.getLong();
+		this.upperPart = buffer.getLong();
+		this.precomputeHash();
+	}
+
+	/**
+	 * Writes the ID to the given byte buffer. The buffer's position is advanced by {@link #SIZE} bytes.
+	 * 
+	 * @param buffer
+	 *        the byte buffer to write the ID to
+	 */
+	public void write(final ByteBuffer buffer) {
+
+		buffer.putLong(this.lowerPart);
+		buffer.putLong(this.upperPart);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
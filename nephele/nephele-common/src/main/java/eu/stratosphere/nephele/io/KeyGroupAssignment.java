@@ -0,0 +1,123 @@
+package eu.stratosphere.nephele.io;
+
+/**
+ * Immutable assignment of key groups to the first n output channels of a gate,
+ * where n is the number of active output channels (i.e. the parallelism of the
+ * consumer). Keys are hashed into a fixed number of key groups, which does not
+ * change when the consumer is rescaled. Key groups are assigned to channels
+ * with jump consistent hashing (Lamping and Veach, "A Fast, Minimal Memory,
+ * Consistent Hash Algorithm"). Hence, when the parallelism changes from n to
+ * n+1, only about 1/(n+1) of the key groups move, all of them to the new
+ * channel n. Conversely, a scale-down from n+1 to n only moves the key groups
+ * of channel n.
+ *
+ * The assignment only depends on the number of key groups and the parallelism,
+ * so all producer subtasks of an edge compute the same assignment without
+ * exchanging it.
+ */
+public final class KeyGroupAssignment {
+
+	private final int numberOfKeyGroups;
+
+	private final int parallelism;
+
+	private final int[] keyGroupToChannel;
+
+	public KeyGroupAssignment(int numberOfKeyGroups, int parallelism) {
+		if (numberOfKeyGroups <= 0) {
+			throw new IllegalArgumentException(
+					"Number of key groups must be positive");
+		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.parallelism = parallelism;
+		this.keyGroupToChannel = new int[numberOfKeyGroups];
+		for (int keyGroup = 0; keyGroup < numberOfKeyGroups; keyGroup++) {
+			this.keyGroupToChannel[keyGroup] = jumpConsistentHash(
+					mix(keyGroup), parallelism);
+		}
+	}
+
+	/**
+	 * @return the key group of a key with the given hash code.
+	 */
+	public int getKeyGroup(int keyHash) {
+		return (mix(keyHash) & Integer.MAX_VALUE) % this.numberOfKeyGroups;
+	}
+
+	/**
+	 * @return the index of the output channel that the given key group is
+	 *         assigned to.
+	 */
+	public int getChannel(int keyGroup) {
+		return this.keyGroupToChannel[keyGroup];
+	}
+
+	/**
+	 * @return the index of the output channel that a key with the given hash
+	 *         code is assigned to.
+	 */
+	public int getChannelForKeyHash(int keyHash) {
+		return this.keyGroupToChannel[getKeyGroup(keyHash)];
+	}
+
+	public int getNumberOfKeyGroups() {
+		return this.numberOfKeyGroups;
+	}
+
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * @return the number of key groups that are assigned to a different channel
+	 *         in the given assignment than in this one.
+	 */
+	public int getNumberOfMovedKeyGroups(KeyGroupAssignment other) {
+		if (other.numberOfKeyGroups != this.numberOfKeyGroups) {
+			throw new IllegalArgumentException(
+					"Assignments have different numbers of key groups");
+		}
+
+		int moved = 0;
+		for (int keyGroup = 0; keyGroup < this.numberOfKeyGroups; keyGroup++) {
+			if (this.keyGroupToChannel[keyGroup] != other.keyGroupToChannel[keyGroup]) {
+				moved++;
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Spreads the bits of hash codes that only differ in a few bits (e.g. of
+	 * small integers), using the finalizer of MurmurHash3.
+	 */
+	private static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+	private static int jumpConsistentHash(long key, int numberOfBuckets) {
+		long bucket = -1;
+		long next = 0;
+		while (next < numberOfBuckets) {
+			bucket = next;
+			key = key * 2862933555777941757L + 1;
+			next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) bucket;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("KeyGroupAssignment[keyGroups=%d, parallelism=%d]",
+				this.numberOfKeyGroups, this.parallelism);
+	}
+}
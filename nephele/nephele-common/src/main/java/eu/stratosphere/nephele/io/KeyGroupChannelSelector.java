@@ -0,0 +1,136 @@
+package eu.stratosphere.nephele.io;
+
+import eu.stratosphere.nephele.types.Record;
+
+/**
+ * Base class of channel selectors that partition records by key, and that keep
+ * most keys on the same channel when the consumer is rescaled. In contrast to
+ * selecting the channel as hash modulo the number of active output channels,
+ * which moves almost every key when the number of active output channels
+ * changes, keys are partitioned into a fixed number of key groups, which are
+ * consistently assigned to the active output channels (see
+ * {@link KeyGroupAssignment}). Scaling from n to n+1 consumer subtasks thus
+ * only moves about 1/(n+1) of the keys, which preserves the caches and per-key
+ * state of the consumer subtasks that keep their keys.
+ *
+ * The number of key groups limits the number of consumer subtasks that receive
+ * records, and should therefore be at least the maximum parallelism of the
+ * consumer. More key groups balance the keys more evenly.
+ *
+ * By default, the assignment follows the number of active output channels.
+ * Since the channels of a scale-up are activated one at a time, this passes
+ * through the intermediate parallelisms, and each producer subtask switches
+ * whenever its own channels are activated. Therefore, the parallelism of the
+ * consumer can be announced before it is rescaled (see
+ * {@link #announceParallelism(long, int)}). The selector then switches to the
+ * announced parallelism as soon as enough output channels are active, i.e. at
+ * once on a scale-down and when the last new channel has been activated on a
+ * scale-up. Even so, the producer subtasks switch independently of each other,
+ * and records that have been sent before the switch may still be in flight to
+ * the previous consumer of their key. Per-key state of the consumer must
+ * therefore tolerate a transition window in which records of a moved key
+ * group arrive at both its previous and its new consumer subtask.
+ *
+ * @param <T>
+ *        the type of record which is sent through the attached output gate
+ */
+public abstract class KeyGroupChannelSelector<T extends Record> implements
+		ChannelSelector<T> {
+
+	public static final int DEFAULT_NUMBER_OF_KEY_GROUPS = 1024;
+
+	private final int[] channelIdxToReturn = new int[] { -1 };
+
+	private final int numberOfKeyGroups;
+
+	private KeyGroupAssignment assignment;
+
+	/**
+	 * The parallelism last announced, or 0 if none has been announced.
+	 */
+	private int announcedParallelism;
+
+	private long announcedVersion = Long.MIN_VALUE;
+
+	public KeyGroupChannelSelector() {
+		this(DEFAULT_NUMBER_OF_KEY_GROUPS);
+	}
+
+	public KeyGroupChannelSelector(int numberOfKeyGroups) {
+		if (numberOfKeyGroups <= 0) {
+			throw new IllegalArgumentException(
+					"Number of key groups must be positive");
+		}
+		this.numberOfKeyGroups = numberOfKeyGroups;
+	}
+
+	/**
+	 * @return the hash code of the key of the given record. Records with equal
+	 *         keys must have equal hash codes.
+	 */
+	protected abstract int getKeyHash(T record);
+
+	/**
+	 * Announces the parallelism of the consumer, usually before the consumer is
+	 * rescaled. Announcements with a version that is not newer than the version
+	 * of the previous announcement are stale and ignored. Must be invoked
+	 * between two records by the thread that selects the channels.
+	 *
+	 * @param version
+	 *            The version of the announcement.
+	 * @param parallelism
+	 *            The parallelism of the consumer.
+	 */
+	public void announceParallelism(long version, int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		if (version <= this.announcedVersion) {
+			return;
+		}
+
+		this.announcedVersion = version;
+		this.announcedParallelism = parallelism;
+	}
+
+	@Override
+	public int[] selectChannels(T record, int numberOfOutputChannels) {
+		int parallelism = getParallelism(numberOfOutputChannels);
+		if (this.assignment == null
+				|| this.assignment.getParallelism() != parallelism) {
+			// the new assignment replaces the old one at once, between two
+			// records
+			this.assignment = new KeyGroupAssignment(this.numberOfKeyGroups,
+					parallelism);
+		}
+
+		this.channelIdxToReturn[0] = this.assignment
+				.getChannelForKeyHash(getKeyHash(record));
+		return this.channelIdxToReturn;
+	}
+
+	private int getParallelism(int numberOfOutputChannels) {
+		if (this.announcedParallelism == 0) {
+			return numberOfOutputChannels;
+		}
+		if (this.announcedParallelism <= numberOfOutputChannels) {
+			return this.announcedParallelism;
+		}
+		if (this.assignment != null
+				&& this.assignment.getParallelism() <= numberOfOutputChannels) {
+			// scale-up in progress, keep the previous assignment until all
+			// channels of the announced parallelism are active
+			return this.assignment.getParallelism();
+		}
+		// fewer channels are active than the previous assignment needs
+		return numberOfOutputChannels;
+	}
+
+	/**
+	 * @return the assignment used for the last record, or null if no record has
+	 *         been sent yet.
+	 */
+	public KeyGroupAssignment getAssignment() {
+		return this.assignment;
+	}
+}
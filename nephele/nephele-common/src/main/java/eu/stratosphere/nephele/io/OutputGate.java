@@ -158,4 +158,15 @@ public interface OutputGate<T extends Record> extends Gate<T> {
 	void notifyPendingEvent(int channelIndex);
 
 	void outputBufferAllocated(int channelIndex);
+
+	/**
+	 * This method is called by one of the attached output channels after it had to wait for an empty write buffer,
+	 * i.e. after the task has been throttled by the consumers of this gate or by the lack of free buffers.
+	 * 
+	 * @param channelIndex
+	 *        the index of the channel within the gate
+	 * @param blockedNanos
+	 *        the time in nanoseconds the channel has waited for the buffer
+	 */
+	void outputBufferRequestBlocked(int channelIndex, long blockedNanos);
 }
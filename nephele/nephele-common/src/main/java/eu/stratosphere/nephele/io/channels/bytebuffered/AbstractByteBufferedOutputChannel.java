@@ -309,6 +309,37 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 
 		return this.amountOfDataTransmitted;
 	}
+
+	/**
+	 * Returns the number of buffers of this channel which have been queued with a network connection, but have not
+	 * been written to it yet.
+	 * 
+	 * @return the number of buffers waiting to be written to a network connection
+	 */
+	public int getNumberOfQueuedNetworkBuffers() {
+
+		final ByteBufferedOutputChannelBroker broker = this.outputChannelBroker;
+		if (broker == null) {
+			return 0;
+		}
+
+		return broker.getNumberOfQueuedNetworkBuffers();
+	}
+
+	/**
+	 * Returns the number of buffers of this channel which have been written to a network connection so far.
+	 * 
+	 * @return the number of buffers written to a network connection so far
+	 */
+	public long getNumberOfTransmittedNetworkBuffers() {
+
+		final ByteBufferedOutputChannelBroker broker = this.outputChannelBroker;
+		if (broker == null) {
+			return 0;
+		}
+
+		return broker.getNumberOfTransmittedNetworkBuffers();
+	}
 	
 	public void processPendingEvents() throws IOException, InterruptedException {
 		// channel suspends need to be confirmed by the task thread
@@ -78,4 +78,20 @@ public interface ByteBufferedOutputChannelBroker {
 	 *        the new buffer size in bytes
 	 */
 	void limitBufferSize(int bufferSize);
+
+	/**
+	 * Returns the number of buffers of this output channel which have been queued with a network connection, but have
+	 * not been written to it yet. Buffers for local receivers are never counted.
+	 * 
+	 * @return the number of buffers waiting to be written to a network connection
+	 */
+	int getNumberOfQueuedNetworkBuffers();
+
+	/**
+	 * Returns the number of buffers of this output channel which have been written to (or dropped by) a network
+	 * connection so far.
+	 * 
+	 * @return the number of buffers written to a network connection so far
+	 */
+	long getNumberOfTransmittedNetworkBuffers();
 }
@@ -76,6 +76,12 @@ public abstract class AbstractJobVertex implements IOReadableWritable {
 
 	private int initialElasticNumberOfSubtasks = -1;
 
+	/**
+	 * Number of suspended elastic subtasks to keep deployed and parked, so that scale-ups can activate them without
+	 * deploying them first.
+	 */
+	private int elasticNumberOfHotStandbySubtasks = 0;
+
 	/**
 	 * The type of instance to be assigned to this task at runtime.
 	 */
@@ -421,6 +427,8 @@ public abstract class AbstractJobVertex implements IOReadableWritable {
 		
 		this.initialElasticNumberOfSubtasks = in.readInt();
 
+		this.elasticNumberOfHotStandbySubtasks = in.readInt();
+
 		// Read number of subtasks per instance
 		this.numberOfSubtasksPerInstance = in.readInt();
 
@@ -508,6 +516,7 @@ public abstract class AbstractJobVertex implements IOReadableWritable {
 		out.writeInt(this.minElasticNumberOfSubtasks);
 		out.writeInt(this.maxElasticNumberOfSubtasks);
 		out.writeInt(this.initialElasticNumberOfSubtasks);
+		out.writeInt(this.elasticNumberOfHotStandbySubtasks);
 
 		// Number of subtasks per instance
 		out.writeInt(this.numberOfSubtasksPerInstance);
@@ -576,6 +585,7 @@ public abstract class AbstractJobVertex implements IOReadableWritable {
 		this.minElasticNumberOfSubtasks = -1;
 		this.maxElasticNumberOfSubtasks = -1;
 		this.initialElasticNumberOfSubtasks = -1;
+		this.elasticNumberOfHotStandbySubtasks = 0;
 	}
 
 	/**
@@ -627,6 +637,30 @@ public abstract class AbstractJobVertex implements IOReadableWritable {
 		return this.minElasticNumberOfSubtasks != -1;
 	}
 
+	/**
+	 * Sets the number of suspended elastic subtasks that are kept deployed in hot standby. Hot standby subtasks have
+	 * their gates and channels set up, but their threads are parked before the task is invoked. Scaling up to a hot
+	 * standby subtask only requires activating it, which unsuspends its channels. Requires elastic subtask settings.
+	 * 
+	 * @param noOfHotStandbySubtasks
+	 *        the number of hot standby subtasks, <code>0</code> to disable hot standby
+	 */
+	public void setElasticNumberOfHotStandbySubtasks(int noOfHotStandbySubtasks) {
+		if (!hasElasticNumberOfSubtasks()) {
+			throw new IllegalStateException("Hot standby subtasks require elastic subtask settings.");
+		}
+
+		if (noOfHotStandbySubtasks < 0) {
+			throw new IllegalArgumentException("Illegal number of hot standby subtasks.");
+		}
+
+		this.elasticNumberOfHotStandbySubtasks = noOfHotStandbySubtasks;
+	}
+
+	public int getElasticNumberOfHotStandbySubtasks() {
+		return this.elasticNumberOfHotStandbySubtasks;
+	}
+
 	/**
 	 * Sets the number of retries in case of an error before the task represented by this vertex is considered as
 	 * failed.
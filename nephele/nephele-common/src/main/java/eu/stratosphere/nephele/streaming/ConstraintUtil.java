@@ -72,6 +72,31 @@ public class ConstraintUtil {
 		defineLatencyConstraint(sequence, maxLatencyInMillis, jobGraph, generateConstraintName(sequence, jobGraph));
 	}
 
+	/**
+	 * Embeds a new latency constraint into the job configuration of the job
+	 * graph, which bounds the given percentile of the sequence latency (e.g.
+	 * 99 for the 99th percentile) instead of its mean.
+	 * 
+	 * @throws IOException
+	 *             If something goes wrong while serializing the constraints
+	 *             (shouldn't happen).
+	 * @throws IllegalArgumentException
+	 *             If constraints could not be constructed to to invalid
+	 *             input parameters.
+	 */
+	public static void definePercentileLatencyConstraint(
+			JobGraphSequence sequence, long maxLatencyInMillis,
+			double latencyPercentile, JobGraph jobGraph, String name)
+			throws IOException {
+
+		ensurePreconditions(sequence, jobGraph);
+
+		JobGraphLatencyConstraint constraint = new JobGraphLatencyConstraint(
+				sequence, maxLatencyInMillis, latencyPercentile, name);
+
+		addConstraint(constraint, jobGraph);
+	}
+
 	public static void addConstraint(JobGraphLatencyConstraint constraint,
 			JobGraph jobGraph) throws IOException {
 
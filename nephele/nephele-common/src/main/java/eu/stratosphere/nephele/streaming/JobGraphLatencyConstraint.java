@@ -49,6 +49,13 @@ public class JobGraphLatencyConstraint implements IOReadableWritable {
 
 	private long latencyConstraintInMillis;
 
+	/**
+	 * The percentile of the sequence latency that is bounded by the
+	 * constraint, e.g. 99 for the 99th percentile. 0 means that the mean
+	 * sequence latency is bounded.
+	 */
+	private double latencyPercentile;
+
 	private String name;
 
 	/**
@@ -59,10 +66,30 @@ public class JobGraphLatencyConstraint implements IOReadableWritable {
 
 	public JobGraphLatencyConstraint(JobGraphSequence sequence,
 			long latencyConstraintInMillis, String name) {
+		this(sequence, latencyConstraintInMillis, 0, name);
+	}
+
+	/**
+	 * Creates a constraint that bounds the given percentile of the sequence
+	 * latency.
+	 * 
+	 * @param latencyPercentile
+	 *            the bounded percentile in the range (0;100), e.g. 95 or 99, or
+	 *            0 to bound the mean sequence latency.
+	 */
+	public JobGraphLatencyConstraint(JobGraphSequence sequence,
+			long latencyConstraintInMillis, double latencyPercentile,
+			String name) {
+
+		if (latencyPercentile < 0 || latencyPercentile >= 100) {
+			throw new IllegalArgumentException(
+					"Latency percentile must be in the range [0;100)");
+		}
 
 		this.constraintID = new LatencyConstraintID();
 		this.sequence = sequence;
 		this.latencyConstraintInMillis = latencyConstraintInMillis;
+		this.latencyPercentile = latencyPercentile;
 		this.name = name;
 
 		synchronized(JobGraphLatencyConstraint.class) {
@@ -103,6 +130,25 @@ public class JobGraphLatencyConstraint implements IOReadableWritable {
 		return this.latencyConstraintInMillis;
 	}
 
+	/**
+	 * Returns the percentile of the sequence latency that is bounded by this
+	 * constraint.
+	 * 
+	 * @return the percentile, e.g. 99, or 0 if the mean sequence latency is
+	 *         bounded.
+	 */
+	public double getLatencyPercentile() {
+		return this.latencyPercentile;
+	}
+
+	/**
+	 * Returns whether this constraint bounds a percentile instead of the mean
+	 * of the sequence latency.
+	 */
+	public boolean isPercentileConstraint() {
+		return this.latencyPercentile > 0;
+	}
+
 	/**
 	 * Returns the constraint name.
 	 *
@@ -132,6 +178,7 @@ public class JobGraphLatencyConstraint implements IOReadableWritable {
 		out.writeInt(index);
 		this.sequence.write(out);
 		out.writeLong(this.latencyConstraintInMillis);
+		out.writeDouble(this.latencyPercentile);
 		out.writeUTF(this.name);
 	}
 
@@ -149,6 +196,7 @@ public class JobGraphLatencyConstraint implements IOReadableWritable {
 		this.sequence = new JobGraphSequence();
 		this.sequence.read(in);
 		this.latencyConstraintInMillis = in.readLong();
+		this.latencyPercentile = in.readDouble();
 		this.name = in.readUTF();
 	}
 }
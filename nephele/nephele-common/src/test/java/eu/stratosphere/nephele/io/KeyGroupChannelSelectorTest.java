@@ -0,0 +1,134 @@
+package eu.stratosphere.nephele.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.types.StringRecord;
+
+/**
+ * This class checks the functionality of the {@link KeyGroupChannelSelector}
+ * and {@link KeyGroupAssignment} classes.
+ */
+public class KeyGroupChannelSelectorTest {
+
+	private static final int NUMBER_OF_KEY_GROUPS = 1024;
+
+	private static class StringKeySelector extends
+			KeyGroupChannelSelector<StringRecord> {
+
+		public StringKeySelector() {
+			super(NUMBER_OF_KEY_GROUPS);
+		}
+
+		@Override
+		protected int getKeyHash(StringRecord record) {
+			return record.hashCode();
+		}
+	}
+
+	@Test
+	public void testScaleUpOnlyMovesKeyGroupsToNewChannel() {
+		KeyGroupAssignment previous = new KeyGroupAssignment(
+				NUMBER_OF_KEY_GROUPS, 1);
+
+		for (int parallelism = 2; parallelism <= 32; parallelism++) {
+			KeyGroupAssignment next = new KeyGroupAssignment(
+					NUMBER_OF_KEY_GROUPS, parallelism);
+
+			for (int keyGroup = 0; keyGroup < NUMBER_OF_KEY_GROUPS; keyGroup++) {
+				if (previous.getChannel(keyGroup) != next.getChannel(keyGroup)) {
+					assertEquals(parallelism - 1, next.getChannel(keyGroup));
+				}
+			}
+
+			// about 1/parallelism of the key groups move
+			double expectedMoves = NUMBER_OF_KEY_GROUPS / (double) parallelism;
+			assertEquals(expectedMoves, previous.getNumberOfMovedKeyGroups(next),
+					expectedMoves * 0.5);
+
+			previous = next;
+		}
+	}
+
+	@Test
+	public void testKeyGroupsAreBalanced() {
+		for (int parallelism = 1; parallelism <= 16; parallelism++) {
+			KeyGroupAssignment assignment = new KeyGroupAssignment(
+					NUMBER_OF_KEY_GROUPS, parallelism);
+
+			int[] keyGroupsPerChannel = new int[parallelism];
+			for (int keyGroup = 0; keyGroup < NUMBER_OF_KEY_GROUPS; keyGroup++) {
+				keyGroupsPerChannel[assignment.getChannel(keyGroup)]++;
+			}
+
+			double expected = NUMBER_OF_KEY_GROUPS / (double) parallelism;
+			for (int keyGroups : keyGroupsPerChannel) {
+				assertEquals(expected, keyGroups, expected * 0.4);
+			}
+		}
+	}
+
+	@Test
+	public void testKeysStayOnTheirChannel() {
+		StringKeySelector selector = new StringKeySelector();
+		int[] channelsBefore = new int[10000];
+		for (int i = 0; i < channelsBefore.length; i++) {
+			channelsBefore[i] = selector.selectChannels(
+					new StringRecord("key" + i), 8)[0];
+			assertEquals(channelsBefore[i], selector.selectChannels(
+					new StringRecord("key" + i), 8)[0]);
+		}
+
+		int moved = 0;
+		for (int i = 0; i < channelsBefore.length; i++) {
+			int channel = selector.selectChannels(new StringRecord("key" + i),
+					9)[0];
+			if (channel != channelsBefore[i]) {
+				assertEquals(8, channel);
+				moved++;
+			}
+		}
+		assertTrue(moved > 500 && moved < 2000);
+		assertEquals(9, selector.getAssignment().getParallelism());
+
+		// scaling back down restores the previous assignment
+		for (int i = 0; i < channelsBefore.length; i++) {
+			assertEquals(channelsBefore[i], selector.selectChannels(
+					new StringRecord("key" + i), 8)[0]);
+		}
+	}
+
+	@Test
+	public void testAnnouncedParallelismSkipsIntermediateParallelism() {
+		StringKeySelector selector = new StringKeySelector();
+		StringRecord record = new StringRecord("key");
+		selector.announceParallelism(1, 4);
+		selector.selectChannels(record, 4);
+		assertEquals(4, selector.getAssignment().getParallelism());
+
+		// scale-up to 6, the new channels are activated one at a time
+		selector.announceParallelism(2, 6);
+		selector.selectChannels(record, 4);
+		assertEquals(4, selector.getAssignment().getParallelism());
+		selector.selectChannels(record, 5);
+		assertEquals(4, selector.getAssignment().getParallelism());
+		selector.selectChannels(record, 6);
+		assertEquals(6, selector.getAssignment().getParallelism());
+
+		// scale-down to 5 switches before the channel is deactivated
+		selector.announceParallelism(3, 5);
+		selector.selectChannels(record, 6);
+		assertEquals(5, selector.getAssignment().getParallelism());
+
+		// stale announcements are ignored
+		selector.announceParallelism(2, 6);
+		selector.selectChannels(record, 6);
+		assertEquals(5, selector.getAssignment().getParallelism());
+
+		// falls back to the active channels if fewer are active than needed
+		selector.selectChannels(record, 3);
+		assertEquals(3, selector.getAssignment().getParallelism());
+	}
+}
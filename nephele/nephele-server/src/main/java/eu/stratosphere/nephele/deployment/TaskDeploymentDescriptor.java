@@ -66,6 +66,11 @@ public final class TaskDeploymentDescriptor implements IOReadableWritable {
 	 */
 	private int currentNumberOfSubtasks;
 
+	/**
+	 * Whether the task shall be parked in hot standby until it is activated.
+	 */
+	private boolean hotStandby = false;
+
 	/**
 	 * The configuration of the job the task belongs to.
 	 */
@@ -216,6 +221,7 @@ public final class TaskDeploymentDescriptor implements IOReadableWritable {
 		StringRecord.writeString(out, this.taskName);
 		out.writeInt(this.indexInSubtaskGroup);
 		out.writeInt(this.currentNumberOfSubtasks);
+		out.writeBoolean(this.hotStandby);
 
 		// Write out the names of the required jar files
 		final String[] requiredJarFiles = LibraryCacheManager.getRequiredJarFiles(this.jobID);
@@ -252,6 +258,7 @@ public final class TaskDeploymentDescriptor implements IOReadableWritable {
 		this.taskName = StringRecord.readString(in);
 		this.indexInSubtaskGroup = in.readInt();
 		this.currentNumberOfSubtasks = in.readInt();
+		this.hotStandby = in.readBoolean();
 
 		// Read names of required jar files
 		final String[] requiredJarFiles = new String[in.readInt()];
@@ -319,6 +326,27 @@ public final class TaskDeploymentDescriptor implements IOReadableWritable {
 		return this.taskName;
 	}
 
+	/**
+	 * Marks the task to be parked in hot standby after deployment, i.e. it is not invoked until it is activated.
+	 * 
+	 * @param hotStandby
+	 *        <code>true</code> if the task shall be parked in hot standby, <code>false</code> otherwise
+	 */
+	public void setHotStandby(final boolean hotStandby) {
+
+		this.hotStandby = hotStandby;
+	}
+
+	/**
+	 * Checks whether the task shall be parked in hot standby after deployment.
+	 * 
+	 * @return <code>true</code> if the task shall be parked in hot standby, <code>false</code> otherwise
+	 */
+	public boolean isHotStandby() {
+
+		return this.hotStandby;
+	}
+
 	/**
 	 * Returns the task's index in the subtask group.
 	 * 
@@ -154,6 +154,16 @@ public final class ExecutionStateTransition {
 			unexpectedStateChange = false;
 		}
 
+		// This transition can appear if a task is released from hot standby without being activated.
+		if (oldState == ExecutionState.STARTING && newState == ExecutionState.SUSPENDED) {
+			unexpectedStateChange = false;
+		}
+
+		// This transition can appear if a task is canceled while it is parked in hot standby.
+		if (oldState == ExecutionState.STARTING && newState == ExecutionState.CANCELING) {
+			unexpectedStateChange = false;
+		}
+
 		// This transition can appear if a task cannot be deployed at the assigned task manager.
 		if (oldState == ExecutionState.STARTING && newState == ExecutionState.FAILED) {
 			unexpectedStateChange = false;
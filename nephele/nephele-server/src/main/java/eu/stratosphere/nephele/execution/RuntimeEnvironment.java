@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -157,6 +158,17 @@ public class RuntimeEnvironment implements Environment, Runnable {
 	 */
 	private final String taskName;
 
+	/**
+	 * Latch the execution thread is parked on while the task is in hot standby, <code>null</code> if the task has not
+	 * been deployed in hot standby.
+	 */
+	private final CountDownLatch hotStandbyLatch;
+
+	/**
+	 * Flag to indicate whether the task has been released from hot standby without being activated.
+	 */
+	private volatile boolean releasedFromHotStandby = false;
+
 	/**
 	 * Creates a new runtime environment object which contains the runtime information for the encapsulated Nephele
 	 * task.
@@ -188,6 +200,7 @@ public class RuntimeEnvironment implements Environment, Runnable {
 		this.memoryManager = null;
 		this.ioManager = null;
 		this.inputSplitProvider = null;
+		this.hotStandbyLatch = null;
 
 		this.invokable = this.invokableClass.newInstance();
 		this.invokable.setEnvironment(this);
@@ -222,6 +235,7 @@ public class RuntimeEnvironment implements Environment, Runnable {
 		this.memoryManager = memoryManager;
 		this.ioManager = ioManager;
 		this.inputSplitProvider = inputSplitProvider;
+		this.hotStandbyLatch = tdd.isHotStandby() ? new CountDownLatch(1) : null;
 
 		for(int i=0; i<tdd.getNumberOfInputGateDescriptors(); i++) {
 			this.unboundInputGateIDs.add(tdd.getInputGateDescriptor(i).getGateID());
@@ -344,6 +358,27 @@ public class RuntimeEnvironment implements Environment, Runnable {
 			LOG.fatal("ExecutionEnvironment has no Invokable set");
 		}
 
+		// Hot standby tasks are parked until they are activated
+		if (this.hotStandbyLatch != null) {
+			try {
+				this.hotStandbyLatch.await();
+			} catch (InterruptedException e) {
+				releaseAllChannelResources();
+				if (this.executionObserver.isCanceled()) {
+					changeExecutionState(ExecutionState.CANCELED, null);
+				} else {
+					changeExecutionState(ExecutionState.FAILED, "Interrupted while in hot standby");
+				}
+				return;
+			}
+
+			if (this.releasedFromHotStandby) {
+				releaseAllChannelResources();
+				changeExecutionState(ExecutionState.SUSPENDED, null);
+				return;
+			}
+		}
+
 		// Now the actual program starts to run
 		changeExecutionState(ExecutionState.RUNNING, null);
 
@@ -416,6 +451,68 @@ public class RuntimeEnvironment implements Environment, Runnable {
 		}
 	}
 
+	/**
+	 * Activates the task if it is parked in hot standby, i.e. lets it announce its unsuspended channels and invoke the
+	 * user code.
+	 * 
+	 * @param channelsToUnsuspend
+	 *        the IDs of channels that have been deployed suspended, but whose peers are running now
+	 * @return <code>true</code> if the task has been parked in hot standby, <code>false</code> otherwise
+	 */
+	public boolean activateHotStandby(final Set<ChannelID> channelsToUnsuspend) {
+
+		if (!isInHotStandby()) {
+			return false;
+		}
+
+		// The execution thread is still parked, so the channels can be unsuspended from here
+		for (final OutputGate<?> gate : this.outputGates) {
+			for (int i = 0; i < gate.getNumberOfOutputChannels(); i++) {
+				if (channelsToUnsuspend.contains(gate.getOutputChannel(i).getID())) {
+					gate.setOutputChannelSuspended(i, false);
+				}
+			}
+		}
+
+		for (final InputGate<?> gate : this.inputGates) {
+			for (int i = 0; i < gate.getNumberOfInputChannels(); i++) {
+				if (channelsToUnsuspend.contains(gate.getInputChannel(i).getID())) {
+					gate.setInputChannelSuspended(i, false);
+				}
+			}
+		}
+
+		this.hotStandbyLatch.countDown();
+		return true;
+	}
+
+	/**
+	 * Releases the task from hot standby without activating it, i.e. lets its parked execution thread release the
+	 * task's channel resources and switch to state SUSPENDED.
+	 * 
+	 * @return <code>true</code> if the task has been parked in hot standby, <code>false</code> otherwise
+	 */
+	public boolean releaseHotStandby() {
+
+		if (!isInHotStandby()) {
+			return false;
+		}
+
+		this.releasedFromHotStandby = true;
+		this.hotStandbyLatch.countDown();
+		return true;
+	}
+
+	/**
+	 * Checks whether the task has been deployed in hot standby and has not been activated yet.
+	 * 
+	 * @return <code>true</code> if the task is in hot standby, <code>false</code> otherwise
+	 */
+	public boolean isInHotStandby() {
+
+		return this.hotStandbyLatch != null && this.hotStandbyLatch.getCount() > 0;
+	}
+
 	private void finalizeFinish() throws IOException, InterruptedException {
 		// Task finished running, but there may be unconsumed output data in some of the channels
 		changeExecutionState(ExecutionState.FINISHING, null);
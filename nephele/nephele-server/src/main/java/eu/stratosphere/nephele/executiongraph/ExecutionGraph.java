@@ -542,6 +542,8 @@ public class ExecutionGraph implements ExecutionListener {
 					jobVertex.getElasticMinNumberOfSubtasks(),
 					jobVertex.getElasticMaxNumberOfSubtasks(),
 					jobVertex.getElasticInitialNumberOfSubtasks());
+			groupVertex.setElasticNumberOfHotStandbySubtasks(
+					jobVertex.getElasticNumberOfHotStandbySubtasks());
 		}
 
 		// Register input and output vertices separately
@@ -93,6 +93,8 @@ public final class ExecutionGroupVertex {
 
 	private volatile int currentElasticNumberOfRunningSubtasks = 0;
 
+	private volatile int elasticNumberOfHotStandbySubtasks = 0;
+
 	/**
 	 * The user defined number of execution vertices, -1 if the user has not specified it.
 	 */
@@ -992,6 +994,17 @@ public final class ExecutionGroupVertex {
 		return this.minElasticNumberOfRunningSubtasks != -1;
 	}
 
+	public void setElasticNumberOfHotStandbySubtasks(int noOfHotStandbySubtasks) {
+		this.elasticNumberOfHotStandbySubtasks = noOfHotStandbySubtasks;
+	}
+
+	/**
+	 * Returns the number of suspended subtasks following the running ones that shall be kept deployed in hot standby.
+	 */
+	public int getElasticNumberOfHotStandbySubtasks() {
+		return this.elasticNumberOfHotStandbySubtasks;
+	}
+
 	public int getNumberOfRunningSubstasks() {
 		if (hasElasticNumberOfRunningSubtasks())
 			return getCurrentElasticNumberOfRunningSubtasks();
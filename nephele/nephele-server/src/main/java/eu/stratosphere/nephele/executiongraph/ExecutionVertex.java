@@ -43,9 +43,11 @@ import eu.stratosphere.nephele.instance.AllocationID;
 import eu.stratosphere.nephele.io.DistributionPattern;
 import eu.stratosphere.nephele.io.GateID;
 import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.plugins.PluginID;
 import eu.stratosphere.nephele.taskmanager.AbstractTaskResult;
 import eu.stratosphere.nephele.taskmanager.AbstractTaskResult.ReturnCode;
+import eu.stratosphere.nephele.taskmanager.TaskActivationResult;
 import eu.stratosphere.nephele.taskmanager.TaskCancelResult;
 import eu.stratosphere.nephele.taskmanager.TaskKillResult;
 import eu.stratosphere.nephele.taskmanager.TaskSubmissionResult;
@@ -145,6 +147,16 @@ public final class ExecutionVertex {
 	 */
 	private final AtomicBoolean cancelRequested = new AtomicBoolean(false);
 
+	/**
+	 * Flag to indicate whether the vertex is (to be) deployed in hot standby, i.e. parked before being invoked.
+	 */
+	private volatile boolean hotStandby = false;
+
+	/**
+	 * Flag to indicate whether the vertex has been successfully submitted to its task manager in hot standby.
+	 */
+	private volatile boolean hotStandbyDeployed = false;
+
 	/**
 	 * Holds arbitrary data to be attached by plugins. This data will be sent as part of the
 	 * {@link TaskDeploymentDescriptor} to the task manager.
@@ -879,6 +891,120 @@ public final class ExecutionVertex {
 		
 	}
 
+	/**
+	 * Activates the task represented by this vertex, which must be parked in hot standby at its task manager. Channels
+	 * that have been deployed suspended are unsuspended by the activation if their peers are running or activated
+	 * together with this vertex.
+	 * 
+	 * @param activatedTogether
+	 *        the vertices which are activated or deployed together with this vertex
+	 * @return the result of the task activation attempt
+	 */
+	public TaskActivationResult activateHotStandbyTask(final Set<ExecutionVertex> activatedTogether) {
+		final ExecutionState state = this.executionState.get();
+
+		if (state != ExecutionState.STARTING || !this.hotStandbyDeployed) {
+			final TaskActivationResult result = new TaskActivationResult(getID(),
+				AbstractTaskResult.ReturnCode.ILLEGAL_STATE);
+			result.setDescription("Vertex " + this.toString() + " is in state " + state + " and not in hot standby");
+			return result;
+		}
+
+		final AllocatedResource ar = this.allocatedResource.get();
+
+		if (ar == null) {
+			final TaskActivationResult result = new TaskActivationResult(getID(),
+				AbstractTaskResult.ReturnCode.NO_INSTANCE);
+			result.setDescription("Assigned instance of vertex " + this.toString() + " is null!");
+			return result;
+		}
+
+		try {
+			final TaskActivationResult result = ar.getInstance().activateHotStandbyTask(this.vertexID,
+				findChannelsToUnsuspendOnActivation(activatedTogether));
+			if (result.getReturnCode() == AbstractTaskResult.ReturnCode.SUCCESS) {
+				setHotStandby(false);
+			}
+			return result;
+		} catch (IOException e) {
+			final TaskActivationResult result = new TaskActivationResult(getID(),
+				AbstractTaskResult.ReturnCode.IPC_ERROR);
+			result.setDescription(StringUtils.stringifyException(e));
+			return result;
+		}
+	}
+
+	/**
+	 * Returns the IDs of this vertex's channels (i.e. of its ends of the edges) to peers that are running or
+	 * activated together with this vertex. Channels of a hot standby vertex may have been deployed suspended, because
+	 * their peers were suspended or in hot standby at that time, and are only unsuspended by this vertex's activation.
+	 */
+	Set<ChannelID> findChannelsToUnsuspendOnActivation(final Set<ExecutionVertex> activatedTogether) {
+
+		final Set<ChannelID> channelsToUnsuspend = new HashSet<ChannelID>();
+
+		for (int i = 0; i < this.outputGates.length; ++i) {
+			final ExecutionGate eg = this.outputGates[i];
+			for (int j = 0; j < eg.getNumberOfEdges(); ++j) {
+				final ExecutionEdge ee = eg.getEdge(j);
+				final ExecutionVertex peer = ee.getInputGate().getVertex();
+				if (peer.getExecutionState() == ExecutionState.RUNNING || activatedTogether.contains(peer)) {
+					channelsToUnsuspend.add(ee.getOutputChannelID());
+				}
+			}
+		}
+
+		for (int i = 0; i < this.inputGates.length; ++i) {
+			final ExecutionGate eg = this.inputGates[i];
+			for (int j = 0; j < eg.getNumberOfEdges(); ++j) {
+				final ExecutionEdge ee = eg.getEdge(j);
+				final ExecutionVertex peer = ee.getOutputGate().getVertex();
+				if (peer.getExecutionState() == ExecutionState.RUNNING || activatedTogether.contains(peer)) {
+					channelsToUnsuspend.add(ee.getInputChannelID());
+				}
+			}
+		}
+
+		return channelsToUnsuspend;
+	}
+
+	/**
+	 * Releases the task represented by this vertex, which must be parked in hot standby at its task manager, without
+	 * activating it. The task frees its channel resources and switches to state SUSPENDED.
+	 * 
+	 * @return the result of the release attempt
+	 */
+	public TaskSuspendResult releaseHotStandbyTask() {
+		final ExecutionState state = this.executionState.get();
+
+		if (state != ExecutionState.STARTING || !this.hotStandbyDeployed) {
+			final TaskSuspendResult result = new TaskSuspendResult(getID(), AbstractTaskResult.ReturnCode.ILLEGAL_STATE);
+			result.setDescription("Vertex " + this.toString() + " is in state " + state + " and not in hot standby");
+			return result;
+		}
+
+		final AllocatedResource ar = this.allocatedResource.get();
+
+		if (ar == null) {
+			final TaskSuspendResult result = new TaskSuspendResult(getID(), AbstractTaskResult.ReturnCode.NO_INSTANCE);
+			result.setDescription("Assigned instance of vertex " + this.toString() + " is null!");
+			return result;
+		}
+
+		try {
+			// a task in hot standby handles a suspend request by leaving hot standby
+			final TaskSuspendResult result = ar.getInstance().suspendTask(this.vertexID);
+			if (result.getReturnCode() == AbstractTaskResult.ReturnCode.SUCCESS) {
+				setHotStandby(false);
+			}
+			return result;
+		} catch (IOException e) {
+			final TaskSuspendResult result = new TaskSuspendResult(getID(), AbstractTaskResult.ReturnCode.IPC_ERROR);
+			result.setDescription(StringUtils.stringifyException(e));
+			return result;
+		}
+	}
+
 	/**
 	 * Cancels and removes the task represented by this vertex
 	 * from the instance it is currently running on. If the task
@@ -912,7 +1038,7 @@ public final class ExecutionVertex {
 
 			// Do not trigger the cancel request when vertex is in state STARTING, this might cause a race between RPC
 			// calls.
-			if (previousState == ExecutionState.STARTING) {
+			if (previousState == ExecutionState.STARTING && !this.hotStandbyDeployed) {
 
 				this.cancelRequested.set(true);
 
@@ -934,7 +1060,8 @@ public final class ExecutionVertex {
 					return new TaskCancelResult(getID(), AbstractTaskResult.ReturnCode.SUCCESS);
 				}
 
-				if (previousState != ExecutionState.RUNNING && previousState != ExecutionState.FINISHING) {
+				if (previousState != ExecutionState.RUNNING && previousState != ExecutionState.FINISHING
+					&& previousState != ExecutionState.STARTING) {
 					// Set to canceled directly
 					updateExecutionState(ExecutionState.CANCELED, null);
 					return new TaskCancelResult(getID(), AbstractTaskResult.ReturnCode.SUCCESS);
@@ -1143,6 +1270,8 @@ public final class ExecutionVertex {
 	 */
 	public TaskDeploymentDescriptor constructDeploymentDescriptor() {
 
+		final Set<ExecutionVertex> scalingPath = this.hotStandby ? findAllVerticesOnScalingPath() : null;
+
 		final SerializableArrayList<GateDeploymentDescriptor> ogd = new SerializableArrayList<GateDeploymentDescriptor>(
 			this.outputGates.length);
 		for (int i = 0; i < this.outputGates.length; ++i) {
@@ -1154,7 +1283,7 @@ public final class ExecutionVertex {
 			for (int j = 0; j < numberOfOutputChannels; ++j) {
 
 				final ExecutionEdge ee = eg.getEdge(j);
-				boolean isSuspended = ee.getInputGate().getVertex().getExecutionState() == ExecutionState.SUSPENDED;
+				boolean isSuspended = isChannelToPeerSuspended(ee.getInputGate().getVertex(), scalingPath);
 				cdd.add(new ChannelDeploymentDescriptor(ee.getOutputChannelID(), ee.getInputChannelID(), isSuspended));
 			}
 
@@ -1172,7 +1301,7 @@ public final class ExecutionVertex {
 			for (int j = 0; j < numberOfInputChannels; ++j) {
 
 				final ExecutionEdge ee = eg.getEdge(j);
-				boolean isSuspended = ee.getOutputGate().getVertex().getExecutionState() == ExecutionState.SUSPENDED;
+				boolean isSuspended = isChannelToPeerSuspended(ee.getOutputGate().getVertex(), scalingPath);
 				cdd.add(new ChannelDeploymentDescriptor(ee.getOutputChannelID(), ee.getInputChannelID(), isSuspended));
 			}
 
@@ -1187,7 +1316,74 @@ public final class ExecutionVertex {
 			this.groupVertex.getCurrentNumberOfGroupMembers(), this.executionGraph.getJobConfiguration(),
 			this.groupVertex.getConfiguration(), this.groupVertex.getInvokableClass(), ogd,
 			igd, pluginData);
+		tdd.setHotStandby(this.hotStandby);
 
 		return tdd;
 	}
+
+	/**
+	 * Channels to suspended peers are deployed suspended. The same holds for channels to peers in hot standby, unless
+	 * both ends are deployed in hot standby and the peer is on this vertex's scaling path (only then they are
+	 * activated together). Channels deployed suspended by a hot standby vertex are unsuspended on its activation, see
+	 * {@link #findChannelsToUnsuspendOnActivation(Set)}.
+	 * 
+	 * @param peer
+	 *        the vertex at the other end of the channel
+	 * @param scalingPath
+	 *        the vertices on this vertex's scaling path, only required if this vertex is deployed in hot standby
+	 */
+	boolean isChannelToPeerSuspended(final ExecutionVertex peer, final Set<ExecutionVertex> scalingPath) {
+
+		if (peer.getExecutionState() == ExecutionState.SUSPENDED) {
+			return true;
+		}
+
+		if (!peer.isHotStandby()) {
+			return false;
+		}
+
+		return !this.hotStandby || !scalingPath.contains(peer);
+	}
+
+	/**
+	 * Marks the vertex to be deployed in hot standby (or clears the mark once it has been activated).
+	 * 
+	 * @param hotStandby
+	 *        <code>true</code> if the vertex shall be deployed in hot standby, <code>false</code> otherwise
+	 */
+	public void setHotStandby(final boolean hotStandby) {
+
+		this.hotStandby = hotStandby;
+		this.hotStandbyDeployed = false;
+	}
+
+	/**
+	 * Checks whether the vertex is deployed (or about to be deployed) in hot standby.
+	 * 
+	 * @return <code>true</code> if the vertex is in hot standby, <code>false</code> otherwise
+	 */
+	public boolean isHotStandby() {
+
+		return this.hotStandby;
+	}
+
+	/**
+	 * Records that the vertex has been successfully submitted to its task manager in hot standby.
+	 */
+	public void setHotStandbyDeployed() {
+
+		if (this.hotStandby) {
+			this.hotStandbyDeployed = true;
+		}
+	}
+
+	/**
+	 * Checks whether the vertex is parked in hot standby at its task manager and can be activated.
+	 * 
+	 * @return <code>true</code> if the vertex can be activated, <code>false</code> otherwise
+	 */
+	public boolean isHotStandbyDeployed() {
+
+		return this.hotStandbyDeployed;
+	}
 }
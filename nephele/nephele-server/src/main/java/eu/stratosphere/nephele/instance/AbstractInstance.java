@@ -34,6 +34,7 @@ import eu.stratosphere.nephele.net.NetUtils;
 import eu.stratosphere.nephele.plugins.PluginID;
 import eu.stratosphere.nephele.protocols.PluginCommunicationProtocol;
 import eu.stratosphere.nephele.protocols.TaskOperationProtocol;
+import eu.stratosphere.nephele.taskmanager.TaskActivationResult;
 import eu.stratosphere.nephele.taskmanager.TaskCancelResult;
 import eu.stratosphere.nephele.taskmanager.TaskKillResult;
 import eu.stratosphere.nephele.taskmanager.TaskSubmissionResult;
@@ -277,6 +278,24 @@ public abstract class AbstractInstance extends NetworkNode {
 		return getTaskManagerProxy().suspendTask(id);
 	}
 
+	/**
+	 * Activates the task identified by the given ID, which has been deployed in hot standby, at the instance's
+	 * {@link eu.stratosphere.nephele.taskmanager.TaskManager}.
+	 * 
+	 * @param id
+	 *        the ID identifying the task to be activated
+	 * @param channelsToUnsuspend
+	 *        the IDs of the task's channels that have been deployed suspended, but whose peers are running now
+	 * @throws IOException
+	 *         thrown if an error occurs while transmitting the request or receiving the response
+	 * @return the result of the activation attempt
+	 */
+	public synchronized TaskActivationResult activateHotStandbyTask(final ExecutionVertexID id,
+			final Set<ChannelID> channelsToUnsuspend) throws IOException {
+
+		return getTaskManagerProxy().activateHotStandbyTask(id, channelsToUnsuspend);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
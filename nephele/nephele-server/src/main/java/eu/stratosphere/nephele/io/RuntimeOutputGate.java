@@ -442,4 +442,9 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	public void outputBufferAllocated(int channelIndex) {
 		// Nothing to do here
 	}
+
+	@Override
+	public void outputBufferRequestBlocked(int channelIndex, long blockedNanos) {
+		// Nothing to do here
+	}
 }
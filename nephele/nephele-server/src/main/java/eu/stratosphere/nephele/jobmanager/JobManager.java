@@ -1317,6 +1317,9 @@ public class JobManager implements DeploymentManager, ExtendedManagementProtocol
 					if (tsr.getReturnCode() != AbstractTaskResult.ReturnCode.SUCCESS) {
 						// Change the execution state to failed and let the scheduler deal with the rest
 						vertex.updateExecutionStateAsynchronously(ExecutionState.FAILED, tsr.getDescription());
+					} else {
+						// Hot standby vertices stay in state STARTING, but can now be activated
+						vertex.setHotStandbyDeployed();
 					}
 				}
 			}
@@ -1426,6 +1429,10 @@ public class JobManager implements DeploymentManager, ExtendedManagementProtocol
 		this.scheduler.scaleUpElasticTask(jobID, jobVertexID, noOfSubtasksToStart);
 	}
 
+	public void scaleUpElasticTasks(JobID jobID, Map<JobVertexID, Integer> noOfSubtasksToStart) throws Exception {
+		this.scheduler.scaleUpElasticTasks(jobID, noOfSubtasksToStart);
+	}
+
 	public void scaleDownElasticTask(JobID jobID, JobVertexID jobVertexID, final int noOfSubtasksToSuspend) throws Exception {
 		this.scheduler.scaleDownElasticTask(jobID, jobVertexID, noOfSubtasksToSuspend);
 	}
@@ -18,9 +18,11 @@ package eu.stratosphere.nephele.jobmanager.scheduler;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +57,7 @@ import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.jobgraph.JobVertexID;
 import eu.stratosphere.nephele.jobmanager.DeploymentManager;
 import eu.stratosphere.nephele.taskmanager.AbstractTaskResult.ReturnCode;
+import eu.stratosphere.nephele.taskmanager.TaskActivationResult;
 import eu.stratosphere.nephele.taskmanager.TaskSuspendResult;
 import eu.stratosphere.nephele.util.StringUtils;
 
@@ -480,9 +483,15 @@ public abstract class AbstractScheduler implements InstanceListener {
 				}
 				
 				suspendElasticStandbyTasks(eg);
+				final Set<ExecutionVertex> hotStandbyVertices = assignHotStandbyVertices(eg);
 
 				// Deploy the assigned vertices
 				deployAssignedInputVertices(eg);
+
+				// Hot standby vertices do not receive data, so they are not deployed lazily
+				if (!hotStandbyVertices.isEmpty()) {
+					deployAssignedVertices(hotStandbyVertices);
+				}
 			}
 			
 			private void suspendElasticStandbyTasks(ExecutionGraph eg) {
@@ -710,36 +719,88 @@ public abstract class AbstractScheduler implements InstanceListener {
 	public void scaleUpElasticTask(JobID jobID, JobVertexID jobVertexID,
 			final int noOfSubtasksToStart) throws Exception {
 
+		scaleUpElasticTasks(jobID, Collections.singletonMap(jobVertexID, noOfSubtasksToStart));
+	}
+
+	/**
+	 * Scales up several group vertices in a single deployment wave. For each
+	 * group vertex, the given number of SUSPENDED subtasks (and the vertices on
+	 * their scaling paths) are assigned and deployed together. Subtasks that
+	 * are activated because they are on the scaling path of another group
+	 * vertex's new subtask count towards their group vertex's scale-up. Group
+	 * vertices are processed in the iteration order of the given map, which
+	 * should be topological (e.g. a {@link java.util.LinkedHashMap}), so that
+	 * the subtasks activated for a group vertex do not depend on hash order.
+	 * Blocks until all affected vertices are in a stable state.
+	 */
+	public void scaleUpElasticTasks(JobID jobID, final Map<JobVertexID, Integer> noOfSubtasksToStart)
+			throws Exception {
+
 		final ExecutionGraph graph = getExecutionGraphByID(jobID);
-		final ExecutionGroupVertex startGroupVertex = graph.getExecutionGroupVertex(jobVertexID);
+		final List<ExecutionGroupVertex> startGroupVertices = new ArrayList<ExecutionGroupVertex>();
+		for (JobVertexID jobVertexID : noOfSubtasksToStart.keySet()) {
+			startGroupVertices.add(graph.getExecutionGroupVertex(jobVertexID));
+		}
+
+		// hot standby vertices may still be in deployment
+		for (ExecutionGroupVertex startGroupVertex : startGroupVertices) {
+			waitForStableState(startGroupVertex);
+		}
 
 		Runnable command = new Runnable() {
 
 			@Override
 			public void run() {
-				List<ExecutionVertex> verticesToBeDeployed = new ArrayList<ExecutionVertex>();
-				
-				if (startGroupVertex.getCurrentElasticNumberOfRunningSubtasks()
-						+ noOfSubtasksToStart > startGroupVertex.getCurrentNumberOfGroupMembers()) {
-					throw new RuntimeException("Not enough SUSPENDED subtasks found. This is a bug.");
-				}
-				
+				Set<ExecutionVertex> verticesToBeDeployed = new LinkedHashSet<ExecutionVertex>();
+				List<ExecutionVertex> verticesToBeActivated = new ArrayList<ExecutionVertex>();
+
 				// Ensure there are no currently SUSPENDING subtasks
 				if (hasSuspendingVertices(graph)) {
 					throw new RuntimeException("Subtasks in SUSPENDING state found. This is a bug.");
 				}
 
-				// Identify all vertices on (new) scaling paths
-				int offset = startGroupVertex.getCurrentElasticNumberOfRunningSubtasks();
-				for (int i = 0; i < noOfSubtasksToStart; i++) {
-				    ExecutionVertex vertexToStart = startGroupVertex.getGroupMember(offset + i);
-				    verticesToBeDeployed.addAll(vertexToStart.findAllVerticesOnScalingPath());
+				for (ExecutionGroupVertex startGroupVertex : startGroupVertices) {
+					int toStart = noOfSubtasksToStart.get(startGroupVertex.getJobVertexID());
+
+					if (startGroupVertex.getCurrentElasticNumberOfRunningSubtasks()
+							+ toStart > startGroupVertex.getCurrentNumberOfGroupMembers()) {
+						throw new RuntimeException("Not enough SUSPENDED subtasks found. This is a bug.");
+					}
+
+					// Members already on the scaling paths of previously processed group vertices are started anyway
+					int started = 0;
+					for (int i = startGroupVertex.getCurrentElasticNumberOfRunningSubtasks();
+							i < startGroupVertex.getCurrentNumberOfGroupMembers(); i++) {
+						if (verticesToBeDeployed.contains(startGroupVertex.getGroupMember(i))) {
+							started++;
+						}
+					}
+
+					// Identify all vertices on (new) scaling paths
+					for (int i = startGroupVertex.getCurrentElasticNumberOfRunningSubtasks();
+							started < toStart && i < startGroupVertex.getCurrentNumberOfGroupMembers(); i++) {
+
+						ExecutionVertex vertexToStart = startGroupVertex.getGroupMember(i);
+						if (verticesToBeDeployed.contains(vertexToStart)) {
+							continue;
+						}
+
+						for (ExecutionVertex vertex : vertexToStart.findAllVerticesOnScalingPath()) {
+							if (verticesToBeDeployed.add(vertex) && vertex.getGroupVertex() == startGroupVertex) {
+								started++;
+							}
+						}
+					}
 				}
-				
-				// switch vertices from SUSPENDED to ASSIGNED
-				for (ExecutionVertex vertex : verticesToBeDeployed) {
+
+				// switch vertices from SUSPENDED to ASSIGNED, hot standby vertices only need to be activated
+				for (Iterator<ExecutionVertex> it = verticesToBeDeployed.iterator(); it.hasNext();) {
+					ExecutionVertex vertex = it.next();
 					if (vertex.getExecutionState() == ExecutionState.SUSPENDED) {
 						vertex.compareAndUpdateExecutionState(ExecutionState.SUSPENDED, ExecutionState.ASSIGNED);
+					} else if (vertex.getExecutionState() == ExecutionState.STARTING && vertex.isHotStandbyDeployed()) {
+						verticesToBeActivated.add(vertex);
+						it.remove();
 					} else {
 						throw new RuntimeException(
 								"Found vertex " + vertex.getName() + " in unexpected state "
@@ -747,10 +808,29 @@ public abstract class AbstractScheduler implements InstanceListener {
 					}
 				}
 
-				LOG.info("Scaling up groupVertex " + startGroupVertex.getName()
-						+ " by activating vertices: " + Arrays.toString(verticesToBeDeployed.toArray()));
+				List<String> startGroupVertexNames = new ArrayList<String>();
+				for (ExecutionGroupVertex startGroupVertex : startGroupVertices) {
+					startGroupVertexNames.add(startGroupVertex.getName());
+				}
+
+				LOG.info("Scaling up groupVertices " + startGroupVertexNames
+						+ " by activating vertices: " + Arrays.toString(verticesToBeDeployed.toArray())
+						+ " and hot standby vertices: " + Arrays.toString(verticesToBeActivated.toArray()));
+
+				Set<ExecutionVertex> wave = new HashSet<ExecutionVertex>(verticesToBeDeployed);
+				wave.addAll(verticesToBeActivated);
 
-				deployAssignedVertices(verticesToBeDeployed);
+				for (ExecutionVertex vertex : verticesToBeActivated) {
+					TaskActivationResult result = vertex.activateHotStandbyTask(wave);
+					if (result.getReturnCode() != ReturnCode.SUCCESS) {
+						throw new RuntimeException(String.format("Failed to activate hot standby task %s",
+								result.getDescription()));
+					}
+				}
+
+				if (!verticesToBeDeployed.isEmpty()) {
+					deployAssignedVertices(verticesToBeDeployed);
+				}
 			}
 		};
 
@@ -761,7 +841,71 @@ public abstract class AbstractScheduler implements InstanceListener {
 			throw cause;
 		}
 
-		waitForStableState(startGroupVertex);
+		for (ExecutionGroupVertex startGroupVertex : startGroupVertices) {
+			waitForStableState(startGroupVertex);
+		}
+
+		replenishHotStandbyVertices(graph);
+	}
+
+	/**
+	 * Releases surplus hot standby vertices and marks the SUSPENDED vertices on the
+	 * scaling paths of the first suspended subtasks of each elastic group vertex as
+	 * hot standby and switches them to ASSIGNED, so that each group vertex has
+	 * exactly its configured number of hot standby subtasks (see
+	 * {@link HotStandbyPlan}). Must be called from within a command executed by
+	 * the execution graph.
+	 * 
+	 * @return the vertices to deploy in hot standby
+	 */
+	private Set<ExecutionVertex> assignHotStandbyVertices(final ExecutionGraph graph) {
+		final HotStandbyPlan plan = new HotStandbyPlan(graph);
+
+		if (!plan.getVerticesToRelease().isEmpty()) {
+			LOG.info("Releasing hot standby vertices: " + Arrays.toString(plan.getVerticesToRelease().toArray()));
+		}
+
+		for (ExecutionVertex vertex : plan.getVerticesToRelease()) {
+			TaskSuspendResult result = vertex.releaseHotStandbyTask();
+			if (result.getReturnCode() != ReturnCode.SUCCESS) {
+				LOG.warn(String.format("Failed to release hot standby task %s: %s", vertex,
+						result.getDescription()));
+			}
+		}
+
+		for (ExecutionVertex vertex : plan.getVerticesToDeploy()) {
+			vertex.setHotStandby(true);
+			vertex.compareAndUpdateExecutionState(ExecutionState.SUSPENDED, ExecutionState.ASSIGNED);
+		}
+
+		return plan.getVerticesToDeploy();
+	}
+
+	/**
+	 * Deploys suspended subtasks in hot standby to replace the ones that have
+	 * been activated (or that have become the first suspended subtasks after a
+	 * scale-down).
+	 */
+	private void replenishHotStandbyVertices(final ExecutionGraph graph) throws Exception {
+		Runnable command = new Runnable() {
+
+			@Override
+			public void run() {
+				Set<ExecutionVertex> hotStandbyVertices = assignHotStandbyVertices(graph);
+
+				if (!hotStandbyVertices.isEmpty()) {
+					LOG.info("Deploying hot standby vertices: " + Arrays.toString(hotStandbyVertices.toArray()));
+					deployAssignedVertices(hotStandbyVertices);
+				}
+			}
+		};
+
+		try {
+			graph.executeCommand(command).get();
+		} catch (ExecutionException e) {
+			RuntimeException cause = (RuntimeException) e.getCause();
+			throw cause;
+		}
 	}
 
 	/**
@@ -829,6 +973,8 @@ public abstract class AbstractScheduler implements InstanceListener {
 
             waitForStableState(groupVertex);
         }
+
+        replenishHotStandbyVertices(graph);
     }
 
 	private void waitForStableState(ExecutionGroupVertex groupVertex)
@@ -844,7 +990,8 @@ public abstract class AbstractScheduler implements InstanceListener {
 			dirty = false;
 			for (ExecutionVertex vertex : verticesOnScalingPath) {
 				if (vertex.getExecutionState() != ExecutionState.RUNNING
-						&& vertex.getExecutionState() != ExecutionState.SUSPENDED) {
+						&& vertex.getExecutionState() != ExecutionState.SUSPENDED
+						&& !vertex.isHotStandbyDeployed()) {
 					dirty = true;
 					break;
 				}
@@ -0,0 +1,91 @@
+package eu.stratosphere.nephele.jobmanager.scheduler;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import eu.stratosphere.nephele.execution.ExecutionState;
+import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
+import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionStage;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
+
+/**
+ * Determines how the hot standby subtasks of the elastic group vertices in the current execution stage have to change,
+ * so that each group vertex has exactly its configured number of hot standby subtasks, and these are the first
+ * subtasks that are not running. Only these can be activated by the next scale-up, because subtasks are always
+ * activated in the order of their index.
+ * <p>
+ * Subtasks that are already in hot standby count towards the configured number, so only the shortfall is deployed.
+ * Hot standby subtasks beyond the configured number (e.g. the former first hot standby subtask after a scale-down)
+ * have to be released. A vertex on the scaling paths of several subtasks is only released if none of these subtasks
+ * stays in hot standby.
+ * <p>
+ * This class is not thread-safe. It must be used from within a command executed by the execution graph.
+ */
+final class HotStandbyPlan {
+
+	private final Set<ExecutionVertex> verticesToDeploy = new LinkedHashSet<ExecutionVertex>();
+
+	private final Set<ExecutionVertex> verticesToRelease = new LinkedHashSet<ExecutionVertex>();
+
+	HotStandbyPlan(final ExecutionGraph graph) {
+
+		final Set<ExecutionVertex> verticesToKeep = new HashSet<ExecutionVertex>();
+		final Set<ExecutionVertex> surplusVertices = new LinkedHashSet<ExecutionVertex>();
+		final ExecutionStage stage = graph.getCurrentExecutionStage();
+
+		for (int i = 0; i < stage.getNumberOfStageMembers(); i++) {
+			final ExecutionGroupVertex groupVertex = stage.getStageMember(i);
+			if (!groupVertex.hasElasticNumberOfRunningSubtasks()) {
+				continue;
+			}
+
+			int remaining = groupVertex.getElasticNumberOfHotStandbySubtasks();
+			for (int j = 0; j < groupVertex.getCurrentNumberOfGroupMembers(); j++) {
+				final ExecutionVertex member = groupVertex.getGroupMember(j);
+				if (member.getExecutionState() != ExecutionState.SUSPENDED && !member.isHotStandby()) {
+					continue;
+				}
+
+				final Set<ExecutionVertex> scalingPath = member.findAllVerticesOnScalingPath();
+				if (remaining > 0) {
+					for (ExecutionVertex vertex : scalingPath) {
+						if (vertex.isHotStandby()) {
+							verticesToKeep.add(vertex);
+						} else if (vertex.getExecutionState() == ExecutionState.SUSPENDED) {
+							this.verticesToDeploy.add(vertex);
+						}
+					}
+					remaining--;
+				} else {
+					for (ExecutionVertex vertex : scalingPath) {
+						if (vertex.isHotStandby()) {
+							surplusVertices.add(vertex);
+						}
+					}
+				}
+			}
+		}
+
+		for (ExecutionVertex vertex : surplusVertices) {
+			if (!verticesToKeep.contains(vertex)) {
+				this.verticesToRelease.add(vertex);
+			}
+		}
+	}
+
+	/**
+	 * @return the SUSPENDED vertices that shall be deployed in hot standby
+	 */
+	Set<ExecutionVertex> getVerticesToDeploy() {
+		return this.verticesToDeploy;
+	}
+
+	/**
+	 * @return the vertices in hot standby that shall be released to state SUSPENDED
+	 */
+	Set<ExecutionVertex> getVerticesToRelease() {
+		return this.verticesToRelease;
+	}
+}
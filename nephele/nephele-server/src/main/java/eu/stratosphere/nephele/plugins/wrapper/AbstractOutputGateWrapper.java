@@ -297,6 +297,11 @@ public abstract class AbstractOutputGateWrapper<T extends Record> implements Out
 		this.wrappedOutputGate.outputBufferAllocated(channelIndex);
 	}
 
+	@Override
+	public void outputBufferRequestBlocked(int channelIndex, long blockedNanos) {
+		this.wrappedOutputGate.outputBufferRequestBlocked(channelIndex, blockedNanos);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
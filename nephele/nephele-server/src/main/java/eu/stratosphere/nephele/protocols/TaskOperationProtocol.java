@@ -25,6 +25,7 @@ import eu.stratosphere.nephele.execution.librarycache.LibraryCacheProfileRespons
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheUpdate;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
 import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.taskmanager.TaskActivationResult;
 import eu.stratosphere.nephele.taskmanager.TaskCancelResult;
 import eu.stratosphere.nephele.taskmanager.TaskKillResult;
 import eu.stratosphere.nephele.taskmanager.TaskSubmissionResult;
@@ -81,6 +82,20 @@ public interface TaskOperationProtocol extends VersionedProtocol {
 	 */
 	TaskSuspendResult suspendTask(ExecutionVertexID id) throws IOException;
 
+	/**
+	 * Advises the task manager to activate the task with the given ID, which has been deployed in hot standby.
+	 * 
+	 * @param id
+	 *        the ID of the task to activate
+	 * @param channelsToUnsuspend
+	 *        the IDs of the task's channels that have been deployed suspended, but whose peers are running now
+	 * @return the result of the task activation attempt
+	 * @throws IOException
+	 *         thrown if an error occurs during this remote procedure call
+	 */
+	TaskActivationResult activateHotStandbyTask(ExecutionVertexID id, Set<ChannelID> channelsToUnsuspend)
+			throws IOException;
+
 	/**
 	 * Queries the task manager about the cache status of the libraries stated in the {@link LibraryCacheProfileRequest}
 	 * object.
@@ -15,10 +15,13 @@
 
 package eu.stratosphere.nephele.taskmanager;
 
+import java.util.Set;
+
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.execution.Environment;
 import eu.stratosphere.nephele.execution.ExecutionState;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.profiling.TaskManagerProfiler;
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
@@ -83,6 +86,16 @@ public interface Task {
 	 */
 	void suspendExecution();
 
+	/**
+	 * Activates the task if it has been deployed in hot standby (i.e. lets its parked execution thread unsuspend the
+	 * task's channels and invoke the user code).
+	 * 
+	 * @param channelsToUnsuspend
+	 *        the IDs of the task's channels that have been deployed suspended, but whose peers are running now
+	 * @return <code>true</code> if the task has been in hot standby, <code>false</code> otherwise
+	 */
+	boolean activateHotStandby(Set<ChannelID> channelsToUnsuspend);
+
 	/**
 	 * Registers the task manager profiler with the task.
 	 * 
@@ -0,0 +1,30 @@
+package eu.stratosphere.nephele.taskmanager;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+
+/**
+ * A <code>TaskActivationResult</code> is used to report the results of an attempt to activate a task in hot standby.
+ * It contains the ID of the task to be activated, a return code and a description. In case of an error during the
+ * activation the description includes an error message.
+ */
+public class TaskActivationResult extends AbstractTaskResult {
+
+	/**
+	 * Constructs a new task activation result.
+	 * 
+	 * @param vertexID
+	 *        the task ID this result belongs to
+	 * @param returnCode
+	 *        the return code of the activation
+	 */
+	public TaskActivationResult(final ExecutionVertexID vertexID, final ReturnCode returnCode) {
+		super(vertexID, returnCode);
+	}
+
+	/**
+	 * Constructs an empty task activation result.
+	 */
+	public TaskActivationResult() {
+		super();
+	}
+}
@@ -971,4 +971,31 @@ public class TaskManager implements TaskOperationProtocol, PluginCommunicationPr
 
 		return new TaskSuspendResult(id, AbstractTaskResult.ReturnCode.SUCCESS);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TaskActivationResult activateHotStandbyTask(final ExecutionVertexID id,
+			final Set<ChannelID> channelsToUnsuspend) throws IOException {
+
+		final Task task = this.runningTasks.get(id);
+
+		if (task == null) {
+			final TaskActivationResult result = new TaskActivationResult(id,
+				AbstractTaskResult.ReturnCode.TASK_NOT_FOUND);
+			result.setDescription("No task with ID " + id + " is currently running");
+			return result;
+		}
+
+		// Activation only releases the parked execution thread, so it can be done by the IPC thread
+		if (!task.activateHotStandby(channelsToUnsuspend)) {
+			final TaskActivationResult result = new TaskActivationResult(id,
+				AbstractTaskResult.ReturnCode.ILLEGAL_STATE);
+			result.setDescription("Task with ID " + id + " is not in hot standby");
+			return result;
+		}
+
+		return new TaskActivationResult(id, AbstractTaskResult.ReturnCode.SUCCESS);
+	}
 }
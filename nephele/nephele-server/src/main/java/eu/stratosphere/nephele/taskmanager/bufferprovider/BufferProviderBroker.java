@@ -23,4 +23,14 @@ import eu.stratosphere.nephele.jobgraph.JobID;
 public interface BufferProviderBroker {
 
 	BufferProvider getBufferProvider(JobID jobID, ChannelID sourceChannelID) throws IOException, InterruptedException;
+
+	/**
+	 * Returns the slot the given source channel occupies at the local dispatcher. Envelopes carrying the slot are
+	 * dispatched without a hash lookup of the source channel ID.
+	 * 
+	 * @param sourceChannelID
+	 *        the ID of the source channel
+	 * @return the slot of the source channel or <code>-1</code> if the channel does not occupy a slot yet
+	 */
+	int getSourceSlot(ChannelID sourceChannelID);
 }
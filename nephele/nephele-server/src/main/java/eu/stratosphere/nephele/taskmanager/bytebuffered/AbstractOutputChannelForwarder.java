@@ -21,6 +21,7 @@ import eu.stratosphere.nephele.event.task.AbstractEvent;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutputChannel;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopePool;
 
 /**
  * An output channel forwarder is a component which processes a {@link TransferEnvelope} after it has been produced by
@@ -97,7 +98,7 @@ public abstract class AbstractOutputChannelForwarder {
 		final Buffer buffer = transferEnvelope.getBuffer();
 		if (buffer != null) {
 			buffer.recycleBuffer();
-
+			TransferEnvelopePool.recycleTransferEnvelope(transferEnvelope);
 		}
 	}
 
@@ -45,6 +45,7 @@ import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPoolOwner;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopeDispatcher;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopePool;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopeReceiverList;
 
 public final class ByteBufferedChannelManager implements TransferEnvelopeDispatcher, BufferProviderBroker {
@@ -84,6 +85,12 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 	 */
 	private final Map<ChannelID, TransferEnvelopeReceiverList> receiverCache = new ConcurrentHashMap<ChannelID, TransferEnvelopeReceiverList>();
 
+	/**
+	 * Assigns dense slots to the registered channels, so envelopes from local channels can be dispatched without
+	 * looking up their source and receivers by channel ID.
+	 */
+	private final ChannelSlotTable channelSlots = new ChannelSlotTable();
+
 	public ByteBufferedChannelManager(final ChannelLookupProtocol channelLookupService,
 			final InstanceConnectionInfo localInstanceConnectionInfo) throws IOException {
 
@@ -148,6 +155,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 				final OutputChannelContext outputChannelContext = outputGateContext.createOutputChannelContext(
 					channelID, previousContext, isActive, this.mergeSpilledBuffers);
+				outputChannelContext.setChannelSlot(this.channelSlots.register(outputChannelContext));
 
 				// Add routing entry to receiver cache to reduce latency
 				if (outputChannelContext.getType() == ChannelType.INMEMORY) {
@@ -183,6 +191,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 				final InputChannelContext inputChannelContext = inputGateContext.createInputChannelContext(
 					channelID, previousContext);
+				inputChannelContext.setChannelSlot(this.channelSlots.register(inputChannelContext));
 
 				// Add routing entry to receiver cache to reduce latency
 				if (inputChannelContext.getType() == ChannelType.INMEMORY) {
@@ -227,6 +236,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 				context.destroy();
 			}
 			this.receiverCache.remove(outputChannelID);
+			this.channelSlots.unregister(outputChannelID);
 		}
 
 		channelIterator = environment.getInputChannelIDs().iterator();
@@ -237,8 +247,11 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 			final ChannelContext context = this.registeredChannels.remove(outputChannelID);
 			if (context != null) {
 				context.destroy();
+				// The slot of the remote output channel feeding this channel is no longer needed
+				this.channelSlots.unregisterRemoteSource(context.getConnectedChannelID());
 			}
 			this.receiverCache.remove(outputChannelID);
+			this.channelSlots.unregister(outputChannelID);
 		}
 
 		final Iterator<GateID> inputGateIterator = environment.getInputGateIDs().iterator();
@@ -279,6 +292,8 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		final Buffer buffer = envelope.getBuffer();
 		if (buffer != null) {
 			buffer.recycleBuffer();
+			// Envelopes carrying a buffer are exclusively owned by the channel manager at this point
+			TransferEnvelopePool.recycleTransferEnvelope(envelope);
 		}
 	}
 
@@ -307,16 +322,29 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 	private void processEnvelope(final TransferEnvelope transferEnvelope, final boolean freeSourceBuffer)
 			throws IOException, InterruptedException {
 
-		TransferEnvelopeReceiverList receiverList = null;
-		try {
-			receiverList = getReceiverList(transferEnvelope.getJobID(),
-				transferEnvelope.getSource());
-		} catch (InterruptedException e) {
-			recycleBuffer(transferEnvelope);
-			throw e;
-		} catch (IOException e) {
-			recycleBuffer(transferEnvelope);
-			throw e;
+		TransferEnvelopeReceiverList receiverList = this.channelSlots.getReceiverList(
+			transferEnvelope.getSourceSlot(), transferEnvelope.getSource());
+		if (receiverList == null) {
+			try {
+				receiverList = getReceiverList(transferEnvelope.getJobID(),
+					transferEnvelope.getSource());
+			} catch (InterruptedException e) {
+				recycleBuffer(transferEnvelope);
+				throw e;
+			} catch (IOException e) {
+				recycleBuffer(transferEnvelope);
+				throw e;
+			}
+
+			// Attach the receiver list to the source's slot, so following envelopes skip the lookup. Envelopes without a
+			// slot have been received over the network, their source gets a slot which the deserializer picks up.
+			if (receiverList != null) {
+				if (transferEnvelope.getSourceSlot() >= 0) {
+					this.channelSlots.setReceiverList(transferEnvelope.getSource(), receiverList);
+				} else {
+					this.channelSlots.registerRemoteSource(transferEnvelope.getSource(), receiverList);
+				}
+			}
 		}
 
 		if (receiverList == null) {
@@ -346,7 +374,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 			final ChannelID localReceiver = localReceivers.get(0);
 
-			final ChannelContext cc = this.registeredChannels.get(localReceiver);
+			final ChannelContext cc = getLocalReceiverContext(receiverList, 0);
 			if (cc == null) {
 
 				try {
@@ -376,9 +404,10 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 				final List<ChannelID> localReceivers = receiverList.getLocalReceivers();
 
-				for (final ChannelID localReceiver : localReceivers) {
+				for (int i = 0; i < localReceivers.size(); ++i) {
 
-					final ChannelContext cc = this.registeredChannels.get(localReceiver);
+					final ChannelID localReceiver = localReceivers.get(i);
+					final ChannelContext cc = getLocalReceiverContext(receiverList, i);
 					if (cc == null) {
 
 						sendReceiverNotFoundEvent(transferEnvelope, localReceiver);
@@ -419,14 +448,21 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 					generateSenderHint(transferEnvelope, remoteReceivers);
 				}
 
+				// Count the queued buffers at the source, so it can steer records away from backlogged connections
+				final OutputChannelContext sourceContext = getSourceOutputChannelContext(transferEnvelope);
+
 				for (final RemoteReceiver remoteReceiver : remoteReceivers) {
 					TransferEnvelope dup = transferEnvelope.duplicate();
+					if (sourceContext != null) {
+						sourceContext.networkBufferQueued();
+					}
 					this.networkConnectionManager.queueEnvelopeForTransfer(remoteReceiver, dup);
 				}
 			}
 		} finally {
-			// Recycle the source buffer
+			// Recycle the source buffer and the envelope, the receivers have been handed duplicates
 			srcBuffer.recycleBuffer();
+			TransferEnvelopePool.recycleTransferEnvelope(transferEnvelope);
 		}
 	}
 
@@ -434,13 +470,13 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 			final TransferEnvelopeReceiverList receiverList) throws IOException, InterruptedException {
 
 		// No need to copy anything
-		final Iterator<ChannelID> localIt = receiverList.getLocalReceivers().iterator();
+		final List<ChannelID> localReceivers = receiverList.getLocalReceivers();
 
-		while (localIt.hasNext()) {
+		for (int i = 0; i < localReceivers.size(); ++i) {
 
-			final ChannelID localReceiver = localIt.next();
+			final ChannelID localReceiver = localReceivers.get(i);
 
-			final ChannelContext channelContext = this.registeredChannels.get(localReceiver);
+			final ChannelContext channelContext = getLocalReceiverContext(receiverList, i);
 			if (channelContext == null) {
 				sendReceiverNotFoundEvent(transferEnvelope, localReceiver);
 				continue;
@@ -467,12 +503,79 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		}
 	}
 
+	/**
+	 * Returns the channel context of the local receiver with the given index. The context is looked up through the
+	 * receiver's slot if it has already been resolved, otherwise the slot is resolved by the receiver's channel ID.
+	 * 
+	 * @param receiverList
+	 *        the receiver list containing the local receiver
+	 * @param index
+	 *        the index of the local receiver in the receiver list
+	 * @return the channel context of the local receiver or <code>null</code> if the receiver is not registered
+	 */
+	private ChannelContext getLocalReceiverContext(final TransferEnvelopeReceiverList receiverList, final int index) {
+
+		final ChannelID localReceiver = receiverList.getLocalReceivers().get(index);
+
+		ChannelContext channelContext = this.channelSlots.getChannelContext(receiverList.getLocalReceiverSlot(index),
+			localReceiver);
+		if (channelContext != null) {
+			return channelContext;
+		}
+
+		channelContext = this.registeredChannels.get(localReceiver);
+		if (channelContext != null) {
+			receiverList.setLocalReceiverSlot(index, this.channelSlots.getSlot(localReceiver));
+		}
+
+		return channelContext;
+	}
+
+	/**
+	 * Returns the context of the local output channel the given envelope originates from.
+	 * 
+	 * @param transferEnvelope
+	 *        the transfer envelope
+	 * @return the context of the local output channel or <code>null</code> if the envelope does not originate from a
+	 *         registered local output channel
+	 */
+	private OutputChannelContext getSourceOutputChannelContext(final TransferEnvelope transferEnvelope) {
+
+		final ChannelContext channelContext = this.channelSlots.getChannelContext(transferEnvelope.getSourceSlot(),
+			transferEnvelope.getSource());
+		if (channelContext == null || channelContext.isInputChannel()) {
+			return null;
+		}
+
+		return (OutputChannelContext) channelContext;
+	}
+
+	/**
+	 * Called by an outgoing connection when the buffer of the given envelope has been written to the connection or
+	 * dropped, before the buffer is recycled.
+	 * 
+	 * @param transferEnvelope
+	 *        the transfer envelope whose buffer has been transmitted
+	 */
+	void networkBufferTransmitted(final TransferEnvelope transferEnvelope) {
+
+		final OutputChannelContext sourceContext = getSourceOutputChannelContext(transferEnvelope);
+		if (sourceContext != null) {
+			sourceContext.networkBufferTransmitted();
+		}
+	}
+
+	private void cacheReceiverList(final ChannelID source, final TransferEnvelopeReceiverList receiverList) {
+		this.receiverCache.put(source, receiverList);
+		this.channelSlots.setReceiverList(source, receiverList);
+	}
+
 	private void addReceiverListHint(final ChannelID source, final ChannelID localReceiver) {
-		this.receiverCache.put(source, new TransferEnvelopeReceiverList(localReceiver));
+		cacheReceiverList(source, new TransferEnvelopeReceiverList(localReceiver));
 	}
 
 	private void addReceiverListHint(final ChannelID source, final RemoteReceiver remoteReceiver) {
-		this.receiverCache.put(source, new TransferEnvelopeReceiverList(remoteReceiver));
+		cacheReceiverList(source, new TransferEnvelopeReceiverList(remoteReceiver));
 	}
 
 	private void generateSenderHint(final TransferEnvelope transferEnvelope, final List<RemoteReceiver> remoteReceivers) {
@@ -561,7 +664,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 		if (receiverList != null) {
 
-			this.receiverCache.put(sourceChannelID, receiverList);
+			cacheReceiverList(sourceChannelID, receiverList);
 
 			if (LOG.isDebugEnabled()) {
 
@@ -691,7 +794,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 				// Unicast case, get final buffer provider
 
 				final ChannelID localReceiver = localReceivers.get(0);
-				final ChannelContext cc = this.registeredChannels.get(localReceiver);
+				final ChannelContext cc = getLocalReceiverContext(receiverList, 0);
 				if (cc == null) {
 
 					// Use the transit buffer for this purpose, data will be discarded in most cases anyway.
@@ -712,6 +815,15 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		return this.transitBufferPool;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSourceSlot(final ChannelID sourceChannelID) {
+
+		return this.channelSlots.getSlot(sourceChannelID);
+	}
+
 	/**
 	 * Checks if the byte buffered channel manager has enough resources available to safely execute the given task.
 	 * 
@@ -798,7 +910,9 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		final Iterator<ChannelID> it = channelIDs.iterator();
 		while (it.hasNext()) {
 
-			this.receiverCache.remove(it.next());
+			final ChannelID channelID = it.next();
+			this.receiverCache.remove(channelID);
+			this.channelSlots.setReceiverList(channelID, null);
 		}
 	}
 
@@ -33,6 +33,15 @@ public interface ChannelContext {
 	ChannelType getType();
 	
 	void queueTransferEnvelope(TransferEnvelope transferEnvelope);
+
+	/**
+	 * Sets the slot under which this channel is registered with the byte buffered channel manager. The slot is
+	 * attached to the transfer envelopes originating from this channel.
+	 * 
+	 * @param channelSlot
+	 *        the slot of this channel
+	 */
+	void setChannelSlot(int channelSlot);
 	
 	void destroy();
 }
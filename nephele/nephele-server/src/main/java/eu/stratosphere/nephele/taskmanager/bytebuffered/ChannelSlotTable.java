@@ -0,0 +1,306 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopeReceiverList;
+
+/**
+ * The channel slot table assigns a dense integer slot to every channel registered with the
+ * {@link ByteBufferedChannelManager}. The slots are attached to transfer envelopes and receiver lists, so envelopes
+ * can be dispatched by an array access instead of a hash lookup of the {@link ChannelID}.
+ * <p>
+ * Besides the registered channels, the table assigns slots to remote source channels, i.e. output channels on other
+ * instances whose envelopes are received over the network. These slots only cache a receiver list and have no channel
+ * context. The deserializer of a connection resolves the slot once per channel handle, so envelopes received over the
+ * network skip the hash lookup as well.
+ * <p>
+ * Slots of unregistered channels are reused. Therefore, every access through a slot must provide the expected channel
+ * ID, so that a stale slot is detected and the caller can fall back to a lookup by channel ID.
+ * <p>
+ * Lookups are lock-free, modifications of the table are synchronized.
+ * <p>
+ * This class is thread-safe.
+ *
+ */
+final class ChannelSlotTable {
+
+	/**
+	 * The initial number of slots.
+	 */
+	private static final int INITIAL_NUMBER_OF_SLOTS = 64;
+
+	/**
+	 * Maps the IDs of the registered channels to their slots. This map is only used on the control path.
+	 */
+	private final Map<ChannelID, Integer> slots = new ConcurrentHashMap<ChannelID, Integer>();
+
+	/**
+	 * The slots which have been released and can be reused.
+	 */
+	private final Queue<Integer> freeSlots = new ArrayDeque<Integer>();
+
+	/**
+	 * The registered channel contexts, indexed by their slot.
+	 */
+	private volatile AtomicReferenceArray<ChannelContext> channelContexts = new AtomicReferenceArray<ChannelContext>(
+		INITIAL_NUMBER_OF_SLOTS);
+
+	/**
+	 * The IDs of the channels occupying the slots, including remote source channels.
+	 */
+	private volatile AtomicReferenceArray<ChannelID> channelIDs = new AtomicReferenceArray<ChannelID>(
+		INITIAL_NUMBER_OF_SLOTS);
+
+	/**
+	 * The cached receiver lists for envelopes originating from the registered channels, indexed by their slot.
+	 */
+	private volatile AtomicReferenceArray<TransferEnvelopeReceiverList> receiverLists = new AtomicReferenceArray<TransferEnvelopeReceiverList>(
+		INITIAL_NUMBER_OF_SLOTS);
+
+	/**
+	 * The lowest slot which has never been assigned so far.
+	 */
+	private int nextUnusedSlot = 0;
+
+	/**
+	 * Registers the given channel context and returns the slot assigned to it. If a context with the same channel ID
+	 * is already registered, it is replaced and keeps its slot.
+	 *
+	 * @param channelContext
+	 *        the channel context to register
+	 * @return the slot assigned to the channel context
+	 */
+	synchronized int register(final ChannelContext channelContext) {
+
+		final ChannelID channelID = channelContext.getChannelID();
+
+		final Integer existingSlot = this.slots.get(channelID);
+		if (existingSlot != null) {
+			this.channelContexts.set(existingSlot.intValue(), channelContext);
+			return existingSlot.intValue();
+		}
+
+		final int slot = allocateSlot(channelID);
+		this.channelContexts.set(slot, channelContext);
+
+		return slot;
+	}
+
+	/**
+	 * Caches the receiver list for envelopes originating from the remote source channel with the given ID and returns
+	 * the slot of the channel. If the channel does not occupy a slot yet, a slot without a channel context is assigned
+	 * to it. If the channel is registered locally, the receiver list is cached in its slot.
+	 *
+	 * @param sourceChannelID
+	 *        the ID of the remote source channel
+	 * @param receiverList
+	 *        the receiver list to cache
+	 * @return the slot of the remote source channel
+	 */
+	synchronized int registerRemoteSource(final ChannelID sourceChannelID,
+			final TransferEnvelopeReceiverList receiverList) {
+
+		final Integer existingSlot = this.slots.get(sourceChannelID);
+		final int slot = (existingSlot != null) ? existingSlot.intValue() : allocateSlot(sourceChannelID);
+		this.receiverLists.set(slot, receiverList);
+
+		return slot;
+	}
+
+	/**
+	 * Releases the slot of the remote source channel with the given ID. The call is ignored if the channel does not
+	 * occupy a slot or is registered locally.
+	 *
+	 * @param sourceChannelID
+	 *        the ID of the remote source channel
+	 */
+	synchronized void unregisterRemoteSource(final ChannelID sourceChannelID) {
+
+		final Integer slot = this.slots.get(sourceChannelID);
+		if (slot == null || this.channelContexts.get(slot.intValue()) != null) {
+			return;
+		}
+
+		unregister(sourceChannelID);
+	}
+
+	/**
+	 * Assigns a free slot to the channel with the given ID.
+	 *
+	 * @param channelID
+	 *        the ID of the channel
+	 * @return the slot assigned to the channel
+	 */
+	private int allocateSlot(final ChannelID channelID) {
+
+		final int slot;
+		if (this.freeSlots.isEmpty()) {
+			slot = this.nextUnusedSlot++;
+			ensureCapacity(slot + 1);
+		} else {
+			slot = this.freeSlots.poll().intValue();
+		}
+
+		this.channelIDs.set(slot, channelID);
+		this.receiverLists.set(slot, null);
+		this.slots.put(channelID, Integer.valueOf(slot));
+
+		return slot;
+	}
+
+	/**
+	 * Unregisters the channel with the given ID and releases its slot.
+	 *
+	 * @param channelID
+	 *        the ID of the channel to unregister
+	 */
+	synchronized void unregister(final ChannelID channelID) {
+
+		final Integer slot = this.slots.remove(channelID);
+		if (slot == null) {
+			return;
+		}
+
+		this.channelContexts.set(slot.intValue(), null);
+		this.channelIDs.set(slot.intValue(), null);
+		this.receiverLists.set(slot.intValue(), null);
+		this.freeSlots.add(slot);
+	}
+
+	/**
+	 * Returns the slot of the channel with the given ID. This method is intended for the control path only.
+	 *
+	 * @param channelID
+	 *        the ID of the channel
+	 * @return the slot of the channel or <code>-1</code> if the channel is not registered
+	 */
+	int getSlot(final ChannelID channelID) {
+
+		final Integer slot = this.slots.get(channelID);
+		if (slot == null) {
+			return -1;
+		}
+
+		return slot.intValue();
+	}
+
+	/**
+	 * Returns the channel context registered in the given slot.
+	 *
+	 * @param slot
+	 *        the slot of the channel context
+	 * @param channelID
+	 *        the ID of the channel which is expected to occupy the slot
+	 * @return the channel context or <code>null</code> if the slot is not occupied by the expected channel
+	 */
+	ChannelContext getChannelContext(final int slot, final ChannelID channelID) {
+
+		final AtomicReferenceArray<ChannelContext> contexts = this.channelContexts;
+		if (slot < 0 || slot >= contexts.length()) {
+			return null;
+		}
+
+		final ChannelContext channelContext = contexts.get(slot);
+		if (channelContext == null || !channelID.equals(channelContext.getChannelID())) {
+			return null;
+		}
+
+		return channelContext;
+	}
+
+	/**
+	 * Returns the cached receiver list for envelopes originating from the channel in the given slot.
+	 *
+	 * @param slot
+	 *        the slot of the source channel
+	 * @param sourceChannelID
+	 *        the ID of the channel which is expected to occupy the slot
+	 * @return the cached receiver list or <code>null</code> if no receiver list is cached or the slot is not occupied
+	 *         by the expected channel
+	 */
+	TransferEnvelopeReceiverList getReceiverList(final int slot, final ChannelID sourceChannelID) {
+
+		final AtomicReferenceArray<ChannelID> ids = this.channelIDs;
+		if (slot < 0 || slot >= ids.length() || !sourceChannelID.equals(ids.get(slot))) {
+			return null;
+		}
+
+		final AtomicReferenceArray<TransferEnvelopeReceiverList> lists = this.receiverLists;
+		if (slot >= lists.length()) {
+			return null;
+		}
+
+		return lists.get(slot);
+	}
+
+	/**
+	 * Caches the receiver list for envelopes originating from the channel with the given ID. The call is ignored if
+	 * the channel is not registered.
+	 *
+	 * @param sourceChannelID
+	 *        the ID of the source channel
+	 * @param receiverList
+	 *        the receiver list to cache or <code>null</code> to invalidate the cached receiver list
+	 */
+	synchronized void setReceiverList(final ChannelID sourceChannelID, final TransferEnvelopeReceiverList receiverList) {
+
+		final Integer slot = this.slots.get(sourceChannelID);
+		if (slot == null) {
+			return;
+		}
+
+		this.receiverLists.set(slot.intValue(), receiverList);
+	}
+
+	/**
+	 * Grows the arrays backing the table so they can hold at least the given number of slots. The new arrays are
+	 * published after all entries have been copied, so concurrent lookups either see the old or the new array.
+	 *
+	 * @param minimumCapacity
+	 *        the minimum number of slots
+	 */
+	private void ensureCapacity(final int minimumCapacity) {
+
+		final int capacity = this.channelContexts.length();
+		if (minimumCapacity <= capacity) {
+			return;
+		}
+
+		final int newCapacity = Math.max(minimumCapacity, 2 * capacity);
+
+		final AtomicReferenceArray<ChannelContext> newContexts = new AtomicReferenceArray<ChannelContext>(
+			newCapacity);
+		final AtomicReferenceArray<ChannelID> newIDs = new AtomicReferenceArray<ChannelID>(newCapacity);
+		final AtomicReferenceArray<TransferEnvelopeReceiverList> newLists = new AtomicReferenceArray<TransferEnvelopeReceiverList>(
+			newCapacity);
+		for (int i = 0; i < capacity; ++i) {
+			newContexts.set(i, this.channelContexts.get(i));
+			newIDs.set(i, this.channelIDs.get(i));
+			newLists.set(i, this.receiverLists.get(i));
+		}
+
+		this.channelContexts = newContexts;
+		this.channelIDs = newIDs;
+		this.receiverLists = newLists;
+	}
+}
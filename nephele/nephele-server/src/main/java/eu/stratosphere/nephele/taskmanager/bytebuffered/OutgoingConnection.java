@@ -20,15 +20,17 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
-import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopePool;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
 
 /**
@@ -57,9 +59,26 @@ public class OutgoingConnection {
 	private final OutgoingConnectionThread connectionThread;
 
 	/**
-	 * The queue of transfer envelopes to be transmitted.
+	 * The queue of transfer envelopes to be transmitted. Envelopes are queued by arbitrary threads and only removed by
+	 * the outgoing connection thread, so the queue does not require locking.
 	 */
-	private final Queue<TransferEnvelope> queuedEnvelopes = new ArrayDeque<TransferEnvelope>();
+	private final Queue<TransferEnvelope> queuedEnvelopes = new ConcurrentLinkedQueue<TransferEnvelope>();
+
+	/**
+	 * The high-priority lane of this connection. Envelopes marked as out of band are queued here and transmitted
+	 * before any envelope of the regular queue which has not been started yet.
+	 */
+	private final Queue<TransferEnvelope> queuedPriorityEnvelopes = new ConcurrentLinkedQueue<TransferEnvelope>();
+
+	/**
+	 * Stores whether the current envelope has been taken from the high-priority lane.
+	 */
+	private boolean currentEnvelopeIsPriority = false;
+
+	/**
+	 * The monitor protecting the state transitions of the underlying TCP connection.
+	 */
+	private final Object connectionStateLock = new Object();
 
 	/**
 	 * The {@link DefaultSerializer} object used to transform the envelopes into a byte stream.
@@ -69,25 +88,32 @@ public class OutgoingConnection {
 	/**
 	 * The {@link TransferEnvelope} that is currently processed.
 	 */
-	private TransferEnvelope currentEnvelope = null;
+	private volatile TransferEnvelope currentEnvelope = null;
 
 	/**
 	 * Stores whether the underlying TCP connection is established. As this variable is accessed by the byte buffered
-	 * channel manager and the outgoing connection thread, it must be protected by a monitor.
+	 * channel manager and the outgoing connection thread, it is only modified while holding the connection state lock.
+	 * Threads queuing envelopes read it without the lock to skip the lock while the connection is established.
 	 */
-	private boolean isConnected = false;
+	private volatile boolean isConnected = false;
 
 	/**
 	 * Stores whether is underlying TCP connection is subscribed to the NIO write event. As this variable is accessed by
-	 * the byte buffered channel and the outgoing connection thread, it must be protected by a monitor.
+	 * the byte buffered channel and the outgoing connection thread, it is only modified while holding the connection
+	 * state lock.
 	 */
-	private boolean isSubscribedToWriteEvent = false;
+	private volatile boolean isSubscribedToWriteEvent = false;
 
 	/**
 	 * The overall number of connection retries which shall be performed before a connection error is reported.
 	 */
 	private final int numberOfConnectionRetries;
 
+	/**
+	 * The byte buffered channel manager which is notified when a queued buffer has been transmitted.
+	 */
+	private final ByteBufferedChannelManager byteBufferedChannelManager;
+
 	/**
 	 * The number of connection retries left before an I/O error is reported.
 	 */
@@ -118,13 +144,16 @@ public class OutgoingConnection {
 	 *        the connection thread which actually handles the network transfer
 	 * @param numberOfConnectionRetries
 	 *        the number of connection retries allowed before an I/O error is reported
+	 * @param byteBufferedChannelManager
+	 *        the byte buffered channel manager which is notified when a queued buffer has been transmitted
 	 */
 	public OutgoingConnection(RemoteReceiver remoteReceiver, OutgoingConnectionThread connectionThread,
-			int numberOfConnectionRetries) {
+			int numberOfConnectionRetries, ByteBufferedChannelManager byteBufferedChannelManager) {
 
 		this.remoteReceiver = remoteReceiver;
 		this.connectionThread = connectionThread;
 		this.numberOfConnectionRetries = numberOfConnectionRetries;
+		this.byteBufferedChannelManager = byteBufferedChannelManager;
 	}
 
 	/**
@@ -138,16 +167,22 @@ public class OutgoingConnection {
 	 */
 	public void queueEnvelope(TransferEnvelope transferEnvelope) {
 
-		synchronized (this.queuedEnvelopes) {
+		if (transferEnvelope.isOutOfBand()) {
+			this.queuedPriorityEnvelopes.offer(transferEnvelope);
+		} else {
+			this.queuedEnvelopes.offer(transferEnvelope);
+		}
 
+		// The outgoing connection thread re-checks the queue after tearing down the connection or unsubscribing from
+		// the write event, so the lock can be skipped as long as the connection is ready
+		if (!this.isConnected || !this.isSubscribedToWriteEvent) {
 			checkConnection();
-			this.queuedEnvelopes.add(transferEnvelope);
 		}
 	}
 
 	private void checkConnection() {
 
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.connectionStateLock) {
 
 			if (!this.isConnected) {
 
@@ -167,6 +202,16 @@ public class OutgoingConnection {
 		}
 	}
 
+	/**
+	 * Checks whether any envelope is queued in the regular queue or the high-priority lane.
+	 * 
+	 * @return <code>true</code> if at least one envelope is queued, <code>false</code> otherwise
+	 */
+	private boolean hasQueuedEnvelopes() {
+
+		return !this.queuedEnvelopes.isEmpty() || !this.queuedPriorityEnvelopes.isEmpty();
+	}
+
 	/**
 	 * Returns the {@link InetSocketAddress} to the destination host this outgoing connection is supposed to be
 	 * connected to.
@@ -200,7 +245,7 @@ public class OutgoingConnection {
 			LOG.error("Cannot connect to " + this.remoteReceiver + ", " + this.retriesLeft + " retries left");
 		}
 
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.connectionStateLock) {
 
 			if (this.selectionKey != null) {
 
@@ -229,26 +274,19 @@ public class OutgoingConnection {
 			// Error is fatal
 			LOG.error(ioe);
 
-			// Notify source of current envelope and release buffer
-			if (this.currentEnvelope != null) {
-				if (this.currentEnvelope.getBuffer() != null) {
-					this.currentEnvelope.getBuffer().recycleBuffer();
-					this.currentEnvelope = null;
-				}
-			}
+			// The current envelope is still the head of its queue, so its buffer is released along with the others
+			this.currentEnvelope = null;
 
-			// Notify all other tasks which are waiting for data to be transmitted
-			final Iterator<TransferEnvelope> iter = this.queuedEnvelopes.iterator();
-			while (iter.hasNext()) {
-				final TransferEnvelope envelope = iter.next();
-				iter.remove();
+			// Notify all tasks which are waiting for data to be transmitted
+			TransferEnvelope envelope = this.queuedEnvelopes.poll();
+			while (envelope != null) {
 				// Recycle the buffer inside the envelope
-				if (envelope.getBuffer() != null) {
-					envelope.getBuffer().recycleBuffer();
-				}
+				releaseBuffer(envelope);
+				envelope = this.queuedEnvelopes.poll();
 			}
 
-			this.queuedEnvelopes.clear();
+			// Envelopes of the high-priority lane never carry buffers
+			this.queuedPriorityEnvelopes.clear();
 		}
 	}
 
@@ -278,7 +316,7 @@ public class OutgoingConnection {
 		}
 
 		// Close the connection and cancel the interest key
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.connectionStateLock) {
 			try {
 				LOG.debug("Closing connection to " + socketChannel.socket().getRemoteSocketAddress());
 				socketChannel.close();
@@ -292,22 +330,25 @@ public class OutgoingConnection {
 			// Error is fatal
 			LOG.error(ioe);
 
-			// Trigger new connection if there are more envelopes to be transmitted
-			if (this.queuedEnvelopes.isEmpty()) {
-				this.isConnected = false;
-				this.isSubscribedToWriteEvent = false;
-			} else {
+			// Trigger new connection if there are more envelopes to be transmitted. The flags are cleared before the
+			// queue is checked, so an envelope queued concurrently is either seen here or by its producer.
+			this.isConnected = false;
+			this.isSubscribedToWriteEvent = false;
+			if (hasQueuedEnvelopes()) {
 				this.connectionThread.triggerConnect(this);
 				this.isConnected = true;
 				this.isSubscribedToWriteEvent = true;
 			}
 
-			// We must assume the current envelope is corrupted so we notify the task which created it.
+			// We must assume the current envelope is corrupted so we drop it and notify the task which created it.
 			if (this.currentEnvelope != null) {
-				if (this.currentEnvelope.getBuffer() != null) {
-					this.currentEnvelope.getBuffer().recycleBuffer();
-					this.currentEnvelope = null;
+				if (this.currentEnvelopeIsPriority) {
+					this.queuedPriorityEnvelopes.poll();
+				} else {
+					this.queuedEnvelopes.poll();
 				}
+				releaseBuffer(this.currentEnvelope);
+				this.currentEnvelope = null;
 			}
 		}
 	}
@@ -346,32 +387,58 @@ public class OutgoingConnection {
 		final WritableByteChannel writableByteChannel = (WritableByteChannel) this.selectionKey.channel();
 
 		if (this.currentEnvelope == null) {
-			synchronized (this.queuedEnvelopes) {
-				if (this.queuedEnvelopes.isEmpty()) {
+			// Envelopes are never interrupted, so the high-priority lane is only considered between two envelopes
+			TransferEnvelope nextEnvelope = this.queuedPriorityEnvelopes.peek();
+			this.currentEnvelopeIsPriority = (nextEnvelope != null);
+			if (nextEnvelope == null) {
+				nextEnvelope = this.queuedEnvelopes.peek();
+				if (nextEnvelope == null) {
 					return false;
-				} else {
-					this.currentEnvelope = this.queuedEnvelopes.peek();
-					this.serializer.setTransferEnvelope(this.currentEnvelope);
 				}
 			}
+			this.currentEnvelope = nextEnvelope;
+			this.serializer.setTransferEnvelope(nextEnvelope);
 		}
 
 		if (!this.serializer.write(writableByteChannel)) {
 
 			// Make sure we recycle the attached memory or file buffers correctly
-			if (this.currentEnvelope.getBuffer() != null) {
-				this.currentEnvelope.getBuffer().recycleBuffer();
-			}
+			final TransferEnvelope writtenEnvelope = this.currentEnvelope;
+			final boolean hasBuffer = (writtenEnvelope.getBuffer() != null);
+			releaseBuffer(writtenEnvelope);
 
-			synchronized (this.queuedEnvelopes) {
+			if (this.currentEnvelopeIsPriority) {
+				this.queuedPriorityEnvelopes.poll();
+			} else {
 				this.queuedEnvelopes.poll();
-				this.currentEnvelope = null;
+			}
+			this.currentEnvelope = null;
+
+			// Envelopes without a buffer may have been queued with other connections as well
+			if (hasBuffer) {
+				TransferEnvelopePool.recycleTransferEnvelope(writtenEnvelope);
 			}
 		}
 
 		return true;
 	}
 
+	/**
+	 * Recycles the buffer of the given envelope, if any, and tells the byte buffered channel manager that the buffer
+	 * has left the queue of this connection.
+	 * 
+	 * @param envelope
+	 *        the envelope whose buffer is to be released
+	 */
+	private void releaseBuffer(final TransferEnvelope envelope) {
+
+		final Buffer buffer = envelope.getBuffer();
+		if (buffer != null) {
+			this.byteBufferedChannelManager.networkBufferTransmitted(envelope);
+			buffer.recycleBuffer();
+		}
+	}
+
 	/**
 	 * Requests to close the underlying TCP connection. The request is ignored if at least one {@link TransferEnvelope}
 	 * is queued.
@@ -383,14 +450,20 @@ public class OutgoingConnection {
 	 */
 	public void requestClose() throws IOException {
 
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.connectionStateLock) {
 
-			if (this.queuedEnvelopes.isEmpty()) {
+			if (!hasQueuedEnvelopes()) {
 
 				if (this.isSubscribedToWriteEvent) {
 
 					this.connectionThread.unsubscribeFromWriteEvent(this.selectionKey);
 					this.isSubscribedToWriteEvent = false;
+
+					// An envelope may have been queued while the flag was still set
+					if (hasQueuedEnvelopes()) {
+						this.connectionThread.subscribeToWriteEvent(this.selectionKey);
+						this.isSubscribedToWriteEvent = true;
+					}
 				}
 			}
 		}
@@ -405,9 +478,9 @@ public class OutgoingConnection {
 	 */
 	public void closeConnection() throws IOException {
 
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.connectionStateLock) {
 
-			if (!this.queuedEnvelopes.isEmpty()) {
+			if (hasQueuedEnvelopes()) {
 				return;
 			}
 
@@ -421,6 +494,11 @@ public class OutgoingConnection {
 
 			this.isConnected = false;
 			this.isSubscribedToWriteEvent = false;
+
+			// An envelope may have been queued while the connection was still considered to be established
+			if (hasQueuedEnvelopes()) {
+				checkConnection();
+			}
 		}
 	}
 
@@ -433,20 +511,23 @@ public class OutgoingConnection {
 	 */
 	public int getNumberOfQueuedEnvelopesFromChannel(final ChannelID sourceChannelID) {
 
-		synchronized (this.queuedEnvelopes) {
+		return countEnvelopesFromChannel(this.queuedEnvelopes, sourceChannelID)
+			+ countEnvelopesFromChannel(this.queuedPriorityEnvelopes, sourceChannelID);
+	}
 
-			int number = 0;
+	private static int countEnvelopesFromChannel(final Queue<TransferEnvelope> queue, final ChannelID sourceChannelID) {
 
-			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
-			while (it.hasNext()) {
-				final TransferEnvelope te = it.next();
-				if (sourceChannelID.equals(te.getSource())) {
-					number++;
-				}
-			}
+		int number = 0;
 
-			return number;
+		final Iterator<TransferEnvelope> it = queue.iterator();
+		while (it.hasNext()) {
+			final TransferEnvelope te = it.next();
+			if (sourceChannelID.equals(te.getSource())) {
+				number++;
+			}
 		}
+
+		return number;
 	}
 
 	/**
@@ -458,17 +539,19 @@ public class OutgoingConnection {
 	 */
 	public void dropAllQueuedEnvelopesFromChannel(final ChannelID sourceChannelID) {
 
-		synchronized (this.queuedEnvelopes) {
+		final Iterator<TransferEnvelope> priorityIt = this.queuedPriorityEnvelopes.iterator();
+		while (priorityIt.hasNext()) {
+			if (sourceChannelID.equals(priorityIt.next().getSource())) {
+				priorityIt.remove();
+			}
+		}
 
-			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
-			while (it.hasNext()) {
-				final TransferEnvelope te = it.next();
-				if (sourceChannelID.equals(te.getSource())) {
-					it.remove();
-					if (te.getBuffer() != null) {
-						te.getBuffer().recycleBuffer();
-					}
-				}
+		final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
+		while (it.hasNext()) {
+			final TransferEnvelope te = it.next();
+			if (sourceChannelID.equals(te.getSource())) {
+				it.remove();
+				releaseBuffer(te);
 			}
 		}
 	}
@@ -484,7 +567,7 @@ public class OutgoingConnection {
 	 */
 	public boolean canBeRemoved() {
 
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.connectionStateLock) {
 
 			if (this.isConnected) {
 				return false;
@@ -494,7 +577,23 @@ public class OutgoingConnection {
 				return false;
 			}
 
-			return this.queuedEnvelopes.isEmpty();
+			return !hasQueuedEnvelopes();
+		}
+	}
+
+	/**
+	 * Notifies this outgoing connection object that a new TCP connection to the destination host has been
+	 * established. Since the receiver of a new TCP connection does not know any channel handles, the serializer's
+	 * handles are discarded and a partially transmitted envelope is transmitted again from its beginning.
+	 * <p>
+	 * This method should only be called by the {@link OutgoingConnectionThread} object.
+	 */
+	public void connectionEstablished() {
+
+		this.serializer.clearChannelHandles();
+
+		if (this.currentEnvelope != null) {
+			this.serializer.setTransferEnvelope(this.currentEnvelope);
 		}
 	}
 
@@ -517,15 +616,12 @@ public class OutgoingConnection {
 
 		int retVal = 0;
 
-		synchronized (this.queuedEnvelopes) {
+		final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
+		while (it.hasNext()) {
 
-			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
-			while (it.hasNext()) {
-
-				final TransferEnvelope envelope = it.next();
-				if (envelope.getBuffer() != null) {
-					++retVal;
-				}
+			final TransferEnvelope envelope = it.next();
+			if (envelope.getBuffer() != null) {
+				++retVal;
 			}
 		}
 
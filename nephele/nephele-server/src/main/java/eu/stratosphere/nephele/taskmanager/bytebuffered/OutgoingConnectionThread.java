@@ -198,6 +198,7 @@ public class OutgoingConnectionThread extends Thread {
 			final SelectionKey channelKey = socketChannel.register(selector, SelectionKey.OP_WRITE
 				| SelectionKey.OP_READ);
 			outgoingConnection.setSelectionKey(channelKey);
+			outgoingConnection.connectionEstablished();
 			channelKey.attach(outgoingConnection);
 
 		} catch (IOException ioe) {
@@ -16,4 +16,15 @@
 package eu.stratosphere.nephele.taskmanager.bytebuffered;
 
 public interface OutputChannelContext extends ChannelContext {
+
+	/**
+	 * Called when a buffer of this output channel has been queued with a network connection.
+	 */
+	void networkBufferQueued();
+
+	/**
+	 * Called when a buffer of this output channel, which has been queued with a network connection, has been written
+	 * to the connection or dropped.
+	 */
+	void networkBufferTransmitted();
 }
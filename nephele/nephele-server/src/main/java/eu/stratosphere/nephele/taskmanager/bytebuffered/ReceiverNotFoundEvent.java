@@ -137,6 +137,7 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 
 		final ReceiverNotFoundEvent unknownReceiverEvent = new ReceiverNotFoundEvent(receiver, sequenceNumber);
 		transferEnvelope.addEvent(unknownReceiverEvent);
+		transferEnvelope.setOutOfBand(true);
 
 		return transferEnvelope;
 	}
@@ -93,6 +93,7 @@ public final class SenderHintEvent extends AbstractEvent {
 
 		final SenderHintEvent senderEvent = new SenderHintEvent(source, remoteReceiver);
 		transferEnvelope.addEvent(senderEvent);
+		transferEnvelope.setOutOfBand(true);
 
 		return transferEnvelope;
 	}
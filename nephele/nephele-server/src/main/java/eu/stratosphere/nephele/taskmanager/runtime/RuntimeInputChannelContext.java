@@ -16,9 +16,10 @@
 package eu.stratosphere.nephele.taskmanager.runtime;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,6 +38,7 @@ import eu.stratosphere.nephele.taskmanager.bytebuffered.InputChannelContext;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.ReceiverNotFoundEvent;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopeDispatcher;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopePool;
 
 
 final class RuntimeInputChannelContext implements InputChannelContext, ByteBufferedInputChannelBroker {
@@ -49,13 +51,38 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	private final TransferEnvelopeDispatcher transferEnvelopeDispatcher;
 
-	private final Queue<TransferEnvelope> queuedEnvelopes = new ArrayDeque<TransferEnvelope>();
+	/**
+	 * Marks the interarrival time of a queued envelope the producer has not determined yet.
+	 */
+	private static final long INTERARRIVAL_TIME_PENDING = Long.MIN_VALUE;
+
+	/**
+	 * The time in nanoseconds the task thread spins while waiting for a pending interarrival time before it parks.
+	 */
+	private static final long SPIN_TIME_NANOS = 5000L;
+
+	/**
+	 * The time in nanoseconds the task thread parks between two checks of a pending interarrival time.
+	 */
+	private static final long PARK_TIME_NANOS = 20000L;
+
+	/**
+	 * The envelopes queued for the task thread. Envelopes are queued by the network and task threads which deliver
+	 * data for this channel and are only consumed by the task thread, so the queue does not require locking.
+	 */
+	private final Queue<TransferEnvelope> queuedEnvelopes = new ConcurrentLinkedQueue<TransferEnvelope>();
 	
 	private Iterator<AbstractEvent> pendingEvents;
 
-	private int lastReceivedEnvelope = -1;
+	/**
+	 * The sequence number of the last queued envelope. The envelopes of a channel are delivered by one thread at a
+	 * time in the order of their sequence numbers, so producers do not have to synchronize when updating it.
+	 */
+	private volatile int lastReceivedEnvelope = -1;
+
+	private int channelSlot = -1;
 
-	private boolean destroyCalled = false;
+	private volatile boolean destroyCalled = false;
 
 	RuntimeInputChannelContext(final RuntimeInputGateContext inputGateContext,
 			final TransferEnvelopeDispatcher transferEnvelopeDispatcher,
@@ -81,12 +108,9 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		}
 
 		// if no events are pending, get the next buffer
-		TransferEnvelope nextEnvelope;
-		synchronized (this.queuedEnvelopes) {
-			if (this.queuedEnvelopes.isEmpty()) {
-				return null;
-			}
-			nextEnvelope = this.queuedEnvelopes.poll();
+		final TransferEnvelope nextEnvelope = this.queuedEnvelopes.poll();
+		if (nextEnvelope == null) {
+			return null;
 		}
 
 		// schedule events as pending, because events come always after the buffer!
@@ -98,8 +122,12 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		}
 		
 		// get the buffer, if there is one
-		if (nextEnvelope.getBuffer() != null) {
-			return new BufferOrEvent(nextEnvelope.getBuffer(), nextEnvelope.getInterarrivalTimeNanos());
+		final Buffer buffer = nextEnvelope.getBuffer();
+		if (buffer != null) {
+			final long interarrivalTimeNanos = awaitInterarrivalTime(nextEnvelope);
+			// envelopes with buffers are not shared with other receivers
+			TransferEnvelopePool.recycleTransferEnvelope(nextEnvelope);
+			return new BufferOrEvent(buffer, interarrivalTimeNanos);
 		}
 		else if (this.pendingEvents != null) {
 			// if the field is not null, it must always have a next value!
@@ -115,6 +143,34 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		}
 	}
 
+	/**
+	 * Returns the interarrival time of the given envelope. The producer stores the interarrival time only after the
+	 * envelope has been queued, so the method waits for the producer to complete this store. The store usually
+	 * follows within a few microseconds, so the method spins for {@link #SPIN_TIME_NANOS} first and then parks in
+	 * slices of {@link #PARK_TIME_NANOS} instead of keeping the core busy, e.g. if the producer has been descheduled.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to return the interarrival time for
+	 * @return the interarrival time of the envelope in nanoseconds
+	 */
+	private static long awaitInterarrivalTime(final TransferEnvelope transferEnvelope) {
+
+		long interarrivalTimeNanos = transferEnvelope.getInterarrivalTimeNanos();
+		if (interarrivalTimeNanos != INTERARRIVAL_TIME_PENDING) {
+			return interarrivalTimeNanos;
+		}
+
+		final long spinDeadline = System.nanoTime() + SPIN_TIME_NANOS;
+		while (interarrivalTimeNanos == INTERARRIVAL_TIME_PENDING) {
+			if (System.nanoTime() - spinDeadline > 0) {
+				LockSupport.parkNanos(PARK_TIME_NANOS);
+			}
+			interarrivalTimeNanos = transferEnvelope.getInterarrivalTimeNanos();
+		}
+
+		return interarrivalTimeNanos;
+	}
+
 	@Override
 	public void transferEventToOutputChannel(AbstractEvent event) throws IOException, InterruptedException {
 		if (event instanceof ChannelSuspendConfirmEvent) {
@@ -122,11 +178,20 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		}
 		
 		TransferEnvelope ephemeralTransferEnvelope = new TransferEnvelope(0, getJobID(), getChannelID());
+		ephemeralTransferEnvelope.setSourceSlot(this.channelSlot);
 		ephemeralTransferEnvelope.addEvent(event);
+		// Events towards the output channel are not ordered with respect to any data, so they may skip the backlog
+		ephemeralTransferEnvelope.setOutOfBand(true);
 		
 		this.transferEnvelopeDispatcher.processEnvelopeFromInputChannel(ephemeralTransferEnvelope);
 	}
 
+	@Override
+	public void setChannelSlot(final int channelSlot) {
+
+		this.channelSlot = channelSlot;
+	}
+
 	@Override
 	public void queueTransferEnvelope(TransferEnvelope transferEnvelope) {
 
@@ -137,51 +202,80 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		// The sequence number of the envelope to be queued
 		final int sequenceNumber = transferEnvelope.getSequenceNumber();
 
-		synchronized (this.queuedEnvelopes) {
+		if (this.destroyCalled) {
+			discardTransferEnvelope(transferEnvelope);
+			return;
+		}
 
-			if (this.destroyCalled) {
-				final Buffer buffer = transferEnvelope.getBuffer();
-				if (buffer != null) {
-					buffer.recycleBuffer();
-				}
-				return;
+		final int expectedSequenceNumber = this.lastReceivedEnvelope + 1;
+		if (sequenceNumber != expectedSequenceNumber) {
+			// This is a problem, now we are actually missing some data
+			this.byteBufferedInputChannel.reportIOException(new IOException("Expected data packet "
+					+ expectedSequenceNumber + " but received " + sequenceNumber));
+			
+			// notify that something (an exception) is available
+			this.byteBufferedInputChannel.notifyGateThatInputIsAvailable();
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Input channel " + getChannelName() + " expected envelope " + expectedSequenceNumber
+					+ " but received " + sequenceNumber);
 			}
 
-			final int expectedSequenceNumber = this.lastReceivedEnvelope + 1;
-			if (sequenceNumber != expectedSequenceNumber) {
-				// This is a problem, now we are actually missing some data
-				this.byteBufferedInputChannel.reportIOException(new IOException("Expected data packet "
-						+ expectedSequenceNumber + " but received " + sequenceNumber));
-				
-				// notify that something (an exception) is available
-				this.byteBufferedInputChannel.notifyGateThatInputIsAvailable();
-
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("Input channel " + getChannelName() + " expected envelope " + expectedSequenceNumber
-						+ " but received " + sequenceNumber);
-				}
-
-				// rescue the buffer
-				final Buffer buffer = transferEnvelope.getBuffer();
-				if (buffer != null) {
-					buffer.recycleBuffer();
-				}
-			} else {
+			// rescue the buffer
+			discardTransferEnvelope(transferEnvelope);
+			return;
+		}
 
-				this.queuedEnvelopes.add(transferEnvelope);
-				this.lastReceivedEnvelope = sequenceNumber;
-
-				// Notify the channel about the new data. notify as much as there is (buffer plus once per event)
-				if (transferEnvelope.getBuffer() != null) {
-					transferEnvelope.setInterarrivalTimestampNanos(this.byteBufferedInputChannel
-									.notifyGateThatInputIsAvailable());
-				}
-				if (transferEnvelope.getEventList() != null) {
-					for (int i = 0; i < transferEnvelope.getEventList().size(); i++) {
-						this.byteBufferedInputChannel.notifyGateThatInputIsAvailable();
-					}
-				}
-			}
+		// The envelope may be consumed and recycled as soon as the gate has been notified, so look at it before
+		final boolean hasBuffer = (transferEnvelope.getBuffer() != null);
+		final int numberOfEvents = (transferEnvelope.getEventList() != null) ? transferEnvelope.getEventList()
+			.size() : 0;
+		if (hasBuffer) {
+			transferEnvelope.setInterarrivalTimestampNanos(INTERARRIVAL_TIME_PENDING);
+		}
+
+		this.queuedEnvelopes.offer(transferEnvelope);
+		this.lastReceivedEnvelope = sequenceNumber;
+
+		// Notify the channel about the new data. notify as much as there is (buffer plus once per event)
+		if (hasBuffer) {
+			transferEnvelope.setInterarrivalTimestampNanos(this.byteBufferedInputChannel
+				.notifyGateThatInputIsAvailable());
+		}
+		for (int i = 0; i < numberOfEvents; i++) {
+			this.byteBufferedInputChannel.notifyGateThatInputIsAvailable();
+		}
+
+		// The channel may have been destroyed while the envelope was queued
+		if (this.destroyCalled) {
+			discardQueuedEnvelopes();
+		}
+	}
+
+	/**
+	 * Recycles the buffer of an envelope which is not going to be queued.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to discard
+	 */
+	private void discardTransferEnvelope(final TransferEnvelope transferEnvelope) {
+
+		final Buffer buffer = transferEnvelope.getBuffer();
+		if (buffer != null) {
+			buffer.recycleBuffer();
+			TransferEnvelopePool.recycleTransferEnvelope(transferEnvelope);
+		}
+	}
+
+	/**
+	 * Removes all queued envelopes and recycles their buffers.
+	 */
+	private void discardQueuedEnvelopes() {
+
+		TransferEnvelope envelope = this.queuedEnvelopes.poll();
+		while (envelope != null) {
+			discardTransferEnvelope(envelope);
+			envelope = this.queuedEnvelopes.poll();
 		}
 	}
 
@@ -207,22 +301,9 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	@Override
 	public void destroy() {
-		final Queue<Buffer> buffersToRecycle = new ArrayDeque<Buffer>();
-
-		synchronized (this.queuedEnvelopes) {
-			this.destroyCalled = true;
 
-			while (!this.queuedEnvelopes.isEmpty()) {
-				final TransferEnvelope envelope = this.queuedEnvelopes.poll();
-				if (envelope.getBuffer() != null) {
-					buffersToRecycle.add(envelope.getBuffer());
-				}
-			}
-		}
-
-		while (!buffersToRecycle.isEmpty()) {
-			buffersToRecycle.poll().recycleBuffer();
-		}
+		this.destroyCalled = true;
+		discardQueuedEnvelopes();
 	}
 
 	@Override
@@ -231,23 +312,20 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		int numberOfQueuedEnvelopesWithMemoryBuffers = 0;
 		int numberOfQueuedEnvelopesWithFileBuffers = 0;
 
-		synchronized (this.queuedEnvelopes) {
+		final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
+		while (it.hasNext()) {
 
-			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
-			while (it.hasNext()) {
-
-				final TransferEnvelope envelope = it.next();
-				++numberOfQueuedEnvelopes;
-				final Buffer buffer = envelope.getBuffer();
-				if (buffer == null) {
-					continue;
-				}
+			final TransferEnvelope envelope = it.next();
+			++numberOfQueuedEnvelopes;
+			final Buffer buffer = envelope.getBuffer();
+			if (buffer == null) {
+				continue;
+			}
 
-				if (buffer.isBackedByMemory()) {
-					++numberOfQueuedEnvelopesWithMemoryBuffers;
-				} else {
-					++numberOfQueuedEnvelopesWithFileBuffers;
-				}
+			if (buffer.isBackedByMemory()) {
+				++numberOfQueuedEnvelopesWithMemoryBuffers;
+			} else {
+				++numberOfQueuedEnvelopesWithFileBuffers;
 			}
 		}
 
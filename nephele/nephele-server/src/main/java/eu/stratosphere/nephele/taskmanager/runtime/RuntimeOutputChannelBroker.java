@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.taskmanager.runtime;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import eu.stratosphere.nephele.event.task.AbstractEvent;
 import eu.stratosphere.nephele.event.task.AbstractTaskEvent;
@@ -30,6 +31,7 @@ import eu.stratosphere.nephele.taskmanager.bytebuffered.AbstractOutputChannelFor
 import eu.stratosphere.nephele.taskmanager.bytebuffered.OutputChannelForwardingChain;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.ReceiverNotFoundEvent;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopePool;
 
 final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder implements
 		ByteBufferedOutputChannelBroker {
@@ -75,6 +77,21 @@ final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder im
 	 */
 	private int bufferSize;
 
+	/**
+	 * The slot of the output channel at the byte buffered channel manager or <code>-1</code> if unknown.
+	 */
+	private int channelSlot = -1;
+
+	/**
+	 * The number of buffers which have been queued with a network connection so far.
+	 */
+	private final AtomicLong queuedNetworkBuffers = new AtomicLong();
+
+	/**
+	 * The number of buffers which have been written to or dropped by a network connection so far.
+	 */
+	private final AtomicLong transmittedNetworkBuffers = new AtomicLong();
+
 	RuntimeOutputChannelBroker(final RuntimeOutputGateContext outputGateContext,
 			final AbstractByteBufferedOutputChannel<?> byteBufferedOutputChannel,
 			final AbstractOutputChannelForwarder next) {
@@ -97,6 +114,31 @@ final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder im
 		this.forwardingChain = forwardingChain;
 	}
 
+	/**
+	 * Sets the slot of the output channel at the byte buffered channel manager. The slot is attached to all transfer
+	 * envelopes created by this broker afterwards.
+	 * 
+	 * @param channelSlot
+	 *        the slot of the output channel
+	 */
+	void setChannelSlot(final int channelSlot) {
+		this.channelSlot = channelSlot;
+	}
+
+	/**
+	 * Counts a buffer of this output channel which has been queued with a network connection.
+	 */
+	void networkBufferQueued() {
+		this.queuedNetworkBuffers.incrementAndGet();
+	}
+
+	/**
+	 * Counts a buffer of this output channel which has been written to or dropped by a network connection.
+	 */
+	void networkBufferTransmitted() {
+		this.transmittedNetworkBuffers.incrementAndGet();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -147,7 +189,17 @@ final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder im
 
 		final int uncompressedBufferSize = calculateBufferSize();
 
-		return this.outputGateContext.requestEmptyBufferBlocking(uncompressedBufferSize);
+		Buffer buffer = this.outputGateContext.requestEmptyBuffer(uncompressedBufferSize);
+
+		// No memory-based buffer available, the task is throttled until one is released
+		if (buffer == null) {
+			final long blockedSince = System.nanoTime();
+			buffer = this.outputGateContext.requestEmptyBufferBlocking(uncompressedBufferSize);
+			this.byteBufferedOutputChannel.getOutputGate().outputBufferRequestBlocked(
+				this.byteBufferedOutputChannel.getChannelIndex(), System.nanoTime() - blockedSince);
+		}
+
+		return buffer;
 	}
 
 	/**
@@ -159,9 +211,9 @@ final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder im
 	 */
 	private TransferEnvelope createNewOutgoingTransferEnvelope() {
 
-		final TransferEnvelope transferEnvelope = new TransferEnvelope(this.sequenceNumber++,
-			this.byteBufferedOutputChannel.getJobID(),
-			this.byteBufferedOutputChannel.getID());
+		final TransferEnvelope transferEnvelope = TransferEnvelopePool.requestTransferEnvelope(this.sequenceNumber++,
+			this.byteBufferedOutputChannel.getJobID(), this.byteBufferedOutputChannel.getID());
+		transferEnvelope.setSourceSlot(this.channelSlot);
 
 		return transferEnvelope;
 	}
@@ -247,4 +299,25 @@ final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder im
 
 		this.bufferSize = bufferSize;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNumberOfQueuedNetworkBuffers() {
+
+		// Read the transmitted buffers first, so the difference is never negative
+		final long transmitted = this.transmittedNetworkBuffers.get();
+
+		return (int) (this.queuedNetworkBuffers.get() - transmitted);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getNumberOfTransmittedNetworkBuffers() {
+
+		return this.transmittedNetworkBuffers.get();
+	}
 }
@@ -27,11 +27,14 @@ public final class RuntimeOutputChannelContext extends AbstractOutputChannelCont
 
 	private final AbstractByteBufferedOutputChannel<?> byteBufferedOutputChannel;
 
+	private final RuntimeOutputChannelBroker outputChannelBroker;
+
 	RuntimeOutputChannelContext(final AbstractByteBufferedOutputChannel<?> byteBufferedOutputChannel,
-			final OutputChannelForwardingChain forwardingChain) {
+			final OutputChannelForwardingChain forwardingChain, final RuntimeOutputChannelBroker outputChannelBroker) {
 		super(forwardingChain);
 
 		this.byteBufferedOutputChannel = byteBufferedOutputChannel;
+		this.outputChannelBroker = outputChannelBroker;
 	}
 
 	/**
@@ -79,6 +82,33 @@ public final class RuntimeOutputChannelContext extends AbstractOutputChannelCont
 		return this.byteBufferedOutputChannel.getType();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setChannelSlot(final int channelSlot) {
+
+		this.outputChannelBroker.setChannelSlot(channelSlot);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void networkBufferQueued() {
+
+		this.outputChannelBroker.networkBufferQueued();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void networkBufferTransmitted() {
+
+		this.outputChannelBroker.networkBufferTransmitted();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
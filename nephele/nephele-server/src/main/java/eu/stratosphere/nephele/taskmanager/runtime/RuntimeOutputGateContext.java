@@ -163,7 +163,7 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 		// Set forwarding chain for broker
 		outputChannelBroker.setForwardingChain(forwardingChain);
 
-		return new RuntimeOutputChannelContext(outputChannel, forwardingChain);
+		return new RuntimeOutputChannelContext(outputChannel, forwardingChain, outputChannelBroker);
 	}
 
 	/**
@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.taskmanager.runtime;
 
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.logging.Log;
@@ -30,6 +31,7 @@ import eu.stratosphere.nephele.execution.ExecutionState;
 import eu.stratosphere.nephele.execution.ExecutionStateTransition;
 import eu.stratosphere.nephele.execution.RuntimeEnvironment;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.profiling.TaskManagerProfiler;
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
@@ -209,7 +211,8 @@ public final class RuntimeTask implements Task, ExecutionObserver {
 			return;
 		}
 
-		if (this.executionState != ExecutionState.RUNNING && this.executionState != ExecutionState.FINISHING) {
+		if (this.executionState != ExecutionState.RUNNING && this.executionState != ExecutionState.FINISHING
+			&& !this.environment.isInHotStandby()) {
 			return;
 		}
 
@@ -389,6 +392,12 @@ public final class RuntimeTask implements Task, ExecutionObserver {
 	@Override
 	public void suspendExecution() {
 
+		// A task in hot standby has not invoked the user code yet and is simply released
+		if (this.environment.releaseHotStandby()) {
+			LOG.info("Releasing hot standby " + this.environment.getTaskNameWithIndex());
+			return;
+		}
+
 		if (this.executionState != ExecutionState.RUNNING) {
 			return;
 		}
@@ -410,4 +419,18 @@ public final class RuntimeTask implements Task, ExecutionObserver {
 			LOG.error(StringUtils.stringifyException(e));
 		}
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean activateHotStandby(final Set<ChannelID> channelsToUnsuspend) {
+
+		if (!this.environment.activateHotStandby(channelsToUnsuspend)) {
+			return false;
+		}
+
+		LOG.info("Activating hot standby " + this.environment.getTaskNameWithIndex());
+		return true;
+	}
 }
@@ -19,6 +19,9 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import eu.stratosphere.nephele.event.task.EventList;
 import eu.stratosphere.nephele.io.channels.Buffer;
@@ -26,39 +29,59 @@ import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.DefaultDeserializer;
 import eu.stratosphere.nephele.jobgraph.JobID;
 
+/**
+ * This class is the abstract base class to deserialize a {@link TransferEnvelope} from a byte stream written by an
+ * {@link AbstractSerializer}. The deserializer mirrors the serializer's table of channel handles, so it can resolve
+ * the short handles in the envelope headers to the job and channel IDs announced earlier in the same byte stream.
+ * Besides, it resolves the slot of each source channel at the local dispatcher once per handle (see
+ * {@link #getSourceSlot(ChannelID)}) and attaches it to the deserialized envelopes, so they are dispatched without a
+ * hash lookup.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ */
 public abstract class AbstractDeserializer {
 
 	private enum DeserializationState {
 		NOTDESERIALIZED,
-		SEQUENCENUMBERDESERIALIZED,
-		JOBIDDESERIALIZED,
-		SOURCEDESERIALIZED,
+		FLAGSDESERIALIZED,
+		HEADERDESERIALIZED,
 		NOTIFICATIONSDESERIALIZED,
 		FULLYDESERIALIZED
 	};
 
-	private static final int SIZEOFINT = 4;
-
 	private TransferEnvelope transferEnvelope = null;
 
 	private DeserializationState deserializationState = DeserializationState.NOTDESERIALIZED;
 
-	private final DefaultDeserializer<ChannelID> channelIDDeserializationBuffer = new DefaultDeserializer<ChannelID>(
-			ChannelID.class, true);
-
-	private final DefaultDeserializer<JobID> jobIDDeserializationBuffer = new DefaultDeserializer<JobID>(
-			JobID.class, true);
-
 	private final DefaultDeserializer<EventList> notificationListDeserializationBuffer = new DefaultDeserializer<EventList>(
 			EventList.class, true);
 
-	private final ByteBuffer tempBuffer = ByteBuffer.allocate(8); // TODO: Make this configurable
+	private final ByteBuffer tempBuffer = ByteBuffer.allocate(TransferEnvelopeHeader.MAX_HEADER_SIZE);
+
+	/**
+	 * The job IDs of the channels registered in this byte stream, indexed by their handle.
+	 */
+	private final List<JobID> registeredJobIDs = new ArrayList<JobID>();
+
+	/**
+	 * The IDs of the channels registered in this byte stream, indexed by their handle.
+	 */
+	private final List<ChannelID> registeredSourceIDs = new ArrayList<ChannelID>();
+
+	/**
+	 * The last sequence number read for each handle.
+	 */
+	private int[] lastSequenceNumbers = new int[16];
 
-	private boolean bufferExistanceDeserialized = false;
+	/**
+	 * The slot of each handle's source channel at the local dispatcher or <code>-1</code> if not resolved yet.
+	 */
+	private int[] sourceSlots = new int[16];
 
-	private boolean eventListExistanceDeserialized = false;
+	private int deserializedSourceSlot = -1;
 
-	private boolean sequenceNumberDeserializationStarted = false;
+	private int flags = 0;
 
 	private int sizeOfBuffer = -1;
 
@@ -70,27 +93,20 @@ public abstract class AbstractDeserializer {
 
 	private ChannelID deserializedSourceID = null;
 
-	private EventList deserializedEventList = null;
-
 	public void read(ReadableByteChannel readableByteChannel) throws IOException, NoBufferAvailableException {
 
 		while (true) {
 
-			// System.out.println("INCOMING State: " + this.deserializationState);
-
 			boolean waitingForMoreData = false;
 
 			switch (deserializationState) {
 			case NOTDESERIALIZED:
-				waitingForMoreData = readSequenceNumber(readableByteChannel);
-				break;
-			case SEQUENCENUMBERDESERIALIZED:
-				waitingForMoreData = readID(readableByteChannel);
+				waitingForMoreData = readFlags(readableByteChannel);
 				break;
-			case JOBIDDESERIALIZED:
-				waitingForMoreData = readID(readableByteChannel);
+			case FLAGSDESERIALIZED:
+				waitingForMoreData = readHeader(readableByteChannel);
 				break;
-			case SOURCEDESERIALIZED:
+			case HEADERDESERIALIZED:
 				waitingForMoreData = readNotificationList(readableByteChannel);
 				break;
 			case NOTIFICATIONSDESERIALIZED:
@@ -127,107 +143,148 @@ public abstract class AbstractDeserializer {
 		return this.deserializedSourceID;
 	}
 
-	private boolean readSequenceNumber(ReadableByteChannel readableByteChannel) throws IOException {
+	private boolean readFlags(ReadableByteChannel readableByteChannel) throws IOException {
+
+		this.tempBuffer.position(0);
+		this.tempBuffer.limit(1);
 
-		if (!this.sequenceNumberDeserializationStarted) {
-			this.tempBuffer.position(0);
-			this.tempBuffer.limit(SIZEOFINT);
-			this.sequenceNumberDeserializationStarted = true;
+		final int bytesRead = readableByteChannel.read(this.tempBuffer);
+		if (bytesRead == -1) {
+			// Regular end of stream
+			throw new EOFException();
+		} else if (bytesRead == 0) {
+			return true;
 		}
 
-		if (readableByteChannel.read(this.tempBuffer) == -1) {
+		final int firstByte = this.tempBuffer.get(0) & 0xff;
+		this.flags = firstByte & TransferEnvelopeHeader.FLAGS_MASK;
 
-			if (this.tempBuffer.position() == 0) {
-				// Regular end of stream
-				throw new EOFException();
-			} else {
-				throw new IOException("Unexpected end of stream while deserializing the sequence number");
-			}
+		int lengthOfHeader = firstByte >>> TransferEnvelopeHeader.LENGTH_SHIFT;
+		if ((this.flags & TransferEnvelopeHeader.REGISTERS_CHANNEL) != 0) {
+			lengthOfHeader += TransferEnvelopeHeader.REGISTRATION_SIZE;
 		}
 
-		if (!this.tempBuffer.hasRemaining()) {
+		this.tempBuffer.clear();
+		this.tempBuffer.limit(lengthOfHeader);
 
-			this.deserializedSequenceNumber = byteBufferToInteger(this.tempBuffer, 0);
-			if (this.deserializedSequenceNumber < 0) {
-				throw new IOException("Received invalid sequence number: " + this.deserializedSequenceNumber);
+		this.deserializationState = DeserializationState.FLAGSDESERIALIZED;
+		this.transferEnvelope = null;
+		this.sizeOfBuffer = -1;
+		this.buffer = null;
+
+		return false;
+	}
+
+	private boolean readHeader(ReadableByteChannel readableByteChannel) throws IOException {
+
+		if (this.tempBuffer.hasRemaining()) {
+
+			if (readableByteChannel.read(this.tempBuffer) == -1) {
+				throw new IOException("Unexpected end of stream while deserializing the header");
 			}
 
-			this.deserializationState = DeserializationState.SEQUENCENUMBERDESERIALIZED;
-			this.sequenceNumberDeserializationStarted = false;
-			this.transferEnvelope = null;
-			this.sizeOfBuffer = -1;
-			this.bufferExistanceDeserialized = false;
-			this.eventListExistanceDeserialized = false;
-			this.tempBuffer.clear();
-			this.buffer = null;
-			this.jobIDDeserializationBuffer.clear();
-			this.channelIDDeserializationBuffer.clear();
-			this.deserializedEventList = null;
-			return false;
+			if (this.tempBuffer.hasRemaining()) {
+				return true;
+			}
 		}
 
-		return true;
-	}
+		this.tempBuffer.flip();
 
-	private boolean readID(ReadableByteChannel readableByteChannel) throws IOException {
+		final int handle = TransferEnvelopeHeader.readVarInt(this.tempBuffer);
+		final int sequenceNumberDelta = TransferEnvelopeHeader.zigZagDecode(TransferEnvelopeHeader
+			.readVarInt(this.tempBuffer));
+		if ((this.flags & TransferEnvelopeHeader.HAS_BUFFER) != 0) {
+			this.sizeOfBuffer = TransferEnvelopeHeader.readVarInt(this.tempBuffer);
+			if (this.sizeOfBuffer <= 0) {
+				throw new IOException("Invalid buffer size: " + this.sizeOfBuffer);
+			}
+		}
 
-		if (this.deserializationState == DeserializationState.SEQUENCENUMBERDESERIALIZED) {
+		if ((this.flags & TransferEnvelopeHeader.REGISTERS_CHANNEL) != 0) {
 
-			this.deserializedJobID = this.jobIDDeserializationBuffer.readData(null, readableByteChannel);
-			if (this.deserializedJobID == null) {
-				return true;
+			if ((this.flags & TransferEnvelopeHeader.RESETS_CHANNEL_HANDLES) != 0) {
+				this.registeredJobIDs.clear();
+				this.registeredSourceIDs.clear();
 			}
 
-			this.deserializationState = DeserializationState.JOBIDDESERIALIZED;
+			if (handle != this.registeredSourceIDs.size()) {
+				throw new IOException("Received registration for unexpected channel handle " + handle + ", expected "
+					+ this.registeredSourceIDs.size());
+			}
 
-		} else {
+			final JobID jobID = new JobID();
+			jobID.read(this.tempBuffer);
+			final ChannelID sourceID = new ChannelID();
+			sourceID.read(this.tempBuffer);
 
-			this.deserializedSourceID = this.channelIDDeserializationBuffer.readData(null, readableByteChannel);
-			if (this.deserializedSourceID == null) {
-				return true;
+			this.registeredJobIDs.add(jobID);
+			this.registeredSourceIDs.add(sourceID);
+			if (handle == this.lastSequenceNumbers.length) {
+				this.lastSequenceNumbers = Arrays.copyOf(this.lastSequenceNumbers, 2 * handle);
+				this.sourceSlots = Arrays.copyOf(this.sourceSlots, 2 * handle);
 			}
+			this.lastSequenceNumbers[handle] = 0;
+			this.sourceSlots[handle] = -1;
+
+		} else if ((this.flags & TransferEnvelopeHeader.RESETS_CHANNEL_HANDLES) != 0) {
+			throw new IOException("Received reset of channel handles without registration");
+		} else if (handle < 0 || handle >= this.registeredSourceIDs.size()) {
+			throw new IOException("Received unknown channel handle " + handle);
+		}
 
-			this.deserializationState = DeserializationState.SOURCEDESERIALIZED;
+		if (this.tempBuffer.hasRemaining()) {
+			throw new IOException("Header contains " + this.tempBuffer.remaining() + " unexpected bytes");
 		}
 
+		this.deserializedSequenceNumber = this.lastSequenceNumbers[handle] + sequenceNumberDelta;
+		if (this.deserializedSequenceNumber < 0) {
+			throw new IOException("Received invalid sequence number: " + this.deserializedSequenceNumber);
+		}
+		this.lastSequenceNumbers[handle] = this.deserializedSequenceNumber;
+
+		this.deserializedJobID = this.registeredJobIDs.get(handle);
+		this.deserializedSourceID = this.registeredSourceIDs.get(handle);
+		if (this.sourceSlots[handle] < 0) {
+			// The source may not occupy a slot until its first envelope has been dispatched
+			this.sourceSlots[handle] = getSourceSlot(this.deserializedSourceID);
+		}
+		this.deserializedSourceSlot = this.sourceSlots[handle];
+		this.tempBuffer.clear();
+
+		this.deserializationState = DeserializationState.HEADERDESERIALIZED;
 		return false;
 	}
 
 	private boolean readNotificationList(ReadableByteChannel readableByteChannel) throws IOException {
 
-		if (!this.eventListExistanceDeserialized) {
-			this.tempBuffer.position(0);
-			this.tempBuffer.limit(1);
-			readableByteChannel.read(this.tempBuffer);
-
-			if (this.tempBuffer.hasRemaining()) {
-				return true;
-			}
+		EventList eventList = null;
 
-			this.eventListExistanceDeserialized = true;
-			final boolean eventListFollows = (this.tempBuffer.get(0) == (byte) 1);
-			this.tempBuffer.clear();
+		if ((this.flags & TransferEnvelopeHeader.HAS_EVENT_LIST) != 0) {
 
-			if (!eventListFollows) {
-				// No event list here
-				this.transferEnvelope = new TransferEnvelope(this.deserializedSequenceNumber, this.deserializedJobID,
-					this.deserializedSourceID, this.deserializedEventList);
-				this.deserializationState = DeserializationState.NOTIFICATIONSDESERIALIZED;
-				return false;
+			eventList = this.notificationListDeserializationBuffer.readData(null, readableByteChannel);
+			if (eventList == null) {
+				return true;
 			}
 		}
 
-		this.deserializedEventList = this.notificationListDeserializationBuffer.readData(null, readableByteChannel);
-		if (this.deserializedEventList == null) {
-			return true;
-		} else {
-			this.transferEnvelope = new TransferEnvelope(this.deserializedSequenceNumber, this.deserializedJobID,
-				this.deserializedSourceID, this.deserializedEventList);
-			this.deserializationState = DeserializationState.NOTIFICATIONSDESERIALIZED;
-			return false;
-		}
+		this.transferEnvelope = TransferEnvelopePool.requestTransferEnvelope(this.deserializedSequenceNumber,
+			this.deserializedJobID, this.deserializedSourceID);
+		this.transferEnvelope.setEventList(eventList);
+		this.transferEnvelope.setSourceSlot(this.deserializedSourceSlot);
+		this.deserializationState = DeserializationState.NOTIFICATIONSDESERIALIZED;
+		return false;
 	}
 
+	/**
+	 * Returns the slot the given source channel occupies at the local dispatcher. The method is called for every
+	 * envelope of a channel until the channel occupies a slot.
+	 * 
+	 * @param sourceChannelID
+	 *        the ID of the source channel
+	 * @return the slot of the source channel or <code>-1</code> if the channel does not occupy a slot
+	 */
+	protected abstract int getSourceSlot(ChannelID sourceChannelID);
+
 	/**
 	 * Read the buffer's actual data from the stream.
 	 * 
@@ -245,59 +302,11 @@ public abstract class AbstractDeserializer {
 	private boolean readBuffer(final ReadableByteChannel readableByteChannel) throws IOException,
 			NoBufferAvailableException {
 
-		if (!this.bufferExistanceDeserialized) {
-
-			this.tempBuffer.position(0);
-			this.tempBuffer.limit(1);
-
-			final int bytesRead = readableByteChannel.read(this.tempBuffer);
-			if (bytesRead == -1) {
-				if (this.tempBuffer.get(0) == 0 && this.tempBuffer.position() == 1) { // Regular end, no
-					// buffer will follow
-					throw new EOFException();
-				} else {
-					throw new IOException("Deserialization error: Expected at least "
-						+ this.tempBuffer.remaining() + " more bytes to follow");
-				}
-			} else if (bytesRead == 0) {
-				// Wait for more data
-				return true;
-			}
-
-			if (!this.tempBuffer.hasRemaining()) {
-				this.bufferExistanceDeserialized = true;
-				this.tempBuffer.position(0);
-				this.tempBuffer.limit(SIZEOFINT);
-				if (this.tempBuffer.get(0) == 0) {
-					// No buffer will follow, we are done
-					this.transferEnvelope.setBuffer(null);
-					this.deserializationState = DeserializationState.FULLYDESERIALIZED;
-					return false;
-				}
-			} else {
-				return true;
-			}
-		}
-
-		if (this.sizeOfBuffer < 0) {
-
-			// We need to deserialize the size of the buffer
-			final int bytesRead = readableByteChannel.read(this.tempBuffer);
-			if (bytesRead == -1) {
-				throw new IOException("Deserialization error: Expected at least " + this.tempBuffer.remaining()
-					+ " more bytes to follow");
-			}
-
-			if (!this.tempBuffer.hasRemaining()) {
-				this.sizeOfBuffer = byteBufferToInteger(this.tempBuffer, 0);
-				// System.out.println("INCOMING: Buffer size is " + this.sizeOfBuffer);
-
-				if (this.sizeOfBuffer <= 0) {
-					throw new IOException("Invalid buffer size: " + this.sizeOfBuffer);
-				}
-			} else {
-				return true;
-			}
+		if ((this.flags & TransferEnvelopeHeader.HAS_BUFFER) == 0) {
+			// No buffer will follow, we are done
+			this.transferEnvelope.setBuffer(null);
+			this.deserializationState = DeserializationState.FULLYDESERIALIZED;
+			return false;
 		}
 
 		if (readBufferData(readableByteChannel)) {
@@ -325,7 +334,6 @@ public abstract class AbstractDeserializer {
 
 	public void reset() {
 		this.deserializationState = DeserializationState.NOTDESERIALIZED;
-		this.sequenceNumberDeserializationStarted = false;
 	}
 
 	public boolean hasUnfinishedData() {
@@ -334,22 +342,6 @@ public abstract class AbstractDeserializer {
 			return true;
 		}
 
-		return this.channelIDDeserializationBuffer.hasUnfinishedData();
-	}
-
-	private int byteBufferToInteger(ByteBuffer byteBuffer, int offset) throws IOException {
-
-		int integer = 0;
-
-		if ((offset + SIZEOFINT) > byteBuffer.limit()) {
-			throw new IOException("Cannot convert byte buffer to integer, not enough data in byte buffer ("
-				+ byteBuffer.limit() + ")");
-		}
-
-		for (int i = 0; i < SIZEOFINT; ++i) {
-			integer |= (byteBuffer.get((offset + SIZEOFINT - 1) - i) & 0xff) << (i << 3);
-		}
-
-		return integer;
+		return this.notificationListDeserializationBuffer.hasUnfinishedData();
 	}
 }
@@ -18,39 +18,61 @@ package eu.stratosphere.nephele.taskmanager.transferenvelope;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import eu.stratosphere.nephele.event.task.EventList;
-import eu.stratosphere.nephele.io.AbstractID;
 import eu.stratosphere.nephele.io.IOReadableWritable;
 import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.SerializationBuffer;
 
+/**
+ * This class is the abstract base class to serialize a {@link TransferEnvelope} into a byte stream. The serializer
+ * keeps a table of the source channels it has already announced to the receiver, so only the first envelope of each
+ * channel carries its full job and channel ID. All following envelopes are identified by a short integer handle. The
+ * layout of the header is described in {@link TransferEnvelopeHeader}.
+ * <p>
+ * As the handles are only valid for one byte stream, {@link #clearChannelHandles()} must be called whenever a new
+ * stream is started. Within a stream, the table of handles is bounded by
+ * {@link TransferEnvelopeHeader#MAX_NUMBER_OF_CHANNEL_HANDLES} and reset in-band when it overflows.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ */
 public abstract class AbstractSerializer {
 
 	private enum SerializationState {
 		NOTSERIALIZED,
-		SEQUENCENUMBERSERIALIZED,
-		JOBIDSERIALIZED,
-		SOURCESERIALIZED,
+		HEADERSERIALIZED,
 		NOTIFICATIONSSERIALIZED,
 		FULLYSERIALIZED
 	};
 
-	private final static int SIZEOFINT = 4;
-
 	private TransferEnvelope transferEnvelope = null;
 
 	private SerializationState serializationState;
 
 	private final SerializationBuffer<IOReadableWritable> serializationBuffer = new SerializationBuffer<IOReadableWritable>();
 
-	private final ByteBuffer tempBuffer = ByteBuffer.allocate(64); // TODO: Make this configurable
+	private final ByteBuffer tempBuffer = ByteBuffer.allocate(TransferEnvelopeHeader.MAX_HEADER_SIZE);
 
-	private boolean serializationStarted = false;
+	/**
+	 * Maps the source channels announced through this serializer to their handles.
+	 */
+	private final Map<ChannelID, Integer> channelHandles = new HashMap<ChannelID, Integer>();
 
-	private boolean bufferExistanceSerialized = false;
+	/**
+	 * The last sequence number written for each handle.
+	 */
+	private int[] lastSequenceNumbers = new int[16];
+
+	private ChannelID lastSource = null;
 
-	private boolean eventListExistanceSerialized = false;
+	private int lastHandle = -1;
+
+	private boolean serializationStarted = false;
 
 	public final void setTransferEnvelope(TransferEnvelope transferEnvelope) {
 
@@ -73,19 +95,11 @@ public abstract class AbstractSerializer {
 
 			boolean moreDataFollows = false;
 
-			// System.out.println("OUTGOING State: " + this.serializationState);
-
 			switch (serializationState) {
 			case NOTSERIALIZED:
-				moreDataFollows = writeSequenceNumber(writableByteChannel, this.transferEnvelope.getSequenceNumber());
-				break;
-			case SEQUENCENUMBERSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getJobID());
-				break;
-			case JOBIDSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getSource());
+				moreDataFollows = writeHeader(writableByteChannel);
 				break;
-			case SOURCESERIALIZED:
+			case HEADERSERIALIZED:
 				moreDataFollows = writeNotification(writableByteChannel, this.transferEnvelope.getEventList());
 				break;
 			case NOTIFICATIONSSERIALIZED:
@@ -101,24 +115,30 @@ public abstract class AbstractSerializer {
 		}
 	}
 
-	private boolean writeSequenceNumber(WritableByteChannel writableByteChannel, int sequenceNumber) throws IOException {
+	/**
+	 * Discards all channel handles announced so far. Afterwards, the next envelope of every channel registers the
+	 * channel again. This method must be called whenever the serializer starts writing to a new byte stream.
+	 */
+	public final void clearChannelHandles() {
 
-		if (sequenceNumber < 0) {
-			throw new IOException("Invalid sequence number: " + sequenceNumber);
-		}
+		this.channelHandles.clear();
+		this.lastSource = null;
+		this.lastHandle = -1;
+	}
+
+	private boolean writeHeader(WritableByteChannel writableByteChannel) throws IOException {
 
 		if (!this.serializationStarted) {
-			this.tempBuffer.clear();
-			integerToByteBuffer(sequenceNumber, 0, this.tempBuffer);
+			fillHeader();
 			this.serializationStarted = true;
 		}
 
 		if (writableByteChannel.write(this.tempBuffer) == -1) {
-			throw new IOException("Unexpected end of stream while serializing the sequence number");
+			throw new IOException("Unexpected end of stream while serializing the header");
 		}
 
 		if (!this.tempBuffer.hasRemaining()) {
-			this.serializationState = SerializationState.SEQUENCENUMBERSERIALIZED;
+			this.serializationState = SerializationState.HEADERSERIALIZED;
 			this.serializationStarted = false;
 			return false;
 		}
@@ -126,21 +146,66 @@ public abstract class AbstractSerializer {
 		return true;
 	}
 
-	private boolean writeID(WritableByteChannel writableByteChannel, AbstractID id) throws IOException {
+	private void fillHeader() throws IOException {
+
+		final int sequenceNumber = this.transferEnvelope.getSequenceNumber();
+		if (sequenceNumber < 0) {
+			throw new IOException("Invalid sequence number: " + sequenceNumber);
+		}
 
-		if (!writeIOReadableWritable(writableByteChannel, id)) {
-			// We're done, all the data has been written to the channel
-			if (this.serializationState == SerializationState.SEQUENCENUMBERSERIALIZED) {
-				// System.out.println("OUTGOING Serialized source: " + channelID);
-				this.serializationState = SerializationState.JOBIDSERIALIZED;
+		int flags = 0;
+
+		final ChannelID source = this.transferEnvelope.getSource();
+		if (!source.equals(this.lastSource)) {
+
+			final Integer handle = this.channelHandles.get(source);
+			if (handle == null) {
+				if (this.channelHandles.size() == TransferEnvelopeHeader.MAX_NUMBER_OF_CHANNEL_HANDLES) {
+					// Drops the handles of channels which no longer send data through this stream
+					clearChannelHandles();
+					flags |= TransferEnvelopeHeader.RESETS_CHANNEL_HANDLES;
+				}
+				this.lastHandle = this.channelHandles.size();
+				this.channelHandles.put(source, Integer.valueOf(this.lastHandle));
+				if (this.lastHandle == this.lastSequenceNumbers.length) {
+					this.lastSequenceNumbers = Arrays.copyOf(this.lastSequenceNumbers, 2 * this.lastHandle);
+				}
+				this.lastSequenceNumbers[this.lastHandle] = 0;
+				flags |= TransferEnvelopeHeader.REGISTERS_CHANNEL;
 			} else {
-				// System.out.println("OUTGOING Serialized target: " + channelID);
-				this.serializationState = SerializationState.SOURCESERIALIZED;
+				this.lastHandle = handle.intValue();
 			}
-			return false;
+
+			this.lastSource = source;
 		}
 
-		return true;
+		final Buffer buffer = this.transferEnvelope.getBuffer();
+		if (this.transferEnvelope.getEventList() != null) {
+			flags |= TransferEnvelopeHeader.HAS_EVENT_LIST;
+		}
+		if (buffer != null) {
+			flags |= TransferEnvelopeHeader.HAS_BUFFER;
+		}
+
+		this.tempBuffer.clear();
+		this.tempBuffer.position(1);
+		TransferEnvelopeHeader.writeVarInt(this.lastHandle, this.tempBuffer);
+		TransferEnvelopeHeader.writeVarInt(
+			TransferEnvelopeHeader.zigZagEncode(sequenceNumber - this.lastSequenceNumbers[this.lastHandle]),
+			this.tempBuffer);
+		if (buffer != null) {
+			TransferEnvelopeHeader.writeVarInt(buffer.size(), this.tempBuffer);
+		}
+		final int lengthOfVarInts = this.tempBuffer.position() - 1;
+		this.tempBuffer.put(0, (byte) ((lengthOfVarInts << TransferEnvelopeHeader.LENGTH_SHIFT) | flags));
+
+		if ((flags & TransferEnvelopeHeader.REGISTERS_CHANNEL) != 0) {
+			this.transferEnvelope.getJobID().write(this.tempBuffer);
+			source.write(this.tempBuffer);
+		}
+
+		this.tempBuffer.flip();
+		this.lastSequenceNumbers[this.lastHandle] = sequenceNumber;
 	}
 
 	private boolean writeIOReadableWritable(WritableByteChannel writableByteChannel,
@@ -165,23 +230,6 @@ public abstract class AbstractSerializer {
 	private boolean writeNotification(WritableByteChannel writableByteChannel, EventList notificationList)
 			throws IOException {
 
-		if (!this.eventListExistanceSerialized) {
-			this.tempBuffer.position(0);
-			if (notificationList == null) {
-				this.tempBuffer.put(0, (byte) 0);
-			} else {
-				this.tempBuffer.put(0, (byte) 1);
-			}
-			this.tempBuffer.limit(1);
-
-			writableByteChannel.write(this.tempBuffer);
-			if (this.tempBuffer.hasRemaining()) {
-				return true;
-			}
-
-			this.eventListExistanceSerialized = true;
-		}
-
 		if (notificationList != null) {
 			if (writeIOReadableWritable(writableByteChannel, notificationList)) {
 				return true;
@@ -195,54 +243,22 @@ public abstract class AbstractSerializer {
 	public void reset() {
 		this.serializationState = SerializationState.NOTSERIALIZED;
 		this.serializationStarted = false;
-		this.bufferExistanceSerialized = false;
-		this.eventListExistanceSerialized = false;
 	}
 
 	private boolean writeBuffer(WritableByteChannel writableByteChannel, Buffer buffer) throws IOException {
 
-		while (true) {
-
-			if (!this.bufferExistanceSerialized) {
-
-				if (!this.serializationStarted) {
-					this.tempBuffer.position(0);
-
-					if (buffer == null) {
-						this.tempBuffer.put(0, (byte) 0);
-						this.tempBuffer.limit(1);
-					} else {
-						this.tempBuffer.put(0, (byte) 1);
-						// System.out.println("OUTGOING: Buffer size is " + buffer.size());
-						integerToByteBuffer(buffer.size(), 1, this.tempBuffer);
-					}
-					this.serializationStarted = true;
-				}
-
-				if (this.tempBuffer.hasRemaining()) {
-					if (writableByteChannel.write(tempBuffer) == 0) {
-						return true;
-					}
-				} else {
-					this.bufferExistanceSerialized = true;
-					this.serializationStarted = false;
-					if (buffer == null) {
-						// That's it, we're done. No buffer will follow
-						this.serializationState = SerializationState.FULLYSERIALIZED;
-						return false;
-					}
-				}
-
-			} else {
-
-				if (!writeBufferData(writableByteChannel, buffer)) {
-					this.serializationState = SerializationState.FULLYSERIALIZED;
-					return false;
-				}
+		if (buffer == null) {
+			// That's it, we're done. No buffer will follow
+			this.serializationState = SerializationState.FULLYSERIALIZED;
+			return false;
+		}
 
-				return true;
-			}
+		if (!writeBufferData(writableByteChannel, buffer)) {
+			this.serializationState = SerializationState.FULLYSERIALIZED;
+			return false;
 		}
+
+		return true;
 	}
 
 	/**
@@ -258,19 +274,4 @@ public abstract class AbstractSerializer {
 	 */
 	protected abstract boolean writeBufferData(WritableByteChannel writableByteChannel, Buffer buffer)
 			throws IOException;
-
-	private void integerToByteBuffer(int integerToSerialize, int offset, ByteBuffer byteBuffer) throws IOException {
-
-		if ((offset + SIZEOFINT) > byteBuffer.capacity()) {
-			throw new IOException("Cannot convert integer to byte buffer, buffer is too small (" + byteBuffer.limit()
-				+ ", required " + (offset + SIZEOFINT) + ")");
-		}
-
-		byteBuffer.limit(offset + SIZEOFINT);
-
-		for (int i = 0; i < SIZEOFINT; ++i) {
-			final int shift = i << 3; // i * 8
-			byteBuffer.put((offset + SIZEOFINT - 1) - i, (byte) ((integerToSerialize & (0xff << shift)) >>> shift));
-		}
-	}
 }
@@ -92,6 +92,15 @@ public final class DefaultDeserializer extends AbstractDeserializer {
 		return true;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int getSourceSlot(final ChannelID sourceChannelID) {
+
+		return this.bufferProviderBroker.getSourceSlot(sourceChannelID);
+	}
+
 	public BufferProvider getBufferProvider() {
 
 		return this.bufferProvider;
@@ -25,18 +25,39 @@ import eu.stratosphere.nephele.jobgraph.JobID;
 
 public final class TransferEnvelope {
 
-	private final JobID jobID;
+	private JobID jobID;
 
-	private final ChannelID source;
+	private ChannelID source;
 
-	private final int sequenceNumber;
+	private int sequenceNumber;
 	
-	private long interarrivalTimeNanos;
+	/**
+	 * The interarrival time is stored by the producer after the envelope has been queued with an input channel and may
+	 * be read by the consuming task thread concurrently.
+	 */
+	private volatile long interarrivalTimeNanos;
 
 	private EventList eventList;
 
 	private Buffer buffer = null;
 
+	/**
+	 * The slot of the source channel at the local byte buffered channel manager or <code>-1</code> if unknown. The
+	 * slot is never transmitted over the network.
+	 */
+	private int sourceSlot = -1;
+
+	/**
+	 * Indicates whether the envelope may overtake envelopes queued before it on the same network connection. The flag
+	 * is never transmitted over the network.
+	 */
+	private boolean outOfBand = false;
+
+	/**
+	 * Indicates whether the envelope currently resides in the {@link TransferEnvelopePool}.
+	 */
+	private boolean pooled = false;
+
 	public TransferEnvelope(int sequenceNumber, JobID jobID, ChannelID source) {
 		this(sequenceNumber, jobID, source, null);
 	}
@@ -50,16 +71,74 @@ public final class TransferEnvelope {
 		this.interarrivalTimeNanos = -1;
 	}
 
+	/**
+	 * Reinitializes a pooled envelope before it is handed out by the {@link TransferEnvelopePool} again.
+	 * 
+	 * @param sequenceNumber
+	 *        the sequence number of the envelope
+	 * @param jobID
+	 *        the ID of the job the envelope belongs to
+	 * @param source
+	 *        the ID of the channel the envelope originates from
+	 */
+	void reset(final int sequenceNumber, final JobID jobID, final ChannelID source) {
+
+		this.sequenceNumber = sequenceNumber;
+		this.jobID = jobID;
+		this.source = source;
+		this.pooled = false;
+	}
+
+	/**
+	 * Drops all references held by the envelope before it is returned to the {@link TransferEnvelopePool}.
+	 * 
+	 * @return <code>true</code> if the envelope has been cleared, <code>false</code> if it already resides in the pool
+	 */
+	boolean clear() {
+
+		if (this.pooled) {
+			return false;
+		}
+
+		this.pooled = true;
+		this.jobID = null;
+		this.source = null;
+		this.eventList = null;
+		this.buffer = null;
+		this.sourceSlot = -1;
+		this.outOfBand = false;
+		this.interarrivalTimeNanos = -1;
+
+		return true;
+	}
+
+	/**
+	 * Checks that the envelope has not been returned to the {@link TransferEnvelopePool}, i.e. that the caller does
+	 * not use an envelope which may already have been handed out to another owner.
+	 * 
+	 * @throws IllegalStateException
+	 *         thrown if the envelope resides in the pool
+	 */
+	private void checkNotPooled() {
+
+		if (this.pooled) {
+			throw new IllegalStateException("Transfer envelope is used after it has been recycled");
+		}
+	}
+
 	public JobID getJobID() {
+		checkNotPooled();
 		return this.jobID;
 	}
 
 	public ChannelID getSource() {
+		checkNotPooled();
 		return this.source;
 	}
 
 	public void addEvent(AbstractEvent event) {
 
+		checkNotPooled();
 		if (this.eventList == null) {
 			this.eventList = new EventList();
 		}
@@ -67,12 +146,19 @@ public final class TransferEnvelope {
 		this.eventList.add(event);
 	}
 
+	void setEventList(final EventList eventList) {
+
+		this.eventList = eventList;
+	}
+
 	public EventList getEventList() {
 
+		checkNotPooled();
 		return this.eventList;
 	}
 
 	public int getSequenceNumber() {
+		checkNotPooled();
 		return this.sequenceNumber;
 	}
 	
@@ -84,18 +170,54 @@ public final class TransferEnvelope {
 		this.interarrivalTimeNanos = intearrivalTimeNanos;
 	}
 
+	public int getSourceSlot() {
+		return this.sourceSlot;
+	}
+
+	public void setSourceSlot(int sourceSlot) {
+		this.sourceSlot = sourceSlot;
+	}
+
+	/**
+	 * Checks whether the envelope is sent through the high-priority lane of network connections, i.e. whether it may
+	 * overtake envelopes queued before it.
+	 * 
+	 * @return <code>true</code> if the envelope may be sent out of band, <code>false</code> otherwise
+	 */
+	public boolean isOutOfBand() {
+		return this.outOfBand;
+	}
+
+	/**
+	 * Marks the envelope to be sent through the high-priority lane of network connections. Only envelopes without a
+	 * buffer whose events do not have to be ordered with respect to data of the same channel may be marked.
+	 * 
+	 * @param outOfBand
+	 *        <code>true</code> if the envelope may be sent out of band, <code>false</code> otherwise
+	 */
+	public void setOutOfBand(boolean outOfBand) {
+		this.outOfBand = outOfBand;
+	}
+
 	public void setBuffer(Buffer buffer) {
+		checkNotPooled();
 		this.buffer = buffer;
 	}
 
 	public Buffer getBuffer() {
+		checkNotPooled();
 		return this.buffer;
 	}
 
 	public TransferEnvelope duplicate() throws IOException, InterruptedException {
 
-		final TransferEnvelope duplicatedTransferEnvelope = new TransferEnvelope(this.sequenceNumber, this.jobID,
-			this.source, this.eventList); // No need to duplicate event list
+		checkNotPooled();
+		final TransferEnvelope duplicatedTransferEnvelope = TransferEnvelopePool.requestTransferEnvelope(
+			this.sequenceNumber, this.jobID, this.source);
+
+		duplicatedTransferEnvelope.eventList = this.eventList; // No need to duplicate event list
+		duplicatedTransferEnvelope.sourceSlot = this.sourceSlot;
+		duplicatedTransferEnvelope.outOfBand = this.outOfBand;
 
 		if (this.buffer != null) {
 			duplicatedTransferEnvelope.buffer = this.buffer.duplicate();
@@ -108,9 +230,13 @@ public final class TransferEnvelope {
 
 	public TransferEnvelope duplicateWithoutBuffer() {
 
-		final TransferEnvelope duplicatedTransferEnvelope = new TransferEnvelope(this.sequenceNumber, this.jobID,
-			this.source, this.eventList); // No need to duplicate event list
+		checkNotPooled();
+		final TransferEnvelope duplicatedTransferEnvelope = TransferEnvelopePool.requestTransferEnvelope(
+			this.sequenceNumber, this.jobID, this.source);
 
+		duplicatedTransferEnvelope.eventList = this.eventList; // No need to duplicate event list
+		duplicatedTransferEnvelope.sourceSlot = this.sourceSlot;
+		duplicatedTransferEnvelope.outOfBand = this.outOfBand;
 		duplicatedTransferEnvelope.buffer = null;
 
 		return duplicatedTransferEnvelope;
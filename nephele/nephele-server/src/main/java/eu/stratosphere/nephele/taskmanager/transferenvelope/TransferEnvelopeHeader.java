@@ -0,0 +1,172 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import eu.stratosphere.nephele.io.AbstractID;
+
+/**
+ * This class describes the compact header which precedes every {@link TransferEnvelope} in a byte stream. The header
+ * starts with a single byte whose lower four bits carry flags and whose upper four bits carry the length of the
+ * following variable-length integer section. This section contains the connection-local handle of the source channel,
+ * the zig-zag encoded difference to the channel's previous sequence number and, if a buffer follows, the buffer size.
+ * <p>
+ * The first envelope of a channel sent through a connection registers the channel: it carries the
+ * {@link #REGISTERS_CHANNEL} flag and the full job and channel ID after the variable-length section. All subsequent
+ * envelopes of that channel only carry its handle. Handles are assigned in ascending order starting at zero, so the
+ * receiver can verify the handshake without additional round trips.
+ * <p>
+ * A connection keeps at most {@link #MAX_NUMBER_OF_CHANNEL_HANDLES} handles, so the handles of channels which no longer
+ * send data (e.g. of finished or suspended tasks) are not kept for the lifetime of the connection. If a further channel
+ * has to be registered, the sender discards all handles and registers the channel with handle zero. The header of this
+ * registration carries the {@link #RESETS_CHANNEL_HANDLES} flag, so the receiver discards its handles as well.
+ * <p>
+ * This class is not supposed to be instantiated.
+ *
+ */
+final class TransferEnvelopeHeader {
+
+	/**
+	 * Flag indicating that an event list follows the header.
+	 */
+	static final int HAS_EVENT_LIST = 0x01;
+
+	/**
+	 * Flag indicating that a buffer follows the event list.
+	 */
+	static final int HAS_BUFFER = 0x02;
+
+	/**
+	 * Flag indicating that the header registers a new channel handle and carries the full job and channel ID.
+	 */
+	static final int REGISTERS_CHANNEL = 0x04;
+
+	/**
+	 * Flag indicating that all handles registered before this header are discarded. It is only set together with
+	 * {@link #REGISTERS_CHANNEL}.
+	 */
+	static final int RESETS_CHANNEL_HANDLES = 0x08;
+
+	/**
+	 * The maximum number of channel handles registered in a byte stream at the same time.
+	 */
+	static final int MAX_NUMBER_OF_CHANNEL_HANDLES = 1024;
+
+	/**
+	 * Mask to extract the flags from the first header byte.
+	 */
+	static final int FLAGS_MASK = 0x0f;
+
+	/**
+	 * The number of bits the length of the variable-length section is shifted inside the first header byte.
+	 */
+	static final int LENGTH_SHIFT = 4;
+
+	/**
+	 * The maximum number of bytes of a variable-length encoded integer.
+	 */
+	static final int MAX_VARINT_SIZE = 5;
+
+	/**
+	 * The number of bytes required to register a channel, i.e. the size of the job ID and the channel ID.
+	 */
+	static final int REGISTRATION_SIZE = 2 * AbstractID.SIZE;
+
+	/**
+	 * The maximum size of a complete header in bytes.
+	 */
+	static final int MAX_HEADER_SIZE = 1 + 3 * MAX_VARINT_SIZE + REGISTRATION_SIZE;
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private TransferEnvelopeHeader() {
+	}
+
+	/**
+	 * Writes the given integer as an unsigned variable-length integer to the byte buffer.
+	 *
+	 * @param value
+	 *        the integer to write, interpreted as unsigned
+	 * @param byteBuffer
+	 *        the byte buffer to write the integer to
+	 */
+	static void writeVarInt(int value, final ByteBuffer byteBuffer) {
+
+		while ((value & ~0x7f) != 0) {
+			byteBuffer.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+
+		byteBuffer.put((byte) value);
+	}
+
+	/**
+	 * Reads an unsigned variable-length integer from the byte buffer.
+	 *
+	 * @param byteBuffer
+	 *        the byte buffer to read the integer from
+	 * @return the integer read from the byte buffer
+	 * @throws IOException
+	 *         thrown if the byte buffer does not contain a well-formed variable-length integer
+	 */
+	static int readVarInt(final ByteBuffer byteBuffer) throws IOException {
+
+		int value = 0;
+
+		for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+
+			if (!byteBuffer.hasRemaining()) {
+				throw new IOException("Truncated variable-length integer in transfer envelope header");
+			}
+
+			final byte b = byteBuffer.get();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed variable-length integer in transfer envelope header");
+	}
+
+	/**
+	 * Maps a signed integer to an unsigned one so that values of small magnitude result in small variable-length
+	 * integers.
+	 *
+	 * @param value
+	 *        the signed integer
+	 * @return the zig-zag encoded integer
+	 */
+	static int zigZagEncode(final int value) {
+
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * Reverts the mapping of {@link #zigZagEncode(int)}.
+	 *
+	 * @param value
+	 *        the zig-zag encoded integer
+	 * @return the original signed integer
+	 */
+	static int zigZagDecode(final int value) {
+
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,139 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+
+/**
+ * The transfer envelope pool recycles {@link TransferEnvelope} objects, so shipping a buffer does not allocate a new
+ * envelope in steady state.
+ * <p>
+ * Every thread keeps a small local cache of envelopes which can be accessed without synchronization. Since envelopes
+ * are usually requested by one thread (e.g. a task thread or a network thread) and recycled by another one, the local
+ * caches exchange envelopes in batches with a bounded pool shared by all threads. Envelopes which do not fit into the
+ * shared pool are left to the garbage collector.
+ * <p>
+ * An envelope must only be recycled by its exclusive owner, i.e. no other object may refer to the envelope after it
+ * has been recycled. Envelopes carrying a buffer are exclusively owned by the component holding the buffer, whereas
+ * envelopes without a buffer may be queued with several receivers at the same time and must not be recycled.
+ * <p>
+ * This class is thread-safe.
+ *
+ */
+public final class TransferEnvelopePool {
+
+	/**
+	 * The maximum number of envelopes kept in a thread's local cache.
+	 */
+	private static final int LOCAL_CACHE_SIZE = 64;
+
+	/**
+	 * The number of envelopes exchanged between a local cache and the shared pool at once.
+	 */
+	private static final int BATCH_SIZE = LOCAL_CACHE_SIZE / 2;
+
+	/**
+	 * The maximum number of envelopes kept in the shared pool.
+	 */
+	private static final int SHARED_POOL_SIZE = 4096;
+
+	/**
+	 * The pool shared by all threads.
+	 */
+	private static final ArrayBlockingQueue<TransferEnvelope> SHARED_POOL = new ArrayBlockingQueue<TransferEnvelope>(
+		SHARED_POOL_SIZE);
+
+	/**
+	 * The local caches of the individual threads.
+	 */
+	private static final ThreadLocal<ArrayDeque<TransferEnvelope>> LOCAL_CACHE = new ThreadLocal<ArrayDeque<TransferEnvelope>>() {
+
+		@Override
+		protected ArrayDeque<TransferEnvelope> initialValue() {
+			return new ArrayDeque<TransferEnvelope>(LOCAL_CACHE_SIZE);
+		}
+	};
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private TransferEnvelopePool() {
+	}
+
+	/**
+	 * Returns a transfer envelope with the given sequence number, job ID and source channel ID. The envelope carries
+	 * neither a buffer nor an event list.
+	 *
+	 * @param sequenceNumber
+	 *        the sequence number of the envelope
+	 * @param jobID
+	 *        the ID of the job the envelope belongs to
+	 * @param source
+	 *        the ID of the channel the envelope originates from
+	 * @return a recycled or, if the pool is empty, a newly created transfer envelope
+	 */
+	public static TransferEnvelope requestTransferEnvelope(final int sequenceNumber, final JobID jobID,
+			final ChannelID source) {
+
+		final ArrayDeque<TransferEnvelope> localCache = LOCAL_CACHE.get();
+
+		TransferEnvelope transferEnvelope = localCache.poll();
+		if (transferEnvelope == null) {
+			SHARED_POOL.drainTo(localCache, BATCH_SIZE);
+			transferEnvelope = localCache.poll();
+			if (transferEnvelope == null) {
+				return new TransferEnvelope(sequenceNumber, jobID, source);
+			}
+		}
+
+		transferEnvelope.reset(sequenceNumber, jobID, source);
+
+		return transferEnvelope;
+	}
+
+	/**
+	 * Returns the given transfer envelope to the pool. The caller must be the exclusive owner of the envelope and must
+	 * have recycled or handed over the envelope's buffer before. Recycling an envelope twice has no effect, whereas
+	 * accessing the contents of a recycled envelope throws an {@link IllegalStateException}.
+	 *
+	 * @param transferEnvelope
+	 *        the transfer envelope to recycle
+	 */
+	public static void recycleTransferEnvelope(final TransferEnvelope transferEnvelope) {
+
+		if (!transferEnvelope.clear()) {
+			return;
+		}
+
+		final ArrayDeque<TransferEnvelope> localCache = LOCAL_CACHE.get();
+		if (localCache.size() >= LOCAL_CACHE_SIZE) {
+			for (int i = 0; i < BATCH_SIZE; ++i) {
+				if (!SHARED_POOL.offer(localCache.pollLast())) {
+					break;
+				}
+			}
+		}
+
+		if (localCache.size() < LOCAL_CACHE_SIZE) {
+			// Hand out the most recently used envelopes first
+			localCache.push(transferEnvelope);
+		}
+	}
+}
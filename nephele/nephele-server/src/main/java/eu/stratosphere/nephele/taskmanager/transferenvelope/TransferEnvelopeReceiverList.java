@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.taskmanager.transferenvelope;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -39,10 +40,16 @@ public class TransferEnvelopeReceiverList {
 
 	private final List<RemoteReceiver> remoteReceivers;
 
+	/**
+	 * The slots of the local receivers at the byte buffered channel manager or <code>-1</code> if not resolved yet.
+	 */
+	private final int[] localReceiverSlots;
+
 	public TransferEnvelopeReceiverList(final ConnectionInfoLookupResponse cilr) {
 
 		this.localReceivers = Collections.unmodifiableList(cilr.getLocalTargets());
 		this.remoteReceivers = Collections.unmodifiableList(cilr.getRemoteTargets());
+		this.localReceiverSlots = createUnresolvedSlots(this.localReceivers.size());
 	}
 
 	public TransferEnvelopeReceiverList(final ChannelID localReceiver) {
@@ -52,6 +59,7 @@ public class TransferEnvelopeReceiverList {
 
 		this.localReceivers = Collections.unmodifiableList(lr);
 		this.remoteReceivers = Collections.emptyList();
+		this.localReceiverSlots = createUnresolvedSlots(1);
 	}
 
 	public TransferEnvelopeReceiverList(final RemoteReceiver remoteReceiver) {
@@ -61,6 +69,15 @@ public class TransferEnvelopeReceiverList {
 
 		this.localReceivers = Collections.emptyList();
 		this.remoteReceivers = Collections.unmodifiableList(rr);
+		this.localReceiverSlots = createUnresolvedSlots(0);
+	}
+
+	private static int[] createUnresolvedSlots(final int numberOfLocalReceivers) {
+
+		final int[] slots = new int[numberOfLocalReceivers];
+		Arrays.fill(slots, -1);
+
+		return slots;
 	}
 
 	public boolean hasLocalReceivers() {
@@ -87,4 +104,30 @@ public class TransferEnvelopeReceiverList {
 
 		return this.localReceivers;
 	}
+
+	/**
+	 * Returns the slot of the local receiver with the given index.
+	 * 
+	 * @param index
+	 *        the index of the local receiver
+	 * @return the slot of the local receiver or <code>-1</code> if the slot has not been resolved yet
+	 */
+	public int getLocalReceiverSlot(final int index) {
+
+		return this.localReceiverSlots[index];
+	}
+
+	/**
+	 * Stores the slot of the local receiver with the given index. Concurrent updates are benign since every thread
+	 * resolves the same slot and stale slots are detected by the byte buffered channel manager.
+	 * 
+	 * @param index
+	 *        the index of the local receiver
+	 * @param slot
+	 *        the slot of the local receiver
+	 */
+	public void setLocalReceiverSlot(final int index, final int slot) {
+
+		this.localReceiverSlots[index] = slot;
+	}
 }
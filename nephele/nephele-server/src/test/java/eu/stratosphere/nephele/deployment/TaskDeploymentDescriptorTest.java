@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.deployment;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -257,6 +258,7 @@ public class TaskDeploymentDescriptorTest {
 		final TaskDeploymentDescriptor orig = new TaskDeploymentDescriptor(jobID, vertexID, taskName,
 			indexInSubtaskGroup, currentNumberOfSubtasks, jobConfiguration, taskConfiguration,
 			invokableClass, outputGates, inputGates, attachedPluginData);
+		orig.setHotStandby(true);
 
 		TaskDeploymentDescriptor copy = null;
 
@@ -285,6 +287,7 @@ public class TaskDeploymentDescriptorTest {
 		assertEquals(orig.getCurrentNumberOfSubtasks(), copy.getCurrentNumberOfSubtasks());
 		assertEquals(orig.getNumberOfOutputGateDescriptors(), copy.getNumberOfOutputGateDescriptors());
 		assertEquals(orig.getNumberOfInputGateDescriptors(), copy.getNumberOfInputGateDescriptors());
+		assertTrue(copy.isHotStandby());
 
 		try {
 			LibraryCacheManager.register(jobID, new String[] {});
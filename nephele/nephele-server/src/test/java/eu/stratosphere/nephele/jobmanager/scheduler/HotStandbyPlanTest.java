@@ -0,0 +1,351 @@
+package eu.stratosphere.nephele.jobmanager.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.deployment.GateDeploymentDescriptor;
+import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
+import eu.stratosphere.nephele.execution.ExecutionState;
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
+import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
+import eu.stratosphere.nephele.executiongraph.ForwardTask1Input1Output;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.instance.AbstractInstance;
+import eu.stratosphere.nephele.instance.AllocatedResource;
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.instance.InstanceListener;
+import eu.stratosphere.nephele.instance.InstanceManager;
+import eu.stratosphere.nephele.instance.InstanceRequestMap;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.io.DistributionPattern;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.library.FileLineReader;
+import eu.stratosphere.nephele.io.library.FileLineWriter;
+import eu.stratosphere.nephele.jobgraph.JobFileInputVertex;
+import eu.stratosphere.nephele.jobgraph.JobFileOutputVertex;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
+import eu.stratosphere.nephele.topology.NetworkTopology;
+import eu.stratosphere.nephele.util.ServerTestUtils;
+
+/**
+ * This class checks that the {@link HotStandbyPlan} keeps the number of hot standby subtasks of an elastic group vertex
+ * at its configured value across scale-downs and scale-ups, and that hot standby subtasks are deployed with suspended
+ * channels to peers that are not activated together with them.
+ * <p>
+ * The job graph is input -> A -> B -> C -> output, where A, B and C are elastic with one hot standby subtask each.
+ * A and B are connected all-to-all, B and C pointwise, so B and C subtasks with the same index are on the same
+ * scaling path.
+ */
+public class HotStandbyPlanTest {
+
+	private static final int MAX_SUBTASKS = 4;
+
+	private static final int INITIAL_SUBTASKS = 2;
+
+	/**
+	 * A stub of an {@link InstanceManager}, only the default instance type is required to construct the execution
+	 * graph.
+	 */
+	private static final class TestInstanceManager implements InstanceManager {
+
+		private final InstanceType defaultInstanceType = InstanceTypeFactory.construct("test", 4, 4, 1024, 50, 10);
+
+		@Override
+		public void requestInstance(final JobID jobID, final Configuration conf,
+				final InstanceRequestMap instanceRequestMap, final List<String> splitAffinityList) {
+			throw new IllegalStateException("requestInstance called on TestInstanceManager");
+		}
+
+		@Override
+		public void releaseAllocatedResource(final JobID jobID, final Configuration conf,
+				final AllocatedResource allocatedResource) {
+			throw new IllegalStateException("releaseAllocatedResource called on TestInstanceManager");
+		}
+
+		@Override
+		public InstanceType getSuitableInstanceType(final int minNumComputeUnits, final int minNumCPUCores,
+				final int minMemorySize, final int minDiskCapacity, final int maxPricePerHour) {
+			throw new IllegalStateException("getSuitableInstanceType called on TestInstanceManager");
+		}
+
+		@Override
+		public void reportHeartBeat(final InstanceConnectionInfo instanceConnectionInfo,
+				final HardwareDescription hardwareDescription) {
+			throw new IllegalStateException("reportHeartBeat called on TestInstanceManager");
+		}
+
+		@Override
+		public InstanceType getInstanceTypeByName(final String instanceTypeName) {
+			if (this.defaultInstanceType.getIdentifier().equals(instanceTypeName)) {
+				return this.defaultInstanceType;
+			}
+
+			return null;
+		}
+
+		@Override
+		public InstanceType getDefaultInstanceType() {
+			return this.defaultInstanceType;
+		}
+
+		@Override
+		public NetworkTopology getNetworkTopology(final JobID jobID) {
+			throw new IllegalStateException("getNetworkTopology called on TestInstanceManager");
+		}
+
+		@Override
+		public void setInstanceListener(final InstanceListener instanceListener) {
+			throw new IllegalStateException("setInstanceListener called on TestInstanceManager");
+		}
+
+		@Override
+		public Map<InstanceType, InstanceTypeDescription> getMapOfAvailableInstanceTypes() {
+			throw new IllegalStateException("getMapOfAvailableInstanceTypes called on TestInstanceManager");
+		}
+
+		@Override
+		public void shutdown() {
+			throw new IllegalStateException("shutdown called on TestInstanceManager");
+		}
+
+		@Override
+		public AbstractInstance getInstanceByName(final String name) {
+			throw new IllegalStateException("getInstanceByName called on TestInstanceManager");
+		}
+
+		@Override
+		public void cancelPendingRequests(final JobID jobID) {
+			throw new IllegalStateException("cancelPendingRequests called on TestInstanceManager");
+		}
+
+		@Override
+		public int getNumberOfTaskTrackers() {
+			return 0;
+		}
+
+		@Override
+		public Map<InstanceConnectionInfo, ? extends AbstractInstance> getInstances() {
+			throw new IllegalStateException("getInstances called on TestInstanceManager");
+		}
+	}
+
+	private File inputFile;
+
+	private JobID jobID;
+
+	private ExecutionGroupVertex groupA;
+
+	private ExecutionGroupVertex groupB;
+
+	private ExecutionGroupVertex groupC;
+
+	private ExecutionGraph executionGraph;
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.inputFile = ServerTestUtils.createInputFile(0);
+
+		final JobGraph jg = new JobGraph("Hot standby job");
+		this.jobID = jg.getJobID();
+
+		final JobFileInputVertex input = new JobFileInputVertex("Input", jg);
+		input.setFileInputClass(FileLineReader.class);
+		input.setFilePath(new Path(this.inputFile.toURI()));
+
+		final JobTaskVertex a = createElasticTaskVertex("A", jg);
+		final JobTaskVertex b = createElasticTaskVertex("B", jg);
+		final JobTaskVertex c = createElasticTaskVertex("C", jg);
+
+		final JobFileOutputVertex output = new JobFileOutputVertex("Output", jg);
+		output.setFileOutputClass(FileLineWriter.class);
+		output.setFilePath(new Path(new File(ServerTestUtils.getRandomFilename()).toURI()));
+
+		input.connectTo(a, ChannelType.NETWORK, DistributionPattern.BIPARTITE);
+		a.connectTo(b, ChannelType.NETWORK, DistributionPattern.BIPARTITE);
+		b.connectTo(c, ChannelType.NETWORK, DistributionPattern.POINTWISE);
+		c.connectTo(output, ChannelType.NETWORK, DistributionPattern.BIPARTITE);
+
+		LibraryCacheManager.register(this.jobID, new String[0]);
+		this.executionGraph = new ExecutionGraph(jg, new TestInstanceManager());
+
+		final ExecutionGroupVertex inputGroup = this.executionGraph.getInputVertex(0).getGroupVertex();
+		this.groupA = inputGroup.getForwardEdge(0).getTargetVertex();
+		this.groupB = this.groupA.getForwardEdge(0).getTargetVertex();
+		this.groupC = this.groupB.getForwardEdge(0).getTargetVertex();
+
+		for (final ExecutionGroupVertex groupVertex : Arrays.asList(this.groupA, this.groupB, this.groupC)) {
+			assertEquals(MAX_SUBTASKS, groupVertex.getCurrentNumberOfGroupMembers());
+			for (int i = 0; i < MAX_SUBTASKS; i++) {
+				groupVertex.getGroupMember(i).updateExecutionState(
+					i < INITIAL_SUBTASKS ? ExecutionState.RUNNING : ExecutionState.SUSPENDED);
+			}
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+
+		if (this.inputFile != null) {
+			this.inputFile.delete();
+		}
+
+		if (this.jobID != null) {
+			LibraryCacheManager.unregister(this.jobID);
+		}
+	}
+
+	private static JobTaskVertex createElasticTaskVertex(final String name, final JobGraph jg) {
+
+		final JobTaskVertex vertex = new JobTaskVertex(name, jg);
+		vertex.setTaskClass(ForwardTask1Input1Output.class);
+		vertex.setElasticNumberOfSubtasks(1, MAX_SUBTASKS, INITIAL_SUBTASKS);
+		vertex.setElasticNumberOfHotStandbySubtasks(1);
+
+		return vertex;
+	}
+
+	@Test
+	public void testScaleDownAndScaleUpKeepHotStandbyPoolSize() {
+
+		// initial deployment: the first suspended subtask of each group vertex
+		HotStandbyPlan plan = new HotStandbyPlan(this.executionGraph);
+		assertEquals(members(2, 2, 2), plan.getVerticesToDeploy());
+		assertTrue(plan.getVerticesToRelease().isEmpty());
+		deploy(plan);
+
+		// the pool is complete, so nothing changes
+		plan = new HotStandbyPlan(this.executionGraph);
+		assertTrue(plan.getVerticesToDeploy().isEmpty());
+		assertTrue(plan.getVerticesToRelease().isEmpty());
+
+		// scale-down of A: A1 becomes the next subtask to activate, A2 is surplus
+		this.groupA.getGroupMember(1).updateExecutionState(ExecutionState.SUSPENDED);
+		plan = new HotStandbyPlan(this.executionGraph);
+		assertEquals(new HashSet<ExecutionVertex>(Arrays.asList(this.groupA.getGroupMember(1))),
+			plan.getVerticesToDeploy());
+		assertEquals(new HashSet<ExecutionVertex>(Arrays.asList(this.groupA.getGroupMember(2))),
+			plan.getVerticesToRelease());
+		deploy(plan);
+		assertEquals(1, countHotStandbyMembers(this.groupA));
+
+		// repeated planning does not grow the pool
+		plan = new HotStandbyPlan(this.executionGraph);
+		assertTrue(plan.getVerticesToDeploy().isEmpty());
+		assertTrue(plan.getVerticesToRelease().isEmpty());
+
+		// scale-up of B: B2 and C2 (on B2's scaling path) are activated, B3 and C3 replenish the pool
+		activate(this.groupB.getGroupMember(2));
+		activate(this.groupC.getGroupMember(2));
+		plan = new HotStandbyPlan(this.executionGraph);
+		assertEquals(new HashSet<ExecutionVertex>(Arrays.asList(this.groupB.getGroupMember(3),
+			this.groupC.getGroupMember(3))), plan.getVerticesToDeploy());
+		assertTrue(plan.getVerticesToRelease().isEmpty());
+		deploy(plan);
+
+		for (final ExecutionGroupVertex groupVertex : Arrays.asList(this.groupA, this.groupB, this.groupC)) {
+			assertEquals(1, countHotStandbyMembers(groupVertex));
+		}
+	}
+
+	@Test
+	public void testHotStandbyChannelsAreOnlyUnsuspendedOnTheScalingPath() {
+
+		deploy(new HotStandbyPlan(this.executionGraph));
+
+		final ExecutionVertex a2 = this.groupA.getGroupMember(2);
+		final ExecutionVertex b2 = this.groupB.getGroupMember(2);
+		final ExecutionVertex c2 = this.groupC.getGroupMember(2);
+
+		// A2 -> B*: B0 and B1 are running, B2 is in hot standby on another scaling path, B3 is suspended
+		final GateDeploymentDescriptor a2Output = a2.constructDeploymentDescriptor().getOutputGateDescriptor(0);
+		assertEquals(MAX_SUBTASKS, a2Output.getNumberOfChannelDescriptors());
+		assertEquals(Arrays.asList(false, false, true, true), suspendedFlags(a2Output));
+
+		// B2 -> C2 is on B2's scaling path, both ends are activated together
+		final TaskDeploymentDescriptor b2Descriptor = b2.constructDeploymentDescriptor();
+		assertEquals(Collections.singletonList(false), suspendedFlags(b2Descriptor.getOutputGateDescriptor(0)));
+		assertEquals(Arrays.asList(false, false, true, true), suspendedFlags(b2Descriptor.getInputGateDescriptor(0)));
+		assertEquals(Collections.singletonList(false),
+			suspendedFlags(c2.constructDeploymentDescriptor().getInputGateDescriptor(0)));
+
+		// once A2 is running, the channel between A2 and B2 is no longer suspended from B2's point of view
+		activate(a2);
+		assertFalse(a2.isHotStandby());
+		assertEquals(Arrays.asList(false, false, false, true),
+			suspendedFlags(b2.constructDeploymentDescriptor().getInputGateDescriptor(0)));
+	}
+
+	private Set<ExecutionVertex> members(final int indexA, final int indexB, final int indexC) {
+
+		return new HashSet<ExecutionVertex>(Arrays.asList(this.groupA.getGroupMember(indexA),
+			this.groupB.getGroupMember(indexB), this.groupC.getGroupMember(indexC)));
+	}
+
+	/**
+	 * Applies the plan like the scheduler and the task managers would.
+	 */
+	private static void deploy(final HotStandbyPlan plan) {
+
+		for (final ExecutionVertex vertex : plan.getVerticesToRelease()) {
+			vertex.setHotStandby(false);
+			vertex.updateExecutionState(ExecutionState.SUSPENDED);
+		}
+
+		for (final ExecutionVertex vertex : plan.getVerticesToDeploy()) {
+			vertex.setHotStandby(true);
+			vertex.updateExecutionState(ExecutionState.ASSIGNED);
+			vertex.updateExecutionState(ExecutionState.STARTING);
+			vertex.setHotStandbyDeployed();
+		}
+	}
+
+	private static void activate(final ExecutionVertex vertex) {
+
+		vertex.setHotStandby(false);
+		vertex.updateExecutionState(ExecutionState.RUNNING);
+	}
+
+	private static int countHotStandbyMembers(final ExecutionGroupVertex groupVertex) {
+
+		int count = 0;
+		for (int i = 0; i < groupVertex.getCurrentNumberOfGroupMembers(); i++) {
+			if (groupVertex.getGroupMember(i).isHotStandby()) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	private static List<Boolean> suspendedFlags(final GateDeploymentDescriptor gateDescriptor) {
+
+		final Boolean[] flags = new Boolean[gateDescriptor.getNumberOfChannelDescriptors()];
+		for (int i = 0; i < flags.length; i++) {
+			flags[i] = Boolean.valueOf(gateDescriptor.getChannelDescriptor(i).isSuspended());
+		}
+
+		return Arrays.asList(flags);
+	}
+}
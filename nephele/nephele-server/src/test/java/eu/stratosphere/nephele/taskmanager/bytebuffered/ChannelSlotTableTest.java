@@ -0,0 +1,141 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopeReceiverList;
+
+/**
+ * This class contains tests covering the dispatch of transfer envelopes through the slots of the
+ * {@link ChannelSlotTable}.
+ *
+ */
+public class ChannelSlotTableTest {
+
+	/**
+	 * A minimal channel context which only provides its channel ID.
+	 * <p>
+	 * This class is not thread-safe.
+	 *
+	 */
+	private static final class TestChannelContext implements ChannelContext {
+
+		private final ChannelID channelID = new ChannelID();
+
+		private final ChannelID connectedChannelID = new ChannelID();
+
+		@Override
+		public boolean isInputChannel() {
+			return true;
+		}
+
+		@Override
+		public JobID getJobID() {
+			return null;
+		}
+
+		@Override
+		public ChannelID getChannelID() {
+			return this.channelID;
+		}
+
+		@Override
+		public ChannelID getConnectedChannelID() {
+			return this.connectedChannelID;
+		}
+
+		@Override
+		public ChannelType getType() {
+			return ChannelType.NETWORK;
+		}
+
+		@Override
+		public void queueTransferEnvelope(final TransferEnvelope transferEnvelope) {
+		}
+
+		@Override
+		public void setChannelSlot(final int channelSlot) {
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+
+	/**
+	 * Tests that envelopes of a remote source channel are dispatched through the slot assigned to the source, and that
+	 * the slot is released once the local input channel it feeds is gone.
+	 */
+	@Test
+	public void testRemoteSourceIsDispatchedThroughSlot() {
+
+		final ChannelSlotTable table = new ChannelSlotTable();
+		final TestChannelContext inputChannel = new TestChannelContext();
+		final int inputSlot = table.register(inputChannel);
+
+		final ChannelID remoteSource = inputChannel.getConnectedChannelID();
+		final TransferEnvelopeReceiverList receiverList = new TransferEnvelopeReceiverList(inputChannel
+			.getChannelID());
+		assertEquals(-1, table.getSlot(remoteSource));
+
+		final int remoteSlot = table.registerRemoteSource(remoteSource, receiverList);
+		assertTrue(inputSlot != remoteSlot);
+		assertEquals(remoteSlot, table.getSlot(remoteSource));
+		assertSame(receiverList, table.getReceiverList(remoteSlot, remoteSource));
+		assertNull(table.getChannelContext(remoteSlot, remoteSource));
+
+		// A stale slot is detected by the channel ID
+		assertNull(table.getReceiverList(remoteSlot, new ChannelID()));
+
+		table.unregisterRemoteSource(remoteSource);
+		assertEquals(-1, table.getSlot(remoteSource));
+		assertNull(table.getReceiverList(remoteSlot, remoteSource));
+
+		// The slot is reused by the next channel
+		final ChannelID otherSource = new ChannelID();
+		assertEquals(remoteSlot, table.registerRemoteSource(otherSource, receiverList));
+		assertNull(table.getReceiverList(remoteSlot, remoteSource));
+	}
+
+	/**
+	 * Tests that releasing the slot of a remote source does not affect a channel registered locally.
+	 */
+	@Test
+	public void testLocalChannelIsNotReleasedAsRemoteSource() {
+
+		final ChannelSlotTable table = new ChannelSlotTable();
+		final TestChannelContext channel = new TestChannelContext();
+		final int slot = table.register(channel);
+		final TransferEnvelopeReceiverList receiverList = new TransferEnvelopeReceiverList(new ChannelID());
+
+		assertEquals(slot, table.registerRemoteSource(channel.getChannelID(), receiverList));
+		table.unregisterRemoteSource(channel.getChannelID());
+
+		assertEquals(slot, table.getSlot(channel.getChannelID()));
+		assertSame(channel, table.getChannelContext(slot, channel.getChannelID()));
+		assertSame(receiverList, table.getReceiverList(slot, channel.getChannelID()));
+	}
+}
@@ -24,6 +24,9 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
 
 import org.junit.Test;
@@ -166,6 +169,16 @@ public class DefaultDeserializerTest {
 
 		private final BufferProvider bufferProvider;
 
+		/**
+		 * The slots of the source channels, as assigned by a local dispatcher.
+		 */
+		private final Map<ChannelID, Integer> sourceSlots = new HashMap<ChannelID, Integer>();
+
+		/**
+		 * The number of calls to {@link #getSourceSlot(ChannelID)}.
+		 */
+		private int numberOfSlotLookups = 0;
+
 		private TestBufferProviderBroker(final BufferProvider bufferProvider) {
 			this.bufferProvider = bufferProvider;
 		}
@@ -179,6 +192,18 @@ public class DefaultDeserializerTest {
 
 			return this.bufferProvider;
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getSourceSlot(final ChannelID sourceChannelID) {
+
+			++this.numberOfSlotLookups;
+			final Integer slot = this.sourceSlots.get(sourceChannelID);
+
+			return (slot == null) ? -1 : slot.intValue();
+		}
 	}
 
 	/**
@@ -362,4 +387,145 @@ public class DefaultDeserializerTest {
 
 		fail("Expected NoBufferAvailableException but has not been thrown");
 	}
+
+	/**
+	 * Tests the deserialization of a byte stream which interleaves envelopes of two channels, so the channel handles
+	 * announced in the stream must be resolved correctly.
+	 */
+	@Test
+	public void testDeserializationOfInterleavedChannels() {
+
+		try {
+
+			final ChannelID otherChannelID = new ChannelID();
+			final ChannelID[] sources = { CHANNEL_ID, otherChannelID, CHANNEL_ID, CHANNEL_ID, otherChannelID };
+			final int[] sequenceNumbers = { 0, 7, 1, 2, 8 };
+
+			final DefaultSerializer ds = new DefaultSerializer();
+			final InterruptibleByteChannel ibc = new InterruptibleByteChannel(null, new int[] { 2, 5, 40, 41 });
+			for (int i = 0; i < sources.length; ++i) {
+				ds.setTransferEnvelope(new TransferEnvelope(sequenceNumbers[i], JOB_ID, sources[i]));
+				while (ds.write(ibc))
+					;
+			}
+			ibc.switchToReadPhase();
+
+			final DefaultDeserializer dd = new DefaultDeserializer(new TestBufferProviderBroker(
+				new TestBufferProvider(0)));
+			for (int i = 0; i < sources.length; ++i) {
+
+				TransferEnvelope te = dd.getFullyDeserializedTransferEnvelope();
+				while (te == null) {
+					dd.read(ibc);
+					te = dd.getFullyDeserializedTransferEnvelope();
+				}
+
+				assertEquals(sequenceNumbers[i], te.getSequenceNumber());
+				assertEquals(JOB_ID, te.getJobID());
+				assertEquals(sources[i], te.getSource());
+				assertNull(te.getBuffer());
+			}
+
+		} catch (IOException ioe) {
+			fail(StringUtils.stringifyException(ioe));
+		} catch (NoBufferAvailableException nbae) {
+			fail(StringUtils.stringifyException(nbae));
+		}
+	}
+
+	/**
+	 * Tests that the channel handles are reset in-band once the table of a byte stream is full, so a stream with more
+	 * channels than handles is still resolved correctly.
+	 */
+	@Test
+	public void testChannelHandlesAreResetWhenTableIsFull() {
+
+		try {
+
+			final int numberOfChannels = TransferEnvelopeHeader.MAX_NUMBER_OF_CHANNEL_HANDLES + 1;
+			final ChannelID[] channelIDs = new ChannelID[numberOfChannels];
+			for (int i = 0; i < numberOfChannels; ++i) {
+				channelIDs[i] = new ChannelID();
+			}
+
+			// Every channel, then the first channel again, whose handle has been discarded by the reset
+			final ChannelID[] sources = Arrays.copyOf(channelIDs, numberOfChannels + 2);
+			sources[numberOfChannels] = channelIDs[0];
+			sources[numberOfChannels + 1] = channelIDs[numberOfChannels - 1];
+
+			final DefaultSerializer ds = new DefaultSerializer();
+			final InterruptibleByteChannel ibc = new InterruptibleByteChannel(null, null);
+			for (int i = 0; i < sources.length; ++i) {
+				ds.setTransferEnvelope(new TransferEnvelope(i, JOB_ID, sources[i]));
+				while (ds.write(ibc))
+					;
+			}
+			ibc.switchToReadPhase();
+
+			final DefaultDeserializer dd = new DefaultDeserializer(new TestBufferProviderBroker(
+				new TestBufferProvider(0)));
+			for (int i = 0; i < sources.length; ++i) {
+
+				TransferEnvelope te = dd.getFullyDeserializedTransferEnvelope();
+				while (te == null) {
+					dd.read(ibc);
+					te = dd.getFullyDeserializedTransferEnvelope();
+				}
+
+				assertEquals(i, te.getSequenceNumber());
+				assertEquals(sources[i], te.getSource());
+			}
+
+		} catch (IOException ioe) {
+			fail(StringUtils.stringifyException(ioe));
+		} catch (NoBufferAvailableException nbae) {
+			fail(StringUtils.stringifyException(nbae));
+		}
+	}
+
+	/**
+	 * Tests that the deserializer attaches the slot of the source channel at the local dispatcher to the envelopes, and
+	 * only looks up the slot until the source channel occupies one.
+	 */
+	@Test
+	public void testDeserializedEnvelopesCarrySourceSlot() {
+
+		try {
+
+			final DefaultSerializer ds = new DefaultSerializer();
+			final InterruptibleByteChannel ibc = new InterruptibleByteChannel(null, null);
+			for (int i = 0; i < 5; ++i) {
+				ds.setTransferEnvelope(new TransferEnvelope(i, JOB_ID, CHANNEL_ID));
+				while (ds.write(ibc))
+					;
+			}
+			ibc.switchToReadPhase();
+
+			final TestBufferProviderBroker tbpb = new TestBufferProviderBroker(new TestBufferProvider(0));
+			final DefaultDeserializer dd = new DefaultDeserializer(tbpb);
+			for (int i = 0; i < 5; ++i) {
+
+				if (i == 2) {
+					// The dispatcher has assigned a slot after dispatching the first envelopes by channel ID
+					tbpb.sourceSlots.put(CHANNEL_ID, Integer.valueOf(7));
+				}
+
+				TransferEnvelope te = dd.getFullyDeserializedTransferEnvelope();
+				while (te == null) {
+					dd.read(ibc);
+					te = dd.getFullyDeserializedTransferEnvelope();
+				}
+
+				assertEquals(i, te.getSequenceNumber());
+				assertEquals((i < 2) ? -1 : 7, te.getSourceSlot());
+			}
+
+			assertEquals(3, tbpb.numberOfSlotLookups);
+
+		} catch (IOException ioe) {
+			fail(StringUtils.stringifyException(ioe));
+		} catch (NoBufferAvailableException nbae) {
+			fail(StringUtils.stringifyException(nbae));
+		}
+	}
 }
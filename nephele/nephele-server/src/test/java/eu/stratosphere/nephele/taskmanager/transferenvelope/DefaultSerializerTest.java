@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.taskmanager.transferenvelope;
 
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -56,21 +57,11 @@ public class DefaultSerializerTest {
 	 */
 	private static final byte BUFFER_CONTENT = 13;
 
-	/**
-	 * The size of a sequence number.
-	 */
-	private static final int SIZE_OF_SEQ_NR = 4;
-
 	/**
 	 * The size of an ID.
 	 */
 	private static final int SIZE_OF_ID = 16;
 
-	/**
-	 * The size of an integer number.
-	 */
-	private static final int SIZE_OF_INTEGER = 4;
-
 	/**
 	 * The job ID used during the serialization process.
 	 */
@@ -188,92 +179,86 @@ public class DefaultSerializerTest {
 
 		for (int i = 0; i < BUFFER_SIZE; i++) {
 
-			readAndCheckSequenceNumber(fileInputStream, i);
-			readAndCheckID(fileInputStream, this.jobID);
-			readAndCheckID(fileInputStream, this.sourceChannelID);
-			readAndCheckNotificationList(fileInputStream);
-			readAndCheckBuffer(fileInputStream, i);
+			final int bufferSize = readAndCheckHeader(fileInputStream, i);
+			readAndCheckBuffer(fileInputStream, bufferSize, i);
 		}
 
+		assertEquals(-1, fileInputStream.read());
+
 		fileInputStream.close();
 	}
 
 	/**
-	 * Attempts to read a buffer of the given size from the file stream and checks the buffer's content.
+	 * Attempts to read the header of a transfer envelope from the file stream and checks its content. Only the first
+	 * envelope is expected to register the source channel, all following envelopes must refer to it by its handle.
 	 * 
 	 * @param fileInputStream
 	 *        the file stream to read from
-	 * @param expectedBufferSize
-	 *        the expected size of the buffer
+	 * @param expectedSeqNumber
+	 *        the expected sequence number of the envelope
+	 * @return the size of the buffer which follows the header or <code>-1</code> if no buffer follows
 	 * @throws IOException
 	 *         thrown if an error occurs while reading from the file stream
 	 */
-	private static void readAndCheckBuffer(FileInputStream fileInputStream, int expectedBufferSize) throws IOException {
-
-		// Check if buffer exists
-		assertEquals(1L, fileInputStream.read());
-
-		byte[] temp = new byte[SIZE_OF_INTEGER];
-		fileInputStream.read(temp);
-		int bufferSize = bufferToInteger(temp);
-
-		assertEquals(expectedBufferSize, bufferSize);
-
-		byte[] buffer = new byte[bufferSize];
-		int r = fileInputStream.read(buffer);
-		for (int i = 0; i < buffer.length; i++) {
-			assertEquals(BUFFER_CONTENT, buffer[i]);
-		}
-	}
-
-	/**
-	 * Attempts to read an empty notification list from the given file input stream.
-	 * 
-	 * @param fileInputStream
-	 *        the file input stream to read from
-	 * @throws IOException
-	 *         thrown if an I/O occurs while reading data from the stream
-	 */
-	private void readAndCheckNotificationList(FileInputStream fileInputStream) throws IOException {
-
-		if (fileInputStream.read() != 0) {
+	private int readAndCheckHeader(FileInputStream fileInputStream, int expectedSeqNumber) throws IOException {
 
-			byte[] temp = new byte[SIZE_OF_INTEGER];
+		final int firstByte = fileInputStream.read();
+		final int flags = firstByte & TransferEnvelopeHeader.FLAGS_MASK;
+		final int lengthOfVarInts = firstByte >>> TransferEnvelopeHeader.LENGTH_SHIFT;
 
-			fileInputStream.read(temp);
-			final int sizeOfDataBlock = bufferToInteger(temp);
+		// No event list is attached to the test envelopes
+		assertEquals(0, flags & TransferEnvelopeHeader.HAS_EVENT_LIST);
+		assertEquals(TransferEnvelopeHeader.HAS_BUFFER, flags & TransferEnvelopeHeader.HAS_BUFFER);
 
-			assertEquals(SIZE_OF_INTEGER, sizeOfDataBlock);
+		byte[] temp = new byte[lengthOfVarInts];
+		assertEquals(lengthOfVarInts, fileInputStream.read(temp));
+		final ByteBuffer header = ByteBuffer.wrap(temp);
 
-			fileInputStream.read(temp);
-			final int sizeOfNotificationList = bufferToInteger(temp);
+		assertEquals(0, TransferEnvelopeHeader.readVarInt(header));
+		final int sequenceNumberDelta = TransferEnvelopeHeader.zigZagDecode(TransferEnvelopeHeader.readVarInt(header));
+		assertEquals(expectedSeqNumber == 0 ? 0 : 1, sequenceNumberDelta);
+		final int bufferSize = TransferEnvelopeHeader.readVarInt(header);
+		assertEquals(0, header.remaining());
 
-			assertEquals(0, sizeOfNotificationList);
+		if (expectedSeqNumber == 0) {
+			assertEquals(TransferEnvelopeHeader.REGISTERS_CHANNEL, flags & TransferEnvelopeHeader.REGISTERS_CHANNEL);
+			readAndCheckID(fileInputStream, this.jobID);
+			readAndCheckID(fileInputStream, this.sourceChannelID);
+		} else {
+			assertEquals(0, flags & TransferEnvelopeHeader.REGISTERS_CHANNEL);
+			// Flags, handle, sequence number delta and at most two bytes for the buffer size
+			assertTrue(1 + lengthOfVarInts <= 5);
 		}
+
+		return bufferSize;
 	}
 
 	/**
-	 * Attempts to read an integer number from the given file input stream and compares it to
-	 * <code>expectedSequenceNumber</code>.
+	 * Attempts to read a buffer of the given size from the file stream and checks the buffer's content.
 	 * 
 	 * @param fileInputStream
-	 *        the file input stream to read from
-	 * @param expectedSeqNumber
-	 *        the integer number the read number is expected to match
+	 *        the file stream to read from
+	 * @param bufferSize
+	 *        the size of the buffer as announced in the header
+	 * @param expectedBufferSize
+	 *        the expected size of the buffer
 	 * @throws IOException
-	 *         thrown if an I/O occurs while reading data from the stream
+	 *         thrown if an error occurs while reading from the file stream
 	 */
-	private void readAndCheckSequenceNumber(FileInputStream fileInputStream, int expectedSeqNumber) throws IOException {
+	private static void readAndCheckBuffer(FileInputStream fileInputStream, int bufferSize, int expectedBufferSize)
+			throws IOException {
 
-		byte[] temp = new byte[SIZE_OF_SEQ_NR];
-		fileInputStream.read(temp);
-		int seqNumber = bufferToInteger(temp);
+		assertEquals(expectedBufferSize, bufferSize);
 
-		assertEquals(seqNumber, expectedSeqNumber);
+		byte[] buffer = new byte[bufferSize];
+		fileInputStream.read(buffer);
+		for (int i = 0; i < buffer.length; i++) {
+			assertEquals(BUFFER_CONTENT, buffer[i]);
+		}
 	}
 
 	/**
-	 * Attempts to read a channel ID from the given file input stream and compares it to <code>expectedChannelID</code>.
+	 * Attempts to read an ID from the given file input stream and compares it to <code>expectedID</code>.
 	 * 
 	 * @param fileInputStream
 	 *        the file input stream to read from
@@ -284,35 +269,12 @@ public class DefaultSerializerTest {
 	 */
 	private void readAndCheckID(FileInputStream fileInputStream, AbstractID expectedID) throws IOException {
 
-		byte[] temp = new byte[SIZE_OF_INTEGER];
-		fileInputStream.read(temp);
-
-		final int sizeOfID = bufferToInteger(temp); // ID has fixed size and therefore does not announce its size
+		// IDs have a fixed size and are therefore written without length information
+		byte[] id = new byte[SIZE_OF_ID];
+		assertEquals(SIZE_OF_ID, fileInputStream.read(id));
 
-		assertEquals(sizeOfID, SIZE_OF_ID);
-
-		byte[] id = new byte[sizeOfID];
-		fileInputStream.read(id);
-
-		final AbstractID channelID = new SerializationTestID(id);
+		final AbstractID channelID = new SerializationTestID(new byte[SIZE_OF_ID]);
+		channelID.read(ByteBuffer.wrap(id));
 		assertEquals(expectedID, channelID);
 	}
-
-	/**
-	 * Converts the first four bytes of the provided buffer's content to an integer number.
-	 * 
-	 * @param buffer
-	 *        the buffer to convert
-	 * @return the integer number converted from the first four bytes of the buffer's content
-	 */
-	private static int bufferToInteger(byte[] buffer) {
-
-		int integer = 0;
-
-		for (int i = 0; i < SIZE_OF_INTEGER; ++i) {
-			integer |= (buffer[SIZE_OF_INTEGER - 1 - i] & 0xff) << (i << 3);
-		}
-
-		return integer;
-	}
 }
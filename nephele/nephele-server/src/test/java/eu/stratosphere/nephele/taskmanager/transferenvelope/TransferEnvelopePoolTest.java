@@ -0,0 +1,140 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.event.task.StringTaskEvent;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+
+/**
+ * This class contains tests covering the recycling of transfer envelopes through the {@link TransferEnvelopePool}.
+ *
+ */
+public class TransferEnvelopePoolTest {
+
+	/**
+	 * Tests that a recycled envelope is handed out again and carries no state of its previous use.
+	 */
+	@Test
+	public void testRecycledEnvelopeIsReset() {
+
+		final JobID jobID = new JobID();
+		final ChannelID firstSource = new ChannelID();
+		final ChannelID secondSource = new ChannelID();
+
+		final TransferEnvelope first = TransferEnvelopePool.requestTransferEnvelope(17, jobID, firstSource);
+		first.addEvent(new StringTaskEvent("test"));
+		first.setSourceSlot(3);
+		first.setInterarrivalTimestampNanos(100L);
+		TransferEnvelopePool.recycleTransferEnvelope(first);
+
+		final TransferEnvelope second = TransferEnvelopePool.requestTransferEnvelope(18, jobID, secondSource);
+
+		assertSame(first, second);
+		assertEquals(18, second.getSequenceNumber());
+		assertEquals(jobID, second.getJobID());
+		assertEquals(secondSource, second.getSource());
+		assertNull(second.getEventList());
+		assertNull(second.getBuffer());
+		assertEquals(-1, second.getSourceSlot());
+		assertEquals(-1L, second.getInterarrivalTimeNanos());
+	}
+
+	/**
+	 * Tests that recycling the same envelope twice does not hand it out to two different owners.
+	 */
+	@Test
+	public void testDoubleRecycleIsIgnored() {
+
+		final JobID jobID = new JobID();
+		final ChannelID source = new ChannelID();
+
+		final TransferEnvelope envelope = TransferEnvelopePool.requestTransferEnvelope(0, jobID, source);
+		TransferEnvelopePool.recycleTransferEnvelope(envelope);
+		TransferEnvelopePool.recycleTransferEnvelope(envelope);
+
+		final TransferEnvelope first = TransferEnvelopePool.requestTransferEnvelope(1, jobID, source);
+		final TransferEnvelope second = TransferEnvelopePool.requestTransferEnvelope(2, jobID, source);
+
+		assertNotSame(first, second);
+	}
+
+	/**
+	 * Tests that a recycled envelope cannot be used by its former owner until it is handed out again.
+	 */
+	@Test
+	public void testRecycledEnvelopeCannotBeUsed() {
+
+		final JobID jobID = new JobID();
+		final ChannelID source = new ChannelID();
+
+		final TransferEnvelope envelope = TransferEnvelopePool.requestTransferEnvelope(0, jobID, source);
+		TransferEnvelopePool.recycleTransferEnvelope(envelope);
+
+		try {
+			envelope.getBuffer();
+			fail("Expected IllegalStateException when reading the buffer of a recycled envelope");
+		} catch (IllegalStateException e) {
+		}
+
+		try {
+			envelope.addEvent(new StringTaskEvent("test"));
+			fail("Expected IllegalStateException when adding an event to a recycled envelope");
+		} catch (IllegalStateException e) {
+		}
+
+		try {
+			envelope.duplicateWithoutBuffer();
+			fail("Expected IllegalStateException when duplicating a recycled envelope");
+		} catch (IllegalStateException e) {
+		}
+
+		final TransferEnvelope reused = TransferEnvelopePool.requestTransferEnvelope(1, jobID, source);
+		assertSame(envelope, reused);
+		assertEquals(1, reused.getSequenceNumber());
+		assertNull(reused.getBuffer());
+	}
+
+	/**
+	 * Tests that duplicates for several receivers keep the source slot and the lane of the original envelope.
+	 */
+	@Test
+	public void testDuplicateKeepsSourceSlotAndLane() {
+
+		final TransferEnvelope envelope = TransferEnvelopePool.requestTransferEnvelope(5, new JobID(),
+			new ChannelID());
+		envelope.addEvent(new StringTaskEvent("test"));
+		envelope.setSourceSlot(7);
+		envelope.setOutOfBand(true);
+
+		final TransferEnvelope duplicate = envelope.duplicateWithoutBuffer();
+
+		assertNotSame(envelope, duplicate);
+		assertEquals(5, duplicate.getSequenceNumber());
+		assertSame(envelope.getEventList(), duplicate.getEventList());
+		assertEquals(7, duplicate.getSourceSlot());
+		assertTrue(duplicate.isOutOfBand());
+	}
+}
@@ -88,7 +88,9 @@ public final class StreamingPluginLoader extends AbstractPluginLoader {
 	public synchronized TaskManagerPlugin getTaskManagerPlugin() {
 
 		if (this.taskManagerPlugin == null) {
-			this.taskManagerPlugin = new StreamTaskManagerPlugin();
+			this.taskManagerPlugin = new StreamTaskManagerPlugin(
+					getPluginLookupService().getJobManagerComponent(
+							STREAMING_PLUGIN_ID));
 		}
 
 		return this.taskManagerPlugin;
@@ -34,6 +34,9 @@ import eu.stratosphere.nephele.profiling.ProfilingListener;
 import eu.stratosphere.nephele.streaming.ConstraintUtil;
 import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
 import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
+import eu.stratosphere.nephele.streaming.message.ClockSyncMessage;
+import eu.stratosphere.nephele.streaming.message.QosMessageBatch;
+import eu.stratosphere.nephele.streaming.util.MicrosecondClock;
 
 /**
  * Job manager plugin that analyzes the constraints attached to a Nephele job
@@ -115,7 +118,12 @@ public class StreamJobManagerPlugin implements JobManagerPlugin,
 	 */
 	@Override
 	public void sendData(final IOReadableWritable data) throws IOException {
-		if (data instanceof AbstractSerializableQosMessage) {
+		if (data instanceof QosMessageBatch) {
+			for (AbstractSerializableQosMessage message : ((QosMessageBatch) data)
+					.getMessages()) {
+				this.sendData(message);
+			}
+		} else if (data instanceof AbstractSerializableQosMessage) {
 			AbstractSerializableQosMessage qosMessage = (AbstractSerializableQosMessage) data;
 
 			QosSetupManager qosSetupManager = this.qosSetupManagers
@@ -136,6 +144,14 @@ public class StreamJobManagerPlugin implements JobManagerPlugin,
 	@Override
 	public IOReadableWritable requestData(final IOReadableWritable data)
 			throws IOException {
+
+		if (data instanceof ClockSyncMessage) {
+			ClockSyncMessage syncMessage = (ClockSyncMessage) data;
+			syncMessage.setReceiveTimestamp(MicrosecondClock.currentTimeMicros());
+			syncMessage.setTransmitTimestamp(MicrosecondClock.currentTimeMicros());
+			return syncMessage;
+		}
+
 		LOG.error("Job manger streaming plugin received unexpected data request of type "
 				+ data);
 		return null;
@@ -19,7 +19,7 @@ import java.util.Map;
  */
 public abstract class AbstractScalingPolicy {
 
-	private final ExecutionGraph execGraph;
+	private final Map<JobVertexID, GroupVertexScalingInfo> groupVertexInfos;
 
 	private final HashMap<LatencyConstraintID, JobGraphLatencyConstraint> qosConstraints;
 
@@ -27,7 +27,23 @@ public abstract class AbstractScalingPolicy {
 			ExecutionGraph execGraph,
 			HashMap<LatencyConstraintID, JobGraphLatencyConstraint> qosConstraints) {
 
-		this.execGraph = execGraph;
+		this(GroupVertexScalingInfo.fromExecutionGraph(execGraph,
+				qosConstraints.values()), qosConstraints);
+	}
+
+	/**
+	 * Creates a policy that is not tied to a running job, e.g. to replay
+	 * recorded constraint summaries or to simulate a job.
+	 *
+	 * @param groupVertexInfos
+	 *            The infos of (at least) all group vertices that are the
+	 *            target of an edge in one of the constraints.
+	 */
+	public AbstractScalingPolicy(
+			Map<JobVertexID, GroupVertexScalingInfo> groupVertexInfos,
+			HashMap<LatencyConstraintID, JobGraphLatencyConstraint> qosConstraints) {
+
+		this.groupVertexInfos = groupVertexInfos;
 		this.qosConstraints = qosConstraints;
 	}
 
@@ -51,8 +67,12 @@ public abstract class AbstractScalingPolicy {
 			Map<JobVertexID, Integer> scalingActions)
 			throws UnexpectedVertexExecutionStateException;
 
-	protected ExecutionGraph getExecutionGraph() {
-		return execGraph;
+	protected GroupVertexScalingInfo getGroupVertexInfo(JobVertexID groupVertexID) {
+		return groupVertexInfos.get(groupVertexID);
+	}
+
+	public Map<JobVertexID, GroupVertexScalingInfo> getGroupVertexInfos() {
+		return groupVertexInfos;
 	}
 
 	protected Map<LatencyConstraintID, JobGraphLatencyConstraint> getConstraints() {
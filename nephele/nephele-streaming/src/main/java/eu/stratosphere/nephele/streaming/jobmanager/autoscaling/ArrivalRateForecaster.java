@@ -0,0 +1,97 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling;
+
+/**
+ * Forecasts the total arrival rate of records at a group vertex with Holt's
+ * linear exponential smoothing (EWMA with trend). The forecaster is fed with
+ * one measurement per adjustment interval and extrapolates the smoothed level
+ * with the smoothed trend for a given number of intervals ahead.
+ *
+ * Elastic scaling uses the forecast to plan parallelism for the rate that
+ * will arrive once newly started subtasks are running, instead of the rate
+ * that has been measured in the last interval.
+ */
+public class ArrivalRateForecaster {
+
+	public static final double DEFAULT_LEVEL_SMOOTHING = 0.5;
+
+	public static final double DEFAULT_TREND_SMOOTHING = 0.3;
+
+	private final double levelSmoothing;
+
+	private final double trendSmoothing;
+
+	private double level;
+
+	private double trend;
+
+	private int noOfMeasurements;
+
+	public ArrivalRateForecaster() {
+		this(DEFAULT_LEVEL_SMOOTHING, DEFAULT_TREND_SMOOTHING);
+	}
+
+	public ArrivalRateForecaster(double levelSmoothing, double trendSmoothing) {
+		if (levelSmoothing <= 0 || levelSmoothing > 1 || trendSmoothing <= 0
+				|| trendSmoothing > 1) {
+			throw new IllegalArgumentException(
+					"Smoothing factors must be in (0;1]");
+		}
+
+		this.levelSmoothing = levelSmoothing;
+		this.trendSmoothing = trendSmoothing;
+		this.noOfMeasurements = 0;
+	}
+
+	/**
+	 * Adds the arrival rate measured in the last adjustment interval.
+	 */
+	public void addMeasurement(double arrivalRate) {
+		if (this.noOfMeasurements == 0) {
+			this.level = arrivalRate;
+			this.trend = 0;
+		} else if (this.noOfMeasurements == 1) {
+			this.trend = arrivalRate - this.level;
+			this.level = arrivalRate;
+		} else {
+			double lastLevel = this.level;
+			this.level = this.levelSmoothing * arrivalRate
+					+ (1 - this.levelSmoothing) * (lastLevel + this.trend);
+			this.trend = this.trendSmoothing * (this.level - lastLevel)
+					+ (1 - this.trendSmoothing) * this.trend;
+		}
+
+		this.noOfMeasurements++;
+	}
+
+	/**
+	 * @return whether enough measurements have been added to estimate a
+	 *         trend.
+	 */
+	public boolean hasForecast() {
+		return this.noOfMeasurements >= 2;
+	}
+
+	/**
+	 * Returns the forecast arrival rate the given number of adjustment
+	 * intervals ahead of the last measurement. The forecast is never
+	 * negative.
+	 *
+	 * @param intervalsAhead
+	 *            Forecast horizon in adjustment intervals (may be fractional).
+	 */
+	public double forecast(double intervalsAhead) {
+		if (this.noOfMeasurements == 0) {
+			throw new IllegalStateException("No measurements have been added");
+		}
+
+		return Math.max(0, this.level + intervalsAhead * this.trend);
+	}
+
+	public double getLevel() {
+		return this.level;
+	}
+
+	public double getTrend() {
+		return this.trend;
+	}
+}
@@ -7,6 +7,7 @@ import eu.stratosphere.nephele.jobgraph.JobVertexID;
 import eu.stratosphere.nephele.jobmanager.web.QosStatisticsServlet;
 import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
 import eu.stratosphere.nephele.streaming.LatencyConstraintID;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.KeyGroupParallelismAnnouncer;
 import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.ScalingActuator;
 import eu.stratosphere.nephele.streaming.message.AbstractQosMessage;
 import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
@@ -56,6 +57,8 @@ public class ElasticTaskQosAutoScalingThread extends Thread {
 
 	private AbstractScalingPolicy scalingPolicy;
 
+	private QosConstraintSummaryRecorder summaryRecorder;
+
 	public ElasticTaskQosAutoScalingThread(ExecutionGraph execGraph,
 			HashMap<LatencyConstraintID, QosGraph> qosGraphs,
 			HashMap<LatencyConstraintID, Set<QosManagerID>> qosManagers) {
@@ -87,7 +90,9 @@ public class ElasticTaskQosAutoScalingThread extends Thread {
 		}
 
 		scalingPolicy = new SimpleScalingPolicy(execGraph, qosConstraints);
+		initSummaryRecorder(qosConstraints);
 		scalingActuator = new ScalingActuator(execGraph, getVertexTopologicalScores(qosGraphs));
+		scalingActuator.addParallelismChangeListener(new KeyGroupParallelismAnnouncer(execGraph));
 
 		webStatistic = new QosJobWebStatistic(execGraph, loggingInterval, qosConstraints);
 		QosStatisticsServlet.putStatistic(this.jobID, webStatistic);
@@ -95,6 +100,24 @@ public class ElasticTaskQosAutoScalingThread extends Thread {
 		this.start();
 	}
 
+	private void initSummaryRecorder(HashMap<LatencyConstraintID, JobGraphLatencyConstraint> qosConstraints) {
+		String recordingFile = StreamPluginConfig.getScalingRecordingFilePattern();
+		if (recordingFile == null) {
+			return;
+		}
+
+		if (recordingFile.contains("%s")) {
+			recordingFile = String.format(recordingFile, this.jobID.toString());
+		}
+
+		try {
+			summaryRecorder = new QosConstraintSummaryRecorder(recordingFile,
+					qosConstraints.values(), scalingPolicy.getGroupVertexInfos());
+		} catch (IOException e) {
+			LOG.error("Exception while initializing constraint summary recorder", e);
+		}
+	}
+
 	private HashMap<JobVertexID, Integer> getVertexTopologicalScores(
 					HashMap<LatencyConstraintID, QosGraph> qosGraphs) {
 
@@ -219,6 +242,14 @@ public class ElasticTaskQosAutoScalingThread extends Thread {
 		}
 
 		webStatistic.logConstraintSummaries(constraintSummaries);
+
+		if (summaryRecorder != null) {
+			try {
+				summaryRecorder.record(System.currentTimeMillis(), constraintSummaries);
+			} catch (IOException e) {
+				LOG.error("Error during constraint summary recording", e);
+			}
+		}
 	}
 
 	private Map<LatencyConstraintID, LatencyConstraintCpuLoadSummary> summarizeCpuUtilizations(Map<ExecutionVertexID, TaskCpuLoadChange> taskCpuLoads)
@@ -268,6 +299,14 @@ public class ElasticTaskQosAutoScalingThread extends Thread {
 			}
 		}
 
+		if (summaryRecorder != null) {
+			try {
+				summaryRecorder.close();
+			} catch (IOException e) {
+				LOG.warn("Failure while closing constraint summary recorder!", e);
+			}
+		}
+
 		// clear large memory structures
 		qosMessages.clear();
 		aggregators.clear();
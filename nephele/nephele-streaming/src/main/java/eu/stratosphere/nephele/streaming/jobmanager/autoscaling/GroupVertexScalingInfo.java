@@ -0,0 +1,156 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
+import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
+import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
+import eu.stratosphere.nephele.streaming.SequenceElement;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.QueueingModel;
+import eu.stratosphere.nephele.types.StringRecord;
+
+/**
+ * Describes the properties of a group vertex that scaling policies need
+ * besides the measured Qos statistics, i.e. its bounds on parallelism and
+ * its queueing model. These properties do not change while a job is running,
+ * hence policies can be run against a snapshot of them, e.g. in the
+ * simulator.
+ */
+public class GroupVertexScalingInfo implements IOReadableWritable {
+
+	private JobVertexID jobVertexID;
+
+	private boolean elastic;
+
+	private int minParallelism;
+
+	private int maxParallelism;
+
+	private QueueingModel queueingModel;
+
+	/**
+	 * Public parameterless constructor for deserialization.
+	 */
+	public GroupVertexScalingInfo() {
+	}
+
+	/**
+	 * Creates the info of a group vertex with a fixed parallelism.
+	 */
+	public GroupVertexScalingInfo(JobVertexID jobVertexID, int parallelism) {
+		this(jobVertexID, false, parallelism, parallelism,
+				QueueingModel.KINGMAN);
+	}
+
+	public GroupVertexScalingInfo(JobVertexID jobVertexID, boolean elastic,
+			int minParallelism, int maxParallelism, QueueingModel queueingModel) {
+
+		if (minParallelism < 1 || maxParallelism < minParallelism) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid parallelism bounds [%d;%d]", minParallelism,
+					maxParallelism));
+		}
+
+		this.jobVertexID = jobVertexID;
+		this.elastic = elastic;
+		this.minParallelism = minParallelism;
+		this.maxParallelism = maxParallelism;
+		this.queueingModel = queueingModel;
+	}
+
+	public static GroupVertexScalingInfo fromExecutionGroupVertex(
+			ExecutionGroupVertex groupVertex) {
+
+		if (groupVertex.hasElasticNumberOfRunningSubtasks()) {
+			return new GroupVertexScalingInfo(groupVertex.getJobVertexID(),
+					true, groupVertex.getMinElasticNumberOfRunningSubtasks(),
+					groupVertex.getMaxElasticNumberOfRunningSubtasks(),
+					QueueingModel.fromJobVertexConfiguration(groupVertex
+							.getConfiguration()));
+		}
+
+		return new GroupVertexScalingInfo(groupVertex.getJobVertexID(), false,
+				groupVertex.getCurrentNumberOfGroupMembers(),
+				groupVertex.getCurrentNumberOfGroupMembers(),
+				QueueingModel.fromJobVertexConfiguration(groupVertex
+						.getConfiguration()));
+	}
+
+	/**
+	 * Collects the infos of all group vertices that are the target of an edge
+	 * in the sequence of one of the given constraints.
+	 */
+	public static HashMap<JobVertexID, GroupVertexScalingInfo> fromExecutionGraph(
+			ExecutionGraph execGraph,
+			Collection<JobGraphLatencyConstraint> constraints) {
+
+		HashMap<JobVertexID, GroupVertexScalingInfo> infos = new HashMap<JobVertexID, GroupVertexScalingInfo>();
+
+		for (JobGraphLatencyConstraint constraint : constraints) {
+			for (SequenceElement seqElem : constraint.getSequence()) {
+				if (seqElem.isEdge()
+						&& !infos.containsKey(seqElem.getTargetVertexID())) {
+					infos.put(seqElem.getTargetVertexID(),
+							fromExecutionGroupVertex(execGraph
+									.getExecutionGroupVertex(seqElem
+											.getTargetVertexID())));
+				}
+			}
+		}
+
+		return infos;
+	}
+
+	public JobVertexID getJobVertexID() {
+		return this.jobVertexID;
+	}
+
+	public boolean isElastic() {
+		return this.elastic;
+	}
+
+	/**
+	 * @return the minimum number of running subtasks, which is the fixed
+	 *         number of subtasks for non-elastic group vertices.
+	 */
+	public int getMinParallelism() {
+		return this.minParallelism;
+	}
+
+	/**
+	 * @return the maximum number of running subtasks, which is the fixed
+	 *         number of subtasks for non-elastic group vertices.
+	 */
+	public int getMaxParallelism() {
+		return this.maxParallelism;
+	}
+
+	public QueueingModel getQueueingModel() {
+		return this.queueingModel;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		this.jobVertexID.write(out);
+		out.writeBoolean(this.elastic);
+		out.writeInt(this.minParallelism);
+		out.writeInt(this.maxParallelism);
+		StringRecord.writeString(out, this.queueingModel.name());
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.jobVertexID = new JobVertexID();
+		this.jobVertexID.read(in);
+		this.elastic = in.readBoolean();
+		this.minParallelism = in.readInt();
+		this.maxParallelism = in.readInt();
+		this.queueingModel = QueueingModel.valueOf(StringRecord.readString(in));
+	}
+}
@@ -0,0 +1,150 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
+import eu.stratosphere.nephele.streaming.LatencyConstraintID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosConstraintSummary;
+
+/**
+ * Records the input of a scaling policy, i.e. the constraints, the scaling
+ * infos of their group vertices and the constraint summaries of each
+ * adjustment interval, into a binary file. A recording can be read back with
+ * {@link #readRecording(InputStream)} and replayed offline through a scaling
+ * policy.
+ */
+public class QosConstraintSummaryRecorder {
+
+	private final DataOutputStream out;
+
+	public QosConstraintSummaryRecorder(String recordingFile,
+			Collection<JobGraphLatencyConstraint> constraints,
+			Map<JobVertexID, GroupVertexScalingInfo> groupVertexInfos)
+			throws IOException {
+
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(recordingFile)));
+
+		this.out.writeInt(constraints.size());
+		for (JobGraphLatencyConstraint constraint : constraints) {
+			constraint.write(this.out);
+		}
+
+		this.out.writeInt(groupVertexInfos.size());
+		for (GroupVertexScalingInfo info : groupVertexInfos.values()) {
+			info.write(this.out);
+		}
+		this.out.flush();
+	}
+
+	/**
+	 * Records the constraint summaries of one adjustment interval.
+	 */
+	public void record(long timestamp,
+			List<QosConstraintSummary> constraintSummaries) throws IOException {
+
+		this.out.writeLong(timestamp);
+		this.out.writeInt(constraintSummaries.size());
+		for (QosConstraintSummary summary : constraintSummaries) {
+			summary.write(this.out);
+		}
+		this.out.flush();
+	}
+
+	public void close() throws IOException {
+		this.out.close();
+	}
+
+	/**
+	 * Reads a recording, of which the last adjustment interval may be
+	 * incomplete, e.g. because the job manager has been killed.
+	 */
+	public static Recording readRecording(InputStream inputStream)
+			throws IOException {
+
+		DataInputStream in = new DataInputStream(inputStream);
+		Recording recording = new Recording();
+
+		int noOfConstraints = in.readInt();
+		for (int i = 0; i < noOfConstraints; i++) {
+			JobGraphLatencyConstraint constraint = new JobGraphLatencyConstraint();
+			constraint.read(in);
+			recording.constraints.put(constraint.getID(), constraint);
+		}
+
+		int noOfInfos = in.readInt();
+		for (int i = 0; i < noOfInfos; i++) {
+			GroupVertexScalingInfo info = new GroupVertexScalingInfo();
+			info.read(in);
+			recording.groupVertexInfos.put(info.getJobVertexID(), info);
+		}
+
+		try {
+			while (true) {
+				long timestamp = in.readLong();
+				int noOfSummaries = in.readInt();
+
+				List<QosConstraintSummary> summaries = new ArrayList<QosConstraintSummary>(
+						noOfSummaries);
+				for (int i = 0; i < noOfSummaries; i++) {
+					QosConstraintSummary summary = new QosConstraintSummary();
+					summary.read(in);
+					summaries.add(summary);
+				}
+
+				recording.timestamps.add(timestamp);
+				recording.intervals.add(summaries);
+			}
+		} catch (EOFException e) {
+			// end of recording
+		}
+
+		return recording;
+	}
+
+	/**
+	 * The contents of a recording.
+	 */
+	public static class Recording {
+
+		private final HashMap<LatencyConstraintID, JobGraphLatencyConstraint> constraints = new HashMap<LatencyConstraintID, JobGraphLatencyConstraint>();
+
+		private final HashMap<JobVertexID, GroupVertexScalingInfo> groupVertexInfos = new HashMap<JobVertexID, GroupVertexScalingInfo>();
+
+		private final ArrayList<Long> timestamps = new ArrayList<Long>();
+
+		private final ArrayList<List<QosConstraintSummary>> intervals = new ArrayList<List<QosConstraintSummary>>();
+
+		public HashMap<LatencyConstraintID, JobGraphLatencyConstraint> getConstraints() {
+			return this.constraints;
+		}
+
+		public HashMap<JobVertexID, GroupVertexScalingInfo> getGroupVertexInfos() {
+			return this.groupVertexInfos;
+		}
+
+		public List<Long> getTimestamps() {
+			return this.timestamps;
+		}
+
+		/**
+		 * @return the constraint summaries of each recorded adjustment
+		 *         interval.
+		 */
+		public List<List<QosConstraintSummary>> getIntervals() {
+			return this.intervals;
+		}
+	}
+}
@@ -1,14 +1,14 @@
 package eu.stratosphere.nephele.streaming.jobmanager.autoscaling;
 
 import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
-import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
 import eu.stratosphere.nephele.jobgraph.JobVertexID;
 import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
 import eu.stratosphere.nephele.streaming.LatencyConstraintID;
 import eu.stratosphere.nephele.streaming.SequenceElement;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.FittingFactorEstimator;
 import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.GG1Server;
-import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.GG1ServerKingman;
-import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.Rebalancer;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.MultiConstraintRebalancer;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.QueueingModel;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosConstraintSummary;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupVertexSummary;
@@ -19,6 +19,7 @@ import org.apache.commons.logging.LogFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,11 +34,89 @@ public class SimpleScalingPolicy extends AbstractScalingPolicy {
 
 	private final float QUEUEING_LATENCY_WEIGHT;
 
+	/**
+	 * Forecast horizon in adjustment intervals, or a negative value if
+	 * forecasting is disabled.
+	 */
+	private final double forecastHorizon;
+
+	/**
+	 * State kept across adjustment intervals for the edges of each
+	 * constraint's sequence, by their index in the sequence. The state is
+	 * kept per constraint (and not per group vertex), because each constraint
+	 * summary is processed exactly once per adjustment interval.
+	 */
+	private final HashMap<LatencyConstraintID, HashMap<Integer, EdgeState>> edgeStates = new HashMap<LatencyConstraintID, HashMap<Integer, EdgeState>>();
+
+	private static class EdgeState {
+		final ArrivalRateForecaster forecaster = new ArrivalRateForecaster();
+
+		final FittingFactorEstimator fittingFactorEstimator = new FittingFactorEstimator();
+	}
+
+	/**
+	 * Constraints without bottlenecks, which are rebalanced jointly after all
+	 * constraints have been inspected.
+	 */
+	private final ArrayList<PendingRebalance> pendingRebalances = new ArrayList<PendingRebalance>();
+
+	private static class PendingRebalance {
+		final ArrayList<GG1Server> servers;
+
+		final double targetQueueingTimeMillis;
+
+		PendingRebalance(ArrayList<GG1Server> servers, double targetQueueingTimeMillis) {
+			this.servers = servers;
+			this.targetQueueingTimeMillis = targetQueueingTimeMillis;
+		}
+	}
+
 	public SimpleScalingPolicy(
 					ExecutionGraph execGraph,
 					HashMap<LatencyConstraintID, JobGraphLatencyConstraint> qosConstraints) {
-		super(execGraph, qosConstraints);
+		this(GroupVertexScalingInfo.fromExecutionGraph(execGraph, qosConstraints.values()), qosConstraints);
+	}
+
+	public SimpleScalingPolicy(
+					Map<JobVertexID, GroupVertexScalingInfo> groupVertexInfos,
+					HashMap<LatencyConstraintID, JobGraphLatencyConstraint> qosConstraints) {
+		super(groupVertexInfos, qosConstraints);
 		this.QUEUEING_LATENCY_WEIGHT = 1 - StreamPluginConfig.getOutputBatchingLatencyWeight();
+
+		long leadTime = StreamPluginConfig.getElasticScalingForecastLeadTimeMillis();
+		if (leadTime < 0) {
+			this.forecastHorizon = -1;
+		} else {
+			long adjustmentInterval = StreamPluginConfig.getAdjustmentIntervalMillis();
+			this.forecastHorizon = (adjustmentInterval + leadTime) / ((double) adjustmentInterval);
+		}
+	}
+
+	/**
+	 * Computes the parallelism changes for all constraints. Bottlenecks are
+	 * resolved per constraint, whereas the constraints without bottlenecks
+	 * are rebalanced jointly, so that group vertices shared by several
+	 * constraints are not over-provisioned.
+	 */
+	@Override
+	public Map<JobVertexID, Integer> getParallelismChanges(List<QosConstraintSummary> constraintSummaries)
+					throws UnexpectedVertexExecutionStateException {
+
+		pendingRebalances.clear();
+		Map<JobVertexID, Integer> globalParallelismChanges = super.getParallelismChanges(constraintSummaries);
+
+		if (!pendingRebalances.isEmpty()) {
+			ArrayList<GG1Server> allServers = new ArrayList<GG1Server>();
+			for (PendingRebalance pending : pendingRebalances) {
+				allServers.addAll(pending.servers);
+			}
+
+			Map<JobVertexID, Integer> localParallelismChanges = rebalance(globalParallelismChanges);
+			mergeLocalParallelismChangesIntoGlobal(globalParallelismChanges, allServers, localParallelismChanges);
+			pendingRebalances.clear();
+		}
+
+		return globalParallelismChanges;
 	}
 
 	protected void getParallelismChangesForConstraint(JobGraphLatencyConstraint constraint,
@@ -47,15 +126,13 @@ public class SimpleScalingPolicy extends AbstractScalingPolicy {
 
 		ArrayList<GG1Server> servers = createServers(constraint, constraintSummary, globalParallelismChanges);
 
-		Map<JobVertexID, Integer> localParallelismChanges;
 		if (hasBottleneck(servers)) {
-			localParallelismChanges = resolveBottleneck(servers);
+			// merge with local with global parallelism changes
+			mergeLocalParallelismChangesIntoGlobal(globalParallelismChanges, servers, resolveBottleneck(servers));
 		} else {
-			localParallelismChanges = rebalance(constraint, constraintSummary, servers);
+			pendingRebalances.add(new PendingRebalance(servers,
+							computeTargetQueueTimeOfElasticServers(constraint, constraintSummary, servers)));
 		}
-
-		// merge with local with global parallelism changes
-		mergeLocalParallelismChangesIntoGlobal(globalParallelismChanges, servers, localParallelismChanges);
 	}
 
 	private void mergeLocalParallelismChangesIntoGlobal(Map<JobVertexID, Integer> globalParallelismChanges,
@@ -78,37 +155,44 @@ public class SimpleScalingPolicy extends AbstractScalingPolicy {
 	}
 
 
-	private Map<JobVertexID, Integer> rebalance(JobGraphLatencyConstraint constraint,
-	                       QosConstraintSummary constraintSummary,
-	                       ArrayList<GG1Server> servers) {
+	private Map<JobVertexID, Integer> rebalance(Map<JobVertexID, Integer> globalParallelismChanges) {
 
-		double targetQueueingTimeMillis = computeTargetQueueTimeOfElasticServers(constraint,
-						constraintSummary, servers);
+		MultiConstraintRebalancer reb = new MultiConstraintRebalancer();
+		for (PendingRebalance pending : pendingRebalances) {
+			reb.addConstraint(filterNonElasticServers(pending.servers), pending.targetQueueingTimeMillis);
+		}
 
-		Rebalancer reb = new Rebalancer(filterNonElasticServers(servers), targetQueueingTimeMillis);
-		boolean rebalanceSuccess = reb.computeRebalancedParallelism();
+		// parallelism chosen to resolve bottlenecks must not be undercut
+		for (Map.Entry<JobVertexID, Integer> entry : globalParallelismChanges.entrySet()) {
+			reb.setMinimumParallelism(entry.getKey(), entry.getValue());
+		}
 
-		Map<JobVertexID, Integer> rebActions = reb.getScalingActions();
-		logAction("Rebalance",
-						rebActions,
-						servers,
-						String.format("rebalanceSuccess: %s | targetQueueTime:%.2fms | projectedQueueTime: %.2fms",
-							Boolean.toString(rebalanceSuccess),
-							targetQueueingTimeMillis,
-							reb.getRebalancedQueueWait() * 1000));
+		reb.computeRebalancedParallelism();
 
+		Map<JobVertexID, Integer> rebActions = reb.getScalingActions();
+		for (int i = 0; i < pendingRebalances.size(); i++) {
+			logAction("Rebalance",
+							rebActions,
+							pendingRebalances.get(i).servers,
+							String.format("rebalanceSuccess: %s | targetQueueTime:%.2fms | projectedQueueTime: %.2fms",
+								Boolean.toString(reb.isSatisfied(i)),
+								pendingRebalances.get(i).targetQueueingTimeMillis,
+								reb.getRebalancedQueueWait(i) * 1000));
+		}
 
 		Map<JobVertexID, Integer> newParallelism = new HashMap<JobVertexID, Integer>();
-		for (GG1Server server : servers) {
-			JobVertexID id = server.getGroupVertexID();
+		for (PendingRebalance pending : pendingRebalances) {
+			for (GG1Server server : pending.servers) {
+				JobVertexID id = server.getGroupVertexID();
 
-			if (rebActions.containsKey(id) && Math.abs(rebActions.get(id)) / ((double) server.getCurrentParallelism()) >= 0.04) {
-				newParallelism.put(id, server.getCurrentParallelism() + rebActions.get(id));
+				if (rebActions.containsKey(id) && Math.abs(rebActions.get(id)) / ((double) server.getCurrentParallelism()) >= 0.04) {
+					newParallelism.put(id, server.getCurrentParallelism() + rebActions.get(id));
+				}
 			}
 		}
 
 		return newParallelism;
-}
+	}
 
 
 	private ArrayList<GG1Server> filterNonElasticServers(ArrayList<GG1Server> servers) {
@@ -133,33 +217,65 @@ public class SimpleScalingPolicy extends AbstractScalingPolicy {
 				continue;
 			}
 
-			ExecutionGroupVertex consumerGroupVertex = getExecutionGraph().getExecutionGroupVertex(
-							seqElem.getTargetVertexID());
+			GroupVertexScalingInfo consumerInfo = getGroupVertexInfo(seqElem.getTargetVertexID());
 			QosGroupEdgeSummary edgeSummary = constraintSummary.getGroupEdgeSummary(seqElem.getIndexInSequence());
-			JobVertexID id = consumerGroupVertex.getJobVertexID();
-
-			int minParallelism;
-			int maxParallelism;
+			JobVertexID id = consumerInfo.getJobVertexID();
 
-			boolean isElastic = consumerGroupVertex.hasElasticNumberOfRunningSubtasks();
-			if (isElastic) {
-				minParallelism = consumerGroupVertex.getMinElasticNumberOfRunningSubtasks();
+			int minParallelism = consumerInfo.getMinParallelism();
+			int maxParallelism = consumerInfo.getMaxParallelism();
 
-				if (parallelismChanges.get(id) != null) {
-					minParallelism = Math.max(minParallelism, parallelismChanges.get(id));
-				}
-
-				maxParallelism = consumerGroupVertex.getMaxElasticNumberOfRunningSubtasks();
-			} else {
-				minParallelism = maxParallelism = consumerGroupVertex.getCurrentNumberOfGroupMembers();
+			if (consumerInfo.isElastic() && parallelismChanges.get(id) != null) {
+				minParallelism = Math.max(minParallelism, parallelismChanges.get(id));
 			}
 
-			gg1Servers.add(new GG1ServerKingman(id, minParallelism, maxParallelism, edgeSummary));
+			EdgeState edgeState = getEdgeState(constraint, seqElem);
+			QueueingModel model = consumerInfo.getQueueingModel();
+			gg1Servers.add(model.createServer(id, minParallelism, maxParallelism, edgeSummary,
+							getPlannedArrivalRate(edgeState, edgeSummary), edgeState.fittingFactorEstimator));
 		}
 
 		return gg1Servers;
 	}
 
+	private EdgeState getEdgeState(JobGraphLatencyConstraint constraint, SequenceElement edge) {
+		HashMap<Integer, EdgeState> constraintEdgeStates = edgeStates.get(constraint.getID());
+		if (constraintEdgeStates == null) {
+			constraintEdgeStates = new HashMap<Integer, EdgeState>();
+			edgeStates.put(constraint.getID(), constraintEdgeStates);
+		}
+
+		EdgeState edgeState = constraintEdgeStates.get(edge.getIndexInSequence());
+		if (edgeState == null) {
+			edgeState = new EdgeState();
+			constraintEdgeStates.put(edge.getIndexInSequence(), edgeState);
+		}
+		return edgeState;
+	}
+
+	/**
+	 * Returns the total arrival rate that the parallelism of the edge's
+	 * consumer should be planned for. This is the maximum of the measured
+	 * arrival rate and the rate forecast for the end of the next adjustment
+	 * interval plus the deployment lead time. Using the maximum makes the
+	 * policy scale out ahead of rising load, but never scale in ahead of
+	 * falling load.
+	 */
+	private double getPlannedArrivalRate(EdgeState edgeState, QosGroupEdgeSummary edgeSummary) {
+
+		double measured = GG1Server.getMeasuredLambdaTotal(edgeSummary);
+		if (forecastHorizon < 0) {
+			return measured;
+		}
+
+		ArrivalRateForecaster forecaster = edgeState.forecaster;
+		forecaster.addMeasurement(measured);
+		if (!forecaster.hasForecast()) {
+			return measured;
+		}
+
+		return Math.max(measured, forecaster.forecast(forecastHorizon));
+	}
+
 	public double computeTargetQueueTimeOfElasticServers(JobGraphLatencyConstraint constraint,
 	                                                     QosConstraintSummary constraintSummary,
 	                                                     ArrayList<GG1Server> servers) {
@@ -199,10 +315,30 @@ public class SimpleScalingPolicy extends AbstractScalingPolicy {
 			// to the A:B rule, output buffer latency will adapt itself
 			// to be A% of that, so we can take the remaining B% for queueing
 			// (minus another 10% margin of safety).
-			return (availableShippingDelayMillis * QUEUEING_LATENCY_WEIGHT * 0.9) / constraint.getSequence().getNumberOfEdges();
+			double targetQueueTime = (availableShippingDelayMillis * QUEUEING_LATENCY_WEIGHT * 0.9) / constraint.getSequence().getNumberOfEdges();
+
+			if (constraint.isPercentileConstraint()) {
+				targetQueueTime = toMeanQueueTime(targetQueueTime, constraint.getLatencyPercentile());
+			}
+			return targetQueueTime;
 		}
 	}
 
+	/**
+	 * The queueing models predict mean queue waiting times. For constraints on
+	 * a latency percentile, the budget for the given percentile of the queue
+	 * waiting time is converted into a budget for its mean, assuming that
+	 * waiting times are approximately exponentially distributed (as in
+	 * Kingman's heavy traffic approximation). The p-quantile of an
+	 * exponential distribution is its mean times ln(1/(1-p)).
+	 */
+	private double toMeanQueueTime(double percentileQueueTime, double percentile) {
+		double tailFactor = Math.log(1 / (1 - percentile / 100));
+
+		// for low percentiles the mean is the stricter bound
+		return percentileQueueTime / Math.max(1, tailFactor);
+	}
+
 	/**
 	 * This is a last resort technique, when a bottleneck has formed. With
 	 * bottlenecks, queueing models are not applicable anymore. Resolve
@@ -269,11 +405,14 @@ public class SimpleScalingPolicy extends AbstractScalingPolicy {
 
 	private ArrayList<GG1Server> findBottleneckServers(ArrayList<GG1Server> servers) {
 		final double bottleneckUtilizationThreshold = 0.99;
+		final double bottleneckInputBlockedThreshold = 0.05;
 
 		ArrayList<GG1Server> bottlenecks = new ArrayList<GG1Server>();
 
 		for (GG1Server server : servers) {
-			if (server.getCurrentMeanUtilization() >= bottleneckUtilizationThreshold) {
+			// a saturated group vertex hardly ever waits for input
+			if (server.getCurrentMeanUtilization() >= bottleneckUtilizationThreshold
+					&& server.getInputBlockedFraction() < bottleneckInputBlockedThreshold) {
 				bottlenecks.add(server);
 			}
 		}
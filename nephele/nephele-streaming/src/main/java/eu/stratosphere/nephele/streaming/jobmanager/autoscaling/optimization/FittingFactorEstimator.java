@@ -0,0 +1,76 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+/**
+ * Learns the fitting factor of a queueing model online, as the exponentially
+ * weighted moving average of the ratios of measured to predicted queue wait
+ * that have been observed in past adjustment intervals. Averaging happens on
+ * a logarithmic scale, so that over- and underestimation by the same factor
+ * carry the same weight.
+ *
+ * Compared to fitting each interval's prediction to that interval's
+ * measurement only, a learned fitting factor is less sensitive to noisy
+ * measurements and may deviate further from 1 if the model is consistently
+ * off.
+ */
+public class FittingFactorEstimator {
+
+	public static final double DEFAULT_SMOOTHING = 0.3;
+
+	public static final double MIN_FITTING_FACTOR = 0.2;
+
+	public static final double MAX_FITTING_FACTOR = 5;
+
+	private final double smoothing;
+
+	private double logFittingFactor;
+
+	private boolean hasEstimate;
+
+	public FittingFactorEstimator() {
+		this(DEFAULT_SMOOTHING);
+	}
+
+	public FittingFactorEstimator(double smoothing) {
+		if (smoothing <= 0 || smoothing > 1) {
+			throw new IllegalArgumentException(
+					"Smoothing factor must be in (0;1]");
+		}
+		this.smoothing = smoothing;
+		this.hasEstimate = false;
+	}
+
+	/**
+	 * Adds the ratio of measured to predicted queue wait observed in the last
+	 * adjustment interval. Ratios that are not positive and finite (e.g.
+	 * because the model predicted an overload) are ignored.
+	 *
+	 * @return the updated fitting factor estimate.
+	 */
+	public double addObservation(double fittingFactor) {
+		if (fittingFactor > 0 && !Double.isInfinite(fittingFactor)) {
+			double logObservation = Math.log(Math.min(MAX_FITTING_FACTOR,
+					Math.max(MIN_FITTING_FACTOR, fittingFactor)));
+
+			if (this.hasEstimate) {
+				this.logFittingFactor = this.smoothing * logObservation
+						+ (1 - this.smoothing) * this.logFittingFactor;
+			} else {
+				this.logFittingFactor = logObservation;
+				this.hasEstimate = true;
+			}
+		}
+
+		return getFittingFactor();
+	}
+
+	/**
+	 * @return the current fitting factor estimate, or 1 if no valid
+	 *         observation has been added yet.
+	 */
+	public double getFittingFactor() {
+		if (!this.hasEstimate) {
+			return 1;
+		}
+		return Math.exp(this.logFittingFactor);
+	}
+}
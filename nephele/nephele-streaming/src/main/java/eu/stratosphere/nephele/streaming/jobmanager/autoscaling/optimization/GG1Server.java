@@ -4,14 +4,27 @@ import eu.stratosphere.nephele.jobgraph.JobVertexID;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
 import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
 
+/**
+ * Models the queueing behavior of an elastic group vertex, in order to
+ * predict the queue waiting time of its records at different degrees of
+ * parallelism. Subclasses implement a specific queueing formula (see
+ * {@link QueueingModel}). Predictions are fitted to the currently measured
+ * queue wait with a fitting factor.
+ */
 public abstract class GG1Server {
 
 	public static final double MAX_UTILIZATION = 0.9;
 
 	private final JobVertexID groupVertexID;
 
+	/**
+	 * Total arrival rate that parallelism is planned for. This is either the
+	 * measured or a forecast arrival rate.
+	 */
 	protected final double lambdaTotal;
 
+	private final double measuredLambdaTotal;
+
 	protected final int p;
 
 	protected final double cA;
@@ -20,7 +33,22 @@ public abstract class GG1Server {
 
 	protected final double cS;
 
-	protected final double fittingFactor;
+	/**
+	 * Ratio of the highest to the mean utilization of the current subtasks.
+	 */
+	protected final double loadSkew;
+
+	/**
+	 * Mean fraction of time the current subtasks have waited for input.
+	 */
+	protected final double inputBlockedFraction;
+
+	/**
+	 * Ratio of measured to predicted queue wait at the current parallelism.
+	 */
+	protected final double theoreticalFittingFactor;
+
+	protected double fittingFactor;
 
 	protected final int lowerBoundParallelism;
 
@@ -28,18 +56,37 @@ public abstract class GG1Server {
 
 	public GG1Server(JobVertexID groupVertexID, int minSubtasks,
 			int maxSubtasks, QosGroupEdgeSummary edgeSummary) {
+		this(groupVertexID, minSubtasks, maxSubtasks, edgeSummary,
+				getMeasuredLambdaTotal(edgeSummary));
+	}
+
+	/**
+	 * Creates a server that plans parallelism for the given (e.g. forecast)
+	 * total arrival rate. The fitting factor is still determined from the
+	 * measured arrival rate, because the measured queueing latency has been
+	 * caused by it.
+	 */
+	public GG1Server(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary,
+			double plannedLambdaTotal) {
 		this.groupVertexID = groupVertexID;
 
 		// measured values
-		lambdaTotal = edgeSummary.getMeanEmissionRate()
-				* edgeSummary.getActiveEmitterVertices();
+		measuredLambdaTotal = getMeasuredLambdaTotal(edgeSummary);
 		p = edgeSummary.getActiveConsumerVertices();
-		S = edgeSummary.getMeanConsumerVertexLatency() / 1000;
+		// time spent waiting for downstream consumers is not service time,
+		// because it is not reduced by adding subtasks to this group vertex
+		S = edgeSummary.getMeanConsumerVertexServiceTime() / 1000;
 		cS = edgeSummary.getMeanConsumerVertexLatencyCV();
 		cA = edgeSummary.getMeanConsumerVertexInterarrivalTimeCV();
-		
-		double theoreticalFittingFactor = (edgeSummary.getTransportLatencyMean() / 1000)
-				/ getQueueWaitUnfitted(p);
+		loadSkew = edgeSummary.getConsumerVertexUtilizationSkew();
+		inputBlockedFraction = edgeSummary
+				.getMeanConsumerVertexInputBlockedFraction();
+
+		lambdaTotal = plannedLambdaTotal;
+
+		theoreticalFittingFactor = (edgeSummary.getTransportLatencyMean() / 1000)
+				/ getQueueWaitUnfittedAtUtilization(p, getCurrentMeanUtilization());
 
 		if(theoreticalFittingFactor < StreamPluginConfig.getElasticScalingMinFittingFactor()) {
 			fittingFactor = StreamPluginConfig.getElasticScalingMinFittingFactor();
@@ -49,20 +96,39 @@ public abstract class GG1Server {
 			fittingFactor = theoreticalFittingFactor;
 		}
 
-		int pWithMaxAllowedUtil = (int) Math.ceil(lambdaTotal * S / MAX_UTILIZATION);
+		int pWithMaxAllowedUtil = (int) Math.ceil(lambdaTotal * S
+				* getPeakUtilizationFactor() / MAX_UTILIZATION);
 		lowerBoundParallelism = Math.min(Math.max(pWithMaxAllowedUtil, minSubtasks), maxSubtasks);
 		upperBoundParallelism = maxSubtasks;
 	}
 
+	public static double getMeasuredLambdaTotal(QosGroupEdgeSummary edgeSummary) {
+		return edgeSummary.getMeanEmissionRate()
+				* edgeSummary.getActiveEmitterVertices();
+	}
+
 	public JobVertexID getGroupVertexID() {
 		return groupVertexID;
 	}
 
 	protected abstract double getQueueWaitUnfitted(int newP, double rho);
+
+	/**
+	 * Returns the factor by which the utilization of the most loaded subtask
+	 * exceeds the mean utilization, as assumed by the model. Parallelism is
+	 * bounded from below, so that the most loaded subtask does not exceed
+	 * {@link #MAX_UTILIZATION}. This method is invoked from the constructor
+	 * and must only use fields of this class.
+	 */
+	protected double getPeakUtilizationFactor() {
+		return 1;
+	}
 	
 	private double getQueueWaitUnfitted(int newP) {
-		double rho = getMeanUtilization(newP);
+		return getQueueWaitUnfittedAtUtilization(newP, getMeanUtilization(newP));
+	}
 
+	private double getQueueWaitUnfittedAtUtilization(int newP, double rho) {
 		if (rho < 1) {
 			return getQueueWaitUnfitted(newP, rho);
 		} else {
@@ -100,8 +166,24 @@ public abstract class GG1Server {
 		return S * lambdaTotal / newP;
 	}
 	
+	/**
+	 * @return the mean utilization at the current parallelism and the
+	 *         measured (not the planned) arrival rate.
+	 */
 	public double getCurrentMeanUtilization() {
-		return getMeanUtilization(p);
+		return S * measuredLambdaTotal / p;
+	}
+
+	public double getInputBlockedFraction() {
+		return inputBlockedFraction;
+	}
+
+	public double getMeasuredLambdaTotal() {
+		return measuredLambdaTotal;
+	}
+
+	public double getPlannedLambdaTotal() {
+		return lambdaTotal;
 	}
 	
 	/**
@@ -182,8 +264,22 @@ public abstract class GG1Server {
 		
 		double x = (a / queueWaitThreshold) + b;
 		
-		return (int) Math.min(upperBoundParallelism,
+		int ret = (int) Math.min(upperBoundParallelism,
 				Math.max(lowerBoundParallelism, Math.floor(x + 1)));
+
+		// x is exact for the Kingman formula; other models only use it as
+		// an initial guess
+		while (ret < upperBoundParallelism
+				&& getQueueWait(ret) > queueWaitThreshold) {
+			ret++;
+		}
+
+		while (ret > lowerBoundParallelism
+				&& getQueueWait(ret - 1) <= queueWaitThreshold) {
+			ret--;
+		}
+
+		return ret;
 	}
 	
 	public boolean isElastic() {
@@ -0,0 +1,22 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
+
+/**
+ * Kingman formula with a fitting factor that is learned online over past
+ * adjustment intervals by a {@link FittingFactorEstimator}, instead of being
+ * fitted to the current measurement only. The estimator must be kept across
+ * adjustment intervals by the caller.
+ */
+public class GG1ServerFitted extends GG1ServerKingman {
+
+	public GG1ServerFitted(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary,
+			double plannedLambdaTotal, FittingFactorEstimator estimator) {
+		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary,
+				plannedLambdaTotal);
+
+		fittingFactor = estimator.addObservation(theoreticalFittingFactor);
+	}
+}
@@ -14,7 +14,13 @@ public class GG1ServerKLB extends GG1ServerKingman {
 	public GG1ServerKLB(JobVertexID groupVertexID, int minSubtasks,
 			int maxSubtasks, QosGroupEdgeSummary edgeSummary) {
 		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary);
-		// TODO Auto-generated constructor stub
+	}
+
+	public GG1ServerKLB(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary,
+			double plannedLambdaTotal) {
+		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary,
+				plannedLambdaTotal);
 	}
 
 	@Override
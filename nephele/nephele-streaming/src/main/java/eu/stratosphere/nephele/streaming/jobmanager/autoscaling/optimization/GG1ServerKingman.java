@@ -16,6 +16,13 @@ public class GG1ServerKingman extends GG1Server {
 		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary);
 	}
 
+	public GG1ServerKingman(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary,
+			double plannedLambdaTotal) {
+		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary,
+				plannedLambdaTotal);
+	}
+
 	protected double getQueueWaitUnfitted(int newP, double rho) {
 		double left = rho * S / (1 - rho);
 		double right = ((cA * cA) + (cS * cS)) / 2;
@@ -0,0 +1,43 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
+
+/**
+ * Applies the Kingman formula to the most loaded subtask of a group vertex,
+ * instead of to a subtask with mean load. The ratio of highest to mean
+ * subtask utilization is measured at the current parallelism and assumed to
+ * stay the same at other degrees of parallelism, which is the case if load
+ * is unevenly partitioned by key. Since the waiting time of the most loaded
+ * subtask is an upper bound on the mean, this model is conservative when
+ * load is skewed and equal to {@link GG1ServerKingman} otherwise.
+ */
+public class GG1ServerSkewAware extends GG1ServerKingman {
+
+	public GG1ServerSkewAware(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary) {
+		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary);
+	}
+
+	public GG1ServerSkewAware(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary,
+			double plannedLambdaTotal) {
+		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary,
+				plannedLambdaTotal);
+	}
+
+	@Override
+	protected double getPeakUtilizationFactor() {
+		return loadSkew;
+	}
+
+	@Override
+	protected double getQueueWaitUnfitted(int newP, double rho) {
+		double peakRho = rho * loadSkew;
+
+		if (peakRho >= 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return super.getQueueWaitUnfitted(newP, peakRho);
+	}
+}
@@ -0,0 +1,51 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
+
+/**
+ * Implements the Allen-Cunneen approximation for G/G/c queueing systems,
+ * which models the subtasks of a group vertex as c servers sharing a single
+ * queue. This is appropriate when records are dispatched to whichever
+ * subtask can take them (e.g. with load-aware channel selection), rather
+ * than partitioned up front. Unlike the G/G/1 formulas, it remains accurate
+ * at high utilization with many subtasks.
+ */
+public class GGcServerAllenCunneen extends GG1Server {
+
+	public GGcServerAllenCunneen(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary) {
+		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary);
+	}
+
+	public GGcServerAllenCunneen(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary,
+			double plannedLambdaTotal) {
+		super(groupVertexID, minSubtasks, maxSubtasks, edgeSummary,
+				plannedLambdaTotal);
+	}
+
+	@Override
+	protected double getQueueWaitUnfitted(int newP, double rho) {
+		double erlangC = computeErlangC(newP, rho);
+		double mmcQueueWait = erlangC * S / (newP * (1 - rho));
+
+		return mmcQueueWait * ((cA * cA) + (cS * cS)) / 2;
+	}
+
+	/**
+	 * Computes the probability that an arriving record has to wait in an
+	 * M/M/c system with c servers of the given utilization (Erlang C), using
+	 * the numerically stable recursion of the Erlang B formula.
+	 */
+	static double computeErlangC(int c, double rho) {
+		double offeredLoad = c * rho;
+
+		double erlangB = 1;
+		for (int k = 1; k <= c; k++) {
+			erlangB = offeredLoad * erlangB / (k + offeredLoad * erlangB);
+		}
+
+		return erlangB / (1 - rho * (1 - erlangB));
+	}
+}
@@ -0,0 +1,143 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.execution.ExecutionState;
+import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
+import eu.stratosphere.nephele.executiongraph.ExecutionGroupEdge;
+import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
+import eu.stratosphere.nephele.instance.AbstractInstance;
+import eu.stratosphere.nephele.io.DistributionPattern;
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.StreamingPluginLoader;
+import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
+import eu.stratosphere.nephele.streaming.message.QosMessageBatch;
+import eu.stratosphere.nephele.streaming.message.action.SetKeyGroupParallelismAction;
+
+/**
+ * Announces the parallelism of rescaled group vertices to the running
+ * producer subtasks of their bipartite input edges, before the new subtasks are
+ * started or the removed subtasks are suspended (see
+ * {@link eu.stratosphere.nephele.io.KeyGroupChannelSelector#announceParallelism(long, int)}).
+ * Each announcement carries a version, which increases with each wave, so
+ * that producers drop announcements that have been overtaken. The actual
+ * parallelism after the wave is announced again if it differs from the
+ * expected one.
+ *
+ * Producer subtasks that are started later have not received the
+ * announcement, and follow the number of their active output channels.
+ */
+public class KeyGroupParallelismAnnouncer implements ParallelismChangeListener {
+
+	private static final Log LOG = LogFactory
+			.getLog(KeyGroupParallelismAnnouncer.class);
+
+	private final ExecutionGraph execGraph;
+
+	/**
+	 * The parallelism last announced for each group vertex.
+	 */
+	private final Map<JobVertexID, Integer> announcedParallelism = new HashMap<JobVertexID, Integer>();
+
+	private long version;
+
+	public KeyGroupParallelismAnnouncer(ExecutionGraph execGraph) {
+		this.execGraph = execGraph;
+		this.version = 0;
+	}
+
+	@Override
+	public void parallelismChanging(
+			Map<JobVertexID, Integer> currentParallelism,
+			Map<JobVertexID, Integer> expectedParallelism) {
+		announce(currentParallelism, expectedParallelism);
+	}
+
+	@Override
+	public void parallelismChanged(Map<JobVertexID, Integer> oldParallelism,
+			Map<JobVertexID, Integer> newParallelism) {
+		announce(oldParallelism, newParallelism);
+	}
+
+	private synchronized void announce(Map<JobVertexID, Integer> oldParallelism,
+			Map<JobVertexID, Integer> newParallelism) {
+
+		Map<AbstractInstance, List<AbstractSerializableQosMessage>> actions = new HashMap<AbstractInstance, List<AbstractSerializableQosMessage>>();
+		long nextVersion = this.version + 1;
+
+		for (Map.Entry<JobVertexID, Integer> entry : newParallelism.entrySet()) {
+			Integer announced = this.announcedParallelism.get(entry.getKey());
+			if (announced == null) {
+				announced = oldParallelism.get(entry.getKey());
+			}
+			if (entry.getValue().equals(announced)) {
+				continue;
+			}
+
+			ExecutionGroupVertex consumer = this.execGraph
+					.getExecutionGroupVertex(entry.getKey());
+			if (consumer != null) {
+				addActions(consumer, entry.getValue(), nextVersion, actions);
+			}
+			this.announcedParallelism.put(entry.getKey(), entry.getValue());
+		}
+
+		if (actions.isEmpty()) {
+			return;
+		}
+		this.version = nextVersion;
+
+		for (Map.Entry<AbstractInstance, List<AbstractSerializableQosMessage>> entry : actions
+				.entrySet()) {
+			try {
+				entry.getKey().sendData(StreamingPluginLoader.STREAMING_PLUGIN_ID,
+						new QosMessageBatch(entry.getValue()));
+			} catch (IOException e) {
+				LOG.warn("Failed to announce key group parallelism: "
+						+ e.getMessage());
+			}
+		}
+	}
+
+	private void addActions(ExecutionGroupVertex consumer, int parallelism,
+			long version,
+			Map<AbstractInstance, List<AbstractSerializableQosMessage>> actions) {
+
+		for (int i = 0; i < consumer.getNumberOfBackwardLinks(); i++) {
+			ExecutionGroupEdge edge = consumer.getBackwardEdge(i);
+			if (edge.getDistributionPattern() != DistributionPattern.BIPARTITE) {
+				continue;
+			}
+
+			ExecutionGroupVertex producer = edge.getSourceVertex();
+			for (int j = 0; j < producer.getCurrentNumberOfGroupMembers(); j++) {
+				ExecutionVertex vertex = producer.getGroupMember(j);
+				if (vertex.getExecutionState() != ExecutionState.RUNNING) {
+					continue;
+				}
+
+				AbstractInstance instance = vertex.getAllocatedResource()
+						.getInstance();
+				List<AbstractSerializableQosMessage> instanceActions = actions
+						.get(instance);
+				if (instanceActions == null) {
+					instanceActions = new LinkedList<AbstractSerializableQosMessage>();
+					actions.put(instance, instanceActions);
+				}
+
+				instanceActions.add(new SetKeyGroupParallelismAction(
+						this.execGraph.getJobID(), vertex.getID(), vertex
+								.getOutputGate(edge.getIndexOfOutputGate())
+								.getGateID(), parallelism, version));
+			}
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+
+/**
+ * Computes the parallelism of group vertices so that the queue waits of
+ * several latency constraints are enforced at once with minimal total
+ * parallelism. In contrast to running one {@link Rebalancer} per constraint
+ * and taking the maximum parallelism per group vertex, group vertices shared
+ * by several constraints are accounted for only once: adding a subtask to a
+ * shared group vertex reduces the queue wait of all constraints that contain
+ * it.
+ *
+ * The optimization is a greedy marginal gain search. Starting at the lower
+ * bounds, the parallelism of the group vertex with the largest combined queue
+ * wait reduction (over all constraints whose queue wait is still too high) is
+ * increased by one, until all constraints are satisfied. The reduction
+ * credited to each constraint is capped at its remaining excess queue wait,
+ * so that nearly satisfied constraints do not dominate the choice.
+ *
+ * Constraints that cannot be satisfied even at the upper bounds are given the
+ * upper bound parallelism for all their group vertices (as done by
+ * {@link Rebalancer}) and are not considered during the search.
+ */
+public class MultiConstraintRebalancer {
+
+	private final ArrayList<ArrayList<GG1Server>> constraintServers = new ArrayList<ArrayList<GG1Server>>();
+
+	private final ArrayList<Double> maxTotalQueueWaits = new ArrayList<Double>();
+
+	private final HashMap<JobVertexID, Integer> minimumParallelism = new HashMap<JobVertexID, Integer>();
+
+	private final Map<JobVertexID, Integer> rebalancedParallelism = new HashMap<JobVertexID, Integer>();
+
+	private final HashMap<JobVertexID, Integer> scalingActions = new HashMap<JobVertexID, Integer>();
+
+	private final ArrayList<Double> rebalancedQueueWaits = new ArrayList<Double>();
+
+	private final ArrayList<Boolean> feasible = new ArrayList<Boolean>();
+
+	private int rebalancedParallelismCost;
+
+	/**
+	 * Adds a constraint with the given (elastic) servers, whose total queue
+	 * wait must not exceed the given threshold.
+	 *
+	 * @return the index of the constraint, by which its results can be
+	 *         retrieved.
+	 */
+	public int addConstraint(ArrayList<GG1Server> servers,
+			double maxTotalQueueWaitMillis) {
+
+		this.constraintServers.add(servers);
+		this.maxTotalQueueWaits.add(maxTotalQueueWaitMillis / 1000);
+		return this.constraintServers.size() - 1;
+	}
+
+	/**
+	 * Raises the lower bound of the given group vertex's parallelism, e.g.
+	 * because it has already been chosen to resolve a bottleneck.
+	 */
+	public void setMinimumParallelism(JobVertexID groupVertexID,
+			int parallelism) {
+		this.minimumParallelism.put(groupVertexID, parallelism);
+	}
+
+	/**
+	 * @return true if all constraints could be satisfied, false otherwise.
+	 */
+	public boolean computeRebalancedParallelism() {
+		LinkedHashMap<JobVertexID, Integer> vertexIndices = new LinkedHashMap<JobVertexID, Integer>();
+		int[][] constraintVertices = indexVertices(vertexIndices);
+		int noOfVertices = vertexIndices.size();
+
+		int[] lower = new int[noOfVertices];
+		int[] upper = new int[noOfVertices];
+		int[] current = new int[noOfVertices];
+		computeBounds(constraintVertices, lower, upper, current);
+
+		int[] p = new int[noOfVertices];
+		System.arraycopy(lower, 0, p, 0, noOfVertices);
+
+		boolean[] active = new boolean[this.constraintServers.size()];
+		boolean allFeasible = true;
+		for (int c = 0; c < this.constraintServers.size(); c++) {
+			active[c] = computeQueueWait(c, constraintVertices[c], upper) <= this.maxTotalQueueWaits
+					.get(c);
+
+			if (!active[c]) {
+				allFeasible = false;
+				for (int v : constraintVertices[c]) {
+					p[v] = upper[v];
+				}
+			}
+		}
+
+		double[] excess = new double[this.constraintServers.size()];
+		while (computeExcess(constraintVertices, active, p, excess)) {
+			int bestVertex = -1;
+			double bestGain = 0;
+
+			for (int v = 0; v < noOfVertices; v++) {
+				if (p[v] >= upper[v]) {
+					continue;
+				}
+
+				double gain = computeGain(v, constraintVertices, excess, p);
+				if (gain > bestGain) {
+					bestGain = gain;
+					bestVertex = v;
+				}
+			}
+
+			if (bestVertex == -1) {
+				// cannot happen for feasible constraints with monotonously
+				// decreasing queue waits, but better safe than sorry
+				allFeasible = false;
+				break;
+			}
+
+			p[bestVertex]++;
+		}
+
+		setRebalancedParallelism(vertexIndices, constraintVertices, p, current);
+		return allFeasible;
+	}
+
+	private int[][] indexVertices(
+			LinkedHashMap<JobVertexID, Integer> vertexIndices) {
+
+		int[][] constraintVertices = new int[this.constraintServers.size()][];
+
+		for (int c = 0; c < this.constraintServers.size(); c++) {
+			ArrayList<GG1Server> servers = this.constraintServers.get(c);
+			constraintVertices[c] = new int[servers.size()];
+
+			for (int i = 0; i < servers.size(); i++) {
+				JobVertexID id = servers.get(i).getGroupVertexID();
+				Integer index = vertexIndices.get(id);
+				if (index == null) {
+					index = vertexIndices.size();
+					vertexIndices.put(id, index);
+				}
+				constraintVertices[c][i] = index;
+			}
+		}
+
+		return constraintVertices;
+	}
+
+	private void computeBounds(int[][] constraintVertices, int[] lower,
+			int[] upper, int[] current) {
+
+		for (int v = 0; v < lower.length; v++) {
+			lower[v] = 0;
+			upper[v] = Integer.MAX_VALUE;
+		}
+
+		for (int c = 0; c < this.constraintServers.size(); c++) {
+			ArrayList<GG1Server> servers = this.constraintServers.get(c);
+
+			for (int i = 0; i < servers.size(); i++) {
+				GG1Server server = servers.get(i);
+				int v = constraintVertices[c][i];
+
+				lower[v] = Math.max(lower[v], server.getLowerBoundParallelism());
+				upper[v] = Math.min(upper[v], server.getUpperBoundParallelism());
+				current[v] = server.getCurrentParallelism();
+
+				Integer minimum = this.minimumParallelism.get(server
+						.getGroupVertexID());
+				if (minimum != null) {
+					lower[v] = Math.max(lower[v], minimum);
+				}
+			}
+		}
+
+		for (int v = 0; v < lower.length; v++) {
+			lower[v] = Math.min(lower[v], upper[v]);
+		}
+	}
+
+	/**
+	 * Computes the excess queue wait of all active constraints.
+	 *
+	 * @return whether any active constraint has excess queue wait.
+	 */
+	private boolean computeExcess(int[][] constraintVertices,
+			boolean[] active, int[] p, double[] excess) {
+
+		boolean hasExcess = false;
+		for (int c = 0; c < this.constraintServers.size(); c++) {
+			excess[c] = 0;
+			if (active[c]) {
+				excess[c] = computeQueueWait(c, constraintVertices[c], p)
+						- this.maxTotalQueueWaits.get(c);
+				hasExcess |= excess[c] > 0;
+			}
+		}
+		return hasExcess;
+	}
+
+	/**
+	 * Computes by how much the excess queue wait of the constraints would be
+	 * reduced, if the parallelism of the given vertex was increased by one.
+	 */
+	private double computeGain(int vertex, int[][] constraintVertices,
+			double[] excess, int[] p) {
+
+		double gain = 0;
+		for (int c = 0; c < this.constraintServers.size(); c++) {
+			if (excess[c] <= 0) {
+				continue;
+			}
+
+			ArrayList<GG1Server> servers = this.constraintServers.get(c);
+			for (int i = 0; i < servers.size(); i++) {
+				if (constraintVertices[c][i] != vertex) {
+					continue;
+				}
+
+				GG1Server server = servers.get(i);
+				double reduction = server.getQueueWait(p[vertex])
+						- server.getQueueWait(p[vertex] + 1);
+				if (!Double.isNaN(reduction)) {
+					gain += Math.min(excess[c], reduction);
+				}
+			}
+		}
+		return gain;
+	}
+
+	private double computeQueueWait(int constraint, int[] vertices, int[] p) {
+		ArrayList<GG1Server> servers = this.constraintServers.get(constraint);
+
+		double totalQueueWait = 0;
+		for (int i = 0; i < servers.size(); i++) {
+			totalQueueWait += servers.get(i).getQueueWait(p[vertices[i]]);
+		}
+		return totalQueueWait;
+	}
+
+	private void setRebalancedParallelism(
+			LinkedHashMap<JobVertexID, Integer> vertexIndices,
+			int[][] constraintVertices, int[] p, int[] current) {
+
+		this.rebalancedParallelismCost = 0;
+		for (Map.Entry<JobVertexID, Integer> entry : vertexIndices.entrySet()) {
+			int v = entry.getValue();
+			this.rebalancedParallelism.put(entry.getKey(), p[v]);
+			this.rebalancedParallelismCost += p[v];
+
+			if (p[v] != current[v]) {
+				this.scalingActions.put(entry.getKey(), p[v] - current[v]);
+			}
+		}
+
+		for (int c = 0; c < this.constraintServers.size(); c++) {
+			double queueWait = computeQueueWait(c, constraintVertices[c], p);
+			this.rebalancedQueueWaits.add(queueWait);
+			this.feasible.add(queueWait <= this.maxTotalQueueWaits.get(c));
+		}
+	}
+
+	public Map<JobVertexID, Integer> getRebalancedParallelism() {
+		return this.rebalancedParallelism;
+	}
+
+	public Map<JobVertexID, Integer> getScalingActions() {
+		return this.scalingActions;
+	}
+
+	public int getRebalancedParallelismCost() {
+		return this.rebalancedParallelismCost;
+	}
+
+	public int getNoOfConstraints() {
+		return this.constraintServers.size();
+	}
+
+	public double getMaxTotalQueueWait(int constraint) {
+		return this.maxTotalQueueWaits.get(constraint);
+	}
+
+	public double getRebalancedQueueWait(int constraint) {
+		return this.rebalancedQueueWaits.get(constraint);
+	}
+
+	public boolean isSatisfied(int constraint) {
+		return this.feasible.get(constraint);
+	}
+}
@@ -0,0 +1,48 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import java.util.Map;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+
+/**
+ * Is notified by the {@link ScalingActuator} before and after a wave of
+ * scaling actions is executed. Since the assignment of key groups to the
+ * consumer subtasks of a key-partitioned edge only depends on the number of
+ * key groups and the consumer's parallelism (see
+ * {@link eu.stratosphere.nephele.io.KeyGroupAssignment}), this announces the
+ * new key group assignment of all edges into the rescaled group vertices,
+ * e.g. in order to tell the producers (see {@link KeyGroupParallelismAnnouncer})
+ * or to migrate the per-key state of moved key groups.
+ */
+public interface ParallelismChangeListener {
+
+	/**
+	 * Is invoked before a wave of scaling actions is executed, i.e. before the
+	 * new subtasks are started or the removed subtasks are suspended. Both
+	 * maps contain the parallelism of all group vertices of the job.
+	 *
+	 * @param currentParallelism
+	 *            The parallelism before the wave of scaling actions.
+	 * @param expectedParallelism
+	 *            The parallelism the wave of scaling actions is expected to
+	 *            reach.
+	 */
+	void parallelismChanging(Map<JobVertexID, Integer> currentParallelism,
+			Map<JobVertexID, Integer> expectedParallelism);
+
+	/**
+	 * Both maps contain the parallelism of all group vertices of the job, and
+	 * are consistent snapshots from before and after the wave of scaling
+	 * actions. Group vertices whose parallelism has changed are announced
+	 * together, with a single invocation per wave. The parallelism after the
+	 * wave may differ from the expected one, e.g. if subtasks on the scaling
+	 * path of another group vertex have been started or suspended as well.
+	 *
+	 * @param oldParallelism
+	 *            The parallelism before the wave of scaling actions.
+	 * @param newParallelism
+	 *            The parallelism after the wave of scaling actions.
+	 */
+	void parallelismChanged(Map<JobVertexID, Integer> oldParallelism,
+			Map<JobVertexID, Integer> newParallelism);
+}
@@ -0,0 +1,110 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.jobgraph.AbstractJobVertex;
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
+import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
+
+/**
+ * The queueing models available to elastic scaling. The model of a group
+ * vertex can be chosen with {@link #setForJobVertex(AbstractJobVertex)}, or
+ * globally with {@link StreamPluginConfig#QOSMANAGER_SCALING_QUEUEING_MODEL_KEY}.
+ */
+public enum QueueingModel {
+
+	/**
+	 * See {@link GG1ServerKingman}.
+	 */
+	KINGMAN,
+
+	/**
+	 * See {@link GG1ServerKLB}.
+	 */
+	KLB,
+
+	/**
+	 * See {@link GGcServerAllenCunneen}.
+	 */
+	ALLEN_CUNNEEN,
+
+	/**
+	 * See {@link GG1ServerSkewAware}.
+	 */
+	SKEW_AWARE,
+
+	/**
+	 * See {@link GG1ServerFitted}.
+	 */
+	FITTED;
+
+	private static final Log LOG = LogFactory.getLog(QueueingModel.class);
+
+	/**
+	 * Key in the job vertex configuration that holds the name of the
+	 * queueing model of the job vertex.
+	 */
+	public static final String JOB_VERTEX_CONFIG_KEY = "streaming.qosmanager.scaling.queueing_model";
+
+	/**
+	 * Creates a server that models the given group vertex.
+	 *
+	 * @param estimator
+	 *            The fitting factor estimator of the group vertex, which is
+	 *            only used by {@link #FITTED}.
+	 */
+	public GG1Server createServer(JobVertexID groupVertexID, int minSubtasks,
+			int maxSubtasks, QosGroupEdgeSummary edgeSummary,
+			double plannedLambdaTotal, FittingFactorEstimator estimator) {
+
+		switch (this) {
+		case KLB:
+			return new GG1ServerKLB(groupVertexID, minSubtasks, maxSubtasks,
+					edgeSummary, plannedLambdaTotal);
+		case ALLEN_CUNNEEN:
+			return new GGcServerAllenCunneen(groupVertexID, minSubtasks,
+					maxSubtasks, edgeSummary, plannedLambdaTotal);
+		case SKEW_AWARE:
+			return new GG1ServerSkewAware(groupVertexID, minSubtasks,
+					maxSubtasks, edgeSummary, plannedLambdaTotal);
+		case FITTED:
+			return new GG1ServerFitted(groupVertexID, minSubtasks,
+					maxSubtasks, edgeSummary, plannedLambdaTotal, estimator);
+		default:
+			return new GG1ServerKingman(groupVertexID, minSubtasks,
+					maxSubtasks, edgeSummary, plannedLambdaTotal);
+		}
+	}
+
+	/**
+	 * Selects this queueing model for the given job vertex.
+	 */
+	public void setForJobVertex(AbstractJobVertex jobVertex) {
+		jobVertex.getConfiguration().setString(JOB_VERTEX_CONFIG_KEY, name());
+	}
+
+	/**
+	 * Returns the queueing model selected in the given job vertex
+	 * configuration, or the globally configured one if none has been
+	 * selected.
+	 */
+	public static QueueingModel fromJobVertexConfiguration(
+			Configuration jobVertexConfig) {
+
+		String globalModel = StreamPluginConfig.getElasticScalingQueueingModel();
+		String model = jobVertexConfig.getString(JOB_VERTEX_CONFIG_KEY,
+				globalModel);
+
+		try {
+			return valueOf(model.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			LOG.warn(String.format(
+					"Unknown queueing model %s, using %s instead", model,
+					KINGMAN));
+			return KINGMAN;
+		}
+	}
+}
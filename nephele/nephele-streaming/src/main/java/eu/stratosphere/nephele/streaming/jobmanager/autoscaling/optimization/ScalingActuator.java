@@ -3,9 +3,11 @@ package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
 import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
 import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
 import eu.stratosphere.nephele.executiongraph.ExecutionStage;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.jobgraph.JobVertexID;
 import eu.stratosphere.nephele.jobmanager.JobManager;
+import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -13,12 +15,25 @@ import java.util.*;
 import java.util.concurrent.*;
 
 /**
- * This class essentially wraps a queue of scaling actions and a thread that executes
- * the scaling actions. Scale-Ups are executed in batch, while scale-downs are executed one-by-one.
- * Via {@link #recomputeScalingActions()}, this class offers the implicit possibility to
- * cancel previously enqueued scaling actions. This is useful when you are doing a lot of scale-downs
- * (which may take a long time to complete), but halfway through the scale-down you decide that you
- * have to scale-up again (e.g. because input rate has changed).
+ * This class essentially wraps the target parallelism of group vertices and a thread that
+ * executes the scaling actions required to reach it. All pending scale-ups are executed in a
+ * single deployment wave. Scale-downs are executed one subtask at a time per group vertex, but
+ * concurrently for group vertices whose scaling paths do not depend on each other. Since the
+ * remaining scaling actions are recomputed after each wave, this class offers the implicit
+ * possibility to cancel previously requested scaling actions. This is useful when you are doing
+ * a lot of scale-downs (which may take a long time to complete), but halfway through the
+ * scale-down you decide that you have to scale-up again (e.g. because input rate has changed).
+ * <p/>
+ * After a scale-up, the actuator cools down until the new subtasks have been running for a full
+ * adjustment interval. Target parallelism received during the cooldown is based on measurements
+ * from before the scale-up and is discarded, so the actuator only acts on target parallelism
+ * computed from measurements that include the new subtasks.
+ * <p/>
+ * Before each wave, the parallelism it is expected to reach is announced to the registered
+ * {@link ParallelismChangeListener}s, so that the producers of key-partitioned edges can switch
+ * to the new key group assignment before the new subtasks are started or the removed subtasks
+ * are suspended. After each wave, the actual new parallelism of all group vertices is announced
+ * at once.
  * <p/>
  * Created by Bjoern Lohrmann on 12/14/14.
  */
@@ -26,51 +41,76 @@ public class ScalingActuator {
 
 	private static final Log LOG = LogFactory.getLog(ScalingActuator.class);
 
-	private class
-					ScalingAction {
-		final JobVertexID vertexId;
-		final int action;
-
-		private ScalingAction(JobVertexID vertexID, int action) {
-			this.vertexId = vertexID;
-			this.action = action;
-		}
-	}
-
-	private final Queue<ScalingAction> actionQueue = new LinkedList<ScalingAction>();
+	/**
+	 * Number of adjustment intervals after job start, during which no scaling actions
+	 * are executed.
+	 */
+	public static final int INITIAL_COOLDOWN_INTERVALS = 8;
 
 	private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
+	private final ExecutorService scaleDownExecutor = Executors.newCachedThreadPool();
+
 	private final Map<JobVertexID, Integer> currentParallelism = new HashMap<JobVertexID, Integer>();
 
 	private final Map<JobVertexID, Integer> targetParallelism = new HashMap<JobVertexID, Integer>();
 
 	private final Map<JobVertexID, Integer> vertexTopologicalScores;
 
+	/**
+	 * The parallelism last announced to the parallelism change listeners.
+	 */
+	private Map<JobVertexID, Integer> announcedParallelism;
+
+	private final List<ParallelismChangeListener> parallelismChangeListeners = new CopyOnWriteArrayList<ParallelismChangeListener>();
+
+	/**
+	 * For each group vertex, the group vertices whose subtasks are on the scaling paths of
+	 * its subtasks. Group vertices are independent if neither is on the other's scaling paths.
+	 */
+	private final Map<JobVertexID, Set<JobVertexID>> scalingPathGroupVertices = new HashMap<JobVertexID, Set<JobVertexID>>();
+
+	private final ExecutionGraph execGraph;
+
 	private final JobID jobId;
 
 	private final JobManager jm;
 
+	private final long adjustmentIntervalMillis;
+
 	private final Future<?> scalingExecutorFuture;
 
-	private volatile CountDownLatch cooldownLatch;
+	/**
+	 * Target parallelism received before this point in time is based on measurements
+	 * from before the last scale-up and is discarded.
+	 */
+	private long cooldownDeadline;
+
+	/**
+	 * Whether target parallelism has been received after the cooldown deadline.
+	 */
+	private boolean hasFreshTargets;
 
 	public ScalingActuator(ExecutionGraph execGraph, Map<JobVertexID, Integer> vertexTopologicalScores) {
+		this.execGraph = execGraph;
 		this.jobId = execGraph.getJobID();
 		this.jm = JobManager.getInstance();
 		this.vertexTopologicalScores = vertexTopologicalScores;
-		this.cooldownLatch = new CountDownLatch(8);
+		this.adjustmentIntervalMillis = StreamPluginConfig.getAdjustmentIntervalMillis();
+		this.cooldownDeadline = System.currentTimeMillis() + INITIAL_COOLDOWN_INTERVALS * adjustmentIntervalMillis;
+		this.hasFreshTargets = false;
 
 		fillCurrentAndTargetParallelism(execGraph);
+		fillScalingPathGroupVertices(execGraph);
+		this.announcedParallelism = Collections.unmodifiableMap(new HashMap<JobVertexID, Integer>(currentParallelism));
 
 		scalingExecutorFuture = this.executor.submit(new Runnable() {
 			@Override
 			public void run() {
 				try {
 					while (!scalingExecutorFuture.isCancelled()) {
-						cooldownLatch.await();
-						int newCooldown = executeQueuedScalingActions();
-						cooldownLatch = new CountDownLatch(newCooldown);
+						awaitFreshTargets();
+						executeScalingActions();
 					}
 				} catch (InterruptedException e) {
 					// do nothing
@@ -99,14 +139,166 @@ public class ScalingActuator {
 		}
 	}
 
+	private void fillScalingPathGroupVertices(ExecutionGraph execGraph) {
+		ExecutionStage currStage = execGraph.getCurrentExecutionStage();
+		for (int i = 0; i < currStage.getNumberOfStageMembers(); i++) {
+			ExecutionGroupVertex groupVertex = currStage.getStageMember(i);
+			Set<JobVertexID> onScalingPath = new HashSet<JobVertexID>();
+
+			if (groupVertex.hasElasticNumberOfRunningSubtasks()) {
+				for (int j = 0; j < groupVertex.getCurrentNumberOfGroupMembers(); j++) {
+					for (ExecutionVertex vertex : groupVertex.getGroupMember(j).findAllVerticesOnScalingPath()) {
+						onScalingPath.add(vertex.getGroupVertex().getJobVertexID());
+					}
+				}
+			}
+			onScalingPath.add(groupVertex.getJobVertexID());
+
+			scalingPathGroupVertices.put(groupVertex.getJobVertexID(), onScalingPath);
+		}
+	}
+
 	public synchronized void updateScalingActions(Map<JobVertexID, Integer> newParallelism) {
+		if (System.currentTimeMillis() < cooldownDeadline) {
+			return;
+		}
+
 		targetParallelism.putAll(newParallelism);
-		recomputeScalingActions();
-		cooldownLatch.countDown();
+		hasFreshTargets = true;
+		this.notifyAll();
+	}
+
+	private synchronized void awaitFreshTargets() throws InterruptedException {
+		while (!hasFreshTargets) {
+			this.wait();
+		}
+		hasFreshTargets = false;
+	}
+
+	private void executeScalingActions() throws Exception {
+		// scale-ups have priority over scale-downs
+		Map<JobVertexID, Integer> scaleUps = dequeueScaleUps();
+		if (!scaleUps.isEmpty()) {
+			announceExpectedParallelism();
+			jm.scaleUpElasticTasks(jobId, scaleUps);
+
+			synchronized (this) {
+				resyncCurrentParallelism();
+				// targets stored before the scale-up must not be acted upon after the cooldown
+				targetParallelism.putAll(currentParallelism);
+				cooldownDeadline = System.currentTimeMillis() + adjustmentIntervalMillis;
+				hasFreshTargets = false;
+			}
+			announceParallelismChanges();
+			return;
+		}
+
+		List<JobVertexID> scaleDowns;
+		while (!(scaleDowns = dequeueScaleDownWave()).isEmpty()) {
+			announceExpectedParallelism();
+			List<Future<?>> pending = new LinkedList<Future<?>>();
+
+			for (final JobVertexID vertexId : scaleDowns) {
+				pending.add(scaleDownExecutor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						jm.scaleDownElasticTask(jobId, vertexId, 1);
+						return null;
+					}
+				}));
+			}
+
+			try {
+				for (Future<?> future : pending) {
+					future.get();
+				}
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw e;
+			} finally {
+				synchronized (this) {
+					resyncCurrentParallelism();
+				}
+				announceParallelismChanges();
+			}
+
+			if (scalingExecutorFuture.isCancelled() || hasScaleUps()) {
+				// leave remaining scale-downs to the next round, in which
+				// the scale-ups take priority
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Computes the scale-ups of all group vertices required to reach their target
+	 * parallelism and marks them as done. The scale-ups are returned in topological
+	 * order, in which the scheduler processes them.
+	 */
+	private synchronized Map<JobVertexID, Integer> dequeueScaleUps() {
+		Map<JobVertexID, Integer> scaleUps = new LinkedHashMap<JobVertexID, Integer>();
+
+		for (JobVertexID id : getTopologicallySortedVertexIds()) {
+			int diff = targetParallelism.get(id) - currentParallelism.get(id);
+			if (diff > 0) {
+				scaleUps.put(id, diff);
+				currentParallelism.put(id, targetParallelism.get(id));
+			}
+		}
+
+		return scaleUps;
+	}
+
+	private synchronized boolean hasScaleUps() {
+		for (JobVertexID id : targetParallelism.keySet()) {
+			if (targetParallelism.get(id) > currentParallelism.get(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Chooses group vertices (in topological order) that need to be scaled down and
+	 * whose scaling paths are independent of each other, so that each of them can be
+	 * scaled down by one subtask at the same time.
+	 */
+	private synchronized List<JobVertexID> dequeueScaleDownWave() {
+		List<JobVertexID> wave = new LinkedList<JobVertexID>();
+		Set<JobVertexID> blocked = new HashSet<JobVertexID>();
+
+		for (JobVertexID id : getTopologicallySortedVertexIds()) {
+			int diff = targetParallelism.get(id) - currentParallelism.get(id);
+			if (diff >= 0 || blocked.contains(id)) {
+				continue;
+			}
+
+			Set<JobVertexID> onScalingPath = scalingPathGroupVertices.get(id);
+			if (onScalingPath == null) {
+				onScalingPath = Collections.singleton(id);
+			}
+
+			boolean independent = true;
+			for (JobVertexID other : wave) {
+				if (onScalingPath.contains(other)) {
+					independent = false;
+					break;
+				}
+			}
+
+			if (independent) {
+				wave.add(id);
+				blocked.addAll(onScalingPath);
+				currentParallelism.put(id, currentParallelism.get(id) - 1);
+			}
+		}
+
+		return wave;
 	}
 
-	private void recomputeScalingActions() {
-		// enqueue scaling actions in topological order
+	private JobVertexID[] getTopologicallySortedVertexIds() {
 		final JobVertexID[] topoSortedVertexIds = targetParallelism.keySet().toArray(
 						new JobVertexID[targetParallelism.size()]);
 		Arrays.sort(topoSortedVertexIds, new Comparator<JobVertexID>() {
@@ -117,81 +309,88 @@ public class ScalingActuator {
 				return Integer.compare(firstTopoScore, secondTopoScore);
 			}
 		});
+		return topoSortedVertexIds;
+	}
 
-		// refill action queue with topologically sorted scaling actions.
-		// scale-ups have priority over scale-downs
-		actionQueue.clear();
-		for (JobVertexID id : topoSortedVertexIds) {
-			int diff = targetParallelism.get(id) - currentParallelism.get(id);
-			if (diff > 0) {
-				actionQueue.add(new ScalingAction(id, diff));
-			}
-		}
-
-		for (JobVertexID id : topoSortedVertexIds) {
-			int diff = targetParallelism.get(id) - currentParallelism.get(id);
-			if (diff < 0) {
-				for (int i = diff; i < 0; i++) {
-					actionQueue.add(new ScalingAction(id, -1));
-				}
+	/**
+	 * Subtasks may have been started or suspended because they are on the scaling path
+	 * of another group vertex' subtasks, hence the bookkeeping is synchronized with the
+	 * actual number of running subtasks after each wave of scaling actions.
+	 */
+	private void resyncCurrentParallelism() {
+		for (JobVertexID id : currentParallelism.keySet()) {
+			ExecutionGroupVertex groupVertex = execGraph.getExecutionGroupVertex(id);
+			if (groupVertex != null && groupVertex.hasElasticNumberOfRunningSubtasks()) {
+				currentParallelism.put(id, groupVertex.getCurrentElasticNumberOfRunningSubtasks());
 			}
 		}
-		this.notifyAll();
 	}
 
-	private ScalingAction dequeueNextScalingAction(int pendingCooldown) throws InterruptedException {
-		if (scalingExecutorFuture.isCancelled()) {
-			return null;
-		}
+	public void addParallelismChangeListener(ParallelismChangeListener listener) {
+		parallelismChangeListeners.add(listener);
+	}
 
-		ScalingAction action = null;
+	public void removeParallelismChangeListener(ParallelismChangeListener listener) {
+		parallelismChangeListeners.remove(listener);
+	}
 
+	/**
+	 * Notifies the parallelism change listeners of the parallelism that the next wave of
+	 * scaling actions is expected to reach, i.e. the bookkeeping after the scaling actions
+	 * have been dequeued. The listeners are invoked by the scaling thread, before the wave
+	 * and outside of the actuator's lock.
+	 */
+	private void announceExpectedParallelism() {
+		Map<JobVertexID, Integer> expectedParallelism;
 		synchronized (this) {
-			while (action == null) {
-				action = actionQueue.poll();
-
-				if (action != null) {
-					int currParallelism = currentParallelism.get(action.vertexId);
-					currentParallelism.put(action.vertexId, currParallelism + action.action);
-				} else {
-					if (pendingCooldown == 0) {
-						this.wait();
-					} else {
-						break;
-					}
-				}
-			}
+			expectedParallelism = Collections.unmodifiableMap(new HashMap<JobVertexID, Integer>(currentParallelism));
 		}
 
-		return action;
+		for (ParallelismChangeListener listener : parallelismChangeListeners) {
+			try {
+				listener.parallelismChanging(announcedParallelism, expectedParallelism);
+			} catch (RuntimeException e) {
+				LOG.error("Error in parallelism change listener", e);
+			}
+		}
 	}
 
-	private int executeQueuedScalingActions() throws Exception {
-		int pendingCooldown = 0;
-
-		ScalingAction action;
-		while ((action = dequeueNextScalingAction(pendingCooldown)) != null) {
-			if (action.action > 0) {
-				jm.scaleUpElasticTask(jobId, action.vertexId,
-								action.action);
-				pendingCooldown = 2;
-			} else {
-				jm.scaleDownElasticTask(jobId, action.vertexId,
-								-action.action);
+	/**
+	 * Notifies the parallelism change listeners if the parallelism of any group vertex
+	 * has changed since the last announcement. The listeners are invoked by the scaling
+	 * thread, after the wave of scaling actions and outside of the actuator's lock.
+	 */
+	private void announceParallelismChanges() {
+		Map<JobVertexID, Integer> oldParallelism = announcedParallelism;
+		Map<JobVertexID, Integer> newParallelism;
+		synchronized (this) {
+			if (currentParallelism.equals(oldParallelism)) {
+				return;
 			}
+			newParallelism = Collections.unmodifiableMap(new HashMap<JobVertexID, Integer>(currentParallelism));
 		}
+		announcedParallelism = newParallelism;
 
-		return pendingCooldown;
+		for (ParallelismChangeListener listener : parallelismChangeListeners) {
+			try {
+				listener.parallelismChanged(oldParallelism, newParallelism);
+			} catch (RuntimeException e) {
+				LOG.error("Error in parallelism change listener", e);
+			}
+		}
 	}
 
 	public void shutdown() {
-		scalingExecutorFuture.cancel(false);
+		scalingExecutorFuture.cancel(true);
 
 		executor.shutdown();
+		scaleDownExecutor.shutdown();
 		try {
 			executor.awaitTermination(1, TimeUnit.SECONDS);
+			scaleDownExecutor.awaitTermination(1, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
 			executor.shutdownNow();
+			scaleDownExecutor.shutdownNow();
 		}
 	}
 }
@@ -0,0 +1,15 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.simulation;
+
+/**
+ * The rate at which the sources of a simulated job emit records over time.
+ */
+public interface LoadProfile {
+
+	/**
+	 * @param timeMillis
+	 *            Milliseconds since the start of the simulation.
+	 * @return the total number of records per second emitted by all source
+	 *         subtasks at the given time.
+	 */
+	double getRecordsPerSecond(long timeMillis);
+}
@@ -0,0 +1,75 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.simulation;
+
+/**
+ * A load profile that linearly interpolates between given points in time.
+ * Before the first and after the last point, the rate of the respective point
+ * is kept.
+ */
+public class PiecewiseLinearLoadProfile implements LoadProfile {
+
+	private final long[] timesMillis;
+
+	private final double[] recordsPerSecond;
+
+	/**
+	 * @param timesMillis
+	 *            The points in time in ascending order.
+	 * @param recordsPerSecond
+	 *            The rate at each point in time.
+	 */
+	public PiecewiseLinearLoadProfile(long[] timesMillis,
+			double[] recordsPerSecond) {
+
+		if (timesMillis.length == 0
+				|| timesMillis.length != recordsPerSecond.length) {
+			throw new IllegalArgumentException(
+					"Load profile requires the same (non-zero) number of points in time and rates");
+		}
+
+		for (int i = 1; i < timesMillis.length; i++) {
+			if (timesMillis[i] < timesMillis[i - 1]) {
+				throw new IllegalArgumentException(
+						"Points in time must be in ascending order");
+			}
+		}
+
+		this.timesMillis = timesMillis.clone();
+		this.recordsPerSecond = recordsPerSecond.clone();
+	}
+
+	public static PiecewiseLinearLoadProfile constant(double recordsPerSecond) {
+		return new PiecewiseLinearLoadProfile(new long[] { 0 },
+				new double[] { recordsPerSecond });
+	}
+
+	/**
+	 * Creates a profile that jumps from one rate to another at the given
+	 * point in time.
+	 */
+	public static PiecewiseLinearLoadProfile step(double recordsPerSecond,
+			long stepTimeMillis, double recordsPerSecondAfterStep) {
+
+		return new PiecewiseLinearLoadProfile(new long[] { stepTimeMillis - 1,
+				stepTimeMillis }, new double[] { recordsPerSecond,
+				recordsPerSecondAfterStep });
+	}
+
+	@Override
+	public double getRecordsPerSecond(long timeMillis) {
+		if (timeMillis <= this.timesMillis[0]) {
+			return this.recordsPerSecond[0];
+		}
+
+		for (int i = 1; i < this.timesMillis.length; i++) {
+			if (timeMillis <= this.timesMillis[i]) {
+				double fraction = (timeMillis - this.timesMillis[i - 1])
+						/ ((double) (this.timesMillis[i] - this.timesMillis[i - 1]));
+
+				return this.recordsPerSecond[i - 1] + fraction
+						* (this.recordsPerSecond[i] - this.recordsPerSecond[i - 1]);
+			}
+		}
+
+		return this.recordsPerSecond[this.recordsPerSecond.length - 1];
+	}
+}
@@ -0,0 +1,140 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.simulation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
+import eu.stratosphere.nephele.streaming.SequenceElement;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.QosConstraintSummaryRecorder;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.SimpleScalingPolicy;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.UnexpectedVertexExecutionStateException;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosConstraintSummary;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
+import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
+
+/**
+ * Replays a recording of {@link QosConstraintSummaryRecorder} through a fresh
+ * {@link SimpleScalingPolicy}. In contrast to {@link ScalingSimulator}, the
+ * replay is open loop: the recorded statistics do not reflect the decisions of
+ * the replayed policy. The violation time and slot-seconds of the result are
+ * therefore those of the recorded run, whereas the number of scaling actions
+ * is the number of times the replayed policy would have changed the
+ * parallelism of a group vertex. This makes it possible to check a policy
+ * change against the situations of a real run, e.g. whether it reacts to the
+ * same load peaks within the same adjustment interval.
+ * 
+ * An interval counts as violation time if the constraint of at least one
+ * recorded summary is violated, i.e. intervals are counted once regardless of
+ * the number of violated constraints.
+ * 
+ * Slot-seconds are accounted per interval with the recorded number of active
+ * subtasks of all group vertices on the constraints' sequences, including the
+ * emitters of a sequence's first edge (e.g. the sources). This is the way
+ * {@link ScalingSimulator} accounts them, so a replayed simulator recording
+ * yields the simulated slot-seconds.
+ */
+public class RecordingReplayer {
+
+	private final QosConstraintSummaryRecorder.Recording recording;
+
+	public RecordingReplayer(QosConstraintSummaryRecorder.Recording recording) {
+		this.recording = recording;
+	}
+
+	public SimulationResult replay() {
+		SimpleScalingPolicy policy = new SimpleScalingPolicy(
+				this.recording.getGroupVertexInfos(),
+				this.recording.getConstraints());
+
+		List<Long> timestamps = this.recording.getTimestamps();
+		List<List<QosConstraintSummary>> intervals = this.recording
+				.getIntervals();
+
+		double simulatedMillis = 0;
+		double violationMillis = 0;
+		double slotMillis = 0;
+		double latencyMillisSum = 0;
+		int noOfLatencies = 0;
+		int noOfScalingActions = 0;
+
+		for (int i = 0; i < intervals.size(); i++) {
+			double intervalMillis = i > 0 ? timestamps.get(i)
+					- timestamps.get(i - 1) : StreamPluginConfig
+					.getAdjustmentIntervalMillis();
+
+			HashMap<JobVertexID, Integer> parallelism = new HashMap<JobVertexID, Integer>();
+			boolean isViolated = false;
+			for (QosConstraintSummary summary : intervals.get(i)) {
+				if (!summary.hasData()) {
+					continue;
+				}
+
+				double latency = summary.getViolationReport()
+						.getMeanSequenceLatency();
+				latencyMillisSum += latency;
+				noOfLatencies++;
+				if (latency > summary.getViolationReport()
+						.getLatencyConstraintMillis()) {
+					isViolated = true;
+				}
+
+				collectParallelism(summary, parallelism);
+			}
+
+			if (isViolated) {
+				violationMillis += intervalMillis;
+			}
+
+			for (int p : parallelism.values()) {
+				slotMillis += p * intervalMillis;
+			}
+			simulatedMillis += intervalMillis;
+
+			Map<JobVertexID, Integer> changes;
+			try {
+				changes = policy.getParallelismChanges(intervals.get(i));
+			} catch (UnexpectedVertexExecutionStateException e) {
+				throw new RuntimeException(
+						"Replayed group vertices are always running. This is a bug.",
+						e);
+			}
+
+			for (Map.Entry<JobVertexID, Integer> change : changes.entrySet()) {
+				Integer recorded = parallelism.get(change.getKey());
+				if (recorded == null || recorded.intValue() != change.getValue()) {
+					noOfScalingActions++;
+				}
+			}
+		}
+
+		return new SimulationResult(simulatedMillis, violationMillis,
+				slotMillis, noOfScalingActions,
+				noOfLatencies > 0 ? latencyMillisSum / noOfLatencies : 0);
+	}
+
+	private void collectParallelism(QosConstraintSummary summary,
+			Map<JobVertexID, Integer> parallelism) {
+
+		JobGraphLatencyConstraint constraint = this.recording.getConstraints()
+				.get(summary.getLatencyConstraintID());
+
+		for (SequenceElement seqElem : constraint.getSequence()) {
+			if (seqElem.isVertex()) {
+				parallelism.put(seqElem.getVertexID(), summary
+						.getGroupVertexSummary(seqElem.getIndexInSequence())
+						.getActiveVertices());
+			} else {
+				QosGroupEdgeSummary edgeSummary = summary
+						.getGroupEdgeSummary(seqElem.getIndexInSequence());
+				if (!parallelism.containsKey(seqElem.getSourceVertexID())) {
+					parallelism.put(seqElem.getSourceVertexID(),
+							edgeSummary.getActiveEmitterVertices());
+				}
+				parallelism.put(seqElem.getTargetVertexID(),
+						edgeSummary.getActiveConsumerVertices());
+			}
+		}
+	}
+}
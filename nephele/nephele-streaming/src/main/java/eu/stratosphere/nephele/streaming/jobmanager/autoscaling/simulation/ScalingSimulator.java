@@ -0,0 +1,568 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.simulation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
+import eu.stratosphere.nephele.streaming.JobGraphSequence;
+import eu.stratosphere.nephele.streaming.LatencyConstraintID;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.GroupVertexScalingInfo;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.QosConstraintSummaryRecorder;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.SimpleScalingPolicy;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.UnexpectedVertexExecutionStateException;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.ScalingActuator;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosConstraintSummary;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosConstraintViolationReport;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupEdgeSummary;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosGroupVertexSummary;
+import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
+
+/**
+ * Deterministically simulates a pipeline of group vertices under a given load
+ * profile, which is scaled by {@link SimpleScalingPolicy}. This allows to
+ * evaluate and tune the policy without a cluster.
+ *
+ * The pipeline is modelled as a fluid approximation of a tandem of G/G/1
+ * queueing systems: the records arriving at a group vertex are evenly
+ * distributed over its subtasks, the queue wait of a stable subtask is given
+ * by Kingman's formula, and records that arrive faster than the subtasks can
+ * process them are backlogged. Time advances in fixed steps. At the end of
+ * each adjustment interval, a constraint summary is assembled from the
+ * interval's statistics and passed to the policy. The resulting parallelism
+ * changes are executed like {@link ScalingActuator} does: after an initial
+ * cooldown, all scale-ups are executed at once and take
+ * {@link #setScaleUpDelayMillis(long)} to complete, after which the actuator
+ * cools down for one adjustment interval and discards the parallelism changes
+ * computed in the meantime. Scale-downs remove one subtask of
+ * each group vertex at a time.
+ *
+ * The latency constraint covers the whole pipeline, i.e. the edge from the
+ * sources to the first group vertex up to the last group vertex. The
+ * adjustment interval is {@link StreamPluginConfig#getAdjustmentIntervalMillis()}.
+ *
+ * Slot-seconds are accounted per adjustment interval, with the number of
+ * running subtasks (including the sources) at the end of the interval, as
+ * reported in the constraint summary. Hence a recording of the run yields the
+ * same slot-seconds when replayed with {@link RecordingReplayer}.
+ */
+public class ScalingSimulator {
+
+	public static final long DEFAULT_STEP_MILLIS = 100;
+
+	public static final long DEFAULT_SCALE_UP_DELAY_MILLIS = 2000;
+
+	public static final long DEFAULT_SCALE_DOWN_DELAY_MILLIS = 500;
+
+	/**
+	 * Utilization up to which queue waits are computed with Kingman's formula.
+	 * Above it, the queue wait is dominated by the backlog.
+	 */
+	private static final double MAX_STABLE_UTILIZATION = 0.99;
+
+	private final LoadProfile loadProfile;
+
+	private final int sourceParallelism;
+
+	private final long latencyConstraintMillis;
+
+	private final ArrayList<SimulatedGroupVertex> groupVertices = new ArrayList<SimulatedGroupVertex>();
+
+	private long stepMillis = DEFAULT_STEP_MILLIS;
+
+	private long scaleUpDelayMillis = DEFAULT_SCALE_UP_DELAY_MILLIS;
+
+	private long scaleDownDelayMillis = DEFAULT_SCALE_DOWN_DELAY_MILLIS;
+
+	private double outputBufferLatencyMillis = 0;
+
+	private int initialCooldownIntervals = ScalingActuator.INITIAL_COOLDOWN_INTERVALS;
+
+	private String recordingFile;
+
+	/**
+	 * @param loadProfile
+	 *            The total rate at which the sources emit records.
+	 * @param sourceParallelism
+	 *            The (fixed) number of source subtasks.
+	 * @param latencyConstraintMillis
+	 *            The constraint on the mean latency of the pipeline.
+	 */
+	public ScalingSimulator(LoadProfile loadProfile, int sourceParallelism,
+			long latencyConstraintMillis) {
+
+		this.loadProfile = loadProfile;
+		this.sourceParallelism = sourceParallelism;
+		this.latencyConstraintMillis = latencyConstraintMillis;
+	}
+
+	/**
+	 * Appends a group vertex to the pipeline, which consumes the records
+	 * emitted by the previously added group vertex (or the sources).
+	 */
+	public void addGroupVertex(SimulatedGroupVertex groupVertex) {
+		this.groupVertices.add(groupVertex);
+	}
+
+	public void setStepMillis(long stepMillis) {
+		this.stepMillis = stepMillis;
+	}
+
+	public void setScaleUpDelayMillis(long scaleUpDelayMillis) {
+		this.scaleUpDelayMillis = scaleUpDelayMillis;
+	}
+
+	public void setScaleDownDelayMillis(long scaleDownDelayMillis) {
+		this.scaleDownDelayMillis = scaleDownDelayMillis;
+	}
+
+	/**
+	 * Sets the (constant) output buffer latency of each edge in the pipeline.
+	 */
+	public void setOutputBufferLatencyMillis(double outputBufferLatencyMillis) {
+		this.outputBufferLatencyMillis = outputBufferLatencyMillis;
+	}
+
+	public void setInitialCooldownIntervals(int initialCooldownIntervals) {
+		this.initialCooldownIntervals = initialCooldownIntervals;
+	}
+
+	/**
+	 * Sets a file, into which the constraint summaries of each run are
+	 * recorded, so that they can be replayed with {@link RecordingReplayer}.
+	 */
+	public void setRecordingFile(String recordingFile) {
+		this.recordingFile = recordingFile;
+	}
+
+	/**
+	 * Simulates the pipeline for the given time, starting from empty queues
+	 * and the initial parallelism of each group vertex.
+	 *
+	 * @throws IOException
+	 *             if the constraint summaries could not be recorded.
+	 */
+	public SimulationResult run(long durationMillis) throws IOException {
+		if (this.groupVertices.isEmpty()) {
+			throw new IllegalStateException(
+					"Cannot simulate a pipeline without group vertices");
+		}
+
+		long adjustmentIntervalMillis = StreamPluginConfig
+				.getAdjustmentIntervalMillis();
+		if (adjustmentIntervalMillis % this.stepMillis != 0) {
+			throw new IllegalStateException(
+					"Adjustment interval must be a multiple of the simulation step");
+		}
+
+		JobVertexID sourceID = new JobVertexID();
+		JobGraphLatencyConstraint constraint = createConstraint(sourceID);
+
+		HashMap<LatencyConstraintID, JobGraphLatencyConstraint> constraints = new HashMap<LatencyConstraintID, JobGraphLatencyConstraint>();
+		constraints.put(constraint.getID(), constraint);
+		HashMap<JobVertexID, GroupVertexScalingInfo> infos = new HashMap<JobVertexID, GroupVertexScalingInfo>();
+		for (SimulatedGroupVertex groupVertex : this.groupVertices) {
+			infos.put(groupVertex.getJobVertexID(), groupVertex.getScalingInfo());
+		}
+
+		SimpleScalingPolicy policy = new SimpleScalingPolicy(infos, constraints);
+		Run run = new Run(constraint, adjustmentIntervalMillis);
+
+		QosConstraintSummaryRecorder recorder = null;
+		if (this.recordingFile != null) {
+			recorder = new QosConstraintSummaryRecorder(this.recordingFile,
+					constraints.values(), infos);
+		}
+
+		try {
+			for (long now = 0; now < durationMillis; now += this.stepMillis) {
+				run.actuator.advance(now);
+				run.advance(now);
+
+				if ((now + this.stepMillis) % adjustmentIntervalMillis == 0) {
+					List<QosConstraintSummary> summaries = new LinkedList<QosConstraintSummary>();
+					summaries.add(run.summarizeInterval());
+
+					if (recorder != null) {
+						recorder.record(now + this.stepMillis, summaries);
+					}
+
+					try {
+						run.actuator.updateTargets(now + this.stepMillis,
+								policy.getParallelismChanges(summaries));
+					} catch (UnexpectedVertexExecutionStateException e) {
+						throw new RuntimeException(
+								"Simulated group vertices are always running. This is a bug.",
+								e);
+					}
+				}
+			}
+		} finally {
+			if (recorder != null) {
+				recorder.close();
+			}
+		}
+
+		return run.getResult();
+	}
+
+	private JobGraphLatencyConstraint createConstraint(JobVertexID sourceID) {
+		JobGraphSequence sequence = new JobGraphSequence();
+
+		JobVertexID previousID = sourceID;
+		for (SimulatedGroupVertex groupVertex : this.groupVertices) {
+			sequence.addEdge(previousID, 0, groupVertex.getJobVertexID(), 0);
+			sequence.addVertex(groupVertex.getJobVertexID(), groupVertex
+					.getJobVertexID().toString(), 0, 0);
+			previousID = groupVertex.getJobVertexID();
+		}
+
+		return new JobGraphLatencyConstraint(sequence,
+				this.latencyConstraintMillis, "simulation");
+	}
+
+	/**
+	 * The state of a group vertex during a run.
+	 */
+	private static class GroupVertexState {
+
+		final SimulatedGroupVertex groupVertex;
+
+		int parallelism;
+
+		double backlog;
+
+		// statistics of the current adjustment interval
+		double arrivedRecords;
+
+		double processedRecords;
+
+		double queueWaitMillis;
+
+		int noOfSteps;
+
+		GroupVertexState(SimulatedGroupVertex groupVertex) {
+			this.groupVertex = groupVertex;
+			this.parallelism = groupVertex.getInitialParallelism();
+		}
+
+		void resetInterval() {
+			this.arrivedRecords = 0;
+			this.processedRecords = 0;
+			this.queueWaitMillis = 0;
+			this.noOfSteps = 0;
+		}
+	}
+
+	/**
+	 * The state of a single run of the simulation.
+	 */
+	private class Run {
+
+		final JobGraphLatencyConstraint constraint;
+
+		final long adjustmentIntervalMillis;
+
+		final ArrayList<GroupVertexState> states = new ArrayList<GroupVertexState>();
+
+		final HashMap<JobVertexID, GroupVertexState> statesByID = new HashMap<JobVertexID, GroupVertexState>();
+
+		final SimulatedActuator actuator;
+
+		QosConstraintViolationReport intervalViolationReport;
+
+		double simulatedMillis;
+
+		double violationMillis;
+
+		double slotMillis;
+
+		/**
+		 * The simulated time not yet accounted for in {@link #slotMillis}.
+		 */
+		double unaccountedSlotIntervalMillis;
+
+		double latencyMillisSum;
+
+		int noOfSteps;
+
+		Run(JobGraphLatencyConstraint constraint, long adjustmentIntervalMillis) {
+			this.constraint = constraint;
+			this.adjustmentIntervalMillis = adjustmentIntervalMillis;
+
+			for (SimulatedGroupVertex groupVertex : groupVertices) {
+				GroupVertexState state = new GroupVertexState(groupVertex);
+				this.states.add(state);
+				this.statesByID.put(groupVertex.getJobVertexID(), state);
+			}
+
+			this.actuator = new SimulatedActuator(this);
+			this.intervalViolationReport = new QosConstraintViolationReport(
+					constraint);
+		}
+
+		void advance(long now) {
+			double stepSeconds = stepMillis / 1000.0;
+			double rate = loadProfile.getRecordsPerSecond(now);
+			double sequenceLatencyMillis = 0;
+
+			for (GroupVertexState state : this.states) {
+				SimulatedGroupVertex groupVertex = state.groupVertex;
+
+				double serviceTime = groupVertex.getServiceTimeMillis() / 1000;
+				double serviceRate = state.parallelism / serviceTime;
+				double processingRate = Math.min(serviceRate, rate
+						+ state.backlog / stepSeconds);
+				state.backlog = Math.max(0, state.backlog + (rate - serviceRate)
+						* stepSeconds);
+
+				double utilization = Math.min(MAX_STABLE_UTILIZATION, rate
+						* serviceTime / state.parallelism);
+				double cA = groupVertex.getInterarrivalTimeCV();
+				double cS = groupVertex.getServiceTimeCV();
+				double queueWait = utilization * serviceTime / (1 - utilization)
+						* (cA * cA + cS * cS) / 2 + state.backlog / serviceRate;
+
+				state.arrivedRecords += rate * stepSeconds;
+				state.processedRecords += processingRate * stepSeconds;
+				state.queueWaitMillis += queueWait * 1000;
+				state.noOfSteps++;
+
+				sequenceLatencyMillis += outputBufferLatencyMillis + queueWait
+						* 1000 + groupVertex.getServiceTimeMillis();
+				rate = processingRate * groupVertex.getSelectivity();
+			}
+
+			this.simulatedMillis += stepMillis;
+			this.unaccountedSlotIntervalMillis += stepMillis;
+			this.latencyMillisSum += sequenceLatencyMillis;
+			this.noOfSteps++;
+			this.intervalViolationReport.addSequenceLatency(sequenceLatencyMillis);
+			if (sequenceLatencyMillis > latencyConstraintMillis) {
+				this.violationMillis += stepMillis;
+			}
+		}
+
+		/**
+		 * Assembles the constraint summary of the current adjustment interval
+		 * as the Qos managers would measure it, and starts the next interval.
+		 */
+		QosConstraintSummary summarizeInterval() {
+			accountSlots();
+
+			QosConstraintSummary summary = new QosConstraintSummary(
+					this.constraint, this.intervalViolationReport);
+			this.intervalViolationReport = new QosConstraintViolationReport(
+					this.constraint);
+
+			double intervalSeconds = this.adjustmentIntervalMillis / 1000.0;
+			int emitterParallelism = sourceParallelism;
+
+			for (int i = 0; i < this.states.size(); i++) {
+				GroupVertexState state = this.states.get(i);
+				SimulatedGroupVertex groupVertex = state.groupVertex;
+				int p = state.parallelism;
+
+				double arrivalRate = state.arrivedRecords / intervalSeconds;
+				double utilization = Math.min(1, arrivalRate
+						* groupVertex.getServiceTimeMillis() / 1000 / p);
+
+				QosGroupEdgeSummary edgeSummary = summary.getGroupEdgeSummary(2 * i);
+				edgeSummary.setActiveEdges(emitterParallelism * p);
+				edgeSummary.setActiveEmitterVertices(emitterParallelism);
+				edgeSummary.setActiveConsumerVertices(p);
+				edgeSummary.setOutputBufferLatencyMean(outputBufferLatencyMillis);
+				edgeSummary.setTransportLatencyMean(state.queueWaitMillis
+						/ state.noOfSteps);
+				edgeSummary.setMeanEmissionRate(arrivalRate / emitterParallelism);
+				edgeSummary.setMeanConsumptionRate(state.processedRecords
+						/ intervalSeconds / p);
+				edgeSummary.setMeanConsumerVertexLatency(groupVertex
+						.getServiceTimeMillis());
+				edgeSummary.setMeanConsumerVertexLatencyCV(groupVertex
+						.getServiceTimeCV());
+				edgeSummary.setMeanConsumerVertexInterarrivalTime(arrivalRate > 0 ? 1000
+						* p / arrivalRate : 0);
+				edgeSummary.setMeanConsumerVertexInterarrivalTimeCV(groupVertex
+						.getInterarrivalTimeCV());
+				edgeSummary.setMeanConsumerVertexUtilization(utilization);
+				edgeSummary.setMaxConsumerVertexUtilization(utilization);
+
+				QosGroupVertexSummary vertexSummary = summary
+						.getGroupVertexSummary(2 * i + 1);
+				vertexSummary.setActiveVertices(p);
+				vertexSummary.setMeanVertexLatency(groupVertex
+						.getServiceTimeMillis());
+				vertexSummary.setMeanVertexLatencyCV(groupVertex
+						.getServiceTimeCV());
+
+				state.resetInterval();
+				emitterParallelism = p;
+			}
+
+			return summary;
+		}
+
+		/**
+		 * Accounts the running subtasks for the time since the last
+		 * accounting.
+		 */
+		void accountSlots() {
+			int runningSubtasks = sourceParallelism;
+			for (GroupVertexState state : this.states) {
+				runningSubtasks += state.parallelism;
+			}
+
+			this.slotMillis += runningSubtasks
+					* this.unaccountedSlotIntervalMillis;
+			this.unaccountedSlotIntervalMillis = 0;
+		}
+
+		SimulationResult getResult() {
+			accountSlots();
+			return new SimulationResult(this.simulatedMillis,
+					this.violationMillis, this.slotMillis,
+					this.actuator.noOfScalingActions,
+					this.noOfSteps > 0 ? this.latencyMillisSum / this.noOfSteps : 0);
+		}
+	}
+
+	/**
+	 * Executes parallelism changes like {@link ScalingActuator}, but in
+	 * simulated time.
+	 */
+	private class SimulatedActuator {
+
+		final Run run;
+
+		final HashMap<JobVertexID, Integer> targetParallelism = new HashMap<JobVertexID, Integer>();
+
+		long cooldownDeadline;
+
+		boolean hasFreshTargets;
+
+		boolean executing;
+
+		/**
+		 * The parallelism changes currently being executed, or null if none.
+		 */
+		Map<JobVertexID, Integer> pendingChanges;
+
+		boolean pendingIsScaleUp;
+
+		long pendingCompletion;
+
+		int noOfScalingActions;
+
+		SimulatedActuator(Run run) {
+			this.run = run;
+			for (GroupVertexState state : run.states) {
+				this.targetParallelism.put(state.groupVertex.getJobVertexID(),
+						state.parallelism);
+			}
+			this.cooldownDeadline = initialCooldownIntervals
+					* run.adjustmentIntervalMillis;
+		}
+
+		void updateTargets(long now, Map<JobVertexID, Integer> newParallelism) {
+			if (now < this.cooldownDeadline) {
+				return;
+			}
+
+			this.targetParallelism.putAll(newParallelism);
+			this.hasFreshTargets = true;
+		}
+
+		void advance(long now) {
+			if (this.pendingChanges != null) {
+				if (now < this.pendingCompletion) {
+					return;
+				}
+				completePendingChanges(now);
+			}
+
+			if (!this.executing && this.hasFreshTargets) {
+				this.hasFreshTargets = false;
+				this.executing = true;
+
+				HashMap<JobVertexID, Integer> scaleUps = new HashMap<JobVertexID, Integer>();
+				for (GroupVertexState state : this.run.states) {
+					int target = getTarget(state);
+					if (target > state.parallelism) {
+						scaleUps.put(state.groupVertex.getJobVertexID(), target);
+					}
+				}
+
+				if (!scaleUps.isEmpty()) {
+					startPendingChanges(now, scaleUps, true,
+							scaleUpDelayMillis);
+					return;
+				}
+			}
+
+			if (this.executing) {
+				HashMap<JobVertexID, Integer> scaleDowns = new HashMap<JobVertexID, Integer>();
+				for (GroupVertexState state : this.run.states) {
+					if (getTarget(state) < state.parallelism) {
+						scaleDowns.put(state.groupVertex.getJobVertexID(),
+								state.parallelism - 1);
+					}
+				}
+
+				if (scaleDowns.isEmpty()) {
+					this.executing = false;
+				} else {
+					startPendingChanges(now, scaleDowns, false,
+							scaleDownDelayMillis);
+				}
+			}
+		}
+
+		private int getTarget(GroupVertexState state) {
+			return this.targetParallelism.get(state.groupVertex.getJobVertexID());
+		}
+
+		private void startPendingChanges(long now,
+				Map<JobVertexID, Integer> changes, boolean isScaleUp,
+				long delayMillis) {
+
+			this.pendingChanges = changes;
+			this.pendingIsScaleUp = isScaleUp;
+			this.pendingCompletion = now + delayMillis;
+		}
+
+		private void completePendingChanges(long now) {
+			for (Map.Entry<JobVertexID, Integer> change : this.pendingChanges
+					.entrySet()) {
+				this.run.statesByID.get(change.getKey()).parallelism = change
+						.getValue();
+				this.noOfScalingActions++;
+			}
+			this.pendingChanges = null;
+
+			if (this.pendingIsScaleUp) {
+				for (GroupVertexState state : this.run.states) {
+					this.targetParallelism.put(
+							state.groupVertex.getJobVertexID(), state.parallelism);
+				}
+				this.cooldownDeadline = now + this.run.adjustmentIntervalMillis;
+				this.hasFreshTargets = false;
+				this.executing = false;
+				return;
+			}
+
+			// remaining scale-downs are left to the next round, if scale-ups
+			// have been requested in the meantime
+			for (GroupVertexState state : this.run.states) {
+				if (getTarget(state) > state.parallelism) {
+					this.executing = false;
+					return;
+				}
+			}
+		}
+	}
+}
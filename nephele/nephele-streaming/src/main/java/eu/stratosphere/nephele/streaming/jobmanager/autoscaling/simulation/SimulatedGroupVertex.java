@@ -0,0 +1,94 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.simulation;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.GroupVertexScalingInfo;
+
+/**
+ * Describes a group vertex of a simulated job. Each subtask of the group
+ * vertex is modelled as a G/G/1 queueing system with the given service time
+ * distribution.
+ */
+public class SimulatedGroupVertex {
+
+	private final GroupVertexScalingInfo scalingInfo;
+
+	private final int initialParallelism;
+
+	private final double serviceTimeMillis;
+
+	private final double serviceTimeCV;
+
+	private double interarrivalTimeCV = 1;
+
+	private double selectivity = 1;
+
+	/**
+	 * @param scalingInfo
+	 *            The bounds on the group vertex's parallelism and its queueing
+	 *            model, as seen by the scaling policy.
+	 * @param initialParallelism
+	 *            The number of subtasks running at the start of the simulation.
+	 * @param serviceTimeMillis
+	 *            The mean time a subtask needs to process a record.
+	 * @param serviceTimeCV
+	 *            The coefficient of variation of the service time.
+	 */
+	public SimulatedGroupVertex(GroupVertexScalingInfo scalingInfo,
+			int initialParallelism, double serviceTimeMillis,
+			double serviceTimeCV) {
+
+		if (initialParallelism < scalingInfo.getMinParallelism()
+				|| initialParallelism > scalingInfo.getMaxParallelism()) {
+			throw new IllegalArgumentException(
+					"Initial parallelism must be within the parallelism bounds");
+		}
+
+		this.scalingInfo = scalingInfo;
+		this.initialParallelism = initialParallelism;
+		this.serviceTimeMillis = serviceTimeMillis;
+		this.serviceTimeCV = serviceTimeCV;
+	}
+
+	public GroupVertexScalingInfo getScalingInfo() {
+		return this.scalingInfo;
+	}
+
+	public JobVertexID getJobVertexID() {
+		return this.scalingInfo.getJobVertexID();
+	}
+
+	public int getInitialParallelism() {
+		return this.initialParallelism;
+	}
+
+	public double getServiceTimeMillis() {
+		return this.serviceTimeMillis;
+	}
+
+	public double getServiceTimeCV() {
+		return this.serviceTimeCV;
+	}
+
+	public double getInterarrivalTimeCV() {
+		return this.interarrivalTimeCV;
+	}
+
+	/**
+	 * Sets the coefficient of variation of the time between two records
+	 * arriving at a subtask (default 1, i.e. Poisson arrivals).
+	 */
+	public void setInterarrivalTimeCV(double interarrivalTimeCV) {
+		this.interarrivalTimeCV = interarrivalTimeCV;
+	}
+
+	public double getSelectivity() {
+		return this.selectivity;
+	}
+
+	/**
+	 * Sets the number of records emitted per processed record (default 1).
+	 */
+	public void setSelectivity(double selectivity) {
+		this.selectivity = selectivity;
+	}
+}
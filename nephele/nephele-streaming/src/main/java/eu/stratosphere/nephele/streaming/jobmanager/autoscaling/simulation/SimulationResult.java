@@ -0,0 +1,72 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.simulation;
+
+/**
+ * The figures by which scaling policies are compared: how long the latency
+ * constraint has been violated, how many resources have been used and how
+ * often the parallelism of group vertices has been changed.
+ */
+public class SimulationResult {
+
+	private final double simulatedMillis;
+
+	private final double violationMillis;
+
+	private final double slotMillis;
+
+	private final int noOfScalingActions;
+
+	private final double meanSequenceLatencyMillis;
+
+	public SimulationResult(double simulatedMillis, double violationMillis,
+			double slotMillis, int noOfScalingActions,
+			double meanSequenceLatencyMillis) {
+
+		this.simulatedMillis = simulatedMillis;
+		this.violationMillis = violationMillis;
+		this.slotMillis = slotMillis;
+		this.noOfScalingActions = noOfScalingActions;
+		this.meanSequenceLatencyMillis = meanSequenceLatencyMillis;
+	}
+
+	public double getSimulatedSeconds() {
+		return this.simulatedMillis / 1000;
+	}
+
+	/**
+	 * @return the time during which the sequence latency has exceeded the
+	 *         latency constraint.
+	 */
+	public double getConstraintViolationSeconds() {
+		return this.violationMillis / 1000;
+	}
+
+	/**
+	 * @return the integral of the number of running subtasks (including the
+	 *         sources) over time, sampled at the end of each adjustment
+	 *         interval.
+	 */
+	public double getSlotSeconds() {
+		return this.slotMillis / 1000;
+	}
+
+	/**
+	 * @return the number of times the parallelism of a group vertex has been
+	 *         changed.
+	 */
+	public int getNoOfScalingActions() {
+		return this.noOfScalingActions;
+	}
+
+	public double getMeanSequenceLatencyMillis() {
+		return this.meanSequenceLatencyMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"simulated: %.1fs | violation: %.1fs | slots: %.1fs | scaling actions: %d | mean latency: %.2fms",
+				getSimulatedSeconds(), getConstraintViolationSeconds(),
+				getSlotSeconds(), this.noOfScalingActions,
+				this.meanSequenceLatencyMillis);
+	}
+}
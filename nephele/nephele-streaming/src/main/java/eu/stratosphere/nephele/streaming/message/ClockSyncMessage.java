@@ -0,0 +1,76 @@
+package eu.stratosphere.nephele.streaming.message;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+
+/**
+ * NTP-style clock synchronization message exchanged between a task manager
+ * and the job manager, whose clock serves as the reference clock of all task
+ * managers. The task manager sends the message with the originate timestamp
+ * set, the job manager answers with the same message with receive and
+ * transmit timestamps set. All timestamps are in microseconds.
+ */
+public class ClockSyncMessage implements IOReadableWritable {
+
+	/**
+	 * Local time of the requesting task manager when sending the request.
+	 */
+	private long originateTimestamp;
+
+	/**
+	 * Reference time when the request was received.
+	 */
+	private long receiveTimestamp;
+
+	/**
+	 * Reference time when the response was sent.
+	 */
+	private long transmitTimestamp;
+
+	public ClockSyncMessage(long originateTimestamp) {
+		this.originateTimestamp = originateTimestamp;
+	}
+
+	/**
+	 * Empty default constructor.
+	 */
+	public ClockSyncMessage() {
+	}
+
+	public long getOriginateTimestamp() {
+		return this.originateTimestamp;
+	}
+
+	public long getReceiveTimestamp() {
+		return this.receiveTimestamp;
+	}
+
+	public void setReceiveTimestamp(long receiveTimestamp) {
+		this.receiveTimestamp = receiveTimestamp;
+	}
+
+	public long getTransmitTimestamp() {
+		return this.transmitTimestamp;
+	}
+
+	public void setTransmitTimestamp(long transmitTimestamp) {
+		this.transmitTimestamp = transmitTimestamp;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(this.originateTimestamp);
+		out.writeLong(this.receiveTimestamp);
+		out.writeLong(this.transmitTimestamp);
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.originateTimestamp = in.readLong();
+		this.receiveTimestamp = in.readLong();
+		this.transmitTimestamp = in.readLong();
+	}
+}
@@ -0,0 +1,49 @@
+package eu.stratosphere.nephele.streaming.message;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.nephele.util.SerializableArrayList;
+
+/**
+ * A batch of Qos messages (possibly of different jobs) sent to the same
+ * destination in a single RPC. The receiving plugin unpacks the batch and
+ * handles the messages in the order in which they have been added.
+ */
+public class QosMessageBatch implements IOReadableWritable {
+
+	private final SerializableArrayList<AbstractSerializableQosMessage> messages;
+
+	public QosMessageBatch() {
+		this.messages = new SerializableArrayList<AbstractSerializableQosMessage>();
+	}
+
+	public QosMessageBatch(List<AbstractSerializableQosMessage> messages) {
+		this.messages = new SerializableArrayList<AbstractSerializableQosMessage>(
+				messages.size());
+		this.messages.addAll(messages);
+	}
+
+	public List<AbstractSerializableQosMessage> getMessages() {
+		return this.messages;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		this.messages.write(out);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.messages.read(in);
+	}
+}
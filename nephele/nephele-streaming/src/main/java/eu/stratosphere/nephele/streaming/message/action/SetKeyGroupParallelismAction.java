@@ -0,0 +1,174 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.streaming.message.action;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
+
+/**
+ * This class implements an action to announce the parallelism of the consumer
+ * of a particular output gate to the
+ * {@link eu.stratosphere.nephele.io.KeyGroupChannelSelector} of the gate, so
+ * that the selector switches its key group assignment to the announced
+ * parallelism rather than following the number of active output channels.
+ * The action is ignored by gates with other channel selectors.
+ */
+public final class SetKeyGroupParallelismAction extends
+		AbstractSerializableQosMessage implements QosAction {
+
+	/**
+	 * The ID of the vertex the initiated action applies to.
+	 */
+	private final ExecutionVertexID vertexID;
+
+	/**
+	 * The ID of the output gate whose consumer is rescaled.
+	 */
+	private final GateID outputGateID;
+
+	/**
+	 * The parallelism of the consumer.
+	 */
+	private int parallelism;
+
+	/**
+	 * The version of the announcement. Announcements with a version that is
+	 * not newer than the version of the currently applied announcement are
+	 * stale and dropped.
+	 */
+	private long version;
+
+	/**
+	 * Constructs a new action to announce the parallelism of a consumer.
+	 * 
+	 * @param jobID
+	 *            the ID of the job the action applies to
+	 * @param vertexID
+	 *            the ID of the vertex the action applies to
+	 * @param outputGateID
+	 *            the ID of the output gate whose consumer is rescaled
+	 * @param parallelism
+	 *            the parallelism of the consumer
+	 * @param version
+	 *            the version of the announcement
+	 */
+	public SetKeyGroupParallelismAction(final JobID jobID,
+			final ExecutionVertexID vertexID, final GateID outputGateID,
+			final int parallelism, final long version) {
+		super(jobID);
+
+		if (vertexID == null) {
+			throw new IllegalArgumentException(
+					"Argument vertexID must not be null");
+		}
+
+		if (outputGateID == null) {
+			throw new IllegalArgumentException(
+					"Argument outputGateID must not be null");
+		}
+
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException(
+					"Argument parallelism must be greater than zero");
+		}
+
+		this.vertexID = vertexID;
+		this.outputGateID = outputGateID;
+		this.parallelism = parallelism;
+		this.version = version;
+	}
+
+	/**
+	 * Default constructor for deserialization.
+	 */
+	public SetKeyGroupParallelismAction() {
+		super();
+		this.vertexID = new ExecutionVertexID();
+		this.outputGateID = new GateID();
+		this.parallelism = 0;
+		this.version = 0;
+	}
+
+	/**
+	 * Returns the ID of the vertex the initiated action applies to.
+	 * 
+	 * @return the ID of the vertex the initiated action applies to
+	 */
+	public ExecutionVertexID getVertexID() {
+		return this.vertexID;
+	}
+
+	/**
+	 * Returns the ID of the output gate whose consumer is rescaled.
+	 * 
+	 * @return the ID of the output gate whose consumer is rescaled
+	 */
+	public GateID getOutputGateID() {
+		return this.outputGateID;
+	}
+
+	/**
+	 * Returns the parallelism of the consumer.
+	 * 
+	 * @return the parallelism of the consumer
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * Returns the version of the announcement.
+	 * 
+	 * @return the version of the announcement
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(final DataOutput out) throws IOException {
+
+		super.write(out);
+
+		this.vertexID.write(out);
+		this.outputGateID.write(out);
+		out.writeInt(this.parallelism);
+		out.writeLong(this.version);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void read(final DataInput in) throws IOException {
+
+		super.read(in);
+
+		this.vertexID.read(in);
+		this.outputGateID.read(in);
+		this.parallelism = in.readInt();
+		this.version = in.readLong();
+	}
+}
@@ -34,6 +34,12 @@ import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
 public final class SetOutputBufferLifetimeTargetAction extends
 		AbstractSerializableQosMessage implements QosAction {
 
+	/**
+	 * The version of targets that have been created without a version. Such
+	 * targets are always applied.
+	 */
+	public static final long UNVERSIONED = 0;
+
 	/**
 	 * The ID of the vertex the initiated action applies to.
 	 */
@@ -55,6 +61,13 @@ public final class SetOutputBufferLifetimeTargetAction extends
 	 */
 	private int outputBufferLifetimeTarget;
 
+	/**
+	 * The version of the target. Targets of a channel with a version older
+	 * than the version of the currently applied target are stale and dropped,
+	 * unless they are {@link #UNVERSIONED}.
+	 */
+	private long version;
+
 	/**
 	 * Constructs a new buffer size limit action object.
 	 * 
@@ -71,6 +84,22 @@ public final class SetOutputBufferLifetimeTargetAction extends
 	public SetOutputBufferLifetimeTargetAction(final JobID jobID,
 	                                           final ExecutionVertexID vertexID, final GateID outputGateID,
 	                                           final ChannelID sourceChannelID, final int outputBufferLifetimeTarget) {
+		this(jobID, vertexID, outputGateID, sourceChannelID,
+				outputBufferLifetimeTarget, UNVERSIONED);
+	}
+
+	/**
+	 * Constructs a new output buffer lifetime target action with the given
+	 * version. The remaining parameters are the same as above.
+	 * 
+	 * @param version
+	 *            the version of the target, usually the reference clock time
+	 *            of the adjustment that has computed the target
+	 */
+	public SetOutputBufferLifetimeTargetAction(final JobID jobID,
+	                                           final ExecutionVertexID vertexID, final GateID outputGateID,
+	                                           final ChannelID sourceChannelID, final int outputBufferLifetimeTarget,
+	                                           final long version) {
 		super(jobID);
 
 		if (vertexID == null) {
@@ -97,6 +126,7 @@ public final class SetOutputBufferLifetimeTargetAction extends
 		this.outputGateID = outputGateID;
 		this.sourceChannelID = sourceChannelID;
 		this.outputBufferLifetimeTarget = outputBufferLifetimeTarget;
+		this.version = version;
 	}
 
 	/**
@@ -129,6 +159,13 @@ public final class SetOutputBufferLifetimeTargetAction extends
 		return this.outputBufferLifetimeTarget;
 	}
 
+	/**
+	 * Returns the version of the output buffer lifetime target.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
 	/**
 	 * Returns the ID of the vertex the initiated action applies to.
 	 * 
@@ -159,6 +196,7 @@ public final class SetOutputBufferLifetimeTargetAction extends
 		this.outputGateID.write(out);
 		this.sourceChannelID.write(out);
 		out.writeInt(this.outputBufferLifetimeTarget);
+		out.writeLong(this.version);
 	}
 
 	/**
@@ -173,5 +211,6 @@ public final class SetOutputBufferLifetimeTargetAction extends
 		this.outputGateID.read(in);
 		this.sourceChannelID.read(in);
 		this.outputBufferLifetimeTarget = in.readInt();
+		this.version = in.readLong();
 	}
 }
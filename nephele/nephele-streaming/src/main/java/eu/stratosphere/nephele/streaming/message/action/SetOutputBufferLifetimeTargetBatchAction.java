@@ -0,0 +1,98 @@
+package eu.stratosphere.nephele.streaming.message.action;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
+import eu.stratosphere.nephele.streaming.util.CompactEncoding;
+
+/**
+ * This message bundles all output buffer lifetime targets that a Qos manager
+ * has computed in one adjustment for the channels of the same task manager.
+ * All targets share the same version. On the receiving task manager, the
+ * targets are unpacked into {@link SetOutputBufferLifetimeTargetAction}s and
+ * dispatched to the output gates of their channels.
+ */
+public final class SetOutputBufferLifetimeTargetBatchAction extends
+		AbstractSerializableQosMessage {
+
+	private long version;
+
+	private final ArrayList<SetOutputBufferLifetimeTargetAction> actions = new ArrayList<SetOutputBufferLifetimeTargetAction>();
+
+	public SetOutputBufferLifetimeTargetBatchAction(JobID jobID, long version) {
+		super(jobID);
+		this.version = version;
+	}
+
+	/**
+	 * Default constructor for deserialization.
+	 */
+	public SetOutputBufferLifetimeTargetBatchAction() {
+		super();
+	}
+
+	public void addTarget(ExecutionVertexID vertexID, GateID outputGateID,
+			ChannelID sourceChannelID, int outputBufferLifetimeTarget) {
+
+		this.actions.add(new SetOutputBufferLifetimeTargetAction(
+				this.getJobID(), vertexID, outputGateID, sourceChannelID,
+				outputBufferLifetimeTarget, this.version));
+	}
+
+	public long getVersion() {
+		return this.version;
+	}
+
+	public List<SetOutputBufferLifetimeTargetAction> getActions() {
+		return this.actions;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(final DataOutput out) throws IOException {
+		super.write(out);
+
+		out.writeLong(this.version);
+		CompactEncoding.writeVarInt(out, this.actions.size());
+		for (SetOutputBufferLifetimeTargetAction action : this.actions) {
+			action.getVertexID().write(out);
+			action.getOutputGateID().write(out);
+			action.getSourceChannelID().write(out);
+			CompactEncoding.writeVarInt(out,
+					action.getOutputBufferLifetimeTarget());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void read(final DataInput in) throws IOException {
+		super.read(in);
+
+		this.version = in.readLong();
+		this.actions.clear();
+		int toRead = CompactEncoding.readVarInt(in);
+		for (int i = 0; i < toRead; i++) {
+			ExecutionVertexID vertexID = new ExecutionVertexID();
+			vertexID.read(in);
+			GateID outputGateID = new GateID();
+			outputGateID.read(in);
+			ChannelID sourceChannelID = new ChannelID();
+			sourceChannelID.read(in);
+
+			this.addTarget(vertexID, outputGateID, sourceChannelID,
+					CompactEncoding.readVarInt(in));
+		}
+	}
+}
@@ -23,6 +23,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.QuantileSketch;
 
 /**
  * This class stores information about the latency of a specific edge (channel).
@@ -43,6 +44,12 @@ public final class EdgeLatency extends AbstractQosReportRecord {
 	 */
 	private double edgeLatency;
 
+	/**
+	 * Sketch of the distribution of the measured latencies in milliseconds, or
+	 * null if the measurements have not been sketched.
+	 */
+	private QuantileSketch latencySketch;
+
 	/**
 	 * Constructs a new path latency object.
 	 * 
@@ -52,9 +59,26 @@ public final class EdgeLatency extends AbstractQosReportRecord {
 	 *            the channel latency in milliseconds
 	 */
 	public EdgeLatency(QosReporterID.Edge reporterID, double edgeLatency) {
+		this(reporterID, edgeLatency, null);
+	}
+
+	/**
+	 * Constructs a new path latency object.
+	 * 
+	 * @param sourceChannelID
+	 *            {@link ChannelID} representing the source end of the channel
+	 * @param channelLatency
+	 *            the mean channel latency in milliseconds
+	 * @param latencySketch
+	 *            sketch of the distribution of the channel latency in
+	 *            milliseconds, may be null
+	 */
+	public EdgeLatency(QosReporterID.Edge reporterID, double edgeLatency,
+			QuantileSketch latencySketch) {
 
 		this.reporterID = reporterID;
 		this.edgeLatency = edgeLatency;
+		this.latencySketch = latencySketch;
 		this.counter = 1;
 	}
 
@@ -67,6 +91,12 @@ public final class EdgeLatency extends AbstractQosReportRecord {
 	public void add(EdgeLatency other) {
 		this.counter++;
 		this.edgeLatency += other.getEdgeLatency();
+
+		if (this.latencySketch != null && other.latencySketch != null) {
+			this.latencySketch.merge(other.latencySketch);
+		} else {
+			this.latencySketch = null;
+		}
 	}
 
 	/**
@@ -76,6 +106,10 @@ public final class EdgeLatency extends AbstractQosReportRecord {
 	public void write(final DataOutput out) throws IOException {
 		this.reporterID.write(out);
 		out.writeDouble(this.getEdgeLatency());
+		out.writeBoolean(this.latencySketch != null);
+		if (this.latencySketch != null) {
+			this.latencySketch.write(out);
+		}
 	}
 
 	/**
@@ -87,6 +121,12 @@ public final class EdgeLatency extends AbstractQosReportRecord {
 		this.reporterID.read(in);
 		this.edgeLatency = in.readDouble();
 		this.counter = 1;
+		if (in.readBoolean()) {
+			this.latencySketch = new QuantileSketch();
+			this.latencySketch.read(in);
+		} else {
+			this.latencySketch = null;
+		}
 	}
 
 	/**
@@ -108,6 +148,16 @@ public final class EdgeLatency extends AbstractQosReportRecord {
 		return this.edgeLatency / this.counter;
 	}
 
+	/**
+	 * Returns the sketch of the distribution of the channel latency in
+	 * milliseconds.
+	 * 
+	 * @return the sketch, or null if the latencies have not been sketched
+	 */
+	public QuantileSketch getLatencySketch() {
+		return this.latencySketch;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
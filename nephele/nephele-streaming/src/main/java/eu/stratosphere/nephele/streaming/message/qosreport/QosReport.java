@@ -5,16 +5,23 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
 import eu.stratosphere.nephele.streaming.message.action.EdgeQosReporterConfig;
 import eu.stratosphere.nephele.streaming.message.action.VertexQosReporterConfig;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.QuantileSketch;
+import eu.stratosphere.nephele.streaming.util.CompactEncoding;
 
 /**
  * Holds Qos report data to be shipped to a specific Qos manager. Instead of
@@ -22,18 +29,62 @@ import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
  * batch. Most internal fields of this class are initialized in a lazy fashion,
  * thus (empty) instances of this class have a small memory footprint.
  * 
+ * Reports sent to remote Qos managers carry reporter ID handles instead of
+ * full reporter IDs (see {@link QosReporterIDEncoder}), and their values are
+ * written in a compact form with single precision.
+ * 
  * @author Bjoern Lohrmann
  */
 public class QosReport extends AbstractSerializableQosMessage {
 
+	private static final Log LOG = LogFactory.getLog(QosReport.class);
+
 	private HashMap<QosReporterID.Edge, EdgeLatency> edgeLatencies;
 
 	private HashMap<QosReporterID.Edge, EdgeStatistics> edgeStatistics;
 
 	private HashMap<QosReporterID.Vertex, VertexStatistics> vertexStatistics;
 
+	/**
+	 * The group keys of vertex statistics, which are written in one group with
+	 * the statistics of other members of the same group vertex. Only used when
+	 * sending.
+	 */
+	private HashMap<QosReporterID.Vertex, VertexStatisticsGroupKey> vertexStatisticsGroupKeys;
+
 	private LinkedList<VertexQosReporterConfig> vertexReporterAnnouncements;
 
+	/**
+	 * The encoder that has assigned the reporter ID handles of this report, or
+	 * null if full reporter IDs are sent. Only used when sending.
+	 */
+	private QosReporterIDEncoder reporterIDEncoder;
+
+	/**
+	 * The handles of all reporter IDs in this report. Only used when sending.
+	 */
+	private HashMap<QosReporterID, Integer> reporterHandles;
+
+	/**
+	 * The reporter IDs that are defined by this report, in the order of their
+	 * handles. Only used when sending.
+	 */
+	private ArrayList<QosReporterID> reporterIDDefinitions;
+
+	private int firstDefinedHandle;
+
+	/**
+	 * Resolves the reporter ID handles of this report. Only used when
+	 * receiving.
+	 */
+	private QosReporterIDDecoder reporterIDDecoder;
+
+	/**
+	 * The number of records with unresolvable reporter ID handles. Only used
+	 * when receiving.
+	 */
+	private int noOfUnresolvedRecords;
+
 	private LinkedList<EdgeQosReporterConfig> edgeReporterAnnouncements;
 
 	/**
@@ -153,6 +204,23 @@ public class QosReport extends AbstractSerializableQosMessage {
 		}
 	}
 
+	/**
+	 * Adds the given vertex statistics and marks them to be shipped in one
+	 * group together with all other vertex statistics with the same group key
+	 * (see {@link VertexStatistics#writeGroup(DataOutput, List)}).
+	 */
+	public void addVertexStatistics(VertexStatistics vertexStats,
+			VertexStatisticsGroupKey groupKey) {
+
+		addVertexStatistics(vertexStats);
+
+		if (this.vertexStatisticsGroupKeys == null) {
+			this.vertexStatisticsGroupKeys = new HashMap<QosReporterID.Vertex, VertexStatisticsGroupKey>();
+		}
+		this.vertexStatisticsGroupKeys.put(vertexStats.getReporterID(),
+				groupKey);
+	}
+
 	public Collection<VertexStatistics> getVertexStatistics() {
 		if (this.vertexStatistics == null) {
 			return Collections.emptyList();
@@ -160,12 +228,69 @@ public class QosReport extends AbstractSerializableQosMessage {
 		return this.vertexStatistics.values();
 	}
 
+	/**
+	 * Assigns handles to all reporter IDs of this report with the given
+	 * encoder. When serialized, the report then contains the full IDs of only
+	 * those reporters that have not been defined by the encoder before. This
+	 * must be called after all records have been added and before the report
+	 * is handed to the thread that serializes it.
+	 */
+	public void encodeReporterIDs(QosReporterIDEncoder encoder) {
+		this.reporterIDEncoder = encoder;
+		this.reporterHandles = new HashMap<QosReporterID, Integer>();
+		this.reporterIDDefinitions = new ArrayList<QosReporterID>();
+		this.firstDefinedHandle = encoder.getNoOfDefinedHandles();
+
+		if (this.edgeLatencies != null) {
+			for (QosReporterID reporterID : this.edgeLatencies.keySet()) {
+				this.assignReporterHandle(reporterID);
+			}
+		}
+
+		if (this.edgeStatistics != null) {
+			for (QosReporterID reporterID : this.edgeStatistics.keySet()) {
+				this.assignReporterHandle(reporterID);
+			}
+		}
+
+		if (this.vertexStatistics != null) {
+			for (QosReporterID reporterID : this.vertexStatistics.keySet()) {
+				this.assignReporterHandle(reporterID);
+			}
+		}
+	}
+
+	private void assignReporterHandle(QosReporterID reporterID) {
+		if (this.reporterHandles.containsKey(reporterID)) {
+			return;
+		}
+
+		Integer handle = this.reporterIDEncoder.getHandle(reporterID);
+		if (handle == null) {
+			handle = this.reporterIDEncoder.define(reporterID);
+			this.reporterIDDefinitions.add(reporterID);
+		}
+		this.reporterHandles.put(reporterID, handle);
+	}
+
+	/**
+	 * Invalidates the encoder that has assigned the reporter ID handles of
+	 * this report, because the report (and possibly the definitions it
+	 * carries) could not be delivered.
+	 */
+	public void invalidateReporterIDEncoder() {
+		if (this.reporterIDEncoder != null) {
+			this.reporterIDEncoder.invalidate();
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void write(final DataOutput out) throws IOException {
 		super.write(out);
+		this.writeReporterIDDefinitions(out);
 		this.writeEdgeLatencies(out);
 		this.writeEdgeStatistics(out);
 		this.writeVertexLatencies(out);
@@ -197,57 +322,134 @@ public class QosReport extends AbstractSerializableQosMessage {
 		}
 	}
 
+	private void writeReporterIDDefinitions(DataOutput out)
+			throws IOException {
+
+		out.writeBoolean(this.reporterIDEncoder != null);
+		if (this.reporterIDEncoder == null) {
+			return;
+		}
+
+		out.writeLong(this.reporterIDEncoder.getDictionaryID());
+		Long supersededDictionaryID = this.reporterIDEncoder
+				.getSupersededDictionaryID();
+		out.writeBoolean(supersededDictionaryID != null);
+		if (supersededDictionaryID != null) {
+			out.writeLong(supersededDictionaryID);
+		}
+		CompactEncoding.writeVarInt(out, this.firstDefinedHandle);
+		CompactEncoding.writeVarInt(out, this.reporterIDDefinitions.size());
+		for (QosReporterID reporterID : this.reporterIDDefinitions) {
+			out.writeBoolean(reporterID instanceof QosReporterID.Vertex);
+			reporterID.write(out);
+		}
+	}
+
+	private void writeReporterID(DataOutput out, QosReporterID reporterID)
+			throws IOException {
+
+		if (this.reporterHandles != null) {
+			CompactEncoding.writeVarInt(out,
+					this.reporterHandles.get(reporterID));
+		} else {
+			reporterID.write(out);
+		}
+	}
+
 	private void writeEdgeLatencies(DataOutput out) throws IOException {
 		if (this.edgeLatencies != null) {
-			out.writeInt(this.edgeLatencies.size());
+			CompactEncoding.writeVarInt(out, this.edgeLatencies.size());
 			for (Entry<QosReporterID.Edge, EdgeLatency> entry : this.edgeLatencies
 					.entrySet()) {
-				entry.getKey().write(out);
-				out.writeDouble(entry.getValue().getEdgeLatency());
+				this.writeReporterID(out, entry.getKey());
+				out.writeFloat((float) entry.getValue().getEdgeLatency());
+
+				QuantileSketch sketch = entry.getValue().getLatencySketch();
+				out.writeBoolean(sketch != null);
+				if (sketch != null) {
+					sketch.write(out);
+				}
 			}
 		} else {
-			out.writeInt(0);
+			CompactEncoding.writeVarInt(out, 0);
 		}
 	}
 
 	private void writeEdgeStatistics(DataOutput out) throws IOException {
 		if (this.edgeStatistics != null) {
-			out.writeInt(this.edgeStatistics.size());
+			CompactEncoding.writeVarInt(out, this.edgeStatistics.size());
 			for (Entry<QosReporterID.Edge, EdgeStatistics> entry : this.edgeStatistics
 					.entrySet()) {
-				entry.getKey().write(out);
-				out.writeDouble(entry.getValue().getThroughput());
-				out.writeDouble(entry.getValue().getOutputBufferLifetime());
-				out.writeDouble(entry.getValue().getRecordsPerBuffer());
-				out.writeDouble(entry.getValue().getRecordsPerSecond());
+				this.writeReporterID(out, entry.getKey());
+				out.writeFloat((float) entry.getValue().getThroughput());
+				out.writeFloat((float) entry.getValue().getOutputBufferLifetime());
+				out.writeFloat((float) entry.getValue().getRecordsPerBuffer());
+				out.writeFloat((float) entry.getValue().getRecordsPerSecond());
 			}
 		} else {
-			out.writeInt(0);
+			CompactEncoding.writeVarInt(out, 0);
 		}
 	}
 
 	private void writeVertexLatencies(DataOutput out) throws IOException {
 		if (this.vertexStatistics != null) {
-			out.writeInt(this.vertexStatistics.size());
-			for (VertexStatistics vertexStat : this.vertexStatistics.values()) {
-				vertexStat.write(out);
+			Collection<List<VertexStatistics>> groups = groupVertexStatistics();
+			CompactEncoding.writeVarInt(out, groups.size());
+			for (List<VertexStatistics> group : groups) {
+				CompactEncoding.writeVarInt(out, group.size());
+				for (VertexStatistics member : group) {
+					this.writeReporterID(out, member.getReporterID());
+				}
+				VertexStatistics.writeGroup(out, group);
 			}
 		} else {
-			out.writeInt(0);
+			CompactEncoding.writeVarInt(out, 0);
 		}
 	}
 
+	private Collection<List<VertexStatistics>> groupVertexStatistics() {
+		LinkedHashMap<Object, List<VertexStatistics>> groups = new LinkedHashMap<Object, List<VertexStatistics>>();
+
+		for (VertexStatistics vertexStat : this.vertexStatistics.values()) {
+			Object groupKey = null;
+			if (this.vertexStatisticsGroupKeys != null) {
+				groupKey = this.vertexStatisticsGroupKeys.get(vertexStat
+						.getReporterID());
+			}
+			if (groupKey == null) {
+				// statistics without group key form a group of their own
+				groupKey = vertexStat.getReporterID();
+			}
+
+			List<VertexStatistics> group = groups.get(groupKey);
+			if (group == null) {
+				group = new ArrayList<VertexStatistics>();
+				groups.put(groupKey, group);
+			}
+			group.add(vertexStat);
+		}
+
+		return groups.values();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void read(final DataInput in) throws IOException {
 		super.read(in);
+		this.readReporterIDDefinitions(in);
 		this.readEdgeLatencies(in);
 		this.readOutputEdgeStatistics(in);
 		this.readVertexStatistics(in);
 		this.readVertexReporterAnnouncements(in);
 		this.readEdgeReporterAnnouncements(in);
+
+		if (this.noOfUnresolvedRecords > 0) {
+			LOG.warn(String.format(
+					"Dropped %d Qos report records with unknown reporter IDs",
+					this.noOfUnresolvedRecords));
+		}
 	}
 
 	private void readVertexReporterAnnouncements(DataInput in)
@@ -271,36 +473,126 @@ public class QosReport extends AbstractSerializableQosMessage {
 		}
 	}
 
-	private void readEdgeLatencies(DataInput in) throws IOException {
-		int toRead = in.readInt();
+	private void readReporterIDDefinitions(DataInput in) throws IOException {
+		if (!in.readBoolean()) {
+			this.reporterIDDecoder = null;
+			return;
+		}
+
+		this.reporterIDDecoder = QosReporterIDDecoder.getDecoder(
+				this.getJobID(), in.readLong());
+		if (in.readBoolean()) {
+			QosReporterIDDecoder.releaseDecoder(this.getJobID(),
+					in.readLong());
+		}
+		int handle = CompactEncoding.readVarInt(in);
+		int toRead = CompactEncoding.readVarInt(in);
 		for (int i = 0; i < toRead; i++) {
+			QosReporterID reporterID;
+			if (in.readBoolean()) {
+				reporterID = new QosReporterID.Vertex();
+			} else {
+				reporterID = new QosReporterID.Edge();
+			}
+			reporterID.read(in);
+			this.reporterIDDecoder.define(handle, reporterID);
+			handle++;
+		}
+	}
+
+	/**
+	 * @return the edge reporter ID, or null if its handle cannot be resolved.
+	 */
+	private QosReporterID.Edge readEdgeReporterID(DataInput in)
+			throws IOException {
+
+		if (this.reporterIDDecoder == null) {
 			QosReporterID.Edge reporterID = new QosReporterID.Edge();
 			reporterID.read(in);
+			return reporterID;
+		}
 
-			EdgeLatency edgeLatency = new EdgeLatency(reporterID,
-					in.readDouble());
-			this.getOrCreateEdgeLatencyMap().put(reporterID, edgeLatency);
+		QosReporterID reporterID = this.reporterIDDecoder
+				.resolve(CompactEncoding.readVarInt(in));
+		if (reporterID instanceof QosReporterID.Edge) {
+			return (QosReporterID.Edge) reporterID;
+		}
+		this.noOfUnresolvedRecords++;
+		return null;
+	}
+
+	/**
+	 * @return the vertex reporter ID, or null if its handle cannot be
+	 *         resolved.
+	 */
+	private QosReporterID.Vertex readVertexReporterID(DataInput in)
+			throws IOException {
+
+		if (this.reporterIDDecoder == null) {
+			QosReporterID.Vertex reporterID = new QosReporterID.Vertex();
+			reporterID.read(in);
+			return reporterID;
+		}
+
+		QosReporterID reporterID = this.reporterIDDecoder
+				.resolve(CompactEncoding.readVarInt(in));
+		if (reporterID instanceof QosReporterID.Vertex) {
+			return (QosReporterID.Vertex) reporterID;
+		}
+		this.noOfUnresolvedRecords++;
+		return null;
+	}
+
+	private void readEdgeLatencies(DataInput in) throws IOException {
+		int toRead = CompactEncoding.readVarInt(in);
+		for (int i = 0; i < toRead; i++) {
+			QosReporterID.Edge reporterID = this.readEdgeReporterID(in);
+
+			double latency = in.readFloat();
+
+			QuantileSketch sketch = null;
+			if (in.readBoolean()) {
+				sketch = new QuantileSketch();
+				sketch.read(in);
+			}
+
+			if (reporterID != null) {
+				EdgeLatency edgeLatency = new EdgeLatency(reporterID,
+						latency, sketch);
+				this.getOrCreateEdgeLatencyMap().put(reporterID, edgeLatency);
+			}
 		}
 	}
 
 	private void readOutputEdgeStatistics(DataInput in) throws IOException {
-		int toRead = in.readInt();
+		int toRead = CompactEncoding.readVarInt(in);
 		for (int i = 0; i < toRead; i++) {
-			QosReporterID.Edge reporterID = new QosReporterID.Edge();
-			reporterID.read(in);
+			QosReporterID.Edge reporterID = this.readEdgeReporterID(in);
 
 			EdgeStatistics edgeStats = new EdgeStatistics(reporterID,
-					in.readDouble(), in.readDouble(), in.readDouble(),
-					in.readDouble());
-			this.getOrCreateEdgeStatisticsMap().put(reporterID, edgeStats);
+					in.readFloat(), in.readFloat(), in.readFloat(),
+					in.readFloat());
+
+			if (reporterID != null) {
+				this.getOrCreateEdgeStatisticsMap().put(reporterID, edgeStats);
+			}
 		}
 	}
 
 	private void readVertexStatistics(DataInput in) throws IOException {
-		int toRead = in.readInt();
-		for (int i = 0; i < toRead; i++) {
-			VertexStatistics vertexStat = new VertexStatistics();
-			vertexStat.read(in);
+		int groupsToRead = CompactEncoding.readVarInt(in);
+		ArrayList<QosReporterID.Vertex> reporterIDs = new ArrayList<QosReporterID.Vertex>();
+		ArrayList<VertexStatistics> members = new ArrayList<VertexStatistics>();
+		for (int i = 0; i < groupsToRead; i++) {
+			int noOfMembers = CompactEncoding.readVarInt(in);
+			for (int j = 0; j < noOfMembers; j++) {
+				reporterIDs.add(this.readVertexReporterID(in));
+			}
+			VertexStatistics.readGroup(in, reporterIDs, members);
+			reporterIDs.clear();
+		}
+
+		for (VertexStatistics vertexStat : members) {
 			this.getOrCreateVertexStatisticsMap().put(
 					vertexStat.getReporterID(), vertexStat);
 		}
@@ -0,0 +1,86 @@
+package eu.stratosphere.nephele.streaming.message.qosreport;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
+
+/**
+ * Resolves the reporter ID handles contained in {@link QosReport}s, which
+ * have been assigned by the {@link QosReporterIDEncoder} with the same
+ * dictionary ID.
+ *
+ * Since reports are deserialized before they are handed to a Qos manager,
+ * decoders are kept in a static registry per job and dictionary ID. A decoder
+ * is released with {@link #releaseDecoder(JobID, long)} once a report of the
+ * encoder that supersedes it has been received. The remaining decoders are
+ * released with {@link #releaseDecoders(JobID)} when the job's stream
+ * environment shuts down.
+ *
+ * This class is thread-safe.
+ */
+public class QosReporterIDDecoder {
+
+	private static final ConcurrentHashMap<JobID, ConcurrentHashMap<Long, QosReporterIDDecoder>> DECODERS = new ConcurrentHashMap<JobID, ConcurrentHashMap<Long, QosReporterIDDecoder>>();
+
+	private final ArrayList<QosReporterID> reporterIDs = new ArrayList<QosReporterID>();
+
+	public static QosReporterIDDecoder getDecoder(JobID jobID,
+			long dictionaryID) {
+
+		ConcurrentHashMap<Long, QosReporterIDDecoder> jobDecoders = DECODERS
+				.get(jobID);
+		if (jobDecoders == null) {
+			jobDecoders = new ConcurrentHashMap<Long, QosReporterIDDecoder>();
+			ConcurrentHashMap<Long, QosReporterIDDecoder> existing = DECODERS
+					.putIfAbsent(jobID, jobDecoders);
+			if (existing != null) {
+				jobDecoders = existing;
+			}
+		}
+
+		QosReporterIDDecoder decoder = jobDecoders.get(dictionaryID);
+		if (decoder == null) {
+			decoder = new QosReporterIDDecoder();
+			QosReporterIDDecoder existing = jobDecoders.putIfAbsent(
+					dictionaryID, decoder);
+			if (existing != null) {
+				decoder = existing;
+			}
+		}
+
+		return decoder;
+	}
+
+	public static void releaseDecoders(JobID jobID) {
+		DECODERS.remove(jobID);
+	}
+
+	public static void releaseDecoder(JobID jobID, long dictionaryID) {
+		ConcurrentHashMap<Long, QosReporterIDDecoder> jobDecoders = DECODERS
+				.get(jobID);
+		if (jobDecoders != null) {
+			jobDecoders.remove(dictionaryID);
+		}
+	}
+
+	public synchronized void define(int handle, QosReporterID reporterID) {
+		while (this.reporterIDs.size() <= handle) {
+			this.reporterIDs.add(null);
+		}
+		this.reporterIDs.set(handle, reporterID);
+	}
+
+	/**
+	 * @return the reporter ID with the given handle, or null if the handle has
+	 *         not been defined (because the report containing the definition
+	 *         has been lost).
+	 */
+	public synchronized QosReporterID resolve(int handle) {
+		if (handle < this.reporterIDs.size()) {
+			return this.reporterIDs.get(handle);
+		}
+		return null;
+	}
+}
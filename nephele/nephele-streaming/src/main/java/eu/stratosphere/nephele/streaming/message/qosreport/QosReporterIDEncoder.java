@@ -0,0 +1,121 @@
+package eu.stratosphere.nephele.streaming.message.qosreport;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
+
+/**
+ * Assigns short integer handles to the Qos reporter IDs that are sent in
+ * {@link QosReport}s to one Qos manager. The full ID of a reporter is only
+ * sent with the first report that contains it (its definition), subsequent
+ * reports only contain the handle. The Qos manager resolves handles with the
+ * {@link QosReporterIDDecoder} that has the same dictionary ID as this
+ * encoder.
+ *
+ * A definition is only known to the Qos manager once the report carrying it
+ * has been delivered. Hence, when sending a report fails, the encoder is
+ * invalidated and must be replaced with a fresh one (with a new dictionary ID)
+ * that defines all reporters again. Since definitions may also be lost without
+ * the encoder noticing (e.g. when the Qos manager has released its decoders),
+ * encoders are replaced periodically as well (see {@link #RESYNC_INTERVAL}).
+ * The reports of a replacement encoder carry the dictionary ID of the encoder
+ * they supersede, so that the Qos manager can release its decoder.
+ *
+ * Handles are only assigned by the thread that prepares reports for sending,
+ * whereas {@link #invalidate()} may be called by any thread.
+ */
+public class QosReporterIDEncoder {
+
+	private static final Random RANDOM = new Random();
+
+	/**
+	 * Time in milliseconds after which an encoder is replaced, so that the full
+	 * dictionary is sent again. This bounds the time during which reports with
+	 * unresolvable handles are dropped by the Qos manager.
+	 */
+	public static final long RESYNC_INTERVAL = 60000;
+
+	private final long dictionaryID;
+
+	/**
+	 * The dictionary ID of the encoder replaced by this one, or null.
+	 */
+	private final Long supersededDictionaryID;
+
+	private final long creationTime;
+
+	private final HashMap<QosReporterID, Integer> handles = new HashMap<QosReporterID, Integer>();
+
+	private volatile boolean invalidated;
+
+	public QosReporterIDEncoder() {
+		this(null);
+	}
+
+	/**
+	 * Creates a fresh encoder that replaces the given one.
+	 * 
+	 * @param superseded
+	 *            the encoder to replace, or null if there is none
+	 */
+	public QosReporterIDEncoder(QosReporterIDEncoder superseded) {
+		this.dictionaryID = RANDOM.nextLong();
+		this.supersededDictionaryID = (superseded != null) ? superseded
+				.getDictionaryID() : null;
+		this.creationTime = System.currentTimeMillis();
+		this.invalidated = false;
+	}
+
+	public long getDictionaryID() {
+		return this.dictionaryID;
+	}
+
+	/**
+	 * @return the dictionary ID of the encoder replaced by this one, or null
+	 *         if this encoder has not replaced another one.
+	 */
+	public Long getSupersededDictionaryID() {
+		return this.supersededDictionaryID;
+	}
+
+	/**
+	 * @return the handle of the given reporter ID, or null if the reporter ID
+	 *         has not been defined yet.
+	 */
+	public Integer getHandle(QosReporterID reporterID) {
+		return this.handles.get(reporterID);
+	}
+
+	/**
+	 * Assigns the next free handle to the given reporter ID. Handles are
+	 * assigned consecutively, starting with 0.
+	 *
+	 * @return the new handle
+	 */
+	public int define(QosReporterID reporterID) {
+		int handle = this.handles.size();
+		this.handles.put(reporterID, handle);
+		return handle;
+	}
+
+	public int getNoOfDefinedHandles() {
+		return this.handles.size();
+	}
+
+	public void invalidate() {
+		this.invalidated = true;
+	}
+
+	public boolean isInvalidated() {
+		return this.invalidated;
+	}
+
+	/**
+	 * @return true if this encoder has been invalidated or is older than
+	 *         {@link #RESYNC_INTERVAL}, and must therefore be replaced.
+	 */
+	public boolean needsReplacement(long now) {
+		return this.invalidated || now - this.creationTime >= RESYNC_INTERVAL;
+	}
+}
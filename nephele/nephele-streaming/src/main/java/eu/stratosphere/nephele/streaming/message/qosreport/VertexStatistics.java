@@ -18,14 +18,16 @@ package eu.stratosphere.nephele.streaming.message.qosreport;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.List;
 
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
 import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.Sample;
+import eu.stratosphere.nephele.streaming.util.CompactEncoding;
 
 /**
  * This class stores information about the latency (interread time), record
- * interarrival time as well as record consumption and emission rate of a vertex
- * (task).
+ * interarrival time, record consumption and emission rate as well as the
+ * fraction of time blocked on input and output of a vertex (task).
  * 
  * @author warneke, Bjoern Lohrmann
  */
@@ -37,6 +39,19 @@ public final class VertexStatistics extends AbstractQosReportRecord {
 	private double recordsEmittedPerSec;
 	private Sample recordInterArrivalTimeMillis;
 
+	/**
+	 * Fraction of the report interval the task has waited for input on the
+	 * reporter's input gate.
+	 */
+	private double inputBlockedFraction;
+
+	/**
+	 * Fraction of the report interval the task has waited for empty output
+	 * buffers of the reporter's output gate, i.e. has been throttled by its
+	 * consumers.
+	 */
+	private double outputBlockedFraction;
+
 	public VertexStatistics(QosReporterID.Vertex reporterID,
 			Sample igInterReadTimeMillis, double recordsConsumedPerSec,
 			double recordsEmittedPerSec, Sample recordInterArrivalTimeMillis) {
@@ -92,6 +107,33 @@ public final class VertexStatistics extends AbstractQosReportRecord {
 		return recordInterArrivalTimeMillis;
 	}
 
+	public double getInputBlockedFraction() {
+		return inputBlockedFraction;
+	}
+
+	public void setInputBlockedFraction(double inputBlockedFraction) {
+		this.inputBlockedFraction = inputBlockedFraction;
+	}
+
+	public double getOutputBlockedFraction() {
+		return outputBlockedFraction;
+	}
+
+	public void setOutputBlockedFraction(double outputBlockedFraction) {
+		this.outputBlockedFraction = outputBlockedFraction;
+	}
+
+	/**
+	 * Converts the time blocked during a report interval into the fraction of
+	 * the interval, which is at most 1.
+	 */
+	public static double toBlockedFraction(long blockedNanos, double secsPassed) {
+		if (secsPassed <= 0) {
+			return 0;
+		}
+		return Math.min(1, blockedNanos / (secsPassed * 1000000000));
+	}
+
 	public VertexStatistics fuseWith(VertexStatistics other) {
 
 		boolean hasInputGate = reporterID.getInputGateID() != null;
@@ -100,6 +142,8 @@ public final class VertexStatistics extends AbstractQosReportRecord {
 		VertexStatistics fused = new VertexStatistics(reporterID,
 				igInterReadTimeMillis, recordsConsumedPerSec,
 				recordsEmittedPerSec, recordInterArrivalTimeMillis);
+		fused.inputBlockedFraction = inputBlockedFraction;
+		fused.outputBlockedFraction = outputBlockedFraction;
 
 		if (hasInputGate) {
 			fused.recordInterArrivalTimeMillis = recordInterArrivalTimeMillis
@@ -111,16 +155,141 @@ public final class VertexStatistics extends AbstractQosReportRecord {
 
 			fused.recordsConsumedPerSec = (recordsConsumedPerSec + other
 					.getRecordsConsumedPerSec()) / 2;
+
+			fused.inputBlockedFraction = (inputBlockedFraction + other
+					.getInputBlockedFraction()) / 2;
 		}
 
 		if (hasOutputGate) {
 			fused.recordsEmittedPerSec = (recordsEmittedPerSec + other
 					.getRecordsEmittedPerSec()) / 2;
+
+			fused.outputBlockedFraction = (outputBlockedFraction + other
+					.getOutputBlockedFraction()) / 2;
 		}
 
 		return fused;
 	}
 
+	/**
+	 * Writes the statistics of several members of the same group vertex, that
+	 * have been reported on the same input/output gate combination. All
+	 * statistics are written for each member, because the Qos manager
+	 * evaluates their skew over the members of a group vertex, and uses the
+	 * members' inter-arrival time CVs for its queueing models. Fusing the
+	 * inter-arrival times of the members would add the variance between the
+	 * members' means to the CV. The gate combination and the sampling duration
+	 * of the inter-arrival times are only written once per group. The record
+	 * inter-arrival time of each member is written as number of sample points,
+	 * mean and CV, without a quantile sketch, as the Qos manager does not use
+	 * more. The reporter IDs of the members are not written, they have to be
+	 * written by the caller in the order of the given members.
+	 * 
+	 * @param members
+	 *            non-empty list of statistics with the same gate combination
+	 */
+	public static void writeGroup(DataOutput out, List<VertexStatistics> members)
+			throws IOException {
+
+		VertexStatistics first = members.get(0);
+		boolean hasInputGate = first.reporterID.getInputGateID() != null;
+		boolean hasOutputGate = first.reporterID.getOutputGateID() != null;
+
+		out.writeBoolean(hasInputGate);
+		out.writeBoolean(hasOutputGate);
+
+		if (hasInputGate) {
+			CompactEncoding.writeSignedVarInt(out,
+					first.recordInterArrivalTimeMillis.getSamplingDurationMillis());
+		}
+
+		for (VertexStatistics member : members) {
+			if (hasInputGate) {
+				Sample interArrivalTime = member.recordInterArrivalTimeMillis;
+				CompactEncoding.writeVarInt(out,
+						interArrivalTime.getNoOfSamplePoints());
+				out.writeFloat((float) interArrivalTime.getMean());
+				out.writeFloat((float) computeCoefficientOfVariation(interArrivalTime));
+
+				member.igInterReadTimeMillis.write(out);
+				out.writeFloat((float) member.recordsConsumedPerSec);
+				out.writeFloat((float) member.inputBlockedFraction);
+			}
+
+			if (hasOutputGate) {
+				out.writeFloat((float) member.recordsEmittedPerSec);
+				out.writeFloat((float) member.outputBlockedFraction);
+			}
+		}
+	}
+
+	/**
+	 * Reads statistics written with {@link #writeGroup(DataOutput, List)}.
+	 * Each member is restored with its own statistics. The variance of a
+	 * member's record inter-arrival time is restored from its mean and CV.
+	 * 
+	 * @param reporterIDs
+	 *            the reporter IDs of the group members. Members with a null
+	 *            reporter ID are read, but not added to the given list of
+	 *            members.
+	 */
+	public static void readGroup(DataInput in,
+			List<QosReporterID.Vertex> reporterIDs,
+			List<VertexStatistics> members) throws IOException {
+
+		boolean hasInputGate = in.readBoolean();
+		boolean hasOutputGate = in.readBoolean();
+
+		int interArrivalSamplingDurationMillis = 0;
+		if (hasInputGate) {
+			interArrivalSamplingDurationMillis = CompactEncoding
+					.readSignedVarInt(in);
+		}
+
+		for (QosReporterID.Vertex reporterID : reporterIDs) {
+			Sample interArrivalTime = null;
+			Sample interReadTime = null;
+			double recordsConsumedPerSec = -1;
+			double inputBlockedFraction = 0;
+			if (hasInputGate) {
+				int noOfSamplePoints = CompactEncoding.readVarInt(in);
+				double mean = in.readFloat();
+				double stdDev = in.readFloat() * mean;
+				interArrivalTime = new Sample(
+						interArrivalSamplingDurationMillis, noOfSamplePoints,
+						mean, stdDev * stdDev);
+
+				interReadTime = new Sample();
+				interReadTime.read(in);
+				recordsConsumedPerSec = in.readFloat();
+				inputBlockedFraction = in.readFloat();
+			}
+
+			double recordsEmittedPerSec = -1;
+			double outputBlockedFraction = 0;
+			if (hasOutputGate) {
+				recordsEmittedPerSec = in.readFloat();
+				outputBlockedFraction = in.readFloat();
+			}
+
+			if (reporterID != null) {
+				VertexStatistics member = new VertexStatistics(reporterID,
+						interReadTime, recordsConsumedPerSec,
+						recordsEmittedPerSec, interArrivalTime);
+				member.inputBlockedFraction = inputBlockedFraction;
+				member.outputBlockedFraction = outputBlockedFraction;
+				members.add(member);
+			}
+		}
+	}
+
+	private static double computeCoefficientOfVariation(Sample sample) {
+		if (sample.getMean() == 0) {
+			return 0;
+		}
+		return Math.sqrt(sample.getVariance()) / sample.getMean();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -135,10 +304,12 @@ public final class VertexStatistics extends AbstractQosReportRecord {
 			recordInterArrivalTimeMillis.write(out);
 			igInterReadTimeMillis.write(out);
 			out.writeDouble(this.getRecordsConsumedPerSec());
+			out.writeDouble(this.getInputBlockedFraction());
 		}
 
 		if (hasOutputGate) {
 			out.writeDouble(this.getRecordsEmittedPerSec());
+			out.writeDouble(this.getOutputBlockedFraction());
 		}
 	}
 
@@ -159,10 +330,12 @@ public final class VertexStatistics extends AbstractQosReportRecord {
 			igInterReadTimeMillis = new Sample();
 			igInterReadTimeMillis.read(in);
 			this.recordsConsumedPerSec = in.readDouble();
+			this.inputBlockedFraction = in.readDouble();
 		}
 
 		if (hasOutputGate) {
 			this.recordsEmittedPerSec = in.readDouble();
+			this.outputBlockedFraction = in.readDouble();
 		}
 	}
 }
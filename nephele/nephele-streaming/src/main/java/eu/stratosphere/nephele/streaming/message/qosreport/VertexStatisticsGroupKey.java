@@ -0,0 +1,47 @@
+package eu.stratosphere.nephele.streaming.message.qosreport;
+
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.message.action.VertexQosReporterConfig;
+
+/**
+ * Identifies the {@link VertexStatistics} of the members of a group vertex,
+ * that are reported on the same input/output gate combination. Within a
+ * {@link QosReport}, the statistics of such members are written as one group,
+ * which shares the gate combination and sampling duration of the members (see
+ * {@link VertexStatistics#writeGroup}).
+ */
+public final class VertexStatisticsGroupKey {
+
+	private final JobVertexID groupVertexID;
+
+	private final int inputGateIndex;
+
+	private final int outputGateIndex;
+
+	public VertexStatisticsGroupKey(VertexQosReporterConfig reporterConfig) {
+		this.groupVertexID = reporterConfig.getGroupVertexID();
+		this.inputGateIndex = reporterConfig.getInputGateIndex();
+		this.outputGateIndex = reporterConfig.getOutputGateIndex();
+	}
+
+	@Override
+	public boolean equals(Object otherObj) {
+		if (!(otherObj instanceof VertexStatisticsGroupKey)) {
+			return false;
+		}
+
+		VertexStatisticsGroupKey other = (VertexStatisticsGroupKey) otherObj;
+		return this.groupVertexID.equals(other.groupVertexID)
+				&& this.inputGateIndex == other.inputGateIndex
+				&& this.outputGateIndex == other.outputGateIndex;
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder().append(this.groupVertexID)
+				.append(this.inputGateIndex).append(this.outputGateIndex)
+				.toHashCode();
+	}
+}
@@ -17,31 +17,52 @@ package eu.stratosphere.nephele.streaming.taskmanager;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.io.IOReadableWritable;
 import eu.stratosphere.nephele.ipc.RPC;
 import eu.stratosphere.nephele.net.NetUtils;
 import eu.stratosphere.nephele.protocols.PluginCommunicationProtocol;
 import eu.stratosphere.nephele.streaming.StreamingPluginLoader;
 import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
+import eu.stratosphere.nephele.streaming.message.QosMessageBatch;
+import eu.stratosphere.nephele.streaming.message.qosreport.QosReport;
+import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
 import eu.stratosphere.nephele.util.StringUtils;
 
 /**
- * This class implements a thread to send messages between Qos managers and
- * reporters in an asynchronous fashion. The main reason for asynchronous
- * communication is not to block any threads with RPC call latency.
+ * This class sends messages between Qos managers and reporters in an
+ * asynchronous fashion. The main reason for asynchronous communication is not
+ * to block any threads with RPC call latency.
+ * <p>
+ * Each destination has its own send queue and sender thread, hence a slow or
+ * unreachable destination does not delay the messages to any other
+ * destination. The messages to the same destination are sent in the order in
+ * which they have been queued. Qos reports that are queued within the same
+ * flush interval are sent together in a single RPC (see
+ * {@link QosMessageBatch}). Any other message (e.g. an action or
+ * configuration message) is flushed immediately, together with the reports
+ * queued before it.
+ * <p>
+ * Only Qos reports count towards the bounded capacity of a send queue: when
+ * the queue is full, its oldest Qos report is dropped, because it is
+ * superseded by the more recent reports. Other messages are never dropped. A
+ * sender thread that has been idle for {@link #SENDER_IDLE_TIMEOUT} stops and
+ * is recreated by the next message to its destination.
  * <p>
  * This class is thread-safe.
  * 
  * @author warneke, Bjoern Lohrmann
  */
-public final class StreamMessagingThread extends Thread {
+public final class StreamMessagingThread {
 
 	private static StreamMessagingThread SINGLETON_INSTANCE;
 
@@ -52,76 +73,351 @@ public final class StreamMessagingThread extends Thread {
 			.getLog(StreamMessagingThread.class);
 
 	/**
-	 * The blocking queue which is used to asynchronously exchange data with the
-	 * job manager component of this plugin.
+	 * Interval in milliseconds in which each sender logs its delivery
+	 * statistics.
+	 */
+	private static final long STATISTICS_LOG_INTERVAL = 60000;
+
+	/**
+	 * Time in milliseconds after which a sender without queued messages stops.
 	 */
-	private final BlockingQueue<AbstractSerializableQosMessage> dataQueue = new LinkedBlockingQueue<AbstractSerializableQosMessage>();
+	private static final long SENDER_IDLE_TIMEOUT = 60000;
+
+	private final ConcurrentHashMap<InstanceConnectionInfo, DestinationSender> senders = new ConcurrentHashMap<InstanceConnectionInfo, DestinationSender>();
 
-	private final BlockingQueue<InstanceConnectionInfo> connectionInfoQueue = new LinkedBlockingQueue<InstanceConnectionInfo>();
+	private final long flushInterval;
 
-	private HashMap<InstanceConnectionInfo, PluginCommunicationProtocol> proxies = new HashMap<InstanceConnectionInfo, PluginCommunicationProtocol>();
+	private final int queueCapacity;
+
+	private volatile boolean isShutDown;
 
 	private StreamMessagingThread() {
-		this.setName("StreamMessagingThread");
+		this.flushInterval = StreamPluginConfig
+				.getMessagingFlushIntervalMillis();
+		this.queueCapacity = Math.max(1,
+				StreamPluginConfig.getMessagingQueueCapacity());
+		this.isShutDown = false;
+	}
+
+	/**
+	 * A message waiting in a send queue.
+	 */
+	private static class QueuedMessage {
+
+		private final AbstractSerializableQosMessage message;
+
+		private final long enqueueTime;
+
+		public QueuedMessage(AbstractSerializableQosMessage message,
+				long enqueueTime) {
+			this.message = message;
+			this.enqueueTime = enqueueTime;
+		}
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Queues and sends the messages to one destination.
 	 */
-	@Override
-	public void run() {
-
-		try {
-			while (!interrupted()) {
-				InstanceConnectionInfo connectionInfo = this.connectionInfoQueue
-						.take();
-				AbstractSerializableQosMessage data = this.dataQueue.take();
-
-				try {
-					this.getProxy(connectionInfo).sendData(
-							StreamingPluginLoader.STREAMING_PLUGIN_ID, data);
-				} catch (IOException ioe) {
-					LOG.error(StringUtils.stringifyException(ioe));
-					this.proxies.remove(connectionInfo);
+	private class DestinationSender extends Thread {
+
+		private final InstanceConnectionInfo destination;
+
+		/**
+		 * Guarded by itself.
+		 */
+		private final LinkedList<QueuedMessage> queue = new LinkedList<QueuedMessage>();
+
+		private PluginCommunicationProtocol proxy;
+
+		/*
+		 * The following fields are guarded by the queue.
+		 */
+
+		private int noOfQueuedReports;
+
+		/**
+		 * Whether a message that must be sent immediately has been queued.
+		 */
+		private boolean flushRequested;
+
+		/**
+		 * Whether this sender has stopped because it was idle. A stopped
+		 * sender does not accept messages anymore.
+		 */
+		private boolean isStopped;
+
+		private int noOfDroppedMessages;
+
+		/*
+		 * The following statistics are only accessed by this sender's thread.
+		 */
+
+		private int noOfSentMessages;
+
+		private int noOfFailedMessages;
+
+		private int noOfBatches;
+
+		private long sumOfDeliveryLatencies;
+
+		private long maxDeliveryLatency;
+
+		private long timeOfLastStatisticsLog;
+
+		public DestinationSender(InstanceConnectionInfo destination) {
+			this.destination = destination;
+			this.timeOfLastStatisticsLog = System.currentTimeMillis();
+			this.setName(String.format("StreamMessagingThread (%s)",
+					destination.toString()));
+			this.setDaemon(true);
+		}
+
+		/**
+		 * @return false if this sender has stopped and the message has not
+		 *         been queued
+		 */
+		public boolean enqueue(AbstractSerializableQosMessage message) {
+			synchronized (this.queue) {
+				if (this.isStopped) {
+					return false;
+				}
+
+				if (message instanceof QosReport) {
+					if (this.noOfQueuedReports >= StreamMessagingThread.this.queueCapacity) {
+						this.dropOldestReport();
+					}
+					this.noOfQueuedReports++;
+				} else {
+					this.flushRequested = true;
+				}
+
+				this.queue.add(new QueuedMessage(message, System
+						.currentTimeMillis()));
+				if (this.queue.size() == 1 || this.flushRequested) {
+					this.queue.notify();
+				}
+				return true;
+			}
+		}
+
+		private void dropOldestReport() {
+			Iterator<QueuedMessage> it = this.queue.iterator();
+			while (it.hasNext()) {
+				QueuedMessage queued = it.next();
+				if (queued.message instanceof QosReport) {
+					it.remove();
+					this.noOfQueuedReports--;
+					this.noOfDroppedMessages++;
+
+					// the destination will miss the reporter ID definitions
+					((QosReport) queued.message).invalidateReporterIDEncoder();
+					return;
 				}
 			}
-		} catch (InterruptedException e) {
 		}
-	}
 
-	private PluginCommunicationProtocol getProxy(
-			InstanceConnectionInfo connectionInfo) throws IOException {
-		PluginCommunicationProtocol proxy = this.proxies.get(connectionInfo);
-		if (proxy == null) {
-			proxy = RPC.getProxy(PluginCommunicationProtocol.class,
-					new InetSocketAddress(connectionInfo.getAddress(),
-							connectionInfo.getIPCPort()), NetUtils
-							.getSocketFactory());
-			this.proxies.put(connectionInfo, proxy);
+		@Override
+		public void run() {
+			try {
+				List<QueuedMessage> batch;
+				while (!interrupted() && (batch = this.takeBatch()) != null) {
+					this.send(batch);
+					this.logStatisticsIfDue();
+				}
+			} catch (InterruptedException e) {
+			} finally {
+				if (this.proxy != null) {
+					RPC.stopProxy(this.proxy);
+					this.proxy = null;
+				}
+			}
+		}
+
+		/**
+		 * Blocks until a message has been queued and then waits for the flush
+		 * interval, so that reports queued in the meantime are sent along. The
+		 * wait ends early once a message has been queued that must be sent
+		 * immediately.
+		 * 
+		 * @return the messages to send, or null if no message has been queued
+		 *         within the idle timeout and this sender has stopped
+		 */
+		private List<QueuedMessage> takeBatch() throws InterruptedException {
+			synchronized (this.queue) {
+				long idleDeadline = System.currentTimeMillis()
+						+ SENDER_IDLE_TIMEOUT;
+				while (this.queue.isEmpty()) {
+					long remaining = idleDeadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						this.isStopped = true;
+						StreamMessagingThread.this.senders.remove(
+								this.destination, this);
+						return null;
+					}
+					this.queue.wait(remaining);
+				}
+
+				long flushDeadline = System.currentTimeMillis()
+						+ StreamMessagingThread.this.flushInterval;
+				while (!this.flushRequested) {
+					long remaining = flushDeadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						break;
+					}
+					this.queue.wait(remaining);
+				}
+
+				List<QueuedMessage> batch = new ArrayList<QueuedMessage>(
+						this.queue);
+				this.queue.clear();
+				this.noOfQueuedReports = 0;
+				this.flushRequested = false;
+				return batch;
+			}
+		}
+
+		private void send(List<QueuedMessage> batch) {
+			IOReadableWritable data;
+			if (batch.size() == 1) {
+				data = batch.get(0).message;
+			} else {
+				List<AbstractSerializableQosMessage> messages = new ArrayList<AbstractSerializableQosMessage>(
+						batch.size());
+				for (QueuedMessage queued : batch) {
+					messages.add(queued.message);
+				}
+				data = new QosMessageBatch(messages);
+			}
+
+			try {
+				this.getProxy().sendData(
+						StreamingPluginLoader.STREAMING_PLUGIN_ID, data);
+			} catch (IOException ioe) {
+				LOG.error(StringUtils.stringifyException(ioe));
+				this.proxy = null;
+
+				for (QueuedMessage queued : batch) {
+					if (queued.message instanceof QosReport) {
+						// the destination may have missed reporter ID
+						// definitions
+						((QosReport) queued.message)
+								.invalidateReporterIDEncoder();
+					}
+				}
+				this.noOfFailedMessages += batch.size();
+				return;
+			}
+
+			long now = System.currentTimeMillis();
+			for (QueuedMessage queued : batch) {
+				long deliveryLatency = now - queued.enqueueTime;
+				this.sumOfDeliveryLatencies += deliveryLatency;
+				this.maxDeliveryLatency = Math.max(this.maxDeliveryLatency,
+						deliveryLatency);
+			}
+			this.noOfSentMessages += batch.size();
+			this.noOfBatches++;
 		}
 
-		return proxy;
+		private PluginCommunicationProtocol getProxy() throws IOException {
+			if (this.proxy == null) {
+				this.proxy = RPC.getProxy(PluginCommunicationProtocol.class,
+						new InetSocketAddress(this.destination.getAddress(),
+								this.destination.getIPCPort()), NetUtils
+								.getSocketFactory());
+			}
+			return this.proxy;
+		}
+
+		private void logStatisticsIfDue() {
+			long now = System.currentTimeMillis();
+			if (now - this.timeOfLastStatisticsLog < STATISTICS_LOG_INTERVAL) {
+				return;
+			}
+
+			int noOfDroppedMessages;
+			synchronized (this.queue) {
+				noOfDroppedMessages = this.noOfDroppedMessages;
+				this.noOfDroppedMessages = 0;
+			}
+
+			String statistics = String
+					.format("Messages to %s: %d sent in %d RPCs (delivery latency avg %.1f ms, max %d ms), %d failed, %d dropped",
+							this.destination.toString(),
+							this.noOfSentMessages,
+							this.noOfBatches,
+							(this.noOfSentMessages > 0) ? ((double) this.sumOfDeliveryLatencies)
+									/ this.noOfSentMessages
+									: 0.0, this.maxDeliveryLatency,
+							this.noOfFailedMessages, noOfDroppedMessages);
+
+			if (this.noOfFailedMessages > 0 || noOfDroppedMessages > 0) {
+				LOG.warn(statistics);
+			} else if (LOG.isDebugEnabled()) {
+				LOG.debug(statistics);
+			}
+
+			this.noOfSentMessages = 0;
+			this.noOfFailedMessages = 0;
+			this.noOfBatches = 0;
+			this.sumOfDeliveryLatencies = 0;
+			this.maxDeliveryLatency = 0;
+			this.timeOfLastStatisticsLog = now;
+		}
+	}
+
+	private DestinationSender getOrCreateSender(
+			InstanceConnectionInfo connectionInfo) {
+
+		DestinationSender sender = this.senders.get(connectionInfo);
+		if (sender == null) {
+			sender = new DestinationSender(connectionInfo);
+			DestinationSender existing = this.senders.putIfAbsent(
+					connectionInfo, sender);
+			if (existing != null) {
+				sender = existing;
+			} else {
+				sender.start();
+			}
+		}
+		return sender;
 	}
 
 	/**
-	 * Stops the communication thread.
+	 * Stops all sender threads.
 	 */
 	void stopMessagingThread() {
-		this.interrupt();
+		this.isShutDown = true;
+		for (DestinationSender sender : this.senders.values()) {
+			sender.interrupt();
+		}
+		this.senders.clear();
 	}
 
+	/**
+	 * Queues the given message to be sent to the given destination. This
+	 * method does not block.
+	 */
 	public void sendAsynchronously(
 			final InstanceConnectionInfo connectionInfo,
 			final AbstractSerializableQosMessage data)
 			throws InterruptedException {
-		this.dataQueue.put(data);
-		this.connectionInfoQueue.put(connectionInfo);
+
+		if (this.isShutDown) {
+			return;
+		}
+
+		DestinationSender sender = this.getOrCreateSender(connectionInfo);
+		while (!sender.enqueue(data)) {
+			// the sender has stopped concurrently because it was idle and has
+			// been removed, hence a new sender is created
+			sender = this.getOrCreateSender(connectionInfo);
+		}
 	}
 
 	public synchronized static StreamMessagingThread getInstance() {
 		if (SINGLETON_INSTANCE == null) {
 			SINGLETON_INSTANCE = new StreamMessagingThread();
-			SINGLETON_INSTANCE.start();
 		}
 		return SINGLETON_INSTANCE;
 	}
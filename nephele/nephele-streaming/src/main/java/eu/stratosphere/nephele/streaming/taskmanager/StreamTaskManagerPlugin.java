@@ -18,6 +18,10 @@ package eu.stratosphere.nephele.streaming.taskmanager;
 import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -26,10 +30,16 @@ import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.execution.RuntimeEnvironment;
 import eu.stratosphere.nephele.io.IOReadableWritable;
 import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.plugins.PluginCommunication;
 import eu.stratosphere.nephele.plugins.TaskManagerPlugin;
 import eu.stratosphere.nephele.profiling.ProfilingException;
 import eu.stratosphere.nephele.streaming.message.AbstractQosMessage;
+import eu.stratosphere.nephele.streaming.message.AbstractSerializableQosMessage;
+import eu.stratosphere.nephele.streaming.message.QosMessageBatch;
 import eu.stratosphere.nephele.streaming.message.action.DestroyInstanceQosRolesAction;
+import eu.stratosphere.nephele.streaming.taskmanager.clocksync.ClockOffsetEstimator;
+import eu.stratosphere.nephele.streaming.taskmanager.clocksync.ClockSyncTask;
+import eu.stratosphere.nephele.streaming.taskmanager.clocksync.ReferenceClock;
 import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.StreamJobEnvironment;
 import eu.stratosphere.nephele.streaming.taskmanager.runtime.StreamTaskEnvironment;
 import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
@@ -67,7 +77,25 @@ public class StreamTaskManagerPlugin implements TaskManagerPlugin {
 	 */
 	private final long defaultAggregationInterval;
 
+	/**
+	 * Periodically synchronizes the clock with the job manager, or null if
+	 * clock synchronization is disabled. Clock synchronization has its own
+	 * thread, because it blocks on an RPC to the job manager.
+	 */
+	private final ScheduledExecutorService clockSyncExecutor;
+
+	/**
+	 * Creates the plugin without clock synchronization.
+	 */
 	public StreamTaskManagerPlugin() {
+		this(null);
+	}
+
+	/**
+	 * Creates the plugin, which synchronizes its clock with the given job
+	 * manager component of the streaming plugin.
+	 */
+	public StreamTaskManagerPlugin(PluginCommunication jobManagerComponent) {
 		this.defaultSamplingProbability = StreamPluginConfig.getSamplingProbabilityPercent();
 		this.defaultAggregationInterval = StreamPluginConfig.getAggregationIntervalMillis();
 
@@ -76,6 +104,27 @@ public class StreamTaskManagerPlugin implements TaskManagerPlugin {
 						this.defaultSamplingProbability,
 						this.defaultAggregationInterval));
 
+		long clockSyncInterval = StreamPluginConfig.getClockSyncIntervalMillis();
+		if (clockSyncInterval > 0 && jobManagerComponent != null) {
+			ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+			ReferenceClock.setEstimator(estimator);
+			this.clockSyncExecutor = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"ClockSyncThread");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			this.clockSyncExecutor.scheduleAtFixedRate(new ClockSyncTask(
+					jobManagerComponent, estimator), 0, clockSyncInterval,
+					TimeUnit.MILLISECONDS);
+		} else {
+			this.clockSyncExecutor = null;
+		}
+
 		INSTANCE = this;
 	}
 
@@ -94,6 +143,11 @@ public class StreamTaskManagerPlugin implements TaskManagerPlugin {
 	public void shutdown() {
 		StreamMessagingThread.destroyInstance();
 
+		if (this.clockSyncExecutor != null) {
+			this.clockSyncExecutor.shutdownNow();
+			ReferenceClock.setEstimator(null);
+		}
+
 		for (StreamJobEnvironment jobEnvironment : this.streamJobEnvironments
 				.values()) {
 
@@ -196,7 +250,12 @@ public class StreamTaskManagerPlugin implements TaskManagerPlugin {
 	@Override
 	public void sendData(final IOReadableWritable data) throws IOException {
 		try {
-			if (data instanceof DestroyInstanceQosRolesAction) {
+			if (data instanceof QosMessageBatch) {
+				for (AbstractSerializableQosMessage message : ((QosMessageBatch) data)
+						.getMessages()) {
+					this.sendData(message);
+				}
+			} else if (data instanceof DestroyInstanceQosRolesAction) {
 				JobID jobID = ((DestroyInstanceQosRolesAction) data).getJobID();
 				StreamJobEnvironment jobEnv = this.streamJobEnvironments.remove(jobID);
 
@@ -0,0 +1,195 @@
+package eu.stratosphere.nephele.streaming.taskmanager.clocksync;
+
+/**
+ * Estimates offset and drift of the local clock relative to a reference clock
+ * from NTP-style request/response measurements.
+ *
+ * Each measurement yields an offset sample ((t1 - t0) + (t2 - t3)) / 2 and a
+ * round trip delay (t3 - t0) - (t2 - t1), where t0/t3 are the local send and
+ * receive times and t1/t2 the reference receive and send times. The error of
+ * an offset sample is bounded by half of its round trip delay, hence samples
+ * whose delay is much higher than the lowest delay in the window (e.g. due to
+ * queueing in the network or a GC pause) are discarded. The drift is the slope
+ * of a least squares fit of the remaining offset samples over local time.
+ *
+ * This class is thread-safe. Estimates are published as immutable snapshots,
+ * so converting timestamps does not require any locking.
+ */
+public class ClockOffsetEstimator {
+
+	public static final int DEFAULT_WINDOW_SIZE = 16;
+
+	/**
+	 * Upper bound for the drift between two clocks (500 ppm, as in NTP).
+	 */
+	public static final double MAX_DRIFT = 500e-6;
+
+	/**
+	 * Samples whose round trip delay exceeds the lowest delay in the window by
+	 * more than this factor plus {@link #DELAY_SLACK_MICROS} are discarded.
+	 */
+	private static final double DELAY_TOLERANCE_FACTOR = 2;
+
+	private static final long DELAY_SLACK_MICROS = 100;
+
+	private static final class Estimate {
+
+		final long anchorLocalTime;
+
+		final double offset;
+
+		final double drift;
+
+		final long maxError;
+
+		Estimate(long anchorLocalTime, double offset, double drift,
+				long maxError) {
+			this.anchorLocalTime = anchorLocalTime;
+			this.offset = offset;
+			this.drift = drift;
+			this.maxError = maxError;
+		}
+	}
+
+	private final long[] sampleLocalTimes;
+
+	private final long[] sampleOffsets;
+
+	private final long[] sampleDelays;
+
+	private int nextSampleIndex;
+
+	private int noOfSamples;
+
+	private volatile Estimate estimate;
+
+	public ClockOffsetEstimator() {
+		this(DEFAULT_WINDOW_SIZE);
+	}
+
+	public ClockOffsetEstimator(int windowSize) {
+		this.sampleLocalTimes = new long[windowSize];
+		this.sampleOffsets = new long[windowSize];
+		this.sampleDelays = new long[windowSize];
+	}
+
+	/**
+	 * Adds a measurement.
+	 *
+	 * @param originate
+	 *            local time when the request was sent (t0)
+	 * @param receive
+	 *            reference time when the request was received (t1)
+	 * @param transmit
+	 *            reference time when the response was sent (t2)
+	 * @param destination
+	 *            local time when the response was received (t3)
+	 */
+	public synchronized void addMeasurement(long originate, long receive,
+			long transmit, long destination) {
+
+		long delay = Math.max(0, (destination - originate)
+				- (transmit - receive));
+		long offset = ((receive - originate) + (transmit - destination)) / 2;
+
+		this.sampleLocalTimes[this.nextSampleIndex] = originate
+				+ (destination - originate) / 2;
+		this.sampleOffsets[this.nextSampleIndex] = offset;
+		this.sampleDelays[this.nextSampleIndex] = delay;
+		this.nextSampleIndex = (this.nextSampleIndex + 1)
+				% this.sampleLocalTimes.length;
+		this.noOfSamples = Math.min(this.noOfSamples + 1,
+				this.sampleLocalTimes.length);
+
+		this.estimate = computeEstimate();
+	}
+
+	private Estimate computeEstimate() {
+		int bestIndex = 0;
+		for (int i = 1; i < this.noOfSamples; i++) {
+			if (this.sampleDelays[i] < this.sampleDelays[bestIndex]) {
+				bestIndex = i;
+			}
+		}
+		long minDelay = this.sampleDelays[bestIndex];
+		long maxAcceptedDelay = (long) (minDelay * DELAY_TOLERANCE_FACTOR)
+				+ DELAY_SLACK_MICROS;
+
+		// least squares fit of offset over local time, relative to the best
+		// sample to keep the numbers small
+		long anchor = this.sampleLocalTimes[bestIndex];
+		int n = 0;
+		double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+		for (int i = 0; i < this.noOfSamples; i++) {
+			if (this.sampleDelays[i] > maxAcceptedDelay) {
+				continue;
+			}
+			double x = this.sampleLocalTimes[i] - anchor;
+			double y = this.sampleOffsets[i];
+			n++;
+			sumX += x;
+			sumY += y;
+			sumXX += x * x;
+			sumXY += x * y;
+		}
+
+		double denominator = n * sumXX - sumX * sumX;
+		if (n < 3 || denominator <= 0) {
+			return new Estimate(anchor, this.sampleOffsets[bestIndex], 0,
+					minDelay / 2);
+		}
+
+		double drift = (n * sumXY - sumX * sumY) / denominator;
+		drift = Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, drift));
+		double offset = (sumY - drift * sumX) / n;
+
+		return new Estimate(anchor, offset, drift, minDelay / 2);
+	}
+
+	public boolean hasEstimate() {
+		return this.estimate != null;
+	}
+
+	/**
+	 * Converts the given local time to reference time. If no measurements
+	 * have been added yet, the local time is returned.
+	 */
+	public long toReferenceTime(long localTime) {
+		Estimate current = this.estimate;
+		if (current == null) {
+			return localTime;
+		}
+
+		return localTime
+				+ Math.round(current.offset + current.drift
+						* (localTime - current.anchorLocalTime));
+	}
+
+	/**
+	 * Returns the estimated offset of the reference clock relative to the
+	 * local clock at the given local time, or 0 if no measurements have been
+	 * added yet.
+	 */
+	public long getOffset(long localTime) {
+		return toReferenceTime(localTime) - localTime;
+	}
+
+	/**
+	 * Returns the estimated drift of the reference clock relative to the local
+	 * clock, e.g. 1e-5 if the reference clock runs 10 ppm faster.
+	 */
+	public double getDrift() {
+		Estimate current = this.estimate;
+		return (current == null) ? 0 : current.drift;
+	}
+
+	/**
+	 * Returns the upper bound of the error of the offset estimate (half of the
+	 * lowest round trip delay in the window), or -1 if no measurements have
+	 * been added yet.
+	 */
+	public long getMaxError() {
+		Estimate current = this.estimate;
+		return (current == null) ? -1 : current.maxError;
+	}
+}
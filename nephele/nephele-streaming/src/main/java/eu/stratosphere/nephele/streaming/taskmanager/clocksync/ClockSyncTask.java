@@ -0,0 +1,70 @@
+package eu.stratosphere.nephele.streaming.taskmanager.clocksync;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.nephele.plugins.PluginCommunication;
+import eu.stratosphere.nephele.streaming.message.ClockSyncMessage;
+import eu.stratosphere.nephele.streaming.util.MicrosecondClock;
+
+/**
+ * Periodically measures the offset of the local clock to the job manager's
+ * clock by exchanging a {@link ClockSyncMessage} with the job manager component
+ * of the streaming plugin, and feeds the measurement into a
+ * {@link ClockOffsetEstimator}.
+ * 
+ * Since the request blocks until the job manager answers, this task should be
+ * run by a dedicated thread, so that a slow job manager does not delay other
+ * periodic tasks. Errors are logged and the task keeps running.
+ */
+public class ClockSyncTask implements Runnable {
+
+	private static final Log LOG = LogFactory.getLog(ClockSyncTask.class);
+
+	private final PluginCommunication jobManagerComponent;
+
+	private final ClockOffsetEstimator estimator;
+
+	public ClockSyncTask(PluginCommunication jobManagerComponent,
+			ClockOffsetEstimator estimator) {
+		this.jobManagerComponent = jobManagerComponent;
+		this.estimator = estimator;
+	}
+
+	@Override
+	public void run() {
+		try {
+			long originate = MicrosecondClock.currentTimeMicros();
+			IOReadableWritable response = this.jobManagerComponent
+					.requestData(new ClockSyncMessage(originate));
+			long destination = MicrosecondClock.currentTimeMicros();
+
+			if (!(response instanceof ClockSyncMessage)) {
+				LOG.warn("Job manager did not answer clock sync request");
+				return;
+			}
+
+			ClockSyncMessage syncResponse = (ClockSyncMessage) response;
+			this.estimator.addMeasurement(originate,
+					syncResponse.getReceiveTimestamp(),
+					syncResponse.getTransmitTimestamp(), destination);
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug(String.format(
+						"Clock offset to job manager: %d us (+/- %d us), drift %.2f ppm",
+						this.estimator.getOffset(destination),
+						this.estimator.getMaxError(),
+						this.estimator.getDrift() * 1e6));
+			}
+		} catch (IOException e) {
+			LOG.warn("Error during clock synchronization with job manager", e);
+		} catch (RuntimeException e) {
+			// an exception escaping a periodic task would cancel all further
+			// executions
+			LOG.error("Error during clock synchronization with job manager", e);
+		}
+	}
+}
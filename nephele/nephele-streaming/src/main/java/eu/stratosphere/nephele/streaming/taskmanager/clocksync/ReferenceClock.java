@@ -0,0 +1,39 @@
+package eu.stratosphere.nephele.streaming.taskmanager.clocksync;
+
+import eu.stratosphere.nephele.streaming.util.MicrosecondClock;
+
+/**
+ * Provides the time of the reference clock shared by all task managers (the
+ * job manager's clock), as estimated by the task manager's
+ * {@link ClockOffsetEstimator}. Timestamps taken on different task managers
+ * with this clock can be compared with each other, up to the sum of the
+ * estimation errors of the involved task managers. Until an estimator has been
+ * installed (e.g. when running without a job manager), the local
+ * {@link MicrosecondClock} is used.
+ */
+public class ReferenceClock {
+
+	private static volatile ClockOffsetEstimator ESTIMATOR;
+
+	public static void setEstimator(ClockOffsetEstimator estimator) {
+		ESTIMATOR = estimator;
+	}
+
+	public static ClockOffsetEstimator getEstimator() {
+		return ESTIMATOR;
+	}
+
+	/**
+	 * Returns the current reference time in microseconds since the epoch.
+	 */
+	public static long currentTimeMicros() {
+		long localTime = MicrosecondClock.currentTimeMicros();
+
+		ClockOffsetEstimator estimator = ESTIMATOR;
+		if (estimator == null) {
+			return localTime;
+		}
+
+		return estimator.toReferenceTime(localTime);
+	}
+}
@@ -24,7 +24,6 @@ import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.profiling.impl.EnvironmentThreadSet;
 import eu.stratosphere.nephele.profiling.impl.types.InternalExecutionVertexThreadProfilingData;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosStatistic;
-import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosValue;
 import eu.stratosphere.nephele.streaming.taskmanager.runtime.StreamTaskEnvironment;
 import eu.stratosphere.nephele.taskmanager.runtime.RuntimeTask;
 
@@ -127,7 +126,7 @@ public class TaskInfo implements ExecutionListener {
 						.getBlockedTime())
 					* (this.environmentThreadSet.getNumberOfUserThreads() + 1);
 
-			this.cpuUtilization.addValue(new QosValue(cpuUtilization, now));
+			this.cpuUtilization.addValue(cpuUtilization, now);
 		}
 	}
 
@@ -16,6 +16,9 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosmanager;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 
 import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
 import eu.stratosphere.nephele.streaming.JobGraphSequence;
@@ -23,11 +26,10 @@ import eu.stratosphere.nephele.streaming.LatencyConstraintID;
 import eu.stratosphere.nephele.streaming.SequenceElement;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.EdgeQosData;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosEdge;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGate;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGraph;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGraphMember;
-import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGraphTraversal;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGraphTraversalCondition;
-import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGraphTraversalListener;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGroupVertex;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosVertex;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.VertexQosData;
@@ -38,30 +40,70 @@ import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.VertexQosData;
  * that violate the Qos constraint are handed to a
  * {@link QosConstraintViolationListener}.
  * 
+ * Sequences are enumerated depth-first, and the latency of each sequence is
+ * accumulated while descending. Each member is therefore only evaluated once
+ * per prefix it terminates, instead of once for every sequence that contains
+ * it.
+ * 
+ * The enumerated prefixes are kept between scans, together with their partial
+ * sums and the latencies of the sequences they start. A scan only sums up the
+ * sequences again that contain a member whose Qos data has changed since the
+ * previous scan (see {@link VertexQosData#getVersion()} and
+ * {@link EdgeQosData#getVersion()}). The latencies of all other sequences are
+ * taken from the previous scan, and these sequences are not handed to the
+ * listener again, because it would see the same Qos data as before. Hence, a
+ * finder should be reused for the scans of the same constraint, and must be
+ * replaced when members are added to the Qos graph.
+ * 
  * @author Bjoern Lohrmann
  * 
  */
-public class QosConstraintViolationFinder implements QosGraphTraversalListener,
-		QosGraphTraversalCondition {
+public class QosConstraintViolationFinder implements QosGraphTraversalCondition {
 
 	private QosGraph qosGraph;
 
-	private QosGraphTraversal graphTraversal;
-
 	private QosSequenceLatencySummary sequenceSummary;
 
 	private int sequenceLength;
 
+	/**
+	 * The elements of the constraint's sequence, indexed by their index in the
+	 * sequence.
+	 */
+	private ArrayList<SequenceElement> sequenceElements;
+
 	private JobGraphLatencyConstraint constraint;
 
 	private ArrayList<QosGraphMember> currentSequenceMembers;
 
 	private QosConstraintViolationListener constraintViolationListener;
 
-	private QosConstraintViolationReport violationReport;
-	
 	private long inactivityThresholdTime;
 
+	/**
+	 * The prefixes enumerated by the previous scan. The prefixes continuing
+	 * the root consist of a member at the first index of the sequence.
+	 */
+	private SequencePrefix root;
+
+	/**
+	 * The partition of the sequences enumerated by the previous scan.
+	 */
+	private int scannedPartition;
+
+	private int scannedNoOfPartitions;
+
+	/**
+	 * The version of the Qos data of each member at the previous scan, and
+	 * the prefixes ending with the member.
+	 */
+	private final HashMap<QosGraphMember, MemberPrefixes> prefixesByMember = new HashMap<QosGraphMember, MemberPrefixes>();
+
+	/**
+	 * The number of sequences summed up again by the previous scan.
+	 */
+	private int noOfSummedSequences;
+
 	public QosConstraintViolationFinder(LatencyConstraintID constraintID,
 			QosGraph qosGraph,
 			QosConstraintViolationListener constraintViolationListener,
@@ -69,14 +111,15 @@ public class QosConstraintViolationFinder implements QosGraphTraversalListener,
 
 		this.qosGraph = qosGraph;
 		this.constraint = qosGraph.getConstraintByID(constraintID);
-		this.violationReport = new QosConstraintViolationReport(this.constraint);
 		this.constraintViolationListener = constraintViolationListener;
 		this.inactivityThresholdTime = inactivityThresholdTime;
 
-		this.graphTraversal = new QosGraphTraversal(null,
-				this.constraint.getSequence(), this, this);
-		this.sequenceSummary = new QosSequenceLatencySummary(this.constraint.getSequence());
+		this.sequenceSummary = new QosSequenceLatencySummary(
+				this.constraint.getSequence(),
+				this.constraint.getLatencyPercentile());
 		this.sequenceLength = this.constraint.getSequence().size();
+		this.sequenceElements = new ArrayList<SequenceElement>(
+				this.constraint.getSequence());
 
 		// init sequence with nulls so that during graph traversal we can
 		// just invoke set(index, member).
@@ -86,7 +129,101 @@ public class QosConstraintViolationFinder implements QosGraphTraversalListener,
 				new QosGraphMember[this.sequenceLength]);
 	}
 
+	/**
+	 * Sets the time before which Qos data is considered stale, for the next
+	 * scan.
+	 */
+	public void setInactivityThresholdTime(long inactivityThresholdTime) {
+		this.inactivityThresholdTime = inactivityThresholdTime;
+	}
+
 	public QosConstraintViolationReport scanSequencesForQosConstraintViolations() {
+		dropStaleData();
+		return scanSequencesForQosConstraintViolations(0, 1);
+	}
+
+	/**
+	 * Drops the Qos data older than the inactivity threshold from all members
+	 * of the constraint's sequence, so that inactive members are skipped by
+	 * the scan. The scan itself only reads Qos data, hence this must be
+	 * invoked once, before the scan is split into partitions.
+	 */
+	public void dropStaleData() {
+		for (SequenceElement seqElem : this.constraint.getSequence()) {
+			if (seqElem.isVertex()) {
+				QosGroupVertex groupVertex = this.qosGraph
+						.getGroupVertexByID(seqElem.getVertexID());
+				if (groupVertex == null) {
+					continue;
+				}
+
+				for (QosVertex member : groupVertex.getMembers()) {
+					member.getQosData().dropOlderData(
+							seqElem.getInputGateIndex(),
+							seqElem.getOutputGateIndex(),
+							this.inactivityThresholdTime);
+				}
+			} else {
+				dropStaleEdgeData(seqElem);
+			}
+		}
+	}
+
+	private void dropStaleEdgeData(SequenceElement seqElem) {
+		QosGroupVertex sourceGroupVertex = this.qosGraph
+				.getGroupVertexByID(seqElem.getSourceVertexID());
+		if (sourceGroupVertex == null) {
+			return;
+		}
+		int outputGateIndex = seqElem.getOutputGateIndex();
+
+		for (QosVertex sourceVertex : sourceGroupVertex.getMembers()) {
+			QosGate outputGate = sourceVertex.getOutputGate(outputGateIndex);
+			if (outputGate == null) {
+				continue;
+			}
+
+			if (seqElem.getIndexInSequence() == 0) {
+				sourceVertex.getQosData().dropOlderData(-1, outputGateIndex,
+						this.inactivityThresholdTime);
+			}
+
+			for (QosEdge edge : outputGate.getEdges()) {
+				edge.getQosData().dropOlderData(this.inactivityThresholdTime);
+
+				if (seqElem.getIndexInSequence() == this.sequenceLength - 1) {
+					QosGate inputGate = edge.getInputGate();
+					inputGate.getVertex().getQosData().dropOlderData(
+							inputGate.getGateIndex(), -1,
+							this.inactivityThresholdTime);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scans only the sequences that start at every noOfPartitions-th member of
+	 * the start group vertex, beginning with the member at the given partition
+	 * index. Finders for distinct partitions of the same constraint may run
+	 * concurrently, if the listener is thread-safe. Their reports can be
+	 * combined with
+	 * {@link QosConstraintViolationReport#addPartialReport(QosConstraintViolationReport)}
+	 * . Stale Qos data must have been dropped with {@link #dropStaleData()}
+	 * beforehand. Only sequences of the same partition as in the previous scan
+	 * are taken from the previous scan.
+	 */
+	public QosConstraintViolationReport scanSequencesForQosConstraintViolations(
+			int partition, int noOfPartitions) {
+
+		if (this.root == null || partition != this.scannedPartition
+				|| noOfPartitions != this.scannedNoOfPartitions) {
+			this.root = new SequencePrefix(null, null, null);
+			this.prefixesByMember.clear();
+			this.scannedPartition = partition;
+			this.scannedNoOfPartitions = noOfPartitions;
+		}
+
+		markChangedMembers();
 
 		JobGraphSequence sequence = this.constraint.getSequence();
 		QosGroupVertex startGroupVertex;
@@ -98,12 +235,306 @@ public class QosConstraintViolationFinder implements QosGraphTraversalListener,
 					.getFirst().getSourceVertexID());
 		}
 
+		List<QosGraphMember> firstMembers = new ArrayList<QosGraphMember>();
+		int memberCount = 0;
 		for (QosVertex startMemberVertex : startGroupVertex.getMembers()) {
-			this.graphTraversal.setStartVertex(startMemberVertex);
-			this.graphTraversal.traverseForwardConditional();
+			if (memberCount++ % noOfPartitions != partition) {
+				continue;
+			}
+
+			if (sequence.getFirst().isVertex()) {
+				firstMembers.add(startMemberVertex);
+			} else {
+				QosGate outputGate = startMemberVertex.getOutputGate(sequence
+						.getFirst().getOutputGateIndex());
+				if (outputGate != null) {
+					for (QosEdge edge : outputGate.getEdges()) {
+						firstMembers.add(edge);
+					}
+				}
+			}
+		}
+
+		this.noOfSummedSequences = 0;
+		scanPrefixes(this.root, firstMembers, 0, false);
+		this.root.hasChangedSuccessors = false;
+
+		// the report is finalized by the caller, while the one of the root
+		// must be kept for the next scan
+		QosConstraintViolationReport violationReport = new QosConstraintViolationReport(
+				this.constraint);
+		violationReport.addPartialReport(this.root.report);
+		return violationReport;
+	}
+
+	/**
+	 * @return the number of sequences the previous scan has summed up again,
+	 *         instead of taking their latency from the scan before.
+	 */
+	int getNoOfSummedSequences() {
+		return this.noOfSummedSequences;
+	}
+
+	/**
+	 * Compares the version of the Qos data of each member of the sequence with
+	 * the one seen by the previous scan. The prefixes ending with a changed
+	 * member must be summed up again, and the prefixes ending with one of its
+	 * predecessors must be continued again, because the member may have
+	 * become active or inactive.
+	 */
+	private void markChangedMembers() {
+		for (SequenceElement seqElem : this.constraint.getSequence()) {
+			if (seqElem.isVertex()) {
+				QosGroupVertex groupVertex = this.qosGraph
+						.getGroupVertexByID(seqElem.getVertexID());
+				if (groupVertex == null) {
+					continue;
+				}
+
+				for (QosVertex member : groupVertex.getMembers()) {
+					markIfChanged(member, seqElem);
+				}
+			} else {
+				QosGroupVertex sourceGroupVertex = this.qosGraph
+						.getGroupVertexByID(seqElem.getSourceVertexID());
+				if (sourceGroupVertex == null) {
+					continue;
+				}
+
+				for (QosVertex sourceVertex : sourceGroupVertex.getMembers()) {
+					QosGate outputGate = sourceVertex.getOutputGate(seqElem
+							.getOutputGateIndex());
+					if (outputGate == null) {
+						continue;
+					}
+
+					for (QosEdge edge : outputGate.getEdges()) {
+						markIfChanged(edge, seqElem);
+					}
+				}
+			}
+		}
+	}
+
+	private void markIfChanged(QosGraphMember member, SequenceElement seqElem) {
+		MemberPrefixes memberPrefixes = getMemberPrefixes(member);
+		long version = getVersion(member, seqElem);
+		if (version == memberPrefixes.version) {
+			return;
+		}
+		memberPrefixes.version = version;
+
+		Iterator<SequencePrefix> prefixIter = memberPrefixes.prefixes
+				.iterator();
+		while (prefixIter.hasNext()) {
+			SequencePrefix prefix = prefixIter.next();
+			if (prefix.isDetached) {
+				prefixIter.remove();
+			} else {
+				prefix.isChanged = true;
+				markChangedSuccessors(prefix.parent);
+			}
+		}
+
+		if (seqElem.getIndexInSequence() == 0) {
+			// the prefixes of the first index are always continued
+			return;
+		}
+
+		for (QosGraphMember predecessor : getPredecessors(member, seqElem)) {
+			MemberPrefixes predecessorPrefixes = this.prefixesByMember
+					.get(predecessor);
+			if (predecessorPrefixes == null) {
+				continue;
+			}
+
+			for (SequencePrefix prefix : predecessorPrefixes.prefixes) {
+				if (!prefix.isDetached) {
+					markChangedSuccessors(prefix);
+				}
+			}
+		}
+	}
+
+	private void markChangedSuccessors(SequencePrefix prefix) {
+		while (prefix != null && !prefix.hasChangedSuccessors) {
+			prefix.hasChangedSuccessors = true;
+			prefix = prefix.parent;
+		}
+	}
+
+	/**
+	 * @return a number that changes whenever the Qos data changes that
+	 *         decides about the member's latency and activity at the given
+	 *         element of the sequence. For the first and last edge, this
+	 *         includes the Qos data of the source and target vertex.
+	 */
+	private long getVersion(QosGraphMember member, SequenceElement seqElem) {
+		if (member.isVertex()) {
+			return ((QosVertex) member).getQosData().getVersion();
+		}
+
+		QosEdge edge = (QosEdge) member;
+		long version = edge.getQosData().getVersion();
+		if (seqElem.getIndexInSequence() == 0) {
+			version += edge.getOutputGate().getVertex().getQosData()
+					.getVersion();
+		}
+		if (seqElem.getIndexInSequence() == this.sequenceLength - 1) {
+			version += edge.getInputGate().getVertex().getQosData()
+					.getVersion();
+		}
+		return version;
+	}
+
+	private MemberPrefixes getMemberPrefixes(QosGraphMember member) {
+		MemberPrefixes memberPrefixes = this.prefixesByMember.get(member);
+		if (memberPrefixes == null) {
+			memberPrefixes = new MemberPrefixes();
+			this.prefixesByMember.put(member, memberPrefixes);
 		}
-		
-		return this.violationReport;
+		return memberPrefixes;
+	}
+
+	private Iterable<? extends QosGraphMember> getPredecessors(
+			QosGraphMember member, SequenceElement seqElem) {
+
+		if (member.isEdge()) {
+			return Collections.singletonList(((QosEdge) member)
+					.getOutputGate().getVertex());
+		}
+
+		QosGate inputGate = ((QosVertex) member).getInputGate(seqElem
+				.getInputGateIndex());
+		if (inputGate == null) {
+			return Collections.<QosGraphMember> emptyList();
+		}
+		return inputGate.getEdges();
+	}
+
+	private Iterable<? extends QosGraphMember> getSuccessors(
+			QosGraphMember member, SequenceElement successorElem) {
+
+		if (member.isEdge()) {
+			return Collections.singletonList(((QosEdge) member)
+					.getInputGate().getVertex());
+		}
+
+		QosGate outputGate = ((QosVertex) member).getOutputGate(successorElem
+				.getOutputGateIndex());
+		if (outputGate == null) {
+			return Collections.<QosGraphMember> emptyList();
+		}
+		return outputGate.getEdges();
+	}
+
+	/**
+	 * Continues the given prefix with each of the given active members and
+	 * sums up the latencies of the resulting sequences in the report of the
+	 * prefix. Continued prefixes that neither contain a changed member nor
+	 * lead to one are taken from the previous scan.
+	 * 
+	 * @param isChanged
+	 *            whether the given prefix contains a changed member.
+	 */
+	private void scanPrefixes(SequencePrefix prefix,
+			Iterable<? extends QosGraphMember> members, int index,
+			boolean isChanged) {
+
+		SequenceElement seqElem = this.sequenceElements.get(index);
+		boolean isLastIndex = index + 1 == this.sequenceLength;
+
+		List<SequencePrefix> previousSuccessors = prefix.successors;
+		int nextPreviousSuccessor = 0;
+		prefix.successors = new ArrayList<SequencePrefix>();
+		prefix.report = new QosConstraintViolationReport(this.constraint);
+
+		for (QosGraphMember member : members) {
+			if (!isActive(member, seqElem)) {
+				continue;
+			}
+
+			// members are enumerated in the same order by each scan
+			SequencePrefix successor = null;
+			if (previousSuccessors != null) {
+				for (int i = nextPreviousSuccessor; i < previousSuccessors
+						.size(); i++) {
+					if (previousSuccessors.get(i).member == member) {
+						successor = previousSuccessors.get(i);
+						detach(previousSuccessors, nextPreviousSuccessor, i);
+						nextPreviousSuccessor = i + 1;
+						break;
+					}
+				}
+			}
+
+			if (successor == null) {
+				successor = new SequencePrefix(prefix, member,
+						this.sequenceSummary.createPartialSums(index));
+				successor.isChanged = true;
+				getMemberPrefixes(member).prefixes.add(successor);
+			}
+			prefix.successors.add(successor);
+
+			boolean isSuccessorChanged = isChanged || successor.isChanged;
+			if (isSuccessorChanged) {
+				this.sequenceSummary.updateMember(index, member);
+				this.sequenceSummary.savePartialSums(index,
+						successor.partialSums);
+			} else if (successor.hasChangedSuccessors) {
+				this.sequenceSummary.restorePartialSums(index,
+						successor.partialSums);
+			}
+
+			if (isSuccessorChanged || successor.hasChangedSuccessors) {
+				this.currentSequenceMembers.set(index, member);
+
+				if (isLastIndex) {
+					handleFullSequence();
+				} else {
+					scanPrefixes(successor, getSuccessors(member,
+							this.sequenceElements.get(index + 1)), index + 1,
+							isSuccessorChanged);
+				}
+			}
+
+			successor.isChanged = false;
+			successor.hasChangedSuccessors = false;
+
+			if (isLastIndex) {
+				prefix.report.addSequenceLatency(successor.partialSums
+						.getSequenceLatency());
+			} else {
+				prefix.report.addPartialReport(successor.report);
+			}
+		}
+
+		if (previousSuccessors != null) {
+			detach(previousSuccessors, nextPreviousSuccessor,
+					previousSuccessors.size());
+		}
+	}
+
+	private void detach(List<SequencePrefix> prefixes, int fromIndex,
+			int toIndex) {
+
+		for (int i = fromIndex; i < toIndex; i++) {
+			detach(prefixes.get(i));
+		}
+	}
+
+	private void detach(SequencePrefix prefix) {
+		prefix.isDetached = true;
+		if (prefix.successors != null) {
+			detach(prefix.successors, 0, prefix.successors.size());
+		}
+	}
+
+	private boolean isActive(QosGraphMember member, SequenceElement seqElem) {
+		if (member.isVertex()) {
+			return shallTraverseVertex((QosVertex) member, seqElem);
+		}
+		return shallTraverseEdge((QosEdge) member, seqElem);
 	}
 
 	/*
@@ -125,8 +556,6 @@ public class QosConstraintViolationFinder implements QosGraphTraversalListener,
 			int outputGateIndex = edge.getOutputGate().getGateIndex();
 			VertexQosData sourceVertexQosData = edge.getOutputGate()
 					.getVertex().getQosData();
-			sourceVertexQosData.dropOlderData(-1, outputGateIndex,
-					inactivityThresholdTime);
 			isActive = isActive
 					&& sourceVertexQosData.hasNewerData(-1, outputGateIndex,
 							inactivityThresholdTime);
@@ -136,15 +565,12 @@ public class QosConstraintViolationFinder implements QosGraphTraversalListener,
 			int inputGateIndex = edge.getInputGate().getGateIndex();
 			VertexQosData targetVertexQosData = edge.getInputGate().getVertex()
 					.getQosData();
-			targetVertexQosData.dropOlderData(inputGateIndex, -1,
-					inactivityThresholdTime);
 			isActive = isActive
 					&& targetVertexQosData.hasNewerData(inputGateIndex, -1,
 							inactivityThresholdTime);
 		}
 
 		EdgeQosData edgeQos = edge.getQosData();
-		edgeQos.dropOlderData(inactivityThresholdTime);
 		isActive = isActive && edgeQos.hasNewerData(inactivityThresholdTime);
 
 		return isActive;
@@ -165,38 +591,12 @@ public class QosConstraintViolationFinder implements QosGraphTraversalListener,
 
 		VertexQosData qosData = vertex.getQosData();
 
-		qosData.dropOlderData(seqElem.getInputGateIndex(),
-				seqElem.getOutputGateIndex(), inactivityThresholdTime);
-
 		return qosData.hasNewerData(seqElem.getInputGateIndex(),
 				seqElem.getOutputGateIndex(), inactivityThresholdTime);
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see eu.stratosphere.nephele.streaming.taskmanager.qosmodel.
-	 * QosGraphTraversalListener
-	 * #processQosVertex(eu.stratosphere.nephele.streaming
-	 * .taskmanager.qosmodel.QosVertex,
-	 * eu.stratosphere.nephele.streaming.SequenceElement)
-	 */
-	@Override
-	public void processQosVertex(QosVertex vertex,
-			SequenceElement sequenceElem) {
-
-		int index = sequenceElem.getIndexInSequence();
-		this.currentSequenceMembers.set(index, vertex);
-
-		if (index + 1 == this.sequenceLength) {
-			this.handleFullSequence();
-		}
-	}
-
 	private void handleFullSequence() {
-		sequenceSummary.update(this.currentSequenceMembers);
-		
-		violationReport.addQosSequenceLatencySummary(sequenceSummary);
+		this.noOfSummedSequences++;
 
 		double constraintViolatedByMillis = this.sequenceSummary.getSequenceLatency()
 				- this.constraint.getLatencyConstraintInMillis();
@@ -210,24 +610,52 @@ public class QosConstraintViolationFinder implements QosGraphTraversalListener,
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see eu.stratosphere.nephele.streaming.taskmanager.qosmodel.
-	 * QosGraphTraversalListener
-	 * #processQosEdge(eu.stratosphere.nephele.streaming
-	 * .taskmanager.qosmodel.QosEdge,
-	 * eu.stratosphere.nephele.streaming.SequenceElement)
+	/**
+	 * A prefix of the enumerated sequences, which ends with the given member.
 	 */
-	@Override
-	public void processQosEdge(QosEdge edge,
-			SequenceElement sequenceElem) {
+	private static class SequencePrefix {
+
+		private final SequencePrefix parent;
+
+		private final QosGraphMember member;
+
+		/**
+		 * The partial sums of the sequence summary up to and including the
+		 * member.
+		 */
+		private final QosSequenceLatencySummary.PartialSums partialSums;
+
+		/**
+		 * The prefixes continuing this one with an active member, or null for
+		 * full sequences.
+		 */
+		private List<SequencePrefix> successors;
+
+		/**
+		 * The latencies of the sequences starting with this prefix, or null
+		 * for full sequences.
+		 */
+		private QosConstraintViolationReport report;
 
-		int index = sequenceElem.getIndexInSequence();
-		this.currentSequenceMembers.set(index, edge);
+		private boolean isChanged;
 
-		if (index + 1 == this.sequenceLength) {
-			this.handleFullSequence();
+		private boolean hasChangedSuccessors;
+
+		private boolean isDetached;
+
+		private SequencePrefix(SequencePrefix parent, QosGraphMember member,
+				QosSequenceLatencySummary.PartialSums partialSums) {
+
+			this.parent = parent;
+			this.member = member;
+			this.partialSums = partialSums;
 		}
 	}
+
+	private static class MemberPrefixes {
+
+		private long version = -1;
+
+		private final List<SequencePrefix> prefixes = new ArrayList<SequencePrefix>();
+	}
 }
@@ -82,12 +82,18 @@ public class QosConstraintViolationReport implements IOReadableWritable {
 	public void addQosSequenceLatencySummary(
 			QosSequenceLatencySummary sequenceSummary) {
 
+		addSequenceLatency(sequenceSummary.getSequenceLatency());
+	}
+
+	/**
+	 * Adds the latency of a single sequence, e.g. of a simulated job.
+	 */
+	public void addSequenceLatency(double sequenceLatency) {
 		if (this.isFinalized) {
 			throw new RuntimeException(
 					"Cannot add sequence to already finalized summary. This is a bug.");
 		}
 
-		double sequenceLatency = sequenceSummary.getSequenceLatency();
 		this.aggSequenceLatency += sequenceLatency;
 
 		if (sequenceLatency < this.minSequenceLatency) {
@@ -113,6 +119,31 @@ public class QosConstraintViolationReport implements IOReadableWritable {
 		}
 	}
 	
+	/**
+	 * Adds the sequences of a report for the same constraint, which has been
+	 * assembled concurrently for a different set of sequences. Neither report
+	 * may be finalized yet.
+	 */
+	public void addPartialReport(QosConstraintViolationReport partial) {
+		if (!constraintID.equals(partial.constraintID)) {
+			throw new RuntimeException("Cannot merge violation reports belonging to different constraints. This is bug.");
+		}
+
+		if (this.isFinalized || partial.isFinalized) {
+			throw new RuntimeException(
+					"Cannot add a finalized partial report. This is a bug.");
+		}
+
+		this.aggSequenceLatency += partial.aggSequenceLatency;
+		this.minSequenceLatency = Math.min(this.minSequenceLatency,
+				partial.minSequenceLatency);
+		this.maxSequenceLatency = Math.max(this.maxSequenceLatency,
+				partial.maxSequenceLatency);
+		this.noOfSequences += partial.noOfSequences;
+		this.noOfSequencesAboveConstraint += partial.noOfSequencesAboveConstraint;
+		this.noOfSequencesBelowConstraint += partial.noOfSequencesBelowConstraint;
+	}
+
 	public void merge(QosConstraintViolationReport other) {
 		if(!constraintID.equals(other.constraintID)) {
 			throw new RuntimeException("Cannot merge violation reports belonging to different constraints. This is bug.");
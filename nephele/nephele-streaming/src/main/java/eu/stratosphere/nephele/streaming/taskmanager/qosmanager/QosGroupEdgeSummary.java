@@ -82,6 +82,35 @@ public class QosGroupEdgeSummary implements QosGroupElementSummary {
 
 	private double meanConsumerVertexInterarrivalTimeCV;
 
+	/**
+	 * The utilization of an active target member vertex is estimated as its
+	 * consumption rate times its mean vertex latency, minus the fraction of
+	 * time it has been blocked on output (see
+	 * {@link #meanConsumerVertexOutputBlockedFraction}). This variable holds
+	 * the mean utilization of all active target member vertices.
+	 */
+	private double meanConsumerVertexUtilization;
+
+	/**
+	 * See {@link #meanConsumerVertexUtilization}. This is the highest
+	 * utilization of any active target member vertex.
+	 */
+	private double maxConsumerVertexUtilization;
+
+	/**
+	 * The mean fraction of time the active target member vertices have waited
+	 * for input on the group edge's {@link QosEdge} member edges.
+	 */
+	private double meanConsumerVertexInputBlockedFraction;
+
+	/**
+	 * The mean fraction of time the active target member vertices have waited
+	 * for empty output buffers, i.e. have been throttled by their own
+	 * consumers. This time is part of the vertex latency, but is not reduced
+	 * by scaling out the target group vertex.
+	 */
+	private double meanConsumerVertexOutputBlockedFraction;
+
 	public QosGroupEdgeSummary() {
 	}
 
@@ -176,6 +205,71 @@ public class QosGroupEdgeSummary implements QosGroupElementSummary {
 		this.meanConsumerVertexInterarrivalTimeCV = meanConsumerVertexInterarrivalTimeCV;
 	}
 
+	public double getMeanConsumerVertexUtilization() {
+		return meanConsumerVertexUtilization;
+	}
+
+	public void setMeanConsumerVertexUtilization(
+			double meanConsumerVertexUtilization) {
+		this.meanConsumerVertexUtilization = meanConsumerVertexUtilization;
+	}
+
+	public double getMaxConsumerVertexUtilization() {
+		return maxConsumerVertexUtilization;
+	}
+
+	public void setMaxConsumerVertexUtilization(
+			double maxConsumerVertexUtilization) {
+		this.maxConsumerVertexUtilization = maxConsumerVertexUtilization;
+	}
+
+	public double getMeanConsumerVertexInputBlockedFraction() {
+		return meanConsumerVertexInputBlockedFraction;
+	}
+
+	public void setMeanConsumerVertexInputBlockedFraction(
+			double meanConsumerVertexInputBlockedFraction) {
+		this.meanConsumerVertexInputBlockedFraction = meanConsumerVertexInputBlockedFraction;
+	}
+
+	public double getMeanConsumerVertexOutputBlockedFraction() {
+		return meanConsumerVertexOutputBlockedFraction;
+	}
+
+	public void setMeanConsumerVertexOutputBlockedFraction(
+			double meanConsumerVertexOutputBlockedFraction) {
+		this.meanConsumerVertexOutputBlockedFraction = meanConsumerVertexOutputBlockedFraction;
+	}
+
+	/**
+	 * @return the mean time in milliseconds an active target member vertex
+	 *         needs to process a record, which is the mean vertex latency
+	 *         without the time spent waiting for empty output buffers.
+	 */
+	public double getMeanConsumerVertexServiceTime() {
+		if (meanConsumptionRate <= 0 || meanConsumerVertexOutputBlockedFraction <= 0) {
+			return meanConsumerVertexLatency;
+		}
+
+		double outputBlockedTimePerRecord = 1000
+				* meanConsumerVertexOutputBlockedFraction / meanConsumptionRate;
+		return Math.max(meanConsumerVertexLatency - outputBlockedTimePerRecord,
+				0.01 * meanConsumerVertexLatency);
+	}
+
+	/**
+	 * @return the ratio of the highest to the mean utilization of the active
+	 *         target member vertices, which is 1 if load is evenly
+	 *         partitioned (or no utilization has been measured).
+	 */
+	public double getConsumerVertexUtilizationSkew() {
+		if (meanConsumerVertexUtilization <= 0) {
+			return 1;
+		}
+		return Math.max(1, maxConsumerVertexUtilization
+				/ meanConsumerVertexUtilization);
+	}
+
 	@Override
 	public boolean isVertex() {
 		return false;
@@ -226,6 +320,19 @@ public class QosGroupEdgeSummary implements QosGroupElementSummary {
 
 			meanConsumerVertexInterarrivalTimeCV += toMerge.activeConsumerVertices
 					* toMerge.meanConsumerVertexInterarrivalTimeCV;
+
+			meanConsumerVertexUtilization += toMerge.activeConsumerVertices
+					* toMerge.meanConsumerVertexUtilization;
+
+			maxConsumerVertexUtilization = Math.max(
+					maxConsumerVertexUtilization,
+					toMerge.maxConsumerVertexUtilization);
+
+			meanConsumerVertexInputBlockedFraction += toMerge.activeConsumerVertices
+					* toMerge.meanConsumerVertexInputBlockedFraction;
+
+			meanConsumerVertexOutputBlockedFraction += toMerge.activeConsumerVertices
+					* toMerge.meanConsumerVertexOutputBlockedFraction;
 		}
 
 		if (hasData()) {
@@ -239,6 +346,9 @@ public class QosGroupEdgeSummary implements QosGroupElementSummary {
 			meanConsumerVertexLatencyCV /= activeConsumerVertices;
 			meanConsumerVertexInterarrivalTime /= activeConsumerVertices;
 			meanConsumerVertexInterarrivalTimeCV /= activeConsumerVertices;
+			meanConsumerVertexUtilization /= activeConsumerVertices;
+			meanConsumerVertexInputBlockedFraction /= activeConsumerVertices;
+			meanConsumerVertexOutputBlockedFraction /= activeConsumerVertices;
 		}
 	}
 
@@ -257,6 +367,10 @@ public class QosGroupEdgeSummary implements QosGroupElementSummary {
 		out.writeDouble(meanConsumerVertexLatencyCV);
 		out.writeDouble(meanConsumerVertexInterarrivalTime);
 		out.writeDouble(meanConsumerVertexInterarrivalTimeCV);
+		out.writeDouble(meanConsumerVertexUtilization);
+		out.writeDouble(maxConsumerVertexUtilization);
+		out.writeDouble(meanConsumerVertexInputBlockedFraction);
+		out.writeDouble(meanConsumerVertexOutputBlockedFraction);
 
 	}
 
@@ -275,5 +389,9 @@ public class QosGroupEdgeSummary implements QosGroupElementSummary {
 		meanConsumerVertexLatencyCV = in.readDouble();
 		meanConsumerVertexInterarrivalTime = in.readDouble();
 		meanConsumerVertexInterarrivalTimeCV = in.readDouble();
+		meanConsumerVertexUtilization = in.readDouble();
+		maxConsumerVertexUtilization = in.readDouble();
+		meanConsumerVertexInputBlockedFraction = in.readDouble();
+		meanConsumerVertexOutputBlockedFraction = in.readDouble();
 	}
 }
@@ -37,7 +37,8 @@ import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
  * continuously processes {@link AbstractStreamMessage} objects from a
  * threadsafe queue and triggers Qos actions if necessary.
  * {@link #handOffStreamingData(AbstractStreamMessage)} can be used to enqueue
- * data.
+ * data. Qos reports are applied and Qos constraints are evaluated in parallel
+ * by a {@link QosWorkerPool}.
  * 
  * @author Bjoern Lohrmann
  * 
@@ -55,6 +56,8 @@ public class QosManagerThread extends Thread {
 	private OutputBufferLatencyManager oblManager;
 
 	private QosModel qosModel;
+
+	private QosWorkerPool workers;
 	
 	private HashMap<LatencyConstraintID, QosLogger> qosLoggers;
 
@@ -113,6 +116,9 @@ public class QosManagerThread extends Thread {
 				this.adjustmentInterval);
 		
 		this.qosModel = new QosModel(jobID);
+		this.workers = new QosWorkerPool(String.format(
+				"QosManagerThread (JobID: %s)", jobID.toString()),
+				StreamPluginConfig.getQosManagerWorkerThreads());
 		this.streamingDataQueue = new LinkedBlockingQueue<AbstractQosMessage>();
 		this.oblManager = new OutputBufferLatencyManager(jobID);
 		this.qosLoggers = new HashMap<LatencyConstraintID, QosLogger>();
@@ -173,12 +179,16 @@ public class QosManagerThread extends Thread {
 		}
 
 		List<QosConstraintSummary> constraintSummaries = null;
+
+		this.workers.awaitQuiescence();
 		
 		if (this.qosModel.isReady()) {
 			QosConstraintViolationListener listener = this.oblManager
 					.getQosConstraintViolationListener();
 
-			constraintSummaries = this.qosModel.findQosConstraintViolationsAndSummarize(listener);
+			constraintSummaries = this.qosModel
+					.findQosConstraintViolationsAndSummarize(listener,
+							this.workers);
 
 			this.oblManager.applyAndSendBufferAdjustments(beginAdjustTime);
 
@@ -213,19 +223,22 @@ public class QosManagerThread extends Thread {
 	}
 
 	private void processStreamingData(MessageStats stats,
-			AbstractQosMessage streamingData) {
+			AbstractQosMessage streamingData) throws InterruptedException {
 		
 		if (streamingData instanceof QosReport) {
 			QosReport qosReport = (QosReport) streamingData;
-			this.qosModel.processQosReport(qosReport);
+			this.qosModel.processQosReport(qosReport, this.workers);
 			stats.updateWithReport(qosReport);
 		} else if (streamingData instanceof DeployInstanceQosRolesAction) {
 			throw new RuntimeException("Got unexpected DeployInstanceQosRolesAction@QosManager!");
 		} else if (streamingData instanceof DeployInstanceQosManagerRoleAction) {
 			QosManagerConfig config = ((DeployInstanceQosManagerRoleAction) streamingData).getQosManager();
 			this.qosManagerID = config.getQosManagerID();
+			// changes the Qos graph, which the workers must not see half-done
+			this.workers.awaitQuiescence();
 			this.qosModel.mergeShallowQosGraph(config.getShallowQosGraph());
 		} else if (streamingData instanceof ChainUpdates) {
+			this.workers.awaitQuiescence();
 			this.qosModel.processChainUpdates((ChainUpdates) streamingData);
 		}
 	}
@@ -276,6 +289,7 @@ public class QosManagerThread extends Thread {
 	}
 
 	private void cleanUp() {
+		this.workers.shutdown();
 		this.streamingDataQueue.clear();
 		this.qosModel = null;
 		this.oblManager = null;
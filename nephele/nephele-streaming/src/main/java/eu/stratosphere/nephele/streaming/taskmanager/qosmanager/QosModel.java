@@ -14,15 +14,18 @@
  **********************************************************************************************************************/
 package eu.stratosphere.nephele.streaming.taskmanager.qosmanager;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.log4j.Logger;
 
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.AbstractID;
 import eu.stratosphere.nephele.io.GateID;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.jobgraph.JobID;
@@ -54,6 +57,12 @@ import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
  * then continuously adds Qos report data to the Qos graph. It can then be used
  * to search for violated Qos constraints inside the Qos graph.
  * 
+ * Qos report records and constraint evaluation can optionally be processed in
+ * parallel by a {@link QosWorkerPool}. Records are sharded by the Qos vertex or
+ * edge they belong to, so the Qos data of each vertex and edge is only ever
+ * modified by one worker. Changes to the structure of the Qos graph are only
+ * applied while the workers are idle.
+ * 
  * @author Bjoern Lohrmann
  */
 public class QosModel {
@@ -122,6 +131,18 @@ public class QosModel {
 	 */
 	private HashMap<ChannelID, QosEdge> edgeBySourceChannelID;
 
+	/**
+	 * The violation finders of each constraint, one for each partition of the
+	 * scan. They keep the latencies of the scanned sequences between scans,
+	 * and are discarded when the structure of the Qos graph changes.
+	 */
+	private HashMap<LatencyConstraintID, QosConstraintViolationFinder[]> violationFinders;
+
+	/**
+	 * The listener of the violation finders.
+	 */
+	private QosConstraintViolationListener violationListener;
+
 	public QosModel(JobID jobID) {
 		this.state = State.EMPTY;
 		this.announcementBuffer = new QosReport(jobID);
@@ -129,6 +150,7 @@ public class QosModel {
 		this.gatesByGateId = new HashMap<GateID, QosGate>();
 		this.vertexByID = new HashMap<ExecutionVertexID, QosVertex>();
 		this.edgeBySourceChannelID = new HashMap<ChannelID, QosEdge>();
+		this.violationFinders = new HashMap<LatencyConstraintID, QosConstraintViolationFinder[]>();
 	}
 
 	public void mergeShallowQosGraph(QosGraph shallowQosGraph) {
@@ -137,6 +159,7 @@ public class QosModel {
 		} else {
 			this.qosGraph.merge(shallowQosGraph);
 		}
+		this.violationFinders.clear();
 
 		this.tryToProcessBufferedAnnouncements();
 	}
@@ -154,20 +177,73 @@ public class QosModel {
 	}
 
 	public void processQosReport(QosReport report) {
+		if (this.processAnnouncements(report)) {
+			this.processQosRecords(report, System.currentTimeMillis(), 1, 0);
+		}
+	}
+
+	/**
+	 * Processes the given report like {@link #processQosReport(QosReport)},
+	 * but applies the report's records asynchronously on the given workers.
+	 * Use {@link QosWorkerPool#awaitQuiescence()} to wait until the records
+	 * have been applied.
+	 */
+	public void processQosReport(final QosReport report, QosWorkerPool workers)
+			throws InterruptedException {
+
+		if (this.announcementsModifyQosGraph(report)) {
+			workers.awaitQuiescence();
+		}
+
+		if (!this.processAnnouncements(report)) {
+			return;
+		}
+
+		final long now = System.currentTimeMillis();
+		final int noOfShards = workers.getNoOfWorkers();
+
+		for (int i = 0; i < noOfShards; i++) {
+			final int shard = i;
+			workers.execute(shard, new Runnable() {
+				@Override
+				public void run() {
+					processQosRecords(report, now, noOfShards, shard);
+				}
+			});
+		}
+	}
+
+	private boolean announcementsModifyQosGraph(QosReport report) {
+		switch (this.state) {
+		case READY:
+			return report.hasAnnouncements()
+					|| this.announcementBuffer.hasAnnouncements();
+		case SHALLOW:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Processes the announcements contained in the given report.
+	 * 
+	 * @return whether the records of the report shall be processed.
+	 */
+	private boolean processAnnouncements(QosReport report) {
 		switch (this.state) {
 		case READY:
 			if (report.hasAnnouncements()
 					|| this.announcementBuffer.hasAnnouncements()) {
 				this.bufferAndTryToProcessAnnouncements(report);
 			}
-			this.processQosRecords(report);
-			break;
+			return true;
 		case SHALLOW:
 			this.bufferAndTryToProcessAnnouncements(report);
-			break;
-		case EMPTY:
+			return false;
+		default:
 			this.bufferAnnouncements(report);
-			break;
+			return false;
 		}
 	}
 
@@ -224,19 +300,39 @@ public class QosModel {
 				announce.getNewlyChainedEdges());
 	}
 
-	private void processQosRecords(QosReport report) {
-		long now = System.currentTimeMillis();
-		this.processVertexStatistics(report.getVertexStatistics(), now);
-		this.processEdgeStatistics(report.getEdgeStatistics(), now);
-		this.processEdgeLatencies(report.getEdgeLatencies(), now);
+	/**
+	 * Applies those records of the given report that belong to the given
+	 * shard. Vertex statistics are sharded by vertex, edge statistics and
+	 * latencies by the edge's source channel.
+	 */
+	private void processQosRecords(QosReport report, long now, int noOfShards,
+			int shard) {
+
+		this.processVertexStatistics(report.getVertexStatistics(), now,
+				noOfShards, shard);
+		this.processEdgeStatistics(report.getEdgeStatistics(), now,
+				noOfShards, shard);
+		this.processEdgeLatencies(report.getEdgeLatencies(), now, noOfShards,
+				shard);
+	}
+
+	private static boolean isInShard(AbstractID shardKey, int noOfShards,
+			int shard) {
+		return noOfShards == 1
+				|| (shardKey.hashCode() & Integer.MAX_VALUE) % noOfShards == shard;
 	}
 
 	private void processVertexStatistics(
-			Collection<VertexStatistics> vertexLatencies, long now) {
+			Collection<VertexStatistics> vertexLatencies, long now,
+			int noOfShards, int shard) {
 
 		for (VertexStatistics vertexStats : vertexLatencies) {
 			QosReporterID.Vertex reporterID = vertexStats.getReporterID();
 
+			if (!isInShard(reporterID.getVertexID(), noOfShards, shard)) {
+				continue;
+			}
+
 			QosVertex qosVertex = this.vertexByID.get(reporterID.getVertexID());
 
 			int inputGateIndex = -1;
@@ -260,9 +356,16 @@ public class QosModel {
 	}
 
 	private void processEdgeStatistics(
-			Collection<EdgeStatistics> edgeStatistics, long now) {
+			Collection<EdgeStatistics> edgeStatistics, long now,
+			int noOfShards, int shard) {
+
 		for (EdgeStatistics edgeStatistic : edgeStatistics) {
 			QosReporterID.Edge reporterID = edgeStatistic.getReporterID();
+
+			if (!isInShard(reporterID.getSourceChannelID(), noOfShards, shard)) {
+				continue;
+			}
+
 			QosEdge edge = this.edgeBySourceChannelID.get(reporterID
 					.getSourceChannelID());
 
@@ -274,16 +377,22 @@ public class QosModel {
 	}
 
 	private void processEdgeLatencies(Collection<EdgeLatency> edgeLatencies,
-			long now) {
+			long now, int noOfShards, int shard) {
 
 		for (EdgeLatency edgeLatency : edgeLatencies) {
 			QosReporterID.Edge reporterID = edgeLatency.getReporterID();
+
+			if (!isInShard(reporterID.getSourceChannelID(), noOfShards, shard)) {
+				continue;
+			}
+
 			QosEdge edge = this.edgeBySourceChannelID.get(reporterID
 					.getSourceChannelID());
 
 			if (edge != null) {
 				edge.getQosData().addLatencyMeasurement(now,
-						edgeLatency.getEdgeLatency());
+						edgeLatency.getEdgeLatency(),
+						edgeLatency.getLatencySketch());
 			}
 		}
 	}
@@ -295,8 +404,11 @@ public class QosModel {
 	}
 
 	private void tryToProcessBufferedAnnouncements() {
-		this.tryToProcessBufferedVertexReporterAnnouncements();
-		this.tryToProcessBufferedEdgeReporterAnnouncements();
+		boolean hasAddedVertices = this.tryToProcessBufferedVertexReporterAnnouncements();
+		boolean hasAddedEdges = this.tryToProcessBufferedEdgeReporterAnnouncements();
+		if (hasAddedVertices || hasAddedEdges) {
+			this.violationFinders.clear();
+		}
 
 		if (this.qosGraph.isShallow()) {
 			this.state = State.SHALLOW;
@@ -305,7 +417,11 @@ public class QosModel {
 		}
 	}
 
-	private void tryToProcessBufferedEdgeReporterAnnouncements() {
+	/**
+	 * @return whether any announcement has been processed.
+	 */
+	private boolean tryToProcessBufferedEdgeReporterAnnouncements() {
+		boolean hasProcessedAnnouncements = false;
 		Iterator<EdgeQosReporterConfig> vertexIter = this.announcementBuffer
 				.getEdgeQosReporterAnnouncements().iterator();
 
@@ -321,8 +437,10 @@ public class QosModel {
 				this.assembleQosEdgeFromReporterConfig(toProcess, outputGate,
 						inputGate);
 				vertexIter.remove();
+				hasProcessedAnnouncements = true;
 			}
 		}
+		return hasProcessedAnnouncements;
 	}
 
 	private void assembleQosEdgeFromReporterConfig(
@@ -338,7 +456,11 @@ public class QosModel {
 		}
 	}
 
-	private void tryToProcessBufferedVertexReporterAnnouncements() {
+	/**
+	 * @return whether any announcement has been processed.
+	 */
+	private boolean tryToProcessBufferedVertexReporterAnnouncements() {
+		boolean hasProcessedAnnouncements = false;
 		Iterator<VertexQosReporterConfig> vertexIter = this.announcementBuffer
 				.getVertexQosReporterAnnouncements().iterator();
 
@@ -351,8 +473,10 @@ public class QosModel {
 			if (groupVertex != null) {
 				this.assembleQosVertexFromReporterConfig(toProcess, groupVertex);
 				vertexIter.remove();
+				hasProcessedAnnouncements = true;
 			}
 		}
+		return hasProcessedAnnouncements;
 	}
 
 	/**
@@ -451,9 +575,8 @@ public class QosModel {
 		for (JobGraphLatencyConstraint constraint : this.qosGraph
 				.getConstraints()) {
 
-			QosConstraintViolationFinder constraintViolationFinder = new QosConstraintViolationFinder(
-					constraint.getID(), this.qosGraph, listener,
-					inactivityThresholdTime);
+			QosConstraintViolationFinder constraintViolationFinder = getViolationFinders(
+					constraint, listener, 1, inactivityThresholdTime)[0];
 
 			QosConstraintViolationReport violationReport = constraintViolationFinder
 					.scanSequencesForQosConstraintViolations();
@@ -465,6 +588,115 @@ public class QosModel {
 		return constraintSummaries;
 	}
 
+	/**
+	 * Does the same as
+	 * {@link #findQosConstraintViolationsAndSummarize(QosConstraintViolationListener)}
+	 * , but scans the sequences of each constraint in parallel on the given
+	 * workers, partitioned by the member vertex they start at. The given
+	 * listener must be thread-safe. The workers must not apply Qos records
+	 * while this method runs.
+	 */
+	public List<QosConstraintSummary> findQosConstraintViolationsAndSummarize(
+			final QosConstraintViolationListener listener,
+			QosWorkerPool workers) throws InterruptedException {
+
+		long now = System.currentTimeMillis();
+
+		final long inactivityThresholdTime = now - 2
+				* StreamPluginConfig.getAdjustmentIntervalMillis();
+
+		final int noOfPartitions = workers.getNoOfWorkers();
+
+		List<JobGraphLatencyConstraint> constraints = new ArrayList<JobGraphLatencyConstraint>(
+				this.qosGraph.getConstraints());
+
+		// constraints and partitions share members, hence stale Qos data
+		// is dropped sequentially and the partitions only read Qos data
+		for (JobGraphLatencyConstraint constraint : constraints) {
+			getViolationFinders(constraint, listener, noOfPartitions,
+					inactivityThresholdTime)[0].dropStaleData();
+		}
+
+		List<Callable<QosConstraintViolationReport>> scanTasks = new ArrayList<Callable<QosConstraintViolationReport>>();
+		for (JobGraphLatencyConstraint constraint : constraints) {
+			final QosConstraintViolationFinder[] finders = this.violationFinders
+					.get(constraint.getID());
+			for (int i = 0; i < noOfPartitions; i++) {
+				final int partition = i;
+				scanTasks.add(new Callable<QosConstraintViolationReport>() {
+					@Override
+					public QosConstraintViolationReport call() {
+						return finders[partition]
+								.scanSequencesForQosConstraintViolations(
+										partition, noOfPartitions);
+					}
+				});
+			}
+		}
+
+		final List<QosConstraintViolationReport> partialReports = workers
+				.invokeAll(scanTasks);
+
+		List<Callable<QosConstraintSummary>> summaryTasks = new ArrayList<Callable<QosConstraintSummary>>();
+		for (int i = 0; i < constraints.size(); i++) {
+			final JobGraphLatencyConstraint constraint = constraints.get(i);
+			final int firstPartialReport = i * noOfPartitions;
+
+			summaryTasks.add(new Callable<QosConstraintSummary>() {
+				@Override
+				public QosConstraintSummary call() {
+					QosConstraintViolationReport violationReport = partialReports
+							.get(firstPartialReport);
+					for (int j = 1; j < noOfPartitions; j++) {
+						violationReport.addPartialReport(partialReports
+								.get(firstPartialReport + j));
+					}
+
+					return createConstraintSummary(constraint,
+							violationReport, inactivityThresholdTime);
+				}
+			});
+		}
+
+		return new LinkedList<QosConstraintSummary>(
+				workers.invokeAll(summaryTasks));
+	}
+
+	/**
+	 * Returns the violation finders of the given constraint for the given
+	 * number of partitions, and sets their inactivity threshold time. The
+	 * finders of the previous scan are reused, unless the structure of the
+	 * Qos graph, the listener or the number of partitions has changed.
+	 */
+	private QosConstraintViolationFinder[] getViolationFinders(
+			JobGraphLatencyConstraint constraint,
+			QosConstraintViolationListener listener, int noOfPartitions,
+			long inactivityThresholdTime) {
+
+		if (listener != this.violationListener) {
+			this.violationFinders.clear();
+			this.violationListener = listener;
+		}
+
+		QosConstraintViolationFinder[] finders = this.violationFinders
+				.get(constraint.getID());
+		if (finders == null || finders.length != noOfPartitions) {
+			finders = new QosConstraintViolationFinder[noOfPartitions];
+			for (int i = 0; i < noOfPartitions; i++) {
+				finders[i] = new QosConstraintViolationFinder(
+						constraint.getID(), this.qosGraph, listener,
+						inactivityThresholdTime);
+			}
+			this.violationFinders.put(constraint.getID(), finders);
+		} else {
+			for (QosConstraintViolationFinder finder : finders) {
+				finder.setInactivityThresholdTime(inactivityThresholdTime);
+			}
+		}
+
+		return finders;
+	}
+
 	private QosConstraintSummary createConstraintSummary(
 			JobGraphLatencyConstraint constraint,
 			QosConstraintViolationReport violationReport,
@@ -581,6 +813,13 @@ public class QosModel {
 		double interarrivalTimeSum = 0;
 		double interarrivalTimeCASum = 0;
 
+		int utilizationMeasurements = 0;
+		double utilizationSum = 0;
+		double maxUtilization = 0;
+
+		double inputBlockedFractionSum = 0;
+		double outputBlockedFractionSum = 0;
+
 		int inputGateIndex = seqElem.getInputGateIndex();
 		QosGroupVertex targetGroupVertex = qosGraph.getGroupVertexByID(seqElem
 				.getTargetVertexID());
@@ -597,6 +836,26 @@ public class QosModel {
 						.getInterArrivalTimeInMillis(inputGateIndex);
 				interarrivalTimeCASum += qosData
 						.getInterArrivalTimeCV(inputGateIndex);
+				inputBlockedFractionSum += qosData
+						.getInputBlockedFraction(inputGateIndex);
+
+				// time blocked on output is part of the vertex latency, but
+				// the vertex is idle while waiting for its consumers
+				double outputBlockedFraction = qosData
+						.getTotalOutputBlockedFraction();
+				outputBlockedFractionSum += outputBlockedFraction;
+
+				double consumptionRate = qosData
+						.getRecordsConsumedPerSec(inputGateIndex);
+				double vertexLatency = qosData
+						.getLatencyInMillis(inputGateIndex);
+				if (consumptionRate >= 0 && vertexLatency >= 0) {
+					double utilization = Math.max(0, consumptionRate
+							* vertexLatency / 1000 - outputBlockedFraction);
+					utilizationMeasurements++;
+					utilizationSum += utilization;
+					maxUtilization = Math.max(maxUtilization, utilization);
+				}
 			}
 
 			for (QosEdge ingoingEdge : memberVertex
@@ -629,6 +888,19 @@ public class QosModel {
 			groupEdgeSummary
 					.setMeanConsumerVertexInterarrivalTimeCV(interarrivalTimeCASum
 							/ activeConsumerVertices);
+			groupEdgeSummary
+					.setMeanConsumerVertexInputBlockedFraction(inputBlockedFractionSum
+							/ activeConsumerVertices);
+			groupEdgeSummary
+					.setMeanConsumerVertexOutputBlockedFraction(outputBlockedFractionSum
+							/ activeConsumerVertices);
+			if (utilizationMeasurements > 0) {
+				groupEdgeSummary
+						.setMeanConsumerVertexUtilization(utilizationSum
+								/ utilizationMeasurements);
+				groupEdgeSummary
+						.setMaxConsumerVertexUtilization(maxUtilization);
+			}
 			setSourceGroupVertexEmissionRate(seqElem, inactivityThresholdTime,
 					groupEdgeSummary);
 		}
@@ -7,23 +7,58 @@ import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.*;
 
 import java.util.List;
 
+/**
+ * Summarizes the latencies of the members of a sequence in the Qos graph. The
+ * summary keeps partial sums for each prefix of the sequence. Hence, when
+ * sequences are enumerated depth-first, each member only has to be evaluated
+ * once for all sequences sharing the same prefix (see
+ * {@link #updateMember(int, QosGraphMember)}).
+ * 
+ * If the summarized sequence is constrained by a latency percentile, the
+ * sequence latency is the sum of the respective percentiles of the member
+ * latencies. This is a conservative estimate of the percentile of the sequence
+ * latency, while the vertex and transport latency sums and the member
+ * latencies are still based on mean values.
+ */
 public class QosSequenceLatencySummary {
 	
 	private final int[][] inputOutputGateCombinations;
 	private final double memberLatencies[][];
 	private int noOfEdges;
 	private int noOfVertices;
-	private double sequenceLatency;
-	private double vertexLatencySum;
-	private double transportLatencySum;
-	private boolean isMemberQosDataFresh;
+
+	/**
+	 * The partial sums of the sequence latency, vertex latency and transport
+	 * latency, and the freshness of the Qos data, over the members up to and
+	 * including the respective index.
+	 */
+	private final double[] sequenceLatencyPrefix;
+	private final double[] vertexLatencyPrefix;
+	private final double[] transportLatencyPrefix;
+	private final boolean[] memberQosDataFreshPrefix;
+
+	/**
+	 * The latency percentile summed up in the sequence latency, or 0 for the
+	 * mean latency.
+	 */
+	private final double latencyPercentile;
 
 	public QosSequenceLatencySummary(JobGraphSequence jobGraphSequence) {
+		this(jobGraphSequence, 0);
+	}
+
+	public QosSequenceLatencySummary(JobGraphSequence jobGraphSequence,
+			double latencyPercentile) {
+		this.latencyPercentile = latencyPercentile;
 		this.inputOutputGateCombinations = new int[jobGraphSequence.size()][];
 		this.noOfEdges = 0;
 		this.noOfVertices = 0;
 		
 		this.memberLatencies = new double[jobGraphSequence.size()][];
+		this.sequenceLatencyPrefix = new double[jobGraphSequence.size()];
+		this.vertexLatencyPrefix = new double[jobGraphSequence.size()];
+		this.transportLatencyPrefix = new double[jobGraphSequence.size()];
+		this.memberQosDataFreshPrefix = new boolean[jobGraphSequence.size()];
 		for (SequenceElement sequenceElement : jobGraphSequence) {
 			int index = sequenceElement.getIndexInSequence();
 
@@ -47,34 +82,102 @@ public class QosSequenceLatencySummary {
 	}
 	
 	public void update(List<QosGraphMember> sequenceMembers) {
-		this.sequenceLatency = 0;
-		this.vertexLatencySum = 0;
-		this.transportLatencySum = 0;
-		this.isMemberQosDataFresh = true;
-		
 		int index = 0;
 		for (QosGraphMember member : sequenceMembers) {
-			if (member.isVertex()) {
-				VertexQosData vertexQos = ((QosVertex) member).getQosData();
+			updateMember(index, member);
+			index++;
+		}
+	}
 
-				int inputGateIndex = this.inputOutputGateCombinations[index][0];
+	/**
+	 * Sets the member at the given index of the sequence and updates the
+	 * partial sums for this index. The partial sums of all preceding indices
+	 * must be up to date, those of all following indices become invalid. After
+	 * the last member has been set, the summary describes the whole sequence.
+	 */
+	public void updateMember(int index, QosGraphMember member) {
+		double sequenceLatency = 0;
+		double vertexLatencySum = 0;
+		double transportLatencySum = 0;
+		boolean isMemberQosDataFresh = true;
 
-				this.memberLatencies[index][0] = vertexQos.getLatencyInMillis(inputGateIndex);
+		if (index > 0) {
+			sequenceLatency = this.sequenceLatencyPrefix[index - 1];
+			vertexLatencySum = this.vertexLatencyPrefix[index - 1];
+			transportLatencySum = this.transportLatencyPrefix[index - 1];
+			isMemberQosDataFresh = this.memberQosDataFreshPrefix[index - 1];
+		}
+
+		if (member.isVertex()) {
+			VertexQosData vertexQos = ((QosVertex) member).getQosData();
+
+			int inputGateIndex = this.inputOutputGateCombinations[index][0];
+
+			this.memberLatencies[index][0] = vertexQos.getLatencyInMillis(inputGateIndex);
+			if (this.latencyPercentile > 0) {
+				sequenceLatency += vertexQos.getLatencyPercentileInMillis(
+						inputGateIndex, this.latencyPercentile);
+			} else {
 				sequenceLatency += this.memberLatencies[index][0];
-				vertexLatencySum += this.memberLatencies[index][0];
+			}
+			vertexLatencySum += this.memberLatencies[index][0];
+		} else {
+			EdgeQosData edgeQos = ((QosEdge) member).getQosData();
+			this.memberLatencies[index][0] = edgeQos.estimateOutputBufferLatencyInMillis();
+			this.memberLatencies[index][1] = edgeQos.estimateTransportLatencyInMillis();
+			if (this.latencyPercentile > 0) {
+				sequenceLatency += edgeQos
+						.getChannelLatencyPercentileInMillis(this.latencyPercentile);
 			} else {
-				EdgeQosData edgeQos = ((QosEdge) member).getQosData();
-				this.memberLatencies[index][0] = edgeQos.estimateOutputBufferLatencyInMillis();
-				this.memberLatencies[index][1] = edgeQos.estimateTransportLatencyInMillis();
 				sequenceLatency += edgeQos.getChannelLatencyInMillis();
-				transportLatencySum += this.memberLatencies[index][1];
-				this.isMemberQosDataFresh = this.isMemberQosDataFresh && hasFreshValues((QosEdge) member);
 			}
-
-			index++;
+			transportLatencySum += this.memberLatencies[index][1];
+			isMemberQosDataFresh = isMemberQosDataFresh && hasFreshValues((QosEdge) member);
 		}
+
+		this.sequenceLatencyPrefix[index] = sequenceLatency;
+		this.vertexLatencyPrefix[index] = vertexLatencySum;
+		this.transportLatencyPrefix[index] = transportLatencySum;
+		this.memberQosDataFreshPrefix[index] = isMemberQosDataFresh;
 	}
 	
+	/**
+	 * @return an object that can hold the partial sums for the given index.
+	 */
+	PartialSums createPartialSums(int index) {
+		return new PartialSums(this.memberLatencies[index].length);
+	}
+
+	/**
+	 * Copies the partial sums and the member latencies for the given index,
+	 * which must be up to date.
+	 */
+	void savePartialSums(int index, PartialSums partialSums) {
+		partialSums.sequenceLatency = this.sequenceLatencyPrefix[index];
+		partialSums.vertexLatencySum = this.vertexLatencyPrefix[index];
+		partialSums.transportLatencySum = this.transportLatencyPrefix[index];
+		partialSums.isMemberQosDataFresh = this.memberQosDataFreshPrefix[index];
+		System.arraycopy(this.memberLatencies[index], 0,
+				partialSums.memberLatencies, 0,
+				partialSums.memberLatencies.length);
+	}
+
+	/**
+	 * Sets the partial sums and the member latencies for the given index to
+	 * previously saved ones, instead of evaluating the member again with
+	 * {@link #updateMember(int, QosGraphMember)}. The saved partial sums must
+	 * have been computed from the same partial sums for the preceding index.
+	 */
+	void restorePartialSums(int index, PartialSums partialSums) {
+		this.sequenceLatencyPrefix[index] = partialSums.sequenceLatency;
+		this.vertexLatencyPrefix[index] = partialSums.vertexLatencySum;
+		this.transportLatencyPrefix[index] = partialSums.transportLatencySum;
+		this.memberQosDataFreshPrefix[index] = partialSums.isMemberQosDataFresh;
+		System.arraycopy(partialSums.memberLatencies, 0,
+				this.memberLatencies[index], 0,
+				partialSums.memberLatencies.length);
+	}
+
 	private boolean hasFreshValues(QosEdge edge) {
 		EdgeQosData edgeQos = edge.getQosData();
 
@@ -88,19 +191,19 @@ public class QosSequenceLatencySummary {
 	}
 
 	public double getSequenceLatency() {
-		return sequenceLatency;
+		return this.sequenceLatencyPrefix[this.sequenceLatencyPrefix.length - 1];
 	}
 
 	public double getVertexLatencySum() {
-		return vertexLatencySum;
+		return this.vertexLatencyPrefix[this.vertexLatencyPrefix.length - 1];
 	}
 	
 	public double getTransportLatencySum() {
-		return transportLatencySum;
+		return this.transportLatencyPrefix[this.transportLatencyPrefix.length - 1];
 	}
 	
 	public boolean isMemberQosDataFresh() {
-		return this.isMemberQosDataFresh;
+		return this.memberQosDataFreshPrefix[this.memberQosDataFreshPrefix.length - 1];
 	}
 
 	public int getNoOfEdges() {
@@ -110,4 +213,29 @@ public class QosSequenceLatencySummary {
 	public int getNoOfVertices() {
 		return noOfVertices;
 	}	
+
+	/**
+	 * The partial sums and the member latencies for one index of the
+	 * sequence.
+	 */
+	static class PartialSums {
+
+		private double sequenceLatency;
+
+		private double vertexLatencySum;
+
+		private double transportLatencySum;
+
+		private boolean isMemberQosDataFresh;
+
+		private final double[] memberLatencies;
+
+		private PartialSums(int noOfMemberLatencies) {
+			this.memberLatencies = new double[noOfMemberLatencies];
+		}
+
+		double getSequenceLatency() {
+			return this.sequenceLatency;
+		}
+	}
 }
@@ -0,0 +1,130 @@
+package eu.stratosphere.nephele.streaming.taskmanager.qosmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A small pool of worker threads used by a Qos manager. Each worker processes
+ * its tasks one after another in submission order, hence tasks submitted to
+ * the same worker never run concurrently and are applied in order. This is
+ * used to apply Qos report records in parallel, while all records belonging to
+ * the same Qos vertex or edge are applied by the same worker.
+ *
+ * When the workers are idle, they can also be used to run independent tasks in
+ * parallel with {@link #invokeAll(List)}.
+ *
+ * Tasks must only be submitted by a single thread (the Qos manager thread).
+ */
+public class QosWorkerPool {
+
+	private static final Log LOG = LogFactory.getLog(QosWorkerPool.class);
+
+	private final ExecutorService[] workers;
+
+	public QosWorkerPool(final String name, int noOfWorkers) {
+		this.workers = new ExecutorService[Math.max(1, noOfWorkers)];
+
+		for (int i = 0; i < this.workers.length; i++) {
+			final String threadName = String.format("%s (Worker %d)", name, i);
+
+			this.workers[i] = Executors
+					.newSingleThreadExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable target) {
+							Thread t = new Thread(target, threadName);
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+	}
+
+	public int getNoOfWorkers() {
+		return this.workers.length;
+	}
+
+	/**
+	 * Asynchronously runs the given task on the worker with the given index.
+	 * Exceptions thrown by the task are logged.
+	 */
+	public void execute(int workerIndex, final Runnable task) {
+		this.workers[workerIndex].execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (Exception e) {
+					LOG.error("Error in Qos manager worker", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Blocks until all tasks submitted so far have been processed by the
+	 * workers. Afterwards, all effects of these tasks are visible to the
+	 * calling thread.
+	 */
+	public void awaitQuiescence() throws InterruptedException {
+		List<Future<?>> markers = new ArrayList<Future<?>>(this.workers.length);
+		for (ExecutorService worker : this.workers) {
+			markers.add(worker.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}));
+		}
+
+		for (Future<?> marker : markers) {
+			waitFor(marker);
+		}
+	}
+
+	/**
+	 * Runs the given tasks in parallel, distributing them round-robin across
+	 * the workers, and blocks until all of them have completed.
+	 *
+	 * @return the results of the tasks, in the order of the given tasks.
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> tasks)
+			throws InterruptedException {
+
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		int workerIndex = 0;
+		for (Callable<T> task : tasks) {
+			futures.add(this.workers[workerIndex].submit(task));
+			workerIndex = (workerIndex + 1) % this.workers.length;
+		}
+
+		List<T> results = new ArrayList<T>(futures.size());
+		for (Future<T> future : futures) {
+			results.add(waitFor(future));
+		}
+
+		return results;
+	}
+
+	private <T> T waitFor(Future<T> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error in Qos manager worker",
+					e.getCause());
+		}
+	}
+
+	public void shutdown() {
+		for (ExecutorService worker : this.workers) {
+			worker.shutdownNow();
+		}
+	}
+}
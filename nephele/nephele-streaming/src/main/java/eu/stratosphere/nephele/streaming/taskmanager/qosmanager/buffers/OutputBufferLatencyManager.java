@@ -3,8 +3,9 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosmanager.buffers;
 import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
-import eu.stratosphere.nephele.streaming.message.action.SetOutputBufferLifetimeTargetAction;
+import eu.stratosphere.nephele.streaming.message.action.SetOutputBufferLifetimeTargetBatchAction;
 import eu.stratosphere.nephele.streaming.taskmanager.StreamMessagingThread;
+import eu.stratosphere.nephele.streaming.taskmanager.clocksync.ReferenceClock;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosConstraintViolationListener;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.QosSequenceLatencySummary;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.EdgeQosData;
@@ -16,6 +17,7 @@ import org.apache.commons.logging.LogFactory;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map.Entry;
 
 /**
  * Used by the Qos manager to manage output latencies in a Qos graph. It uses a
@@ -47,10 +49,13 @@ public class OutputBufferLatencyManager {
 				List<QosGraphMember> sequenceMembers,
 				QosSequenceLatencySummary qosSummary) {
 
-			if (qosSummary.isMemberQosDataFresh()) {
-				collectEdgesToAdjust(constraint, sequenceMembers, qosSummary, edgesToAdjust);
-			} else {
-				staleSequencesCounter++;
+			// may be invoked concurrently by the Qos manager's workers
+			synchronized (OutputBufferLatencyManager.this) {
+				if (qosSummary.isMemberQosDataFresh()) {
+					collectEdgesToAdjust(constraint, sequenceMembers, qosSummary, edgesToAdjust);
+				} else {
+					staleSequencesCounter++;
+				}
 			}
 		}
 	};
@@ -75,16 +80,42 @@ public class OutputBufferLatencyManager {
 		return this.listener;
 	}
 
+	/**
+	 * Applies the new targets to the Qos model and sends them to the task
+	 * managers of the edges' source tasks, using one message per task manager.
+	 * All targets of an adjustment carry the same version, so that the output
+	 * gates can drop targets that are overtaken by a later adjustment.
+	 */
 	private void doAdjust(HashMap<QosEdge, Integer> edgesToAdjust, long oblHistoryTimestamp)
 			throws InterruptedException {
 
+		long version = ReferenceClock.currentTimeMicros();
+		HashMap<InstanceConnectionInfo, SetOutputBufferLifetimeTargetBatchAction> actionsByReceiver = new HashMap<InstanceConnectionInfo, SetOutputBufferLifetimeTargetBatchAction>();
+
 		for (QosEdge edge : edgesToAdjust.keySet()) {
 			int newTargetObl = edgesToAdjust.get(edge);
 
-			ValueHistory<Integer> oblHistory = edge.getQosData().getTargetObltHistory();
-			oblHistory.addToHistory(oblHistoryTimestamp, newTargetObl);
+			edge.getQosData().addTargetObl(oblHistoryTimestamp, newTargetObl);
+
+			InstanceConnectionInfo receiver = edge.getOutputGate().getVertex()
+					.getExecutingInstance();
+			SetOutputBufferLifetimeTargetBatchAction action = actionsByReceiver
+					.get(receiver);
+			if (action == null) {
+				action = new SetOutputBufferLifetimeTargetBatchAction(
+						this.jobID, version);
+				actionsByReceiver.put(receiver, action);
+			}
+
+			action.addTarget(edge.getOutputGate().getVertex().getID(), edge
+					.getOutputGate().getGateID(), edge.getSourceChannelID(),
+					newTargetObl);
+		}
 
-			this.setTargetOutputBufferLatency(edge, newTargetObl);
+		for (Entry<InstanceConnectionInfo, SetOutputBufferLifetimeTargetBatchAction> entry : actionsByReceiver
+				.entrySet()) {
+			this.messagingThread.sendAsynchronously(entry.getKey(),
+					entry.getValue());
 		}
 	}
 
@@ -177,17 +208,4 @@ public class OutputBufferLatencyManager {
 
 		return toReturn;
 	}
-
-	private void setTargetOutputBufferLatency(QosEdge edge, int targetObl)
-			throws InterruptedException {
-
-		SetOutputBufferLifetimeTargetAction action = new SetOutputBufferLifetimeTargetAction(
-				this.jobID, edge.getOutputGate().getVertex().getID(), edge
-						.getOutputGate().getGateID(),
-				edge.getSourceChannelID(), targetObl);
-
-		InstanceConnectionInfo receiver = edge.getOutputGate().getVertex()
-				.getExecutingInstance();
-		this.messagingThread.sendAsynchronously(receiver, action);
-	}
 }
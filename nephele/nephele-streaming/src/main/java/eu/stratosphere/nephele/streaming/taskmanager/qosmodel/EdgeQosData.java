@@ -2,6 +2,7 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosmodel;
 
 import eu.stratosphere.nephele.streaming.message.qosreport.EdgeStatistics;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmanager.buffers.ValueHistory;
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.QuantileSketch;
 import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
 
 /**
@@ -17,6 +18,8 @@ public class EdgeQosData {
 
 	private QosStatistic latencyInMillisStatistic;
 
+	private QuantileStatistic latencyInMillisQuantiles;
+
 	private QosStatistic throughputInMbitStatistic;
 
 	private QosStatistic outputBufferLifetimeStatistic;
@@ -29,11 +32,17 @@ public class EdgeQosData {
 	
 	private ValueHistory<Integer> targetObltHistory;
 
+	/**
+	 * Incremented whenever Qos data or an output buffer latency target is
+	 * added or dropped.
+	 */
+	private long version;
 
 	public EdgeQosData(QosEdge edge) {
 		this.edge = edge;
 		this.isInChain = false;
 		this.latencyInMillisStatistic = new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize());
+		this.latencyInMillisQuantiles = new QuantileStatistic(StreamPluginConfig.computeQosStatisticWindowSize());
 		this.throughputInMbitStatistic = new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize());
 		this.outputBufferLifetimeStatistic = new QosStatistic(
 				StreamPluginConfig.computeQosStatisticWindowSize());
@@ -91,6 +100,19 @@ public class EdgeQosData {
 		return -1;
 	}
 
+	/**
+	 * Returns the given percentile (e.g. 99) of the channel latency. Falls
+	 * back to the mean channel latency if the channel latency has not been
+	 * sketched by the reporter.
+	 */
+	public double getChannelLatencyPercentileInMillis(double percentile) {
+		if (this.latencyInMillisQuantiles.hasValues()) {
+			return this.latencyInMillisQuantiles.getQuantile(percentile / 100);
+		}
+
+		return getChannelLatencyInMillis();
+	}
+
 	public double getChannelThroughputInMbit() {
 		if (this.throughputInMbitStatistic.hasValues()) {
 			return this.throughputInMbitStatistic.getMean();
@@ -123,27 +145,31 @@ public class EdgeQosData {
 	}
 
 	public void addLatencyMeasurement(long timestamp, double latencyInMillis) {
-		QosValue value = new QosValue(latencyInMillis, timestamp);
-		this.latencyInMillisStatistic.addValue(value);
+		this.latencyInMillisStatistic.addValue(latencyInMillis, timestamp);
+		this.version++;
+	}
+
+	public void addLatencyMeasurement(long timestamp, double latencyInMillis,
+			QuantileSketch latencySketch) {
+
+		addLatencyMeasurement(timestamp, latencyInMillis);
+		if (latencySketch != null) {
+			this.latencyInMillisQuantiles.addSketch(latencySketch, timestamp);
+		}
 	}
 
 	public void addOutputChannelStatisticsMeasurement(long timestamp,
 			EdgeStatistics stats) {
 
-		QosValue throughput = new QosValue(stats.getThroughput(), timestamp);
-		this.throughputInMbitStatistic.addValue(throughput);
-
-		QosValue outputBufferLifetime = new QosValue(
+		this.throughputInMbitStatistic.addValue(stats.getThroughput(),
+				timestamp);
+		this.outputBufferLifetimeStatistic.addValue(
 				stats.getOutputBufferLifetime(), timestamp);
-		this.outputBufferLifetimeStatistic.addValue(outputBufferLifetime);
-
-		QosValue recordsPerBuffer = new QosValue(stats.getRecordsPerBuffer(),
+		this.recordsPerBufferStatistic.addValue(stats.getRecordsPerBuffer(),
 				timestamp);
-		this.recordsPerBufferStatistic.addValue(recordsPerBuffer);
-
-		QosValue recordsPerSecond = new QosValue(stats.getRecordsPerSecond(),
+		this.recordsPerSecondStatistic.addValue(stats.getRecordsPerSecond(),
 				timestamp);
-		this.recordsPerSecondStatistic.addValue(recordsPerSecond);
+		this.version++;
 	}
 
 	public void setIsInChain(boolean isInChain) {
@@ -151,6 +177,7 @@ public class EdgeQosData {
 		outputBufferLifetimeStatistic.clear();
 		recordsPerBufferStatistic.clear();
 		recordsPerSecondStatistic.clear();
+		this.version++;
 	}
 
 	public boolean isInChain() {
@@ -159,7 +186,7 @@ public class EdgeQosData {
 	
 	private boolean isChannelLatencyNewerThan(long thresholdTimestamp) {
 		return latencyInMillisStatistic.hasValues()
-				&& latencyInMillisStatistic.getOldestValue().getTimestamp() >= thresholdTimestamp;
+				&& latencyInMillisStatistic.getOldestTimestamp() >= thresholdTimestamp;
 	}
 
 	private boolean isOutputBufferLifetimeNewerThan(long thresholdTimestamp) {
@@ -167,7 +194,7 @@ public class EdgeQosData {
 			return true;
 		}
 		return outputBufferLifetimeStatistic.hasValues() 
-				&& outputBufferLifetimeStatistic.getOldestValue().getTimestamp() >= thresholdTimestamp;
+				&& outputBufferLifetimeStatistic.getOldestTimestamp() >= thresholdTimestamp;
 	}
 
 	public boolean hasNewerData(long thresholdTimestamp) {
@@ -177,11 +204,18 @@ public class EdgeQosData {
 	
 	public void dropOlderData(long thresholdTimestamp) {
 		if (!isChannelLatencyNewerThan(thresholdTimestamp)) {
+			if (latencyInMillisStatistic.hasValues()) {
+				this.version++;
+			}
 			latencyInMillisStatistic.clear();
+			latencyInMillisQuantiles.clear();
 		}
 
 		if (!isInChain()
 				&& !isOutputBufferLifetimeNewerThan(thresholdTimestamp)) {
+			if (outputBufferLifetimeStatistic.hasValues()) {
+				this.version++;
+			}
 			throughputInMbitStatistic.clear();
 			outputBufferLifetimeStatistic.clear();
 			recordsPerBufferStatistic.clear();
@@ -192,4 +226,23 @@ public class EdgeQosData {
 	public ValueHistory<Integer> getTargetObltHistory() {
 		return this.targetObltHistory;
 	}
+
+	/**
+	 * Adds a new output buffer latency target for the edge to the target
+	 * history.
+	 */
+	public void addTargetObl(long timestamp, int targetObl) {
+		this.targetObltHistory.addToHistory(timestamp, targetObl);
+		this.version++;
+	}
+
+	/**
+	 * @return a number that changes whenever Qos data or an output buffer
+	 *         latency target is added to or dropped from this object. Values
+	 *         derived from the Qos data remain valid as long as the version
+	 *         does not change.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
 }
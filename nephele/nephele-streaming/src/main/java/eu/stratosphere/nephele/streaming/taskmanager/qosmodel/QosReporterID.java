@@ -171,6 +171,8 @@ public abstract class QosReporterID implements IOReadableWritable {
 				this.outputGateID = new GateID();
 				this.outputGateID.read(in);
 			}
+
+			this.precomputeHash();
 		}
 
 		/*
@@ -1,15 +1,30 @@
 package eu.stratosphere.nephele.streaming.taskmanager.qosmodel;
 
-import java.util.LinkedList;
-
+/**
+ * A Qos statistic aggregates the most recent {@link QosValue}s of some runtime
+ * aspect within a sliding window of fixed size. The values are kept in a ring
+ * buffer of parallel primitive arrays, so adding a value does not allocate any
+ * objects.
+ */
 public class QosStatistic {
 
-	private final LinkedList<QosValue> sortedByTs;
+	private final long[] timestamps;
+
+	private final double[] means;
+
+	private final double[] variances;
+
+	private final int[] weights;
 
 	private final int statisticWindowSize;
 
+	/**
+	 * The ring buffer index of the oldest stored value.
+	 */
+	private int oldestIndex;
+
 	private int noOfStoredValues;
-	
+
 	private int sumOfWeights;
 
 	private double sumOfWeightedMeans;
@@ -17,26 +32,39 @@ public class QosStatistic {
 	private double sumOfWeightedVariances;
 
 	private final boolean hasVariance;
-	
-	private QosValue statisticCache;
+
+	/**
+	 * The cached mean and variance may be refreshed concurrently by several
+	 * threads evaluating Qos constraints, hence the cached values are
+	 * published through this volatile flag.
+	 */
+	private volatile boolean statisticCacheValid;
+
+	private double cachedMean;
+
+	private double cachedVariance;
 
 	public QosStatistic(int statisticWindowSize) {
 		this(statisticWindowSize, false);
 	}
 
 	public QosStatistic(int statisticWindowSize, boolean hasVariance) {
-		this.sortedByTs = new LinkedList<QosValue>();
 		this.statisticWindowSize = statisticWindowSize;
 		this.hasVariance = hasVariance;
+		this.timestamps = new long[statisticWindowSize];
+		this.means = new double[statisticWindowSize];
+		this.weights = new int[statisticWindowSize];
+		this.variances = hasVariance ? new double[statisticWindowSize] : null;
 		clear();
 	}
 
 	public void clear() {
+		this.oldestIndex = 0;
 		this.noOfStoredValues = 0;
 		this.sumOfWeightedMeans = 0;
 		this.sumOfWeightedVariances = 0;
 		this.sumOfWeights = 0;
-		this.sortedByTs.clear();
+		this.statisticCacheValid = false;
 	}
 
 	public void addValue(QosValue value) {
@@ -45,42 +73,89 @@ public class QosStatistic {
 					"Cannot put QosValues without variance into a statistic with variance, or vice versa");
 		}
 
-		QosValue droppedValue = this.insertIntoSortedByTimestamp(value);
+		insertValue(value.getMean(), value.getVariance(), value.getWeight(),
+				value.getTimestamp());
+	}
+
+	public void addValue(double mean, long timestamp) {
+		addValue(mean, 1, timestamp);
+	}
+
+	public void addValue(double mean, int weight, long timestamp) {
+		if (hasVariance) {
+			throw new RuntimeException(
+					"Cannot put QosValues without variance into a statistic with variance");
+		}
+
+		insertValue(mean, -1, weight, timestamp);
+	}
+
+	public void addValue(double mean, double variance, int weight,
+			long timestamp) {
+		if (!hasVariance) {
+			throw new RuntimeException(
+					"Cannot put QosValues with variance into a statistic without variance");
+		}
+
+		insertValue(mean, variance, weight, timestamp);
+	}
+
+	private void insertValue(double mean, double variance, int weight,
+			long timestamp) {
+
+		if (this.noOfStoredValues > 0
+				&& this.timestamps[indexOfNewest()] >= timestamp) {
+			throw new IllegalArgumentException(
+					"Trying to add stale Qos statistic values. This should not happen.");
+		}
+
+		final int index;
+		if (this.noOfStoredValues >= this.statisticWindowSize) {
+			// overwrite the oldest value
+			index = this.oldestIndex;
+			this.oldestIndex = (this.oldestIndex + 1) % this.statisticWindowSize;
 
-		if (droppedValue != null) {
 			this.noOfStoredValues--;
-			this.sumOfWeights -= droppedValue.getWeight();
-			this.sumOfWeightedMeans -= droppedValue.getWeight() * droppedValue.getMean();
-			
+			this.sumOfWeights -= this.weights[index];
+			this.sumOfWeightedMeans -= this.weights[index] * this.means[index];
+
 			if (hasVariance) {
-				this.sumOfWeightedVariances -= (droppedValue.getWeight() -1) * droppedValue.getVariance();
+				this.sumOfWeightedVariances -= (this.weights[index] - 1)
+						* this.variances[index];
 			}
+		} else {
+			index = (this.oldestIndex + this.noOfStoredValues)
+					% this.statisticWindowSize;
 		}
 
+		this.timestamps[index] = timestamp;
+		this.means[index] = mean;
+		this.weights[index] = weight;
+
 		this.noOfStoredValues++;
-		this.sumOfWeights += value.getWeight();
-		this.sumOfWeightedMeans += value.getWeight() * value.getMean();
+		this.sumOfWeights += weight;
+		this.sumOfWeightedMeans += weight * mean;
 
 		if (hasVariance) {
-			this.sumOfWeightedVariances += (value.getWeight() -1) * value.getVariance();
+			this.variances[index] = variance;
+			this.sumOfWeightedVariances += (weight - 1) * variance;
 		}
-		
-		this.statisticCache = null;
+
+		this.statisticCacheValid = false;
 	}
 
-	private QosValue insertIntoSortedByTimestamp(QosValue value) {
-		if (!this.sortedByTs.isEmpty()
-				&& this.sortedByTs.getLast().getTimestamp() >= value
-						.getTimestamp()) {
-			throw new IllegalArgumentException(
-					"Trying to add stale Qos statistic values. This should not happen.");
-		}
-		this.sortedByTs.add(value);
+	private int indexOfNewest() {
+		return (this.oldestIndex + this.noOfStoredValues - 1)
+				% this.statisticWindowSize;
+	}
 
-		if (this.noOfStoredValues >= this.statisticWindowSize) {
-			return this.sortedByTs.removeFirst();
+	private QosValue valueAt(int index) {
+		if (hasVariance) {
+			return new QosValue(this.means[index], this.variances[index],
+					this.weights[index], this.timestamps[index]);
 		}
-		return null;
+		return new QosValue(this.means[index], this.weights[index],
+				this.timestamps[index]);
 	}
 
 	public QosValue getOldestValue() {
@@ -88,7 +163,7 @@ public class QosStatistic {
 			throw new RuntimeException(
 					"Cannot get the oldest value of empty value set");
 		}
-		return this.sortedByTs.getFirst();
+		return valueAt(this.oldestIndex);
 	}
 
 	public QosValue getNewestValue() {
@@ -96,7 +171,31 @@ public class QosStatistic {
 			throw new RuntimeException(
 					"Cannot get the newest value of empty value set");
 		}
-		return this.sortedByTs.getLast();
+		return valueAt(indexOfNewest());
+	}
+
+	/**
+	 * Returns the timestamp of the oldest value without creating a
+	 * {@link QosValue}.
+	 */
+	public long getOldestTimestamp() {
+		if (this.noOfStoredValues == 0) {
+			throw new RuntimeException(
+					"Cannot get the oldest value of empty value set");
+		}
+		return this.timestamps[this.oldestIndex];
+	}
+
+	/**
+	 * Returns the timestamp of the newest value without creating a
+	 * {@link QosValue}.
+	 */
+	public long getNewestTimestamp() {
+		if (this.noOfStoredValues == 0) {
+			throw new RuntimeException(
+					"Cannot get the newest value of empty value set");
+		}
+		return this.timestamps[indexOfNewest()];
 	}
 
 	public double getMean() {
@@ -104,30 +203,32 @@ public class QosStatistic {
 			throw new RuntimeException(
 					"Cannot calculate the arithmetic mean of empty value set");
 		}
-		
-		if (statisticCache == null) {
+
+		if (!statisticCacheValid) {
 			refreshStatistic();
 		}
 
-		return statisticCache.getMean();
+		return cachedMean;
 	}
 
 	private void refreshStatistic() {
-		
+
 		double mean = sumOfWeightedMeans / sumOfWeights;
-		
-		if (hasVariance()) { 
+
+		if (hasVariance()) {
 			double tgss = 0;
-			for(QosValue value : sortedByTs) {
-				double meanDiff = value.getMean() - mean;
-				tgss += (meanDiff * meanDiff) * value.getWeight();
+			for (int i = 0; i < noOfStoredValues; i++) {
+				int index = (oldestIndex + i) % statisticWindowSize;
+				double meanDiff = means[index] - mean;
+				tgss += (meanDiff * meanDiff) * weights[index];
 			}
-			double variance = (sumOfWeightedVariances + tgss) / (sumOfWeights -1) ;
-			
-			statisticCache = new QosValue(mean, variance, sumOfWeights, getNewestValue().getTimestamp());
+			cachedVariance = (sumOfWeightedVariances + tgss) / (sumOfWeights -1) ;
 		} else {
-			statisticCache = new QosValue(mean, sumOfWeights, getNewestValue().getTimestamp());
+			cachedVariance = -1;
 		}
+
+		cachedMean = mean;
+		statisticCacheValid = true;
 	}
 
 	public boolean hasVariance() {
@@ -140,11 +241,11 @@ public class QosStatistic {
 					"Cannot calculate the variance of empty value set");
 		}
 
-		if (statisticCache == null) {
+		if (!statisticCacheValid) {
 			refreshStatistic();
 		}
 
-		return statisticCache.getVariance();
+		return cachedVariance;
 	}
 
 	public boolean hasValues() {
@@ -0,0 +1,98 @@
+package eu.stratosphere.nephele.streaming.taskmanager.qosmodel;
+
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.QuantileSketch;
+
+/**
+ * A quantile statistic aggregates the most recent {@link QuantileSketch}es of
+ * some runtime aspect within a sliding window of fixed size, in the same way
+ * as {@link QosStatistic} does for mean values. Quantiles are estimated from
+ * the merge of all sketches in the window.
+ */
+public class QuantileStatistic {
+
+	private final long[] timestamps;
+
+	private final QuantileSketch[] sketches;
+
+	private final int statisticWindowSize;
+
+	private int oldestIndex;
+
+	private int noOfStoredSketches;
+
+	/**
+	 * The merge of all sketches in the window. It may be computed concurrently
+	 * by several threads evaluating Qos constraints, hence it is published
+	 * through a volatile field and discarded whenever the window changes.
+	 */
+	private volatile QuantileSketch cachedMergedSketch;
+
+	public QuantileStatistic(int statisticWindowSize) {
+		this.statisticWindowSize = statisticWindowSize;
+		this.timestamps = new long[statisticWindowSize];
+		this.sketches = new QuantileSketch[statisticWindowSize];
+		clear();
+	}
+
+	public void clear() {
+		this.oldestIndex = 0;
+		this.noOfStoredSketches = 0;
+		this.cachedMergedSketch = null;
+	}
+
+	public void addSketch(QuantileSketch sketch, long timestamp) {
+		if (this.noOfStoredSketches > 0
+				&& this.timestamps[indexOfNewest()] >= timestamp) {
+			throw new IllegalArgumentException(
+					"Trying to add stale Qos statistic values. This should not happen.");
+		}
+
+		final int index;
+		if (this.noOfStoredSketches >= this.statisticWindowSize) {
+			index = this.oldestIndex;
+			this.oldestIndex = (this.oldestIndex + 1) % this.statisticWindowSize;
+		} else {
+			index = (this.oldestIndex + this.noOfStoredSketches)
+					% this.statisticWindowSize;
+			this.noOfStoredSketches++;
+		}
+
+		this.timestamps[index] = timestamp;
+		this.sketches[index] = sketch;
+		this.cachedMergedSketch = null;
+	}
+
+	private int indexOfNewest() {
+		return (this.oldestIndex + this.noOfStoredSketches - 1)
+				% this.statisticWindowSize;
+	}
+
+	public boolean hasValues() {
+		return this.noOfStoredSketches > 0;
+	}
+
+	/**
+	 * Returns the estimated q-quantile over all sketches in the window.
+	 *
+	 * @param q
+	 *            the quantile to estimate, between 0 and 1.
+	 * @return the estimated quantile, or -1 if the window is empty.
+	 */
+	public double getQuantile(double q) {
+		if (this.noOfStoredSketches == 0) {
+			return -1;
+		}
+
+		QuantileSketch merged = this.cachedMergedSketch;
+		if (merged == null) {
+			merged = new QuantileSketch();
+			for (int i = 0; i < this.noOfStoredSketches; i++) {
+				merged.merge(this.sketches[(this.oldestIndex + i)
+						% this.statisticWindowSize]);
+			}
+			this.cachedMergedSketch = merged;
+		}
+
+		return merged.getQuantile(q);
+	}
+}
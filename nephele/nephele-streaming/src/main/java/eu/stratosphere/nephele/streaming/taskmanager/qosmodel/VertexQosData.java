@@ -7,7 +7,7 @@ import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.Sample
 import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
 
 /**
- * Instances of this class hold Qos data (currently only latency) of a
+ * Instances of this class hold Qos data (latency, rates and blocked time) of a
  * {@link QosVertex}. Vertex latency is only measured for those input/output
  * gate combinations that are covered by a Qos constraint.
  * 
@@ -43,6 +43,12 @@ public class VertexQosData {
 	 */
 	private QosStatistic[] igInterReadTimeCV;
 
+	/**
+	 * Sparse array indexed by inputGateIndex. Contains sketches of the
+	 * distribution of the input gate's inter-read time, if reported.
+	 */
+	private QuantileStatistic[] igInterReadTimeQuantiles;
+
 	private QosStatistic[] igRecordInterArrivalTime;
 
 	/**
@@ -51,14 +57,34 @@ public class VertexQosData {
 	 */
 	private QosStatistic[] igRecordInterArrivalTimeCV;
 
+	/**
+	 * Sparse array indexed by inputGateIndex containing the fraction of time
+	 * the vertex has waited for input on the gate.
+	 */
+	private QosStatistic[] igBlockedFraction;
+
+	/**
+	 * Sparse array indexed by outputGateIndex containing the fraction of time
+	 * the vertex has waited for empty output buffers of the gate.
+	 */
+	private QosStatistic[] ogBlockedFraction;
+
+	/**
+	 * Incremented whenever Qos data is added or dropped.
+	 */
+	private long version;
+
 	public VertexQosData(QosVertex vertex) {
 		this.vertex = vertex;		
 		this.igRecordsConsumedPerSec = new QosStatistic[1];
 		this.ogRecordsEmittedPerSec = new QosStatistic[1];
 		this.igInterReadTime = new QosStatistic[1];
 		this.igInterReadTimeCV = new QosStatistic[1];
+		this.igInterReadTimeQuantiles = new QuantileStatistic[1];
 		this.igRecordInterArrivalTime = new QosStatistic[1];
 		this.igRecordInterArrivalTimeCV = new QosStatistic[1];
+		this.igBlockedFraction = new QosStatistic[1];
+		this.ogBlockedFraction = new QosStatistic[1];
 	}
 
 	public QosVertex getVertex() {
@@ -72,6 +98,21 @@ public class VertexQosData {
 		return -1;
 	}
 	
+	/**
+	 * Returns the given percentile (e.g. 99) of the vertex latency. Falls back
+	 * to the mean vertex latency if the vertex latency has not been sketched
+	 * by the reporter.
+	 */
+	public double getLatencyPercentileInMillis(int inputGateIndex,
+			double percentile) {
+
+		if (igInterReadTimeQuantiles[inputGateIndex].hasValues()) {
+			return igInterReadTimeQuantiles[inputGateIndex]
+					.getQuantile(percentile / 100);
+		}
+		return getLatencyInMillis(inputGateIndex);
+	}
+
 	public double getLatencyCV(int inputGateIndex) {
 		if (igInterReadTimeCV[inputGateIndex].hasValues()) {
 			return igInterReadTimeCV[inputGateIndex].getMean();
@@ -108,6 +149,35 @@ public class VertexQosData {
 	}
 
 
+	public double getInputBlockedFraction(int inputGateIndex) {
+		if (igBlockedFraction[inputGateIndex].hasValues()) {
+			return igBlockedFraction[inputGateIndex].getMean();
+		}
+		return 0;
+	}
+
+	public double getOutputBlockedFraction(int outputGateIndex) {
+		if (ogBlockedFraction[outputGateIndex].hasValues()) {
+			return ogBlockedFraction[outputGateIndex].getMean();
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the fraction of time the vertex has waited for empty output
+	 * buffers of any reported output gate. Since all gates are served by the
+	 * same task thread, the fractions of the gates add up.
+	 */
+	public double getTotalOutputBlockedFraction() {
+		double blockedFraction = 0;
+		for (int i = 0; i < ogBlockedFraction.length; i++) {
+			if (ogBlockedFraction[i] != null) {
+				blockedFraction += getOutputBlockedFraction(i);
+			}
+		}
+		return Math.min(1, blockedFraction);
+	}
+
 	public void prepareForReportsOnGateCombination(int inputGateIndex,
 			int outputGateIndex) {
 		
@@ -125,6 +195,10 @@ public class VertexQosData {
 				igInterReadTimeCV, inputGateIndex,
 				new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize()));
 
+		igInterReadTimeQuantiles = setInArray(QuantileStatistic.class,
+				igInterReadTimeQuantiles, inputGateIndex,
+				new QuantileStatistic(StreamPluginConfig.computeQosStatisticWindowSize()));
+
 		igRecordsConsumedPerSec = setInArray(QosStatistic.class,
 				igRecordsConsumedPerSec, inputGateIndex,
 				new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize()));
@@ -137,12 +211,20 @@ public class VertexQosData {
 				igRecordInterArrivalTimeCV, inputGateIndex,
 				new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize()));
 
+		igBlockedFraction = setInArray(QosStatistic.class,
+				igBlockedFraction, inputGateIndex,
+				new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize()));
+
 	} 
 
 	public void prepareForReportsOnOutputGate(int outputGateIndex) {
 		ogRecordsEmittedPerSec = setInArray(QosStatistic.class,
 				ogRecordsEmittedPerSec, outputGateIndex,
 				new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize()));
+
+		ogBlockedFraction = setInArray(QosStatistic.class,
+				ogBlockedFraction, outputGateIndex,
+				new QosStatistic(StreamPluginConfig.computeQosStatisticWindowSize()));
 	}
 	
 	private <T> T[] setInArray(Class<T> clazz, T[] array, int index, T value) {
@@ -180,37 +262,54 @@ public class VertexQosData {
 		if (inputGateIndex != -1) {
 			
 			Sample vertexLatency = measurement.getInputGateInterReadTimeMillis();
-			igInterReadTime[inputGateIndex].addValue(new QosValue(vertexLatency
-					.getMean(), vertexLatency.getNoOfSamplePoints(), timestamp));
-			igInterReadTimeCV[inputGateIndex].addValue(new QosValue(computeCoefficientOfVariation(vertexLatency),
-					vertexLatency.getNoOfSamplePoints(), timestamp));
-
-			igRecordsConsumedPerSec[inputGateIndex]
-					.addValue(new QosValue(measurement
-							.getRecordsConsumedPerSec(), timestamp));
+			igInterReadTime[inputGateIndex].addValue(vertexLatency.getMean(),
+					vertexLatency.getNoOfSamplePoints(), timestamp);
+			igInterReadTimeCV[inputGateIndex].addValue(computeCoefficientOfVariation(vertexLatency),
+					vertexLatency.getNoOfSamplePoints(), timestamp);
+			if (vertexLatency.hasQuantileSketch()) {
+				igInterReadTimeQuantiles[inputGateIndex].addSketch(
+						vertexLatency.getQuantileSketch(), timestamp);
+			}
+
+			igRecordsConsumedPerSec[inputGateIndex].addValue(
+					measurement.getRecordsConsumedPerSec(), timestamp);
 
 			Sample interarrivalTime = measurement.getInterArrivalTimeMillis();
-			igRecordInterArrivalTime[inputGateIndex].addValue(new QosValue(
+			igRecordInterArrivalTime[inputGateIndex].addValue(
 					interarrivalTime.getMean(), interarrivalTime.getNoOfSamplePoints(),
-					timestamp));
-			igRecordInterArrivalTimeCV[inputGateIndex].addValue(new QosValue(
+					timestamp);
+			igRecordInterArrivalTimeCV[inputGateIndex].addValue(
 					computeCoefficientOfVariation(interarrivalTime),
 					interarrivalTime.getNoOfSamplePoints(),
-					timestamp));
+					timestamp);
+
+			igBlockedFraction[inputGateIndex].addValue(
+					measurement.getInputBlockedFraction(), timestamp);
 		}
 
 		if (outputGateIndex != -1) {
-			ogRecordsEmittedPerSec[outputGateIndex]
-					.addValue(new QosValue(measurement
-							.getRecordsEmittedPerSec(), timestamp));
-
+			ogRecordsEmittedPerSec[outputGateIndex].addValue(
+					measurement.getRecordsEmittedPerSec(), timestamp);
+			ogBlockedFraction[outputGateIndex].addValue(
+					measurement.getOutputBlockedFraction(), timestamp);
 		}
+
+		this.version++;
 	}
 	
 	private double computeCoefficientOfVariation(Sample sample) {
 		return Math.sqrt(sample.getVariance()) / sample.getMean();
 	}
 
+	/**
+	 * @return a number that changes whenever Qos data is added to or dropped
+	 *         from this object. Values derived from the Qos data remain valid
+	 *         as long as the version does not change.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
 	public boolean hasNewerData(int inputGateIndex, int outputGateIndex, long thresholdTimestamp) {	
 		if (inputGateIndex != -1) {
 			return isInputGateConsumptionRateNewerThan(inputGateIndex, thresholdTimestamp);
@@ -229,19 +328,28 @@ public class VertexQosData {
 		if (inputGateIndex != -1
 				&& !isInputGateConsumptionRateNewerThan(inputGateIndex,
 						thresholdTimestamp)) {
-			
+
+			if (igRecordsConsumedPerSec[inputGateIndex].hasValues()) {
+				this.version++;
+			}
 			igRecordsConsumedPerSec[inputGateIndex].clear();
 			igInterReadTime[inputGateIndex].clear();
 			igInterReadTimeCV[inputGateIndex].clear();
+			igInterReadTimeQuantiles[inputGateIndex].clear();
 			igRecordInterArrivalTime[inputGateIndex].clear();
 			igRecordInterArrivalTimeCV[inputGateIndex].clear();
+			igBlockedFraction[inputGateIndex].clear();
 		}
 
 		if (outputGateIndex != -1
 				&& !isOutputGateEmissionRateNewerThan(outputGateIndex,
 						thresholdTimestamp)) {
-			
+
+			if (ogRecordsEmittedPerSec[outputGateIndex].hasValues()) {
+				this.version++;
+			}
 			ogRecordsEmittedPerSec[outputGateIndex].clear();
+			ogBlockedFraction[outputGateIndex].clear();
 		}
 	}
 	
@@ -252,8 +360,8 @@ public class VertexQosData {
 			return false;
 		}
 
-		return igRecordsConsumedPerSec[inputGateIndex].getOldestValue()
-				.getTimestamp() >= thresholdTimestamp;
+		return igRecordsConsumedPerSec[inputGateIndex]
+				.getOldestTimestamp() >= thresholdTimestamp;
 	}
 	
 	private boolean isOutputGateEmissionRateNewerThan(int outputGateIndex,
@@ -263,7 +371,7 @@ public class VertexQosData {
 			return false;
 		}
 
-		return ogRecordsEmittedPerSec[outputGateIndex].getOldestValue()
-				.getTimestamp() >= thresholdTimestamp;
+		return ogRecordsEmittedPerSec[outputGateIndex]
+				.getOldestTimestamp() >= thresholdTimestamp;
 	}	
 }
@@ -5,7 +5,9 @@ import java.util.HashSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import eu.stratosphere.nephele.streaming.message.qosreport.EdgeLatency;
+import eu.stratosphere.nephele.streaming.taskmanager.clocksync.ReferenceClock;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.QuantileSketch;
 
 /**
  * A instance of this class keeps track of and reports on the latencies of an
@@ -45,10 +47,12 @@ public class InputGateReporterManager {
 
 		long timeOfNextReport;
 
-		long accumulatedLatency;
+		long accumulatedLatencyMicros;
 
 		int tagsReceived;
 
+		final QuantileSketch latencySketch = new QuantileSketch();
+
 		public void sendReportIfDue(long now) {
 			if (this.reportIsDue(now)) {
 				this.sendReport();
@@ -58,7 +62,8 @@ public class InputGateReporterManager {
 
 		private void sendReport() {
 			EdgeLatency channelLatency = new EdgeLatency(this.reporterID,
-					this.accumulatedLatency / this.tagsReceived);
+					this.accumulatedLatencyMicros / (1000.0 * this.tagsReceived),
+					this.latencySketch.copy());
 			InputGateReporterManager.this.reportForwarder
 					.addToNextReport(channelLatency);
 		}
@@ -71,14 +76,17 @@ public class InputGateReporterManager {
 			this.timeOfNextReport = now
 					+ InputGateReporterManager.this.reportForwarder
 							.getConfigCenter().getAggregationInterval();
-			this.accumulatedLatency = 0;
+			this.accumulatedLatencyMicros = 0;
 			this.tagsReceived = 0;
+			this.latencySketch.reset();
 		}
 
-		public void update(TimestampTag tag, long now) {
-			// need to take max() because timestamp diffs can be below zero
-			// due to clockdrift
-			this.accumulatedLatency += Math.max(0, now - tag.getTimestamp());
+		public void update(TimestampTag tag, long nowMicros) {
+			// need to take max() because timestamp diffs can still be below
+			// zero within the error of the clock offset estimation
+			long latencyMicros = Math.max(0, nowMicros - tag.getTimestamp());
+			this.accumulatedLatencyMicros += latencyMicros;
+			this.latencySketch.add(latencyMicros / 1000.0);
 			this.tagsReceived++;
 		}
 	}
@@ -104,9 +112,8 @@ public class InputGateReporterManager {
 				.get(channelIndex);
 
 		if (info != null) {
-			long now = System.currentTimeMillis();
-			info.update(timestampTag, now);
-			info.sendReportIfDue(now);
+			info.update(timestampTag, ReferenceClock.currentTimeMicros());
+			info.sendReportIfDue(System.currentTimeMillis());
 		}
 	}
 
@@ -124,7 +131,7 @@ public class InputGateReporterManager {
 		EdgeLatencyReporter info = new EdgeLatencyReporter();
 		info.reporterID = reporterID;
 		info.timeOfNextReport = System.currentTimeMillis();
-		info.accumulatedLatency = 0;
+		info.accumulatedLatencyMicros = 0;
 		info.tagsReceived = 0;
 		this.reportersByChannelIndexInRuntimeGate.set(
 				channelIndexInRuntimeGate, info);
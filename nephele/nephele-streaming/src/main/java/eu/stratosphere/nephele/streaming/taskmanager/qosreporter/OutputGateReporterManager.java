@@ -1,6 +1,7 @@
 package eu.stratosphere.nephele.streaming.taskmanager.qosreporter;
 
 import eu.stratosphere.nephele.streaming.message.qosreport.EdgeStatistics;
+import eu.stratosphere.nephele.streaming.taskmanager.clocksync.ReferenceClock;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
 import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.edge.OutputBufferLifetimeSampler;
 import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.BernoulliSampleDesign;
@@ -76,12 +77,15 @@ public class OutputGateReporterManager {
 			this.recordsEmittedSinceLastReport = 0;
 			this.outputBuffersSentSinceLastReport = 0;
 			this.recordsSinceLastTag = 0;
+			QosReporterConfigCenter configCenter = OutputGateReporterManager.this.reportForwarder.getConfigCenter();
 			this.recordTaggingSampleDesign = new BernoulliSampleDesign(
-					OutputGateReporterManager.this.reportForwarder.getConfigCenter().getSamplingProbability() / 100.0);
+					configCenter.getSamplingProbability() / 100.0,
+					configCenter.getSamplingTarget());
 
 
 			this.outputBufferLifetimeSampler = new OutputBufferLifetimeSampler(
-							OutputGateReporterManager.this.reportForwarder.getConfigCenter().getSamplingProbability() / 100.0);
+					configCenter.getSamplingProbability() / 100.0,
+					configCenter.getSamplingTarget());
 		}
 
 		/**
@@ -215,7 +219,7 @@ public class OutputGateReporterManager {
 
 		private void tagRecord(AbstractTaggableRecord record) {
 			TimestampTag tag = new TimestampTag();
-			tag.setTimestamp(System.currentTimeMillis());
+			tag.setTimestamp(ReferenceClock.currentTimeMicros());
 			record.setTag(tag);
 		}
 
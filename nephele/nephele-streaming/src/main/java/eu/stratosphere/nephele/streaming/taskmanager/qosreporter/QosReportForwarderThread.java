@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -27,7 +28,10 @@ import java.util.concurrent.LinkedBlockingQueue;
  * throughput, etc) of the tasks of a single job running within the same
  * manager. Each task manager has one instance of this class per job. Qos report
  * data is pre-aggregated for each QoS manager and shipped in a single message
- * to the Qos manager once every configured aggregationInterval. If no QoS data
+ * to the Qos manager once every configured aggregationInterval. Within such a
+ * message, the vertex statistics of the local members of the same group vertex
+ * are written as one group (see {@link VertexStatisticsGroupKey}), and reporter IDs
+ * are replaced with handles (see {@link QosReporterIDEncoder}). If no QoS data
  * for a Qos manager has been received, messages will be skipped. This class
  * starts its own thread as soon as there is at least on registered task and can
  * be shut down by invoking {@link #shutdown()}.
@@ -63,6 +67,11 @@ public class QosReportForwarderThread extends Thread {
 
 	private final LinkedBlockingQueue<AbstractQosReportRecord> pendingReportRecords;
 
+	/**
+	 * Caches the group keys of vertex reporters. Only accessed by this thread.
+	 */
+	private final HashMap<QosReporterID.Vertex, VertexStatisticsGroupKey> vertexGroupKeys = new HashMap<QosReporterID.Vertex, VertexStatisticsGroupKey>();
+
 	private volatile boolean isShutDown;
 
 	private boolean threadStarted;
@@ -81,6 +90,12 @@ public class QosReportForwarderThread extends Thread {
 
 		private long reportingOffset;
 
+		/**
+		 * Assigns the reporter ID handles of the reports sent to the Qos
+		 * manager. Only accessed by this thread.
+		 */
+		private QosReporterIDEncoder reporterIDEncoder;
+
 		public AggregatedReport(InstanceConnectionInfo qosManager,
 				long reportingOffset) {
 
@@ -115,6 +130,16 @@ public class QosReportForwarderThread extends Thread {
 			this.report = new QosReport(QosReportForwarderThread.this.jobID);
 		}
 
+		public QosReporterIDEncoder getReporterIDEncoder() {
+			if (this.reporterIDEncoder == null
+					|| this.reporterIDEncoder.needsReplacement(System
+							.currentTimeMillis())) {
+				this.reporterIDEncoder = new QosReporterIDEncoder(
+						this.reporterIDEncoder);
+			}
+			return this.reporterIDEncoder;
+		}
+
 		public long getReportingOffset() {
 			return this.reportingOffset;
 		}
@@ -188,6 +213,8 @@ public class QosReportForwarderThread extends Thread {
 
 	private void sendToRemote(AggregatedReport currentReport)
 			throws InterruptedException {
+		currentReport.getReport().encodeReporterIDs(
+				currentReport.getReporterIDEncoder());
 		this.messagingThread.sendAsynchronously(
 				currentReport.getQosManager(), currentReport.getReport());
 	}
@@ -236,6 +263,7 @@ public class QosReportForwarderThread extends Thread {
 		this.reporterActivityMap = null;
 
 		this.pendingReportRecords.clear();
+		this.vertexGroupKeys.clear();
 
 	}
 
@@ -274,10 +302,32 @@ public class QosReportForwarderThread extends Thread {
 			this.activateReporter(reporterID);
 		}
 
+		VertexStatisticsGroupKey groupKey = this.getVertexGroupKey(reporterID);
+
 		Set<AggregatedReport> reports = this.getReports(reporterID);
 		for (AggregatedReport report : reports) {
-			report.getReport().addVertexStatistics(taskLatency);
+			if (groupKey != null) {
+				report.getReport().addVertexStatistics(taskLatency, groupKey);
+			} else {
+				report.getReport().addVertexStatistics(taskLatency);
+			}
+		}
+	}
+
+	private VertexStatisticsGroupKey getVertexGroupKey(
+			QosReporterID.Vertex reporterID) {
+
+		VertexStatisticsGroupKey groupKey = this.vertexGroupKeys
+				.get(reporterID);
+		if (groupKey == null) {
+			VertexQosReporterConfig reporterConfig = this.reporterConfigCenter
+					.getVertexQosReporter(reporterID);
+			if (reporterConfig != null) {
+				groupKey = new VertexStatisticsGroupKey(reporterConfig);
+				this.vertexGroupKeys.put(reporterID, groupKey);
+			}
 		}
+		return groupKey;
 	}
 
 	/**
@@ -55,6 +55,8 @@ public class QosReporterConfigCenter {
 
 	private volatile int samplingProbability;
 
+	private volatile int samplingTarget;
+
 	public QosReporterConfigCenter() {
 		this.reporterConfigsByExecutionVertex = new HashMap<ExecutionVertexID, Set<VertexQosReporterConfig>>();
 		this.reporterConfigsByChannel = new HashMap<ChannelID, EdgeQosReporterConfig>();
@@ -200,6 +202,27 @@ public class QosReporterConfigCenter {
 		this.samplingProbability = samplingProbability;
 	}
 
+	/**
+	 * Returns the targeted number of sample points per reporter and
+	 * aggregation interval, to which the sampling probability is adapted. 0
+	 * means that the sampling probability is fixed.
+	 * 
+	 * @return the samplingTarget
+	 */
+	public int getSamplingTarget() {
+		return this.samplingTarget;
+	}
+
+	/**
+	 * Sets the samplingTarget to the specified value.
+	 * 
+	 * @param samplingTarget
+	 *            the samplingTarget to set
+	 */
+	public void setSamplingTarget(int samplingTarget) {
+		this.samplingTarget = samplingTarget;
+	}
+
 	public VertexQosReporterConfig getVertexQosReporter(
 			QosReporterID.Vertex reporterID) {
 		Set<VertexQosReporterConfig> configs = this
@@ -22,6 +22,7 @@ import eu.stratosphere.nephele.streaming.message.AbstractQosMessage;
 import eu.stratosphere.nephele.streaming.message.ChainUpdates;
 import eu.stratosphere.nephele.streaming.message.action.*;
 import eu.stratosphere.nephele.streaming.message.qosreport.QosReport;
+import eu.stratosphere.nephele.streaming.message.qosreport.QosReporterIDDecoder;
 import eu.stratosphere.nephele.streaming.taskmanager.StreamTaskManagerPlugin;
 import eu.stratosphere.nephele.streaming.taskmanager.chaining.ChainManagerThread;
 import eu.stratosphere.nephele.streaming.taskmanager.profiling.TaskProfilingThread;
@@ -74,6 +75,8 @@ public class StreamJobEnvironment {
 				.getDefaultAggregationInterval());
 		reporterConfig.setSamplingProbability(StreamTaskManagerPlugin
 				.getDefaultSamplingProbability());
+		reporterConfig.setSamplingTarget(StreamPluginConfig
+				.getSamplingTarget());
 
 		this.qosReportForwarder = new QosReportForwarderThread(jobID,
 				reporterConfig);
@@ -122,11 +125,16 @@ public class StreamJobEnvironment {
 		int samplingProbability = taskEnvironment.getJobConfiguration().getInteger(
 				StreamPluginConfig.SAMPLING_PROBABILITY_KEY,
 				StreamPluginConfig.getSamplingProbabilityPercent());
+		int samplingTarget = taskEnvironment.getJobConfiguration().getInteger(
+				StreamPluginConfig.SAMPLING_TARGET_KEY,
+				StreamPluginConfig.getSamplingTarget());
 
 		this.qosReportForwarder.getConfigCenter().setAggregationInterval(
 				aggregationInterval);
 		this.qosReportForwarder.getConfigCenter().setSamplingProbability(
 				samplingProbability);
+		this.qosReportForwarder.getConfigCenter().setSamplingTarget(
+				samplingTarget);
 	}
 
 	public synchronized void shutdownEnvironment() {
@@ -149,6 +157,7 @@ public class StreamJobEnvironment {
 		this.qosManager = null;
 		this.qosReportForwarder.shutdown();
 		this.chainManager.shutdown();
+		QosReporterIDDecoder.releaseDecoders(this.jobID);
 	}
 
 	public void handleStreamMessage(AbstractQosMessage streamMsg) {
@@ -164,6 +173,13 @@ public class StreamJobEnvironment {
 			this.handleLimitBufferSizeAction((LimitBufferSizeAction) streamMsg);
 		} else if (streamMsg instanceof SetOutputBufferLifetimeTargetAction) {
 			this.handleSetOutputLatencyTargetAction((SetOutputBufferLifetimeTargetAction) streamMsg);
+		} else if (streamMsg instanceof SetOutputBufferLifetimeTargetBatchAction) {
+			for (SetOutputBufferLifetimeTargetAction action : ((SetOutputBufferLifetimeTargetBatchAction) streamMsg)
+					.getActions()) {
+				this.handleSetOutputLatencyTargetAction(action);
+			}
+		} else if (streamMsg instanceof SetKeyGroupParallelismAction) {
+			this.handleSetKeyGroupParallelismAction((SetKeyGroupParallelismAction) streamMsg);
 		} else if (streamMsg instanceof DeployInstanceQosManagerRoleAction) {
 			this.handleDeployInstanceQosManagerRoleAction((DeployInstanceQosManagerRoleAction) streamMsg);
 		} else if (streamMsg instanceof DeployInstanceQosRolesAction) {
@@ -185,6 +201,17 @@ public class StreamJobEnvironment {
 		}
 	}
 
+	private void handleSetKeyGroupParallelismAction(
+			SetKeyGroupParallelismAction action) {
+
+		StreamTaskQosCoordinator qosCoordinator = this.taskQosCoordinators
+				.get(action.getVertexID());
+
+		if (qosCoordinator != null) {
+			qosCoordinator.handleSetKeyGroupParallelismAction(action);
+		}
+	}
+
 	private void handleChainUpdates(ChainUpdates chainUpdates) {
 		this.ensureQosManagerIsRunning();
 		this.qosManager.handOffStreamingData(chainUpdates);
@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosreporter;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.streaming.message.action.EdgeQosReporterConfig;
 import eu.stratosphere.nephele.streaming.message.action.LimitBufferSizeAction;
+import eu.stratosphere.nephele.streaming.message.action.SetKeyGroupParallelismAction;
 import eu.stratosphere.nephele.streaming.message.action.SetOutputBufferLifetimeTargetAction;
 import eu.stratosphere.nephele.streaming.message.action.VertexQosReporterConfig;
 import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
@@ -269,6 +270,21 @@ public class StreamTaskQosCoordinator implements QosReporterConfigListener {
 		}
 	}
 	
+	public void handleSetKeyGroupParallelismAction(
+			SetKeyGroupParallelismAction action) {
+
+		if (this.isShutdown) {
+			return;
+		}
+
+		StreamOutputGate<?> outputGate = this.taskEnvironment
+				.getOutputGate(action.getOutputGateID());
+
+		if (outputGate != null) {
+			outputGate.enqueueQosAction(action);
+		}
+	}
+
 	public void handleSetOutputLatencyTargetAction(
 			SetOutputBufferLifetimeTargetAction action) {
 
@@ -24,7 +24,11 @@ import eu.stratosphere.nephele.types.Tag;
 /**
  * Instances of this class hold a timestamp tag that can be attached to an
  * {@link eu.stratosphere.nephele.types.AbstractTaggableRecord}. It is used to
- * measure the latency of edges (channels) while a job runs.
+ * measure the latency of edges (channels) while a job runs. The timestamp is
+ * taken from the
+ * {@link eu.stratosphere.nephele.streaming.taskmanager.clocksync.ReferenceClock}
+ * in microseconds, so it can be compared with timestamps taken on other task
+ * managers.
  * 
  * @author Bjoern Lohrmann
  * 
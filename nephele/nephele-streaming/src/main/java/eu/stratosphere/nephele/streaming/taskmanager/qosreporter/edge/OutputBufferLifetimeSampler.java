@@ -13,8 +13,10 @@ public class OutputBufferLifetimeSampler {
 	private long outputBufferLifetimeSampleSum;
 
 
-	public OutputBufferLifetimeSampler(double samplingProbability) {
-		sampleDesign = new BernoulliSampleDesign(samplingProbability);
+	public OutputBufferLifetimeSampler(double samplingProbability,
+			int samplingTarget) {
+		sampleDesign = new BernoulliSampleDesign(samplingProbability,
+				samplingTarget);
 		outputBufferLifetimeSampleBeginTime = -1;
 		reset();
 	}
@@ -19,7 +19,8 @@ import eu.stratosphere.nephele.types.AbstractTaggableRecord;
 /**
  * Callback interface used by the
  * {@link eu.stratosphere.nephele.streaming.taskmanager.runtime.io.StreamInputGate}
- * to signal that a new record has been received.
+ * to signal that a new record has been received or that the task had to wait
+ * for input.
  * 
  * @author Bjoern Lohrmann
  * 
@@ -32,4 +33,6 @@ public interface InputGateQosReportingListener {
 
 	public void inputBufferConsumed(int channelIndex,
 			long bufferInterarrivalTimeNanos, int recordsReadFromBuffer);
+
+	public void inputBlocked(long blockedNanos);
 }
@@ -19,7 +19,8 @@ import eu.stratosphere.nephele.types.AbstractTaggableRecord;
 /**
  * Callback interface used by the
  * {@link eu.stratosphere.nephele.streaming.taskmanager.runtime.io.StreamOutputGate}
- * to signal that a record has been emitted or an outout buffer has been sent.
+ * to signal that a record has been emitted, an outout buffer has been sent or
+ * the task had to wait for an empty output buffer.
  * 
  * @author Bjoern Lohrmann
  * 
@@ -31,4 +32,6 @@ public interface OutputGateQosReportingListener {
 	public void recordEmitted(int outputChannel, AbstractTaggableRecord record);
 
 	public void outputBufferAllocated(int channelIndex);
+
+	public void outputBufferRequestBlocked(int channelIndex, long blockedNanos);
 }
@@ -56,6 +56,11 @@ public class QosReportingListenerHelper {
 					long bufferInterarrivalTimeNanos, int recordsReadFromBuffer) {
 				vertexStatsManager.inputBufferConsumed(gateIndex, channelIndex, bufferInterarrivalTimeNanos, recordsReadFromBuffer);
 			}
+
+			@Override
+			public void inputBlocked(long blockedNanos) {
+				vertexStatsManager.inputGateBlocked(gateIndex, blockedNanos);
+			}
 		};
 		InputGateQosReportingListener oldListener = inputGate
 				.getQosReportingListener();
@@ -90,6 +95,12 @@ public class QosReportingListenerHelper {
 					long currentAmountTransmitted) {
 				// do nothing
 			}
+
+			@Override
+			public void outputBufferRequestBlocked(int channelIndex,
+					long blockedNanos) {
+				vertexStatsManager.outputGateBlocked(gateIndex, blockedNanos);
+			}
 		};
 
 		OutputGateQosReportingListener oldListener = outputGate
@@ -130,6 +141,11 @@ public class QosReportingListenerHelper {
 					long bufferInterarrivalTimeNanos, int recordsReadFromBuffer) {
 				// nothing to do
 			}
+
+			@Override
+			public void inputBlocked(long blockedNanos) {
+				// nothing to do
+			}
 		};
 
 		InputGateQosReportingListener oldListener = inputGate
@@ -167,6 +183,12 @@ public class QosReportingListenerHelper {
 			public void outputBufferAllocated(int channelIndex) {
 				gateReporterManager.outputBufferAllocated(channelIndex);
 			}
+
+			@Override
+			public void outputBufferRequestBlocked(int channelIndex,
+					long blockedNanos) {
+				// nothing to do
+			}
 		};
 
 		OutputGateQosReportingListener oldListener = outputGate
@@ -207,6 +229,12 @@ public class QosReportingListenerHelper {
 				second.inputBufferConsumed(channelIndex,
 						bufferInterarrivalTimeNanos, recordsReadFromBuffer);
 			}
+
+			@Override
+			public void inputBlocked(long blockedNanos) {
+				first.inputBlocked(blockedNanos);
+				second.inputBlocked(blockedNanos);
+			}
 		};
 	}
 
@@ -236,6 +264,13 @@ public class QosReportingListenerHelper {
 				first.outputBufferAllocated(channelIndex);
 				second.outputBufferAllocated(channelIndex);
 			}
+
+			@Override
+			public void outputBufferRequestBlocked(int channelIndex,
+					long blockedNanos) {
+				first.outputBufferRequestBlocked(channelIndex, blockedNanos);
+				second.outputBufferRequestBlocked(channelIndex, blockedNanos);
+			}
 		};
 	}
 
@@ -2,17 +2,62 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling;
 
 import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Decides for each trial (e.g. each emitted record) whether it shall be
+ * sampled, with a given probability. The first trial after each
+ * {@link #reset()} is always sampled.
+ * 
+ * If a sampling target is given, the design adapts its probability at each
+ * {@link #reset()} (i.e. once per aggregation interval), so that the expected
+ * number of samples per interval matches the target: the number of trials per
+ * interval is estimated with an exponentially weighted moving average, and the
+ * probability becomes target / estimated trials. This keeps the sampling
+ * overhead low on high-rate reporters and still yields enough samples for a
+ * stable statistic on low-rate ones.
+ */
 public class BernoulliSampleDesign {
 
+	/**
+	 * Lower bound of the adapted probability, so that the design still notices
+	 * when the rate of trials drops.
+	 */
+	private static final double MIN_SAMPLING_PROBABILITY = 1e-6;
+
+	/**
+	 * Weight of the most recent interval in the moving average of trials per
+	 * interval.
+	 */
+	private static final double TRIAL_RATE_SMOOTHING = 0.5;
+
 	private boolean firstSample = true;
 	private double samplingProbability;
 
+	private final int samplingTarget;
+	private int trialsSinceReset;
+	private double smoothedTrialsPerInterval;
 
 	public BernoulliSampleDesign(double samplingProbability) {
-		this.samplingProbability = samplingProbability;
+		this(samplingProbability, 0);
+	}
+
+	/**
+	 * @param initialSamplingProbability
+	 *            the probability to use until the rate of trials is known (or
+	 *            always, if the sampling target is 0).
+	 * @param samplingTarget
+	 *            the targeted number of samples per interval, or 0 to always
+	 *            sample with the initial probability.
+	 */
+	public BernoulliSampleDesign(double initialSamplingProbability,
+			int samplingTarget) {
+		this.samplingProbability = initialSamplingProbability;
+		this.samplingTarget = samplingTarget;
+		this.smoothedTrialsPerInterval = -1;
 	}
 
 	public boolean shouldSample() {
+		trialsSinceReset++;
+
 		if (firstSample) {
 			firstSample = false;
 			return true;
@@ -21,6 +66,26 @@ public class BernoulliSampleDesign {
 	}
 
 	public void reset() {
+		if (samplingTarget > 0 && trialsSinceReset > 0) {
+			adaptSamplingProbability();
+		}
+		trialsSinceReset = 0;
 		firstSample = true;
 	}
+
+	private void adaptSamplingProbability() {
+		if (smoothedTrialsPerInterval < 0) {
+			smoothedTrialsPerInterval = trialsSinceReset;
+		} else {
+			smoothedTrialsPerInterval = TRIAL_RATE_SMOOTHING * trialsSinceReset
+					+ (1 - TRIAL_RATE_SMOOTHING) * smoothedTrialsPerInterval;
+		}
+
+		samplingProbability = Math.max(MIN_SAMPLING_PROBABILITY,
+				Math.min(1, samplingTarget / smoothedTrialsPerInterval));
+	}
+
+	public double getSamplingProbability() {
+		return samplingProbability;
+	}
 }
@@ -14,6 +14,9 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling;
  * cancellation, but might not be as efficient because of the division operation
  * inside the loop."
  * 
+ * Optionally, the sample points are also added to a {@link QuantileSketch},
+ * so that percentiles of the sample can be estimated.
+ * 
  * @author Bjoern Lohrmann
  * 
  */
@@ -26,8 +29,28 @@ public class BernoulliSampler {
 	private double s;
 	private long samplingBeginTime;
 
+	private final QuantileSketch quantileSketch;
+
 	public BernoulliSampler(double samplingProbability) {
-		samplingDesign = new BernoulliSampleDesign(samplingProbability);
+		this(samplingProbability, false);
+	}
+
+	public BernoulliSampler(double samplingProbability,
+			boolean withQuantileSketch) {
+		this(samplingProbability, 0, withQuantileSketch);
+	}
+
+	/**
+	 * @param samplingTarget
+	 *            the targeted number of sample points per sample, or 0 to
+	 *            sample with a fixed probability (see
+	 *            {@link BernoulliSampleDesign}).
+	 */
+	public BernoulliSampler(double samplingProbability, int samplingTarget,
+			boolean withQuantileSketch) {
+		samplingDesign = new BernoulliSampleDesign(samplingProbability,
+				samplingTarget);
+		quantileSketch = withQuantileSketch ? new QuantileSketch() : null;
 		reset(System.currentTimeMillis());
 	}
 	
@@ -46,6 +69,10 @@ public class BernoulliSampler {
 			mean += delta / noSamplePoints;
 			s += delta * (x - mean);
 		}
+
+		if (quantileSketch != null) {
+			quantileSketch.add(x);
+		}
 	}
 
 	public boolean hasSample() {
@@ -62,7 +89,8 @@ public class BernoulliSampler {
 	
 	public Sample drawSampleAndReset(long now) {
 		Sample sample = new Sample((int) (now - samplingBeginTime),
-				noSamplePoints, getMean(), getVariance());
+				noSamplePoints, getMean(), getVariance(),
+				quantileSketch != null ? quantileSketch.copy() : null);
 		reset(now);
 		return sample;
 	}
@@ -73,5 +101,8 @@ public class BernoulliSampler {
 		mean = 0;
 		s = 0;
 		samplingDesign.reset();
+		if (quantileSketch != null) {
+			quantileSketch.reset();
+		}
 	}
 }
@@ -0,0 +1,269 @@
+package eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.nephele.streaming.util.CompactEncoding;
+
+/**
+ * A mergeable sketch of a distribution of non-negative values, which can
+ * estimate arbitrary quantiles (e.g. the 95th or 99th percentile) with a
+ * bounded relative error.
+ *
+ * Values are counted in logarithmically sized buckets: bucket i holds the
+ * values in (gamma^(i-1), gamma^i]. Any quantile estimate is therefore within
+ * {@link #RELATIVE_ACCURACY} of a value of the sketched distribution with the
+ * requested rank. Sketches of disjunct samples can be merged losslessly by
+ * adding up their bucket counts, which makes them suitable to be aggregated
+ * across reporters and time windows.
+ *
+ * This class is not thread-safe.
+ */
+public class QuantileSketch implements IOReadableWritable {
+
+	/**
+	 * The relative error of quantile estimates.
+	 */
+	public static final double RELATIVE_ACCURACY = 0.01;
+
+	private static final double GAMMA = (1 + RELATIVE_ACCURACY)
+			/ (1 - RELATIVE_ACCURACY);
+
+	private static final double LOG_GAMMA = Math.log(GAMMA);
+
+	/**
+	 * Values up to this one are counted as zero.
+	 */
+	private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+	private static final int INITIAL_NUMBER_OF_BUCKETS = 64;
+
+	/**
+	 * The bucket counts. counts[i] holds the number of values in bucket
+	 * (minIndex + i).
+	 */
+	private int[] counts;
+
+	private int minIndex;
+
+	private int zeroCount;
+
+	private int count;
+
+	public QuantileSketch() {
+		this.counts = new int[0];
+	}
+
+	/**
+	 * Adds a value to the sketch. Negative values are counted as zero.
+	 */
+	public void add(double value) {
+		addWithCount(value, 1);
+	}
+
+	private void addWithCount(double value, int valueCount) {
+		this.count += valueCount;
+
+		if (value <= MIN_INDEXABLE_VALUE) {
+			this.zeroCount += valueCount;
+		} else {
+			int index = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+			ensureIndexIsCovered(index);
+			this.counts[index - this.minIndex] += valueCount;
+		}
+	}
+
+	/**
+	 * Adds all values of the given sketch to this sketch.
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.count == 0) {
+			return;
+		}
+
+		this.count += other.count;
+		this.zeroCount += other.zeroCount;
+
+		int otherFirst = other.getFirstNonEmptyBucket();
+		if (otherFirst == -1) {
+			return;
+		}
+		int otherLast = other.getLastNonEmptyBucket();
+
+		ensureIndexIsCovered(other.minIndex + otherFirst);
+		ensureIndexIsCovered(other.minIndex + otherLast);
+
+		int offset = other.minIndex - this.minIndex;
+		for (int i = otherFirst; i <= otherLast; i++) {
+			this.counts[i + offset] += other.counts[i];
+		}
+	}
+
+	/**
+	 * Returns the estimated q-quantile of the added values.
+	 *
+	 * @param q
+	 *            the quantile to estimate, between 0 and 1 (e.g. 0.99 for the
+	 *            99th percentile).
+	 * @return the estimated quantile, or -1 if no values have been added.
+	 */
+	public double getQuantile(double q) {
+		if (this.count == 0) {
+			return -1;
+		}
+
+		long rank = (long) Math.floor(Math.max(0, Math.min(1, q))
+				* (this.count - 1));
+
+		long seen = this.zeroCount;
+		if (rank < seen) {
+			return 0;
+		}
+
+		for (int i = 0; i < this.counts.length; i++) {
+			seen += this.counts[i];
+			if (rank < seen) {
+				return getBucketValue(this.minIndex + i);
+			}
+		}
+
+		return getBucketValue(this.minIndex + getLastNonEmptyBucket());
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns a sketch in which all values of this sketch are multiplied by
+	 * the given factor. Since the scaled values are counted in the buckets of
+	 * the new sketch again, the relative error of the returned sketch may
+	 * double.
+	 */
+	public QuantileSketch rescale(double factor) {
+		QuantileSketch rescaled = new QuantileSketch();
+		rescaled.count = this.zeroCount;
+		rescaled.zeroCount = this.zeroCount;
+
+		for (int i = 0; i < this.counts.length; i++) {
+			if (this.counts[i] > 0) {
+				rescaled.addWithCount(getBucketValue(this.minIndex + i)
+						* factor, this.counts[i]);
+			}
+		}
+
+		return rescaled;
+	}
+
+	public QuantileSketch copy() {
+		QuantileSketch copy = new QuantileSketch();
+		copy.merge(this);
+		return copy;
+	}
+
+	public void reset() {
+		Arrays.fill(this.counts, 0);
+		this.zeroCount = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * The value that represents the bucket with the given index. It is the
+	 * value with the smallest maximum relative distance to all values of the
+	 * bucket.
+	 */
+	private static double getBucketValue(int index) {
+		return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+	}
+
+	private void ensureIndexIsCovered(int index) {
+		if (this.counts.length == 0) {
+			this.counts = new int[INITIAL_NUMBER_OF_BUCKETS];
+			this.minIndex = index - INITIAL_NUMBER_OF_BUCKETS / 2;
+			return;
+		}
+
+		int maxIndex = this.minIndex + this.counts.length - 1;
+		if (index >= this.minIndex && index <= maxIndex) {
+			return;
+		}
+
+		int newMinIndex = Math.min(index, this.minIndex);
+		int newMaxIndex = Math.max(index, maxIndex);
+		int newLength = Math.max(2 * this.counts.length, newMaxIndex
+				- newMinIndex + 1);
+
+		// leave headroom on the side we grow towards
+		if (index < this.minIndex) {
+			newMinIndex = newMaxIndex - newLength + 1;
+		}
+
+		int[] newCounts = new int[newLength];
+		System.arraycopy(this.counts, 0, newCounts, this.minIndex
+				- newMinIndex, this.counts.length);
+		this.counts = newCounts;
+		this.minIndex = newMinIndex;
+	}
+
+	private int getFirstNonEmptyBucket() {
+		for (int i = 0; i < this.counts.length; i++) {
+			if (this.counts[i] > 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int getLastNonEmptyBucket() {
+		for (int i = this.counts.length - 1; i >= 0; i--) {
+			if (this.counts[i] > 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the non-empty range of buckets. Bucket counts are usually small,
+	 * hence they are written as var ints.
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		CompactEncoding.writeVarInt(out, this.zeroCount);
+
+		int first = getFirstNonEmptyBucket();
+		if (first == -1) {
+			CompactEncoding.writeVarInt(out, 0);
+			return;
+		}
+		int last = getLastNonEmptyBucket();
+
+		CompactEncoding.writeVarInt(out, last - first + 1);
+		CompactEncoding.writeSignedVarInt(out, this.minIndex + first);
+		for (int i = first; i <= last; i++) {
+			CompactEncoding.writeVarInt(out, this.counts[i]);
+		}
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.zeroCount = CompactEncoding.readVarInt(in);
+		this.count = this.zeroCount;
+
+		int noOfBuckets = CompactEncoding.readVarInt(in);
+		if (noOfBuckets == 0) {
+			this.counts = new int[0];
+			return;
+		}
+
+		this.minIndex = CompactEncoding.readSignedVarInt(in);
+		this.counts = new int[noOfBuckets];
+		for (int i = 0; i < noOfBuckets; i++) {
+			this.counts[i] = CompactEncoding.readVarInt(in);
+			this.count += this.counts[i];
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.nephele.streaming.util.CompactEncoding;
 
 public class Sample implements IOReadableWritable {
 
@@ -13,16 +14,28 @@ public class Sample implements IOReadableWritable {
 	private double mean;
 	private double variance;
 
+	/**
+	 * Sketch of the sample's distribution, or null if the sample has none.
+	 */
+	private QuantileSketch quantileSketch;
+
 	public Sample() {
 	}
 
 	public Sample(int samplingDurationMillis, int noOfSamplePoints,
 			double mean, double variance) {
 
+		this(samplingDurationMillis, noOfSamplePoints, mean, variance, null);
+	}
+
+	public Sample(int samplingDurationMillis, int noOfSamplePoints,
+			double mean, double variance, QuantileSketch quantileSketch) {
+
 		this.samplingDurationMillis = samplingDurationMillis;
 		this.noOfSamplePoints = noOfSamplePoints;
 		this.mean = mean;
 		this.variance = variance;
+		this.quantileSketch = quantileSketch;
 	}
 
 	public int getSamplingDurationMillis() {
@@ -41,6 +54,14 @@ public class Sample implements IOReadableWritable {
 		return noOfSamplePoints;
 	}
 
+	public boolean hasQuantileSketch() {
+		return quantileSketch != null;
+	}
+
+	public QuantileSketch getQuantileSketch() {
+		return quantileSketch;
+	}
+
 	public Sample fuseWithDisjunctSample(Sample other) {
 
 		int newSamplingDuration = samplingDurationMillis
@@ -59,33 +80,55 @@ public class Sample implements IOReadableWritable {
 				* (other.mean - newMean);
 		double newVariance = (ess / newSamplePoints) + (tgss / newSamplePoints);
 
+		QuantileSketch newSketch = null;
+		if (quantileSketch != null && other.quantileSketch != null) {
+			newSketch = quantileSketch.copy();
+			newSketch.merge(other.quantileSketch);
+		}
+
 		return new Sample(newSamplingDuration, newSamplePoints, newMean,
-				newVariance);
+				newVariance, newSketch);
 	}
 
+	/**
+	 * Writes the sample in a compact form. Mean and variance are written with
+	 * single precision, which is more than sufficient for sampled values.
+	 */
 	@Override
 	public void write(DataOutput out) throws IOException {
-		out.writeInt(samplingDurationMillis);
-		out.writeInt(noOfSamplePoints);
-		out.writeDouble(mean);
-		out.writeDouble(variance);
+		CompactEncoding.writeSignedVarInt(out, samplingDurationMillis);
+		CompactEncoding.writeVarInt(out, noOfSamplePoints);
+		out.writeFloat((float) mean);
+		out.writeFloat((float) variance);
+		out.writeBoolean(quantileSketch != null);
+		if (quantileSketch != null) {
+			quantileSketch.write(out);
+		}
 	}
 
 	@Override
 	public void read(DataInput in) throws IOException {
-		samplingDurationMillis = in.readInt();
-		noOfSamplePoints = in.readInt();
-		mean = in.readDouble();
-		variance = in.readDouble();
+		samplingDurationMillis = CompactEncoding.readSignedVarInt(in);
+		noOfSamplePoints = CompactEncoding.readVarInt(in);
+		mean = in.readFloat();
+		variance = in.readFloat();
+		if (in.readBoolean()) {
+			quantileSketch = new QuantileSketch();
+			quantileSketch.read(in);
+		} else {
+			quantileSketch = null;
+		}
 	}
 
 	/**
 	 * Rescales the mean and variance value. Produces a sample with new mean
-	 * this.mean*factor and new variance this.variance* factor * factor.
+	 * this.mean*factor and new variance this.variance* factor * factor. The
+	 * values of the quantile sketch (if any) are multiplied by factor.
 	 * 
 	 */
 	public Sample rescale(double factor) {
 		return new Sample(samplingDurationMillis, noOfSamplePoints, mean
-				* factor, variance * factor * factor);
+				* factor, variance * factor * factor,
+				quantileSketch != null ? quantileSketch.rescale(factor) : null);
 	}
 }
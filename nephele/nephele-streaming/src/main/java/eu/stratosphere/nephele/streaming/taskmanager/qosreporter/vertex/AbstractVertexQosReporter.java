@@ -14,10 +14,12 @@ public abstract class AbstractVertexQosReporter implements VertexQosReporter {
 	private final ReportTimer reportTimer;
 
 	private long igReceiveCounterAtLastReport;
+	private long igBlockedNanosAtLastReport;
 	private final InputGateReceiveCounter igReceiveCounter;
 	private final InputGateInterArrivalTimeSampler igInterarrivalTimeSampler;
 
 	private long ogEmitCounterAtLastReport;
+	private long ogBlockedNanosAtLastReport;
 	private final OutputGateEmitStatistics ogEmitCounter;
 
 	private final int runtimeInputGateIndex;
@@ -39,8 +41,10 @@ public abstract class AbstractVertexQosReporter implements VertexQosReporter {
 
 		if (reporterID.hasInputGateID()) {
 			this.igReceiveCounterAtLastReport = igReceiveCounter.getRecordsReceived();
+			this.igBlockedNanosAtLastReport = igReceiveCounter.getBlockedNanos();
 			this.igReceiveCounter = igReceiveCounter;
-			this.igInterarrivalTimeSampler = new InputGateInterArrivalTimeSampler(reportForwarder.getConfigCenter().getSamplingProbability() / 100.0);
+			this.igInterarrivalTimeSampler = new InputGateInterArrivalTimeSampler(reportForwarder.getConfigCenter().getSamplingProbability() / 100.0,
+					reportForwarder.getConfigCenter().getSamplingTarget());
 		} else {
 			this.igReceiveCounter = null;
 			this.igInterarrivalTimeSampler = null;
@@ -48,6 +52,7 @@ public abstract class AbstractVertexQosReporter implements VertexQosReporter {
 
 		if (reporterID.hasOutputGateID()) {
 			this.ogEmitCounterAtLastReport = emitCounter.getEmitted();
+			this.ogBlockedNanosAtLastReport = emitCounter.getBlockedNanos();
 			this.ogEmitCounter = emitCounter;
 		} else {
 			this.ogEmitCounter = null;
@@ -95,6 +100,9 @@ public abstract class AbstractVertexQosReporter implements VertexQosReporter {
 					getRecordsEmittedPerSec(secsPassed));
 		}
 
+		toSend.setInputBlockedFraction(getInputBlockedFraction(secsPassed));
+		toSend.setOutputBlockedFraction(getOutputBlockedFraction(secsPassed));
+
 		reportTimer.reset(now);
 		reportForwarder.addToNextReport(toSend);
 	}
@@ -119,6 +127,28 @@ public abstract class AbstractVertexQosReporter implements VertexQosReporter {
 		return recordEmittedPerSec;
 	}
 
+	private double getInputBlockedFraction(double secsPassed) {
+		double blockedFraction = 0;
+		if (igReceiveCounter != null) {
+			blockedFraction = VertexStatistics.toBlockedFraction(
+					igReceiveCounter.getBlockedNanos() - igBlockedNanosAtLastReport,
+					secsPassed);
+			igBlockedNanosAtLastReport = igReceiveCounter.getBlockedNanos();
+		}
+		return blockedFraction;
+	}
+
+	private double getOutputBlockedFraction(double secsPassed) {
+		double blockedFraction = 0;
+		if (ogEmitCounter != null) {
+			blockedFraction = VertexStatistics.toBlockedFraction(
+					ogEmitCounter.getBlockedNanos() - ogBlockedNanosAtLastReport,
+					secsPassed);
+			ogBlockedNanosAtLastReport = ogEmitCounter.getBlockedNanos();
+		}
+		return blockedFraction;
+	}
+
 	@Override
 	public int getRuntimeInputGateIndex() {
 		return runtimeInputGateIndex;
@@ -14,8 +14,10 @@ public class InputGateInterArrivalTimeSampler {
 	
 	private Long[] accBufferInterarrivalTimes = new Long[0];
 
-	public InputGateInterArrivalTimeSampler(double samplingProbability) {
-		this.interarrivalTimeSampler = new BernoulliSampler(samplingProbability);
+	public InputGateInterArrivalTimeSampler(double samplingProbability,
+			int samplingTarget) {
+		this.interarrivalTimeSampler = new BernoulliSampler(
+				samplingProbability, samplingTarget, false);
 	}
 
 	public void inputBufferConsumed(int channelIndex,
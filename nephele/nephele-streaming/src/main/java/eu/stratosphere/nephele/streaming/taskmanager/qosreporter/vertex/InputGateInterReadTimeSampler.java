@@ -19,8 +19,10 @@ public class InputGateInterReadTimeSampler {
 
 	private long lastSampleReadTime;
 
-	public InputGateInterReadTimeSampler(double samplingProbability) {
-		readReadTimeSampler = new BernoulliSampler(samplingProbability);
+	public InputGateInterReadTimeSampler(double samplingProbability,
+			int samplingTarget) {
+		readReadTimeSampler = new BernoulliSampler(samplingProbability,
+				samplingTarget, true);
 		lastSampleReadTime = -1;
 	}
 	
@@ -5,6 +5,8 @@ public class InputGateReceiveCounter {
 
 	private long recordsReceived;
 
+	private long blockedNanos;
+
 
 	public void recordReceived() {
 		recordsReceived++;
@@ -14,7 +16,19 @@ public class InputGateReceiveCounter {
 		return recordsReceived;
 	}
 
+	/**
+	 * Adds time the task has waited for input on the gate.
+	 */
+	public void blocked(long nanos) {
+		blockedNanos += nanos;
+	}
+
+	public long getBlockedNanos() {
+		return blockedNanos;
+	}
+
 	public void reset() {
 		recordsReceived = 0;
+		blockedNanos = 0;
 	}
 }
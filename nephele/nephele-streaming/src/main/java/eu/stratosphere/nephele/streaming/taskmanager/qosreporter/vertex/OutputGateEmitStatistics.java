@@ -3,6 +3,8 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosreporter.vertex;
 public class OutputGateEmitStatistics {
 	private long emitted;
 
+	private long blockedNanos;
+
 	public void emitted() {
 		emitted++;
 	}
@@ -11,7 +13,19 @@ public class OutputGateEmitStatistics {
 		return emitted;
 	}
 
+	/**
+	 * Adds time the task has waited for an empty output buffer of the gate.
+	 */
+	public void blocked(long nanos) {
+		blockedNanos += nanos;
+	}
+
+	public long getBlockedNanos() {
+		return blockedNanos;
+	}
+
 	public void reset() {
 		emitted = 0;
+		blockedNanos = 0;
 	}
 }
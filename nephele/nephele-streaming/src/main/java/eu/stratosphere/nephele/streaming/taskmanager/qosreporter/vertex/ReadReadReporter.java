@@ -17,6 +17,7 @@ public class ReadReadReporter implements VertexQosReporter {
 	private final ReportTimer reportTimer;
 
 	private long emitCounterAtLastReport;
+	private long blockedNanosAtLastReport;
 	private final OutputGateEmitStatistics outputGateEmitCounter;
 
 	private final int runtimeInputGateIndex;
@@ -39,13 +40,15 @@ public class ReadReadReporter implements VertexQosReporter {
 		this.runtimeOutputGateIndex = runtimeOutputGateIndex;
 
 		emitCounterAtLastReport = emitCounter.getEmitted();
+		blockedNanosAtLastReport = emitCounter.getBlockedNanos();
 		this.outputGateEmitCounter = emitCounter;
 	}
 	
 	public void sendReport(long now, 
 			Sample vertexLatencyMillis,
 			Sample interarrivalTimeMillis,
-			double recordsConsumedPerSec) {
+			double recordsConsumedPerSec,
+			double inputBlockedFraction) {
 		
 		double secsPassed = (now - reportTimer.getTimeOfLastReport()) / 1000.0;
 		
@@ -54,6 +57,8 @@ public class ReadReadReporter implements VertexQosReporter {
 					recordsConsumedPerSec,
 					getRecordsEmittedPerSec(secsPassed),
 					interarrivalTimeMillis);
+		toSend.setInputBlockedFraction(inputBlockedFraction);
+		toSend.setOutputBlockedFraction(getOutputBlockedFraction(secsPassed));
 		reportForwarder.addToNextReport(toSend);
 	}
 
@@ -67,6 +72,17 @@ public class ReadReadReporter implements VertexQosReporter {
 		return recordEmittedPerSec;
 	}
 
+	private double getOutputBlockedFraction(double secsPassed) {
+		double blockedFraction = 0;
+		if (outputGateEmitCounter != null) {
+			blockedFraction = VertexStatistics.toBlockedFraction(
+					outputGateEmitCounter.getBlockedNanos() - blockedNanosAtLastReport,
+					secsPassed);
+			blockedNanosAtLastReport = outputGateEmitCounter.getBlockedNanos();
+		}
+		return blockedFraction;
+	}
+
 	@Override
 	public void recordReceived(int runtimeInputGateIndex) {
 		throw new RuntimeException(
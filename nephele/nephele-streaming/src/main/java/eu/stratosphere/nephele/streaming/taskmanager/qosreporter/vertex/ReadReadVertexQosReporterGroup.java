@@ -3,6 +3,7 @@ package eu.stratosphere.nephele.streaming.taskmanager.qosreporter.vertex;
 import java.util.ArrayList;
 import java.util.List;
 
+import eu.stratosphere.nephele.streaming.message.qosreport.VertexStatistics;
 import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.QosReportForwarderThread;
 import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.BernoulliSampler;
 import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.Sample;
@@ -26,6 +27,7 @@ public class ReadReadVertexQosReporterGroup implements VertexQosReporter {
 	
 	private final InputGateReceiveCounter igReceiveCounter;
 	private long igReceiveCounterAtLastReport;
+	private long igBlockedNanosAtLastReport;
 	
 	private final InputGateInterArrivalTimeSampler igInterArrivalTimeSampler;
 	
@@ -40,13 +42,16 @@ public class ReadReadVertexQosReporterGroup implements VertexQosReporter {
 		this.inputGateIndex = inputGateIndex;
 
 		this.igInterReadTimeSampler = new InputGateInterReadTimeSampler(reportForwarder
-				.getConfigCenter().getSamplingProbability() / 100.0);
+				.getConfigCenter().getSamplingProbability() / 100.0,
+				reportForwarder.getConfigCenter().getSamplingTarget());
 		
 		this.igInterArrivalTimeSampler = new InputGateInterArrivalTimeSampler(reportForwarder
-				.getConfigCenter().getSamplingProbability() / 100.0);
+				.getConfigCenter().getSamplingProbability() / 100.0,
+				reportForwarder.getConfigCenter().getSamplingTarget());
 
 		this.igReceiveCounter = igReceiveCounter;
 		this.igReceiveCounterAtLastReport = igReceiveCounter.getRecordsReceived();		
+		this.igBlockedNanosAtLastReport = igReceiveCounter.getBlockedNanos();
 		
 		this.reportTimer = new ReportTimer(reportForwarder.getConfigCenter()
 				.getAggregationInterval());
@@ -67,10 +72,12 @@ public class ReadReadVertexQosReporterGroup implements VertexQosReporter {
 			Sample vertexLatency = igInterReadTimeSampler.drawSampleAndReset(now).rescale(0.001);
 			Sample interarrivalTime = igInterArrivalTimeSampler.drawSampleAndReset(now).rescale(0.001);
 			
-			double recordsConsumedPerSec = getRecordsConsumedPerSec((now - reportTimer.getTimeOfLastReport()) / 1000.0);
+			double secsPassed = (now - reportTimer.getTimeOfLastReport()) / 1000.0;
+			double recordsConsumedPerSec = getRecordsConsumedPerSec(secsPassed);
+			double inputBlockedFraction = getInputBlockedFraction(secsPassed);
 			
 			for (ReadReadReporter reporter : reporters) {
-				reporter.sendReport(now, vertexLatency, interarrivalTime, recordsConsumedPerSec);
+				reporter.sendReport(now, vertexLatency, interarrivalTime, recordsConsumedPerSec, inputBlockedFraction);
 			}
 
 			reportTimer.reset(now);
@@ -87,6 +94,14 @@ public class ReadReadVertexQosReporterGroup implements VertexQosReporter {
 		return recordsConsumedPerSec;
 	}
 
+	private double getInputBlockedFraction(double secsPassed) {
+		double blockedFraction = VertexStatistics.toBlockedFraction(
+				igReceiveCounter.getBlockedNanos() - igBlockedNanosAtLastReport,
+				secsPassed);
+		igBlockedNanosAtLastReport = igReceiveCounter.getBlockedNanos();
+		return blockedFraction;
+	}
+
 	@Override
 	public void recordReceived(int runtimeInputGateIndex) {
 		if (runtimeInputGateIndex == this.inputGateIndex) {
@@ -39,7 +39,8 @@ public class ReadWriteReporter extends AbstractVertexQosReporter {
 				runtimeInputGateIndex, runtimeOutputGateIndex, igReceiveCounter, emitCounter);
 
 		this.vertexLatencySampler = new BernoulliSampler(reportForwarder
-				.getConfigCenter().getSamplingProbability() / 100.0);
+				.getConfigCenter().getSamplingProbability() / 100.0,
+				reportForwarder.getConfigCenter().getSamplingTarget(), true);
 
 		this.lastSampleReadTime = -1;
 		this.retrySample = false;
@@ -16,7 +16,8 @@ public class VertexConsumptionReporter extends AbstractVertexQosReporter {
 				.getConfigCenter().getAggregationInterval()),
 				runtimeInputGateIndex, -1, igReceiveCounter, null);
 		
-		igInterReadSampler = new InputGateInterReadTimeSampler(reportForwarder.getConfigCenter().getSamplingProbability() / 100.0);
+		igInterReadSampler = new InputGateInterReadTimeSampler(reportForwarder.getConfigCenter().getSamplingProbability() / 100.0,
+				reportForwarder.getConfigCenter().getSamplingTarget());
 	}
 
 	@Override
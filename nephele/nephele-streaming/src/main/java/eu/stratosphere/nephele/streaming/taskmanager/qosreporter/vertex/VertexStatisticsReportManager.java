@@ -11,8 +11,9 @@ import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.QosReporterConf
 import eu.stratosphere.nephele.streaming.util.StreamUtil;
 
 /**
- * Handles the measurement and reporting of latencies and record
- * consumption/emission rates for a particular vertex. Such a latency is defined
+ * Handles the measurement and reporting of latencies, record
+ * consumption/emission rates and the time blocked on input/output for a
+ * particular vertex. Such a latency is defined
  * as the timespan between record receptions and emits on a particular
  * input/output gate combination of the vertex. Thus one vertex may have
  * multiple associated latencies, one for each input/output gate combination.
@@ -96,6 +97,24 @@ public class VertexStatisticsReportManager {
 		}
 	}
 
+	public void inputGateBlocked(int runtimeInputGateIndex, long blockedNanos) {
+		InputGateReceiveCounter igCounter = inputGateReceiveCounter
+				.get(runtimeInputGateIndex);
+
+		if (igCounter != null) {
+			igCounter.blocked(blockedNanos);
+		}
+	}
+
+	public void outputGateBlocked(int runtimeOutputGateIndex, long blockedNanos) {
+		OutputGateEmitStatistics ogStats = outputGateEmitStatistics
+				.get(runtimeOutputGateIndex);
+
+		if (ogStats != null) {
+			ogStats.blocked(blockedNanos);
+		}
+	}
+
 	public boolean containsReporter(QosReporterID.Vertex reporterID) {
 		return this.reporters.containsKey(reporterID);
 	}
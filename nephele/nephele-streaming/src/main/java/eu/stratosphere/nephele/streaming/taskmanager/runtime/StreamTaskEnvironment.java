@@ -24,9 +24,11 @@ import eu.stratosphere.nephele.io.InputGate;
 import eu.stratosphere.nephele.io.OutputGate;
 import eu.stratosphere.nephele.io.RecordDeserializerFactory;
 import eu.stratosphere.nephele.plugins.wrapper.EnvironmentWrapper;
+import eu.stratosphere.nephele.streaming.taskmanager.runtime.io.LoadAwareChannelSelector;
 import eu.stratosphere.nephele.streaming.taskmanager.runtime.io.StreamChannelSelector;
 import eu.stratosphere.nephele.streaming.taskmanager.runtime.io.StreamInputGate;
 import eu.stratosphere.nephele.streaming.taskmanager.runtime.io.StreamOutputGate;
+import eu.stratosphere.nephele.streaming.util.StreamPluginConfig;
 import eu.stratosphere.nephele.template.AbstractInvokable;
 import eu.stratosphere.nephele.template.ioc.IocTask;
 import eu.stratosphere.nephele.types.Record;
@@ -92,7 +94,10 @@ public final class StreamTaskEnvironment extends EnvironmentWrapper {
 			ChannelSelector<T> selector, final boolean isBroadcast) {
 
 		StreamChannelSelector<T> wrappedSelector;
-		if (selector == null) {
+		if (selector == null && StreamPluginConfig.isLoadAwareChannelSelectionEnabled()) {
+			wrappedSelector = new StreamChannelSelector<T>(
+					new LoadAwareChannelSelector<T>());
+		} else if (selector == null) {
 			wrappedSelector = new StreamChannelSelector<T>(
 					new DefaultChannelSelector<T>());
 		} else {
@@ -24,6 +24,12 @@ public class InputChannelChooser {
 	
 	private long lastArrivalTimestamp;
 
+	/**
+	 * Time in nanoseconds the task thread has waited for available channels
+	 * since the last call to {@link #getAndResetBlockedNanos()}.
+	 */
+	private long blockedNanos;
+
 	public InputChannelChooser() {
 		this.channelInputAvailibilityCounter = new int[1];
 		this.channelInputAvailibilityCounter[0] = 0;
@@ -79,14 +85,30 @@ public class InputChannelChooser {
 			throws InterruptedException {
 
 		synchronized (this.incomingInputAvailabilities) {
-			while (this.incomingInputAvailabilities.isEmpty()
+			if (this.incomingInputAvailabilities.isEmpty()
 					&& this.blockIfNoChannelAvailable) {
-				this.incomingInputAvailabilities.wait();
+
+				long blockedSince = System.nanoTime();
+				while (this.incomingInputAvailabilities.isEmpty()
+						&& this.blockIfNoChannelAvailable) {
+					this.incomingInputAvailabilities.wait();
+				}
+				this.blockedNanos += System.nanoTime() - blockedSince;
 			}
 		}
 		this.dequeueIncomingAvailableChannels();
 	}
 
+	/**
+	 * @return the time in nanoseconds the task thread has waited for
+	 *         available channels since the last call of this method.
+	 */
+	public long getAndResetBlockedNanos() {
+		long blocked = this.blockedNanos;
+		this.blockedNanos = 0;
+		return blocked;
+	}
+
 	public long increaseAvailableInput(int channelIndex) {
 		
 		long interarrivalTime;
@@ -0,0 +1,279 @@
+package eu.stratosphere.nephele.streaming.taskmanager.runtime.io;
+
+import java.util.Arrays;
+
+import eu.stratosphere.nephele.io.ChannelSelector;
+import eu.stratosphere.nephele.types.Record;
+
+/**
+ * Channel selector for edges without a partitioning requirement, that steers
+ * records away from output channels whose consumers are slow (e.g. because
+ * they run on a slower or more loaded instance).
+ *
+ * <p>
+ * The {@link StreamOutputGate} measures how long it takes to write a record
+ * into each channel, including the hand-off of full buffers, but without the
+ * time spent waiting for the task's own buffers. This cost is higher for
+ * channels whose consumers do not free their buffers in time. For each channel
+ * the selector keeps a moving average of the cost, and estimates the time at
+ * which the channel's backlog has been worked off, by adding the cost of
+ * each record sent through it.
+ * </p>
+ *
+ * <p>
+ * The cost only reflects the backlog of consumers on the same instance. Handing
+ * off a buffer to a local consumer blocks until the consumer provides an empty
+ * buffer, whereas a buffer for a remote consumer is queued with the network
+ * connection and the write returns immediately. For remote consumers the
+ * selector therefore asks the {@link OutputChannelBacklog} how many buffers of
+ * the channel are still queued with the connection, and how many the
+ * connection has transmitted so far. A connection to a slow consumer fills up
+ * once the consumer stops reading from the socket. The channel's network
+ * backlog is estimated as the number of queued buffers times the time it takes
+ * to transmit one of them, which is the moving average of the observed
+ * turnover, or the time since the connection last transmitted one of the
+ * channel's buffers if that is longer (e.g. because the consumer has stalled).
+ * </p>
+ *
+ * <p>
+ * For each record the selector compares two channels, the next one in
+ * round-robin order and a pseudo-randomly chosen one, and picks the one whose
+ * backlog is worked off first (power of two choices). If all channels are
+ * equally fast, or records are written slower than they can be handed off,
+ * this degrades to round-robin.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe. It must only be invoked by the task thread.
+ * </p>
+ */
+public class LoadAwareChannelSelector<T extends Record> implements
+		ChannelSelector<T> {
+
+	/**
+	 * Weight of a new cost measurement in the moving average of a channel's
+	 * cost per record. This is small, because only records that hand off a
+	 * full buffer show the consumer's backpressure.
+	 */
+	private static final double COST_SMOOTHING = 1.0 / 128;
+
+	/**
+	 * Weight of a new turnover measurement in the moving average of the time
+	 * it takes to transmit a queued network buffer of a channel.
+	 */
+	private static final double TURNOVER_SMOOTHING = 1.0 / 8;
+
+	private final int[] channelIdxToReturn = new int[] { -1 };
+
+	private int numberOfOutputChannels = 0;
+
+	/**
+	 * Moving average of the nanoseconds it takes to write a record into each
+	 * channel.
+	 */
+	private double[] costPerRecordNanos = new double[0];
+
+	/**
+	 * Estimated point in time (System.nanoTime()) at which the records sent
+	 * through each channel have been handed off.
+	 */
+	private double[] backlogFinishTimeNanos = new double[0];
+
+	/**
+	 * Provides the network buffers queued for each channel, null if records
+	 * are only steered by the cost of writing them.
+	 */
+	private OutputChannelBacklog outputChannelBacklog;
+
+	/**
+	 * The number of queued network buffers of each channel, as seen when the
+	 * channel has last been considered.
+	 */
+	private int[] queuedNetworkBuffers = new int[0];
+
+	/**
+	 * The number of transmitted network buffers of each channel, as seen when
+	 * the channel has last been considered.
+	 */
+	private long[] transmittedNetworkBuffers = new long[0];
+
+	/**
+	 * The time at which each channel's network queue has last made progress,
+	 * i.e. a buffer has been transmitted or the queue has been seen empty.
+	 */
+	private long[] lastNetworkProgressNanos = new long[0];
+
+	/**
+	 * Moving average of the nanoseconds it takes to transmit a queued network
+	 * buffer of each channel.
+	 */
+	private double[] nanosPerTransmittedBuffer = new double[0];
+
+	private int nextRoundRobinChannel = 0;
+
+	private int randomState = 0x2545F491;
+
+	/**
+	 * The time of the last cost measurement.
+	 */
+	private long now = 0;
+
+	@Override
+	public int[] selectChannels(T record, int numberOfOutputChannels) {
+		if (numberOfOutputChannels != this.numberOfOutputChannels) {
+			setNumberOfOutputChannels(numberOfOutputChannels);
+		}
+
+		int chosen = this.nextRoundRobinChannel;
+		this.nextRoundRobinChannel = (this.nextRoundRobinChannel + 1)
+				% numberOfOutputChannels;
+
+		if (numberOfOutputChannels > 1) {
+			int other = (chosen + 1 + nextRandom(numberOfOutputChannels - 1))
+					% numberOfOutputChannels;
+			if (estimateBacklogFinishTimeNanos(other) < estimateBacklogFinishTimeNanos(chosen)) {
+				chosen = other;
+			}
+		}
+
+		this.backlogFinishTimeNanos[chosen] = Math.max(
+				this.backlogFinishTimeNanos[chosen], this.now)
+				+ this.costPerRecordNanos[chosen];
+
+		this.channelIdxToReturn[0] = chosen;
+		return this.channelIdxToReturn;
+	}
+
+	/**
+	 * @return the estimated point in time at which the records sent through
+	 *         the given channel have been handed off and its queued network
+	 *         buffers have been transmitted.
+	 */
+	private double estimateBacklogFinishTimeNanos(int channelIndex) {
+		double networkBacklogNanos = estimateNetworkBacklogNanos(channelIndex);
+		if (networkBacklogNanos == 0) {
+			return this.backlogFinishTimeNanos[channelIndex];
+		}
+
+		return Math.max(this.backlogFinishTimeNanos[channelIndex], this.now)
+				+ networkBacklogNanos;
+	}
+
+	/**
+	 * Samples the network buffers queued for the given channel, updates the
+	 * channel's turnover and estimates how long it takes to transmit the
+	 * queued buffers.
+	 */
+	private double estimateNetworkBacklogNanos(int channelIndex) {
+		if (this.outputChannelBacklog == null) {
+			return 0;
+		}
+
+		int queued = this.outputChannelBacklog
+				.getNumberOfQueuedNetworkBuffers(channelIndex);
+		long transmitted = this.outputChannelBacklog
+				.getNumberOfTransmittedNetworkBuffers(channelIndex);
+
+		long lastTransmitted = this.transmittedNetworkBuffers[channelIndex];
+		if (transmitted != lastTransmitted) {
+			// the connection has been busy with the channel's buffers ever
+			// since they were last seen queued
+			if (this.queuedNetworkBuffers[channelIndex] > 0
+					&& transmitted > lastTransmitted) {
+				double nanosPerBuffer = (double) (this.now - this.lastNetworkProgressNanos[channelIndex])
+						/ (transmitted - lastTransmitted);
+				this.nanosPerTransmittedBuffer[channelIndex] += TURNOVER_SMOOTHING
+						* (nanosPerBuffer - this.nanosPerTransmittedBuffer[channelIndex]);
+			}
+			this.transmittedNetworkBuffers[channelIndex] = transmitted;
+			this.lastNetworkProgressNanos[channelIndex] = this.now;
+		} else if (this.queuedNetworkBuffers[channelIndex] == 0) {
+			this.lastNetworkProgressNanos[channelIndex] = this.now;
+		}
+		this.queuedNetworkBuffers[channelIndex] = queued;
+
+		if (queued <= 0) {
+			return 0;
+		}
+
+		return queued
+				* Math.max(this.nanosPerTransmittedBuffer[channelIndex],
+						this.now - this.lastNetworkProgressNanos[channelIndex]);
+	}
+
+	/**
+	 * Sets the provider of the network buffers queued for each channel. Without
+	 * it, records are only steered away from slow local consumers.
+	 */
+	public void setOutputChannelBacklog(OutputChannelBacklog outputChannelBacklog) {
+		this.outputChannelBacklog = outputChannelBacklog;
+	}
+
+	/**
+	 * Called after a record has been written into the given channel.
+	 *
+	 * @param channelIndex
+	 *            The channel the record has been written into.
+	 * @param costNanos
+	 *            The time it took to write the record into the channel.
+	 * @param now
+	 *            The current System.nanoTime().
+	 */
+	public void recordWritten(int channelIndex, long costNanos, long now) {
+		this.now = now;
+
+		if (channelIndex < this.numberOfOutputChannels) {
+			this.costPerRecordNanos[channelIndex] += COST_SMOOTHING
+					* (costNanos - this.costPerRecordNanos[channelIndex]);
+		}
+	}
+
+	/**
+	 * Keeps the costs of the retained channels when the number of active
+	 * output channels changes. Added channels are assumed to be as fast as the
+	 * average channel, and all backlogs start anew, so that added channels are
+	 * not flooded with records. The network turnover is measured anew.
+	 */
+	private void setNumberOfOutputChannels(int numberOfOutputChannels) {
+		double meanCost = 0;
+		for (double cost : this.costPerRecordNanos) {
+			meanCost += cost;
+		}
+		if (this.costPerRecordNanos.length > 0) {
+			meanCost /= this.costPerRecordNanos.length;
+		}
+
+		int retained = Math.min(this.costPerRecordNanos.length,
+				numberOfOutputChannels);
+		this.costPerRecordNanos = Arrays.copyOf(this.costPerRecordNanos,
+				numberOfOutputChannels);
+		Arrays.fill(this.costPerRecordNanos, retained,
+				numberOfOutputChannels, meanCost);
+
+		this.backlogFinishTimeNanos = new double[numberOfOutputChannels];
+		Arrays.fill(this.backlogFinishTimeNanos, this.now);
+
+		this.queuedNetworkBuffers = new int[numberOfOutputChannels];
+		this.transmittedNetworkBuffers = new long[numberOfOutputChannels];
+		this.lastNetworkProgressNanos = new long[numberOfOutputChannels];
+		this.nanosPerTransmittedBuffer = new double[numberOfOutputChannels];
+
+		this.numberOfOutputChannels = numberOfOutputChannels;
+		this.nextRoundRobinChannel %= numberOfOutputChannels;
+	}
+
+	/**
+	 * @return a pseudo-random number in [0, bound), from a xorshift generator
+	 *         which is cheap enough to be invoked once per record.
+	 */
+	private int nextRandom(int bound) {
+		this.randomState ^= this.randomState << 13;
+		this.randomState ^= this.randomState >>> 17;
+		this.randomState ^= this.randomState << 5;
+		return (this.randomState & Integer.MAX_VALUE) % bound;
+	}
+
+	public double getCostPerRecordNanos(int channelIndex) {
+		return this.costPerRecordNanos[channelIndex];
+	}
+}
@@ -0,0 +1,26 @@
+package eu.stratosphere.nephele.streaming.taskmanager.runtime.io;
+
+/**
+ * Provides the number of buffers of each output channel that are queued with
+ * a network connection, and the number of buffers the connection has
+ * transmitted so far. The {@link LoadAwareChannelSelector} uses them to steer
+ * records away from remote consumers which do not keep up.
+ */
+public interface OutputChannelBacklog {
+
+	/**
+	 * @param channelIndex
+	 *            The index of the output channel.
+	 * @return the number of buffers of the channel that have been queued with
+	 *         a network connection, but have not been written to it yet.
+	 */
+	int getNumberOfQueuedNetworkBuffers(int channelIndex);
+
+	/**
+	 * @param channelIndex
+	 *            The index of the output channel.
+	 * @return the number of buffers of the channel that have been written to a
+	 *         network connection so far.
+	 */
+	long getNumberOfTransmittedNetworkBuffers(int channelIndex);
+}
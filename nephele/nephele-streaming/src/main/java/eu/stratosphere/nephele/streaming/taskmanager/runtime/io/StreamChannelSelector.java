@@ -15,6 +15,7 @@
 package eu.stratosphere.nephele.streaming.taskmanager.runtime.io;
 
 import eu.stratosphere.nephele.io.ChannelSelector;
+import eu.stratosphere.nephele.io.KeyGroupChannelSelector;
 import eu.stratosphere.nephele.types.Record;
 
 /**
@@ -42,6 +43,30 @@ public class StreamChannelSelector<T extends Record> implements
 		this.wrapped = toWrap;
 	}
 
+	/**
+	 * @return the wrapped channel selector if it needs to be told the cost of
+	 *         writing records, null otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	public LoadAwareChannelSelector<T> getLoadAwareChannelSelector() {
+		if (this.wrapped instanceof LoadAwareChannelSelector) {
+			return (LoadAwareChannelSelector<T>) this.wrapped;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the wrapped channel selector if it partitions records by key
+	 *         groups, null otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	public KeyGroupChannelSelector<T> getKeyGroupChannelSelector() {
+		if (this.wrapped instanceof KeyGroupChannelSelector) {
+			return (KeyGroupChannelSelector<T>) this.wrapped;
+		}
+		return null;
+	}
+
 	public int[] invokeWrappedChannelSelector(final T record,
 			final int numberOfOutputChannels) {
 		this.nextChannelToSendTo = this.wrapped.selectChannels(record,
@@ -108,6 +108,8 @@ public final class StreamInputGate<T extends Record> extends
 			}
 		}
 
+		reportBlockedIfNecessary();
+
 		InputChannelResult result = this.getInputChannel(channelToReadFrom)
 				.readRecord(target);
 		switch (result) {
@@ -155,6 +157,13 @@ public final class StreamInputGate<T extends Record> extends
 		}
 	}
 
+	private void reportBlockedIfNecessary() {
+		long blockedNanos = this.channelChooser.getAndResetBlockedNanos();
+		if (blockedNanos > 0 && this.qosCallback != null) {
+			this.qosCallback.inputBlocked(blockedNanos);
+		}
+	}
+
 	public void reportTryingToRead() {
 		if (this.qosCallback != null) {
 			this.qosCallback.tryingToReadRecord();
@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.streaming.taskmanager.runtime.io;
 
 import eu.stratosphere.nephele.io.ChannelSelector;
+import eu.stratosphere.nephele.io.KeyGroupChannelSelector;
 import eu.stratosphere.nephele.io.OutputGate;
 import eu.stratosphere.nephele.io.channels.AbstractOutputChannel;
 import eu.stratosphere.nephele.io.channels.ChannelID;
@@ -34,6 +35,7 @@ import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
@@ -45,7 +47,7 @@ import java.util.concurrent.LinkedBlockingQueue;
  * @param <T>
  */
 public final class StreamOutputGate<T extends Record> extends
-		AbstractOutputGateWrapper<T> {
+		AbstractOutputGateWrapper<T> implements OutputChannelBacklog {
 
 	private final static Logger LOG = Logger.getLogger(StreamOutputGate.class);
 
@@ -57,13 +59,37 @@ public final class StreamOutputGate<T extends Record> extends
 
 	private StreamChannelSelector<T> streamChannelSelector;
 
+	/**
+	 * The wrapped channel selector, if it steers records by the cost of
+	 * writing them into the output channels.
+	 */
+	private final LoadAwareChannelSelector<T> loadAwareChannelSelector;
+
+	/**
+	 * Time spent waiting for empty buffers while writing the current record.
+	 * Only accessed by the task thread.
+	 */
+	private long outputBufferRequestBlockedNanos;
+
 	private LinkedBlockingQueue<QosAction> qosActionQueue;
 
+	/**
+	 * The versions of the output buffer lifetime targets currently applied to
+	 * the active output channels. The version of a channel is removed when the
+	 * channel is suspended.
+	 */
+	private final ConcurrentHashMap<ChannelID, Long> outputBufferLifetimeTargetVersions = new ConcurrentHashMap<ChannelID, Long>();
+
 	public StreamOutputGate(final OutputGate<T> wrappedOutputGate,
 			StreamChannelSelector<T> streamChannelSelector) {
 		super(wrappedOutputGate);
 		this.outputChannels = new HashMap<ChannelID, AbstractOutputChannel<T>>();
 		this.streamChannelSelector = streamChannelSelector;
+		this.loadAwareChannelSelector = streamChannelSelector
+				.getLoadAwareChannelSelector();
+		if (this.loadAwareChannelSelector != null) {
+			this.loadAwareChannelSelector.setOutputChannelBacklog(this);
+		}
 		this.qosActionQueue = new LinkedBlockingQueue<QosAction>();
 		AbstractByteBufferedOutputChannel.ensureAutoflushThreadPoolsize(StreamPluginConfig.getOutputChannelFlusherThreadpoolsize());
 	}
@@ -89,20 +115,42 @@ public final class StreamOutputGate<T extends Record> extends
 		
 		this.reportRecordEmitted(record, outputChannel);
 
-		if (this.streamChain == null) {
-			this.getWrappedOutputGate().writeRecord(record);
-		} else {
+		if (this.streamChain != null) {
 			this.streamChain.writeRecord(record);
+		} else if (this.loadAwareChannelSelector != null) {
+			this.writeRecordAndMeasureCost(record, outputChannel);
+		} else {
+			this.getWrappedOutputGate().writeRecord(record);
 		}
 
 		this.handlePendingQosActions();
 	}
 
+	/**
+	 * Writes the record and tells the load-aware channel selector how long it
+	 * took, without the time spent waiting for the task's own buffers, which
+	 * does not depend on the chosen channel. The measured cost therefore only
+	 * contains the backlog of local consumers, the backlog of remote consumers
+	 * is sampled through {@link OutputChannelBacklog} (see
+	 * {@link LoadAwareChannelSelector}).
+	 */
+	private void writeRecordAndMeasureCost(final T record,
+			final int outputChannel) throws IOException, InterruptedException {
+
+		this.outputBufferRequestBlockedNanos = 0;
+		long start = System.nanoTime();
+		this.getWrappedOutputGate().writeRecord(record);
+		long end = System.nanoTime();
+
+		this.loadAwareChannelSelector.recordWritten(outputChannel, end - start
+				- this.outputBufferRequestBlockedNanos, end);
+	}
+
 	public void enqueueQosAction(QosAction qosAction) {
 		this.qosActionQueue.add(qosAction);
 	}
 
-	private void handlePendingQosActions() throws InterruptedException,
+	void handlePendingQosActions() throws InterruptedException,
 			IOException {
 		QosAction action;
 		while ((action = this.qosActionQueue.poll()) != null) {
@@ -110,6 +158,8 @@ public final class StreamOutputGate<T extends Record> extends
 				this.limitBufferSize((LimitBufferSizeAction) action);
 			} else if (action instanceof SetOutputBufferLifetimeTargetAction) {
 				this.setOutputBufferLatencyTarget((SetOutputBufferLifetimeTargetAction) action);
+			} else if (action instanceof SetKeyGroupParallelismAction) {
+				this.setKeyGroupParallelism((SetKeyGroupParallelismAction) action);
 			} else if (action instanceof EstablishNewChainAction) {
 				this.establishChain((EstablishNewChainAction) action);
 			} else if (action instanceof DropCurrentChainAction) {
@@ -128,10 +178,34 @@ public final class StreamOutputGate<T extends Record> extends
 			LOG.error("Cannot find output channel with ID " + channelID);
 			return;
 		}
-		
+
+		long version = action.getVersion();
+		if (version == SetOutputBufferLifetimeTargetAction.UNVERSIONED) {
+			// the next versioned target is applied in any case
+			this.outputBufferLifetimeTargetVersions.remove(channelID);
+		} else {
+			Long appliedVersion = this.outputBufferLifetimeTargetVersions
+					.get(channelID);
+			if (appliedVersion != null && appliedVersion > version) {
+				// overtaken by the target of a later adjustment
+				return;
+			}
+			this.outputBufferLifetimeTargetVersions.put(channelID, version);
+		}
+
 		channel.setFlushDeadline(action.getOutputBufferLifetimeTarget());
 	}
 
+	private void setKeyGroupParallelism(SetKeyGroupParallelismAction action) {
+		KeyGroupChannelSelector<T> keyGroupChannelSelector = this.streamChannelSelector
+				.getKeyGroupChannelSelector();
+
+		if (keyGroupChannelSelector != null) {
+			keyGroupChannelSelector.announceParallelism(action.getVersion(),
+					action.getParallelism());
+		}
+	}
+
 	private void dropCurrentChain() {
 		LOG.info("Dropped chain " + this.streamChain);
 		this.streamChain = null;
@@ -141,6 +215,32 @@ public final class StreamOutputGate<T extends Record> extends
 		return this.outputChannels.get(channelID);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNumberOfQueuedNetworkBuffers(int channelIndex) {
+		AbstractOutputChannel<T> channel = this.getOutputChannel(channelIndex);
+		if (channel instanceof AbstractByteBufferedOutputChannel) {
+			return ((AbstractByteBufferedOutputChannel<T>) channel)
+					.getNumberOfQueuedNetworkBuffers();
+		}
+		return 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getNumberOfTransmittedNetworkBuffers(int channelIndex) {
+		AbstractOutputChannel<T> channel = this.getOutputChannel(channelIndex);
+		if (channel instanceof AbstractByteBufferedOutputChannel) {
+			return ((AbstractByteBufferedOutputChannel<T>) channel)
+					.getNumberOfTransmittedNetworkBuffers();
+		}
+		return 0;
+	}
+
 	private void establishChain(EstablishNewChainAction chainTasksAction)
 			throws InterruptedException, IOException {
 
@@ -199,6 +299,17 @@ public final class StreamOutputGate<T extends Record> extends
 		this.getWrappedOutputGate().outputBufferSent(channelIndex);
 	}
 
+	@Override
+	public void outputBufferRequestBlocked(int channelIndex, long blockedNanos) {
+		this.outputBufferRequestBlockedNanos += blockedNanos;
+
+		if (this.qosCallback != null) {
+			this.qosCallback.outputBufferRequestBlocked(channelIndex,
+					blockedNanos);
+		}
+		this.getWrappedOutputGate().outputBufferRequestBlocked(channelIndex,
+				blockedNanos);
+	}
 
 	/**
 	 * {@inheritDoc}
@@ -255,6 +366,28 @@ public final class StreamOutputGate<T extends Record> extends
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setOutputChannelSuspended(int index, boolean isSuspended) {
+		super.setOutputChannelSuspended(index, isSuspended);
+
+		if (isSuspended) {
+			this.outputBufferLifetimeTargetVersions.remove(this
+					.getOutputChannel(index).getID());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void releaseAllChannelResources() {
+		super.releaseAllChannelResources();
+		this.outputBufferLifetimeTargetVersions.clear();
+	}
+
 	@Override
 	public void requestSuspend() throws IOException, InterruptedException {
 		super.requestSuspend(); // put gate in drain mode and send suspend event
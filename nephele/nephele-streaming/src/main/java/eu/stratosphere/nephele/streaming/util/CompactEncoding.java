@@ -0,0 +1,74 @@
+package eu.stratosphere.nephele.streaming.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Static helpers to write integers with a variable length encoding. Small
+ * non-negative values (such as counts and dictionary handles) take a single
+ * byte instead of four.
+ */
+public class CompactEncoding {
+
+	/**
+	 * Writes a non-negative integer in 7-bit groups, least significant group
+	 * first. The highest bit of each byte indicates whether another byte
+	 * follows.
+	 */
+	public static void writeVarInt(DataOutput out, int value)
+			throws IOException {
+
+		if (value < 0) {
+			throw new IllegalArgumentException(
+					"Only non-negative integers can be written as var int: "
+							+ value);
+		}
+
+		writeUnsignedVarInt(out, value);
+	}
+
+	/**
+	 * Writes the given 32 bits as unsigned integer.
+	 */
+	private static void writeUnsignedVarInt(DataOutput out, int value)
+			throws IOException {
+
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	public static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (shift > 28) {
+				throw new IOException("Malformed var int");
+			}
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	/**
+	 * Writes an arbitrary integer as var int, after mapping it to a
+	 * non-negative integer such that values of small magnitude remain small
+	 * (0, -1, 1, -2, ... become 0, 1, 2, 3, ...).
+	 */
+	public static void writeSignedVarInt(DataOutput out, int value)
+			throws IOException {
+		writeUnsignedVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	public static int readSignedVarInt(DataInput in) throws IOException {
+		int zigzag = readVarInt(in);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+}
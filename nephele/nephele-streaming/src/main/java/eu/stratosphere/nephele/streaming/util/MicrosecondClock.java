@@ -0,0 +1,21 @@
+package eu.stratosphere.nephele.streaming.util;
+
+/**
+ * A local wall clock with microsecond resolution. The clock is anchored to
+ * {@link System#currentTimeMillis()} once and advanced with
+ * {@link System#nanoTime()} afterwards, hence it is monotonic and not affected
+ * by adjustments of the system clock while the JVM runs.
+ */
+public class MicrosecondClock {
+
+	private static final long ANCHOR_MICROS = System.currentTimeMillis() * 1000;
+
+	private static final long ANCHOR_NANOS = System.nanoTime();
+
+	/**
+	 * Returns the current time in microseconds since the epoch.
+	 */
+	public static long currentTimeMicros() {
+		return ANCHOR_MICROS + (System.nanoTime() - ANCHOR_NANOS) / 1000;
+	}
+}
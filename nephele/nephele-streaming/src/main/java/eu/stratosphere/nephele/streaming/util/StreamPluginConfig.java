@@ -29,6 +29,17 @@ public class StreamPluginConfig {
 	 */
 	public static final int DEFAULT_SAMPLING_PROBABILITY = 10;
 
+	/**
+	 * Name of the configuration entry which defines the targeted number of
+	 * sample points per reporter and aggregation interval. Samplers adapt
+	 * their sampling probability to this target, starting with the configured
+	 * sampling probability. 0 disables the adaptation.
+	 */
+	public static final String SAMPLING_TARGET_KEY = PluginManager
+			.prefixWithPluginNamespace("streaming.qosreporter.samplingtarget");
+
+	public static final int DEFAULT_SAMPLING_TARGET = 100;
+
 	/**
 	 * Name of the configuration entry which defines the QoS statistics log file
 	 * location.
@@ -47,6 +58,15 @@ public class StreamPluginConfig {
 
 	private static final String DEFAULT_CPU_STAT_LOGFILE_PATTERN = "/tmp/cpu_statistics_%s";
 
+	/**
+	 * Name of the configuration entry which defines the file, into which the
+	 * constraint summaries that elastic scaling is based on are recorded for
+	 * offline replay (%s is replaced with the job ID). Recording is disabled
+	 * if this entry is not set.
+	 */
+	public static final String SCALING_RECORDING_FILE_PATTERN_KEY = PluginManager
+			.prefixWithPluginNamespace("streaming.qosmanager.logging.scaling_recording_filepattern");
+
 	/**
 	 * Name of the configuration entry which defines the time interval for QoS
 	 * driven adjustments.
@@ -80,6 +100,28 @@ public class StreamPluginConfig {
 
 	public static final float DEFAULT_QOSMANAGER_SCALING_FITTING_FACTOR_DEVIATION_LIMIT = 0.2f;
 
+	/**
+	 * Elastic scaling plans parallelism for the arrival rate forecast for the
+	 * end of the next adjustment interval plus this lead time in milliseconds,
+	 * which should roughly be the time it takes to deploy new subtasks. A
+	 * negative value disables forecasting, so that scaling only reacts to the
+	 * measured arrival rate.
+	 */
+	public static final String QOSMANAGER_SCALING_FORECAST_LEAD_TIME_KEY = PluginManager
+					.prefixWithPluginNamespace("streaming.qosmanager.scaling.forecast_lead_time");
+
+	public static final long DEFAULT_QOSMANAGER_SCALING_FORECAST_LEAD_TIME = 5000;
+
+	/**
+	 * The queueing model used by elastic scaling for group vertices that do
+	 * not select a model themselves. Possible values are the names of
+	 * {@link eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.QueueingModel}.
+	 */
+	public static final String QOSMANAGER_SCALING_QUEUEING_MODEL_KEY = PluginManager
+					.prefixWithPluginNamespace("streaming.qosmanager.scaling.queueing_model");
+
+	public static final String DEFAULT_QOSMANAGER_SCALING_QUEUEING_MODEL = "KINGMAN";
+
 	/**
 	 * Poolsize of thread pool used for flushing output channels. It is better to err on the
 	 * high side here, because setting this too low causes buffers to not get flushed in
@@ -90,6 +132,55 @@ public class StreamPluginConfig {
 
 	public static final int DEFAULT_OUTPUT_CAHNNEL_FLUSHER_THREADPOOLSIZE = 20;
 
+	/**
+	 * Whether output gates without a user-defined channel selector steer
+	 * records away from slow consumers instead of distributing them
+	 * round-robin (see
+	 * {@link eu.stratosphere.nephele.streaming.taskmanager.runtime.io.LoadAwareChannelSelector}).
+	 */
+	public static final String LOAD_AWARE_CHANNEL_SELECTION_KEY = PluginManager
+			.prefixWithPluginNamespace("streaming.runtime.load_aware_channel_selection");
+
+	public static final boolean DEFAULT_LOAD_AWARE_CHANNEL_SELECTION = false;
+
+	/**
+	 * Number of worker threads each Qos manager uses to apply Qos reports and
+	 * to search for Qos constraint violations in parallel.
+	 */
+	public static final String QOSMANAGER_WORKER_THREADS_KEY = PluginManager
+			.prefixWithPluginNamespace("streaming.qosmanager.worker_threads");
+
+	public static final int DEFAULT_QOSMANAGER_WORKER_THREADS = 4;
+
+	/**
+	 * Interval in milliseconds in which task managers synchronize their clocks
+	 * with the job manager, which is required to measure edge latencies across
+	 * task managers. 0 disables clock synchronization.
+	 */
+	public static final String CLOCK_SYNC_INTERVAL_KEY = PluginManager
+			.prefixWithPluginNamespace("streaming.clocksync.interval");
+
+	public static final long DEFAULT_CLOCK_SYNC_INTERVAL = 2000;
+
+	/**
+	 * Time in milliseconds that Qos reports to the same destination are
+	 * collected before they are sent together in a single RPC. Other messages
+	 * are sent immediately, along with the reports queued so far.
+	 */
+	public static final String MESSAGING_FLUSH_INTERVAL_KEY = PluginManager
+			.prefixWithPluginNamespace("streaming.messaging.flush_interval");
+
+	public static final long DEFAULT_MESSAGING_FLUSH_INTERVAL = 20;
+
+	/**
+	 * Maximum number of messages queued for one destination. When the queue is
+	 * full, the oldest Qos report is dropped. Other messages are never dropped.
+	 */
+	public static final String MESSAGING_QUEUE_CAPACITY_KEY = PluginManager
+			.prefixWithPluginNamespace("streaming.messaging.queue_capacity");
+
+	public static final int DEFAULT_MESSAGING_QUEUE_CAPACITY = 500;
+
 	/**
 	 * Keep history of last 15min by default: 15 60 /
 	 * (DEFAULT_ADJUSTMENTINTERVAL / 1000)) = 180
@@ -109,6 +200,26 @@ public class StreamPluginConfig {
 				DEFAULT_ADJUSTMENTINTERVAL);
 	}
 
+	public static int getSamplingTarget() {
+		return GlobalConfiguration.getInteger(SAMPLING_TARGET_KEY,
+				DEFAULT_SAMPLING_TARGET);
+	}
+
+	public static long getClockSyncIntervalMillis() {
+		return GlobalConfiguration.getLong(CLOCK_SYNC_INTERVAL_KEY,
+				DEFAULT_CLOCK_SYNC_INTERVAL);
+	}
+
+	public static long getMessagingFlushIntervalMillis() {
+		return GlobalConfiguration.getLong(MESSAGING_FLUSH_INTERVAL_KEY,
+				DEFAULT_MESSAGING_FLUSH_INTERVAL);
+	}
+
+	public static int getMessagingQueueCapacity() {
+		return GlobalConfiguration.getInteger(MESSAGING_QUEUE_CAPACITY_KEY,
+				DEFAULT_MESSAGING_QUEUE_CAPACITY);
+	}
+
 	public static int getSamplingProbabilityPercent() {
 		return GlobalConfiguration.getInteger(SAMPLING_PROBABILITY_KEY,
 				DEFAULT_SAMPLING_PROBABILITY);
@@ -129,6 +240,11 @@ public class StreamPluginConfig {
 				DEFAULT_CPU_STAT_LOGFILE_PATTERN);
 	}
 
+	public static String getScalingRecordingFilePattern() {
+		return GlobalConfiguration.getString(SCALING_RECORDING_FILE_PATTERN_KEY,
+				null);
+	}
+
 	public static int computeQosStatisticWindowSize() {
 		return (int) Math.ceil(((double) getAdjustmentIntervalMillis())
 				/ getAggregationIntervalMillis());
@@ -139,6 +255,16 @@ public class StreamPluginConfig {
 						DEFAULT_OUTPUT_CAHNNEL_FLUSHER_THREADPOOLSIZE);
 	}
 
+	public static boolean isLoadAwareChannelSelectionEnabled() {
+		return GlobalConfiguration.getBoolean(LOAD_AWARE_CHANNEL_SELECTION_KEY,
+				DEFAULT_LOAD_AWARE_CHANNEL_SELECTION);
+	}
+
+	public static int getQosManagerWorkerThreads() {
+		return GlobalConfiguration.getInteger(QOSMANAGER_WORKER_THREADS_KEY,
+				DEFAULT_QOSMANAGER_WORKER_THREADS);
+	}
+
 	public static float getOutputBatchingLatencyWeight() {
 		return GlobalConfiguration.getFloat(QOSMANAGER_OUTPUT_BATCHING_WEIGHT_KEY,
 						DEFAULT_QOSMANAGER_OUTPUT_BATCHING_WEIGHT);
@@ -153,4 +279,14 @@ public class StreamPluginConfig {
 		return 1.0f - GlobalConfiguration.getFloat(QOSMANAGER_SCALING_FITTING_FACTOR_DEVIATION_LIMIT_KEY,
 						DEFAULT_QOSMANAGER_SCALING_FITTING_FACTOR_DEVIATION_LIMIT);
 	}
+
+	public static long getElasticScalingForecastLeadTimeMillis() {
+		return GlobalConfiguration.getLong(QOSMANAGER_SCALING_FORECAST_LEAD_TIME_KEY,
+						DEFAULT_QOSMANAGER_SCALING_FORECAST_LEAD_TIME);
+	}
+
+	public static String getElasticScalingQueueingModel() {
+		return GlobalConfiguration.getString(QOSMANAGER_SCALING_QUEUEING_MODEL_KEY,
+						DEFAULT_QOSMANAGER_SCALING_QUEUEING_MODEL);
+	}
 }
@@ -0,0 +1,64 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ArrivalRateForecasterTest {
+
+	@Test
+	public void testConstantRate() {
+		ArrivalRateForecaster forecaster = new ArrivalRateForecaster();
+		forecaster.addMeasurement(1000);
+		assertFalse(forecaster.hasForecast());
+
+		for (int i = 0; i < 10; i++) {
+			forecaster.addMeasurement(1000);
+		}
+		assertTrue(forecaster.hasForecast());
+		assertEquals(1000, forecaster.forecast(3), 0.0001);
+	}
+
+	@Test
+	public void testLinearRampIsExtrapolated() {
+		ArrivalRateForecaster forecaster = new ArrivalRateForecaster();
+		for (int i = 0; i < 20; i++) {
+			forecaster.addMeasurement(1000 + 100 * i);
+		}
+
+		// last measurement was 2900
+		assertEquals(100, forecaster.getTrend(), 0.0001);
+		assertEquals(3100, forecaster.forecast(2), 0.0001);
+		assertEquals(3050, forecaster.forecast(1.5), 0.0001);
+	}
+
+	@Test
+	public void testTrendAdaptsToRamp() {
+		ArrivalRateForecaster forecaster = new ArrivalRateForecaster();
+		for (int i = 0; i < 5; i++) {
+			forecaster.addMeasurement(1000);
+		}
+		for (int i = 1; i <= 5; i++) {
+			forecaster.addMeasurement(1000 + 200 * i);
+		}
+
+		assertTrue(forecaster.getTrend() > 0);
+		assertTrue(forecaster.forecast(2) > 2000);
+	}
+
+	@Test
+	public void testForecastIsNotNegative() {
+		ArrivalRateForecaster forecaster = new ArrivalRateForecaster();
+		forecaster.addMeasurement(1000);
+		forecaster.addMeasurement(100);
+
+		assertEquals(0, forecaster.forecast(5), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSmoothingFactor() {
+		new ArrivalRateForecaster(0, 0.5);
+	}
+}
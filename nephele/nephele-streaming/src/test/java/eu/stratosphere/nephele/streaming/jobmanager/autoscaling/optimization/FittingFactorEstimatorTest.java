@@ -0,0 +1,51 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FittingFactorEstimatorTest {
+
+	@Test
+	public void testNoObservations() {
+		assertEquals(1, new FittingFactorEstimator().getFittingFactor(), 0);
+	}
+
+	@Test
+	public void testConvergesToConsistentDeviation() {
+		FittingFactorEstimator estimator = new FittingFactorEstimator();
+		for (int i = 0; i < 50; i++) {
+			estimator.addObservation(2.5);
+		}
+		assertEquals(2.5, estimator.getFittingFactor(), 0.0001);
+	}
+
+	@Test
+	public void testSmoothsNoisyObservations() {
+		FittingFactorEstimator estimator = new FittingFactorEstimator(0.5);
+		estimator.addObservation(1);
+		double estimate = estimator.addObservation(4);
+
+		// geometric mean of 1 and 4
+		assertEquals(2, estimate, 0.0001);
+	}
+
+	@Test
+	public void testInvalidObservationsAreIgnored() {
+		FittingFactorEstimator estimator = new FittingFactorEstimator();
+		estimator.addObservation(1.5);
+		estimator.addObservation(0);
+		estimator.addObservation(Double.POSITIVE_INFINITY);
+		estimator.addObservation(Double.NaN);
+
+		assertEquals(1.5, estimator.getFittingFactor(), 0.0001);
+	}
+
+	@Test
+	public void testObservationsAreClamped() {
+		FittingFactorEstimator estimator = new FittingFactorEstimator();
+		estimator.addObservation(1000);
+		assertTrue(estimator.getFittingFactor() <= FittingFactorEstimator.MAX_FITTING_FACTOR + 0.0001);
+	}
+}
@@ -145,6 +145,97 @@ public class GG1ServerTest {
 		}
 	}
 
+	@Test
+	public void testPlannedArrivalRate() {
+		GG1Server measured = createKingmanEdge1();
+		double plannedLambda = 1.25 * measured.getMeasuredLambdaTotal();
+		GG1Server planned = new GG1ServerKingman(new JobVertexID(), 1, 70,
+				edge1, plannedLambda);
+
+		// the fitting factor is determined by the measured state
+		assertClose(planned.fittingFactor, measured.fittingFactor);
+		assertClose(planned.getCurrentMeanUtilization(),
+				measured.getCurrentMeanUtilization());
+
+		// parallelism is planned for the higher arrival rate
+		assertClose(planned.getPlannedLambdaTotal(), plannedLambda);
+		assertEquals(42, planned.getLowerBoundParallelism());
+		assertTrue(planned.getQueueWait(50) > measured.getQueueWait(50));
+		assertTrue(planned.computeParallelismForQueueWaitThreshold(0.008) > measured
+				.computeParallelismForQueueWaitThreshold(0.008));
+	}
+
+	@Test
+	public void testErlangC() {
+		// with a single server, an arrival has to wait iff the server is busy
+		assertClose(GGcServerAllenCunneen.computeErlangC(1, 0.7), 0.7);
+		// textbook value for c=2, offered load 1
+		assertClose(GGcServerAllenCunneen.computeErlangC(2, 0.5), 1.0 / 3);
+		assertTrue(GGcServerAllenCunneen.computeErlangC(100, 0.5) < 0.0001);
+	}
+
+	@Test
+	public void testAllenCunneenQueueWait() {
+		GG1Server server = new GGcServerAllenCunneen(new JobVertexID(), 1,
+				70, edge1);
+		assertEquals(34, server.getLowerBoundParallelism());
+		assertTrue(server.getQueueWait(40) > server.getQueueWait(70));
+
+		// the parallelism is not computed in closed form for this model
+		double threshold = server.getQueueWait(45);
+		assertEquals(45, server.computeParallelismForQueueWaitThreshold(threshold));
+		assertEquals(45, server.computeParallelismForQueueWaitThreshold(threshold * 1.0001));
+	}
+
+	@Test
+	public void testSkewAwareModel() {
+		GG1Server even = new GG1ServerSkewAware(new JobVertexID(), 1, 100,
+				edge1);
+		assertEquals(34, even.getLowerBoundParallelism());
+
+		edge1.setMeanConsumerVertexUtilization(0.6);
+		edge1.setMaxConsumerVertexUtilization(0.8);
+		GG1Server skewed = new GG1ServerSkewAware(new JobVertexID(), 1, 100,
+				edge1);
+
+		// the most loaded subtask must not exceed the maximum utilization
+		assertEquals(45, skewed.getLowerBoundParallelism());
+		assertTrue(skewed.getQueueWait(60) > even.getQueueWait(60));
+		assertTrue(skewed.computeParallelismForQueueWaitThreshold(0.004) > even
+				.computeParallelismForQueueWaitThreshold(0.004));
+	}
+
+	@Test
+	public void testOutputBlockedTimeIsNotServiceTime() {
+		GG1Server unblocked = createKingmanEdge1();
+		assertClose(unblocked.getCurrentMeanUtilization(), 0.6);
+
+		// half of the vertex latency is spent waiting for the consumers
+		edge1.setMeanConsumptionRate(7500);
+		edge1.setMeanConsumerVertexOutputBlockedFraction(0.3);
+		GG1Server blocked = createKingmanEdge1();
+
+		assertClose(edge1.getMeanConsumerVertexServiceTime(), 0.04);
+		assertClose(blocked.getCurrentMeanUtilization(), 0.3);
+		assertEquals(17, blocked.getLowerBoundParallelism());
+	}
+
+	@Test
+	public void testFittedModelLearnsFittingFactor() {
+		FittingFactorEstimator estimator = new FittingFactorEstimator();
+		GG1Server first = new GG1ServerFitted(new JobVertexID(), 1, 70,
+				edge1, GG1Server.getMeasuredLambdaTotal(edge1), estimator);
+		assertClose(first.fittingFactor, first.theoreticalFittingFactor);
+
+		// the measured queue wait doubles, which the learned factor only
+		// partially follows
+		edge1.setTransportLatencyMean(2 * edge1.getTransportLatencyMean());
+		GG1Server second = new GG1ServerFitted(new JobVertexID(), 1, 70,
+				edge1, GG1Server.getMeasuredLambdaTotal(edge1), estimator);
+		assertTrue(second.fittingFactor > first.fittingFactor);
+		assertTrue(second.fittingFactor < second.theoreticalFittingFactor);
+	}
+
 	public static GG1ServerKLB createKLBEdge1() {
 		return new GG1ServerKLB(new JobVertexID(), 1, 70, edge1);
 	}
@@ -0,0 +1,110 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+
+public class MultiConstraintRebalancerTest {
+
+	@Test
+	public void testSingleConstraintMatchesRebalancer() {
+		ArrayList<GG1Server> servers = new ArrayList<GG1Server>(Arrays.asList(
+				(GG1Server) GG1ServerTest.createKingmanEdge1(),
+				GG1ServerTest.createKingmanEdge2(),
+				GG1ServerTest.createKingmanEdge3()));
+
+		MultiConstraintRebalancer multiReb = new MultiConstraintRebalancer();
+		multiReb.addConstraint(servers, 15);
+		assertTrue(multiReb.computeRebalancedParallelism());
+		assertTrue(multiReb.isSatisfied(0));
+		assertTrue(multiReb.getRebalancedQueueWait(0) <= 0.015);
+
+		Rebalancer reb = new Rebalancer(servers, 15);
+		assertTrue(reb.computeRebalancedParallelism());
+		assertEquals(reb.getRebalancedParallelismCost(),
+				multiReb.getRebalancedParallelismCost());
+	}
+
+	@Test
+	public void testSharedVertexIsNotOverProvisioned() {
+		GG1Server shared = GG1ServerTest.createKingmanEdge1();
+		ArrayList<GG1Server> first = new ArrayList<GG1Server>(Arrays.asList(
+				shared, (GG1Server) GG1ServerTest.createKingmanEdge2()));
+		ArrayList<GG1Server> second = new ArrayList<GG1Server>(Arrays.asList(
+				shared, (GG1Server) GG1ServerTest.createKingmanEdge3()));
+
+		MultiConstraintRebalancer multiReb = new MultiConstraintRebalancer();
+		multiReb.addConstraint(first, 10);
+		multiReb.addConstraint(second, 12);
+		assertTrue(multiReb.computeRebalancedParallelism());
+
+		for (int i = 0; i < 2; i++) {
+			assertTrue(multiReb.isSatisfied(i));
+			assertTrue(multiReb.getRebalancedQueueWait(i) <= multiReb
+					.getMaxTotalQueueWait(i));
+		}
+		assertEquals(3, multiReb.getRebalancedParallelism().size());
+
+		// solving each constraint on its own and taking the maximum
+		// parallelism per group vertex must not be cheaper
+		Map<JobVertexID, Integer> merged = new HashMap<JobVertexID, Integer>();
+		mergeMax(merged, first, 10);
+		mergeMax(merged, second, 12);
+
+		int mergedCost = 0;
+		for (int p : merged.values()) {
+			mergedCost += p;
+		}
+		assertTrue(multiReb.getRebalancedParallelismCost() <= mergedCost);
+	}
+
+	private void mergeMax(Map<JobVertexID, Integer> merged,
+			ArrayList<GG1Server> servers, double maxQueueWaitMillis) {
+
+		Rebalancer reb = new Rebalancer(servers, maxQueueWaitMillis);
+		assertTrue(reb.computeRebalancedParallelism());
+		for (Map.Entry<JobVertexID, Integer> entry : reb
+				.getRebalancedParallelism().entrySet()) {
+			Integer other = merged.get(entry.getKey());
+			merged.put(entry.getKey(), other == null ? entry.getValue()
+					: Math.max(other, entry.getValue()));
+		}
+	}
+
+	@Test
+	public void testMinimumParallelismIsRespected() {
+		GG1Server server = GG1ServerTest.createKingmanEdge1();
+		MultiConstraintRebalancer multiReb = new MultiConstraintRebalancer();
+		multiReb.addConstraint(
+				new ArrayList<GG1Server>(Arrays.asList(server)), 100);
+		multiReb.setMinimumParallelism(server.getGroupVertexID(), 60);
+
+		assertTrue(multiReb.computeRebalancedParallelism());
+		assertEquals(60, (int) multiReb.getRebalancedParallelism().get(
+				server.getGroupVertexID()));
+		assertEquals(10, (int) multiReb.getScalingActions().get(
+				server.getGroupVertexID()));
+	}
+
+	@Test
+	public void testInfeasibleConstraintGetsUpperBounds() {
+		GG1Server server = GG1ServerTest.createKingmanEdge1();
+		MultiConstraintRebalancer multiReb = new MultiConstraintRebalancer();
+		multiReb.addConstraint(
+				new ArrayList<GG1Server>(Arrays.asList(server)), 0.1);
+
+		assertFalse(multiReb.computeRebalancedParallelism());
+		assertFalse(multiReb.isSatisfied(0));
+		assertEquals(server.getUpperBoundParallelism(), (int) multiReb
+				.getRebalancedParallelism().get(server.getGroupVertexID()));
+	}
+}
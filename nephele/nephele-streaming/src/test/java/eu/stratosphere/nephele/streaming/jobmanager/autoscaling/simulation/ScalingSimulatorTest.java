@@ -0,0 +1,98 @@
+package eu.stratosphere.nephele.streaming.jobmanager.autoscaling.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.GroupVertexScalingInfo;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.QosConstraintSummaryRecorder;
+import eu.stratosphere.nephele.streaming.jobmanager.autoscaling.optimization.QueueingModel;
+
+public class ScalingSimulatorTest {
+
+	private static final long DURATION = 180000;
+
+	private static final LoadProfile LOAD_STEP = PiecewiseLinearLoadProfile
+			.step(200, 60000, 1000);
+
+	private ScalingSimulator createSimulator(LoadProfile load, boolean elastic) {
+		ScalingSimulator simulator = new ScalingSimulator(load, 2, 100);
+
+		GroupVertexScalingInfo info = elastic ? new GroupVertexScalingInfo(
+				new JobVertexID(), true, 1, 40, QueueingModel.KINGMAN)
+				: new GroupVertexScalingInfo(new JobVertexID(), 4);
+		simulator.addGroupVertex(new SimulatedGroupVertex(info, 4, 10, 1));
+		simulator.addGroupVertex(new SimulatedGroupVertex(
+				new GroupVertexScalingInfo(new JobVertexID(), 2), 2, 1, 1));
+		return simulator;
+	}
+
+	@Test
+	public void testConstantLoadWithinCapacity() throws IOException {
+		SimulationResult result = createSimulator(
+				PiecewiseLinearLoadProfile.constant(200), true).run(DURATION);
+
+		assertEquals(180, result.getSimulatedSeconds(), 0.001);
+		assertEquals(0, result.getConstraintViolationSeconds(), 0);
+		assertTrue(result.getMeanSequenceLatencyMillis() < 100);
+	}
+
+	@Test
+	public void testSimulationIsDeterministic() throws IOException {
+		SimulationResult first = createSimulator(LOAD_STEP, true).run(DURATION);
+		SimulationResult second = createSimulator(LOAD_STEP, true).run(DURATION);
+
+		assertEquals(first.toString(), second.toString());
+	}
+
+	@Test
+	public void testScaleUpResolvesLoadStep() throws IOException {
+		SimulationResult fixed = createSimulator(LOAD_STEP, false).run(DURATION);
+		SimulationResult elastic = createSimulator(LOAD_STEP, true).run(DURATION);
+
+		// without scaling, the constraint is violated from the load step on
+		assertEquals(0, fixed.getNoOfScalingActions());
+		assertTrue(fixed.getConstraintViolationSeconds() > 110);
+
+		assertTrue(elastic.getNoOfScalingActions() > 0);
+		assertTrue(elastic.getConstraintViolationSeconds() < 20);
+		assertTrue(elastic.getSlotSeconds() > fixed.getSlotSeconds());
+	}
+
+	@Test
+	public void testRecordingCanBeReplayed() throws IOException {
+		File recordingFile = File.createTempFile("scaling_recording", null);
+		recordingFile.deleteOnExit();
+
+		ScalingSimulator simulator = createSimulator(LOAD_STEP, true);
+		simulator.setRecordingFile(recordingFile.getAbsolutePath());
+		SimulationResult simulated = simulator.run(DURATION);
+
+		QosConstraintSummaryRecorder.Recording recording;
+		InputStream in = new FileInputStream(recordingFile);
+		try {
+			recording = QosConstraintSummaryRecorder.readRecording(in);
+		} finally {
+			in.close();
+		}
+
+		assertEquals(1, recording.getConstraints().size());
+		assertEquals(2, recording.getGroupVertexInfos().size());
+		assertEquals(36, recording.getIntervals().size());
+
+		SimulationResult replayed = new RecordingReplayer(recording).replay();
+		assertEquals(simulated.getSimulatedSeconds(),
+				replayed.getSimulatedSeconds(), 0.001);
+		assertEquals(simulated.getSlotSeconds(), replayed.getSlotSeconds(),
+				0.001);
+		assertTrue(replayed.getConstraintViolationSeconds() > 0);
+		assertTrue(replayed.getNoOfScalingActions() > 0);
+	}
+}
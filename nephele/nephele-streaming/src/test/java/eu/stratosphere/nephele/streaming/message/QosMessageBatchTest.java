@@ -0,0 +1,58 @@
+package eu.stratosphere.nephele.streaming.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.streaming.message.qosreport.EdgeLatency;
+import eu.stratosphere.nephele.streaming.message.qosreport.QosReport;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
+
+public class QosMessageBatchTest {
+
+	@Test
+	public void testMessagesOfDifferentTypesAndJobs() throws IOException {
+		JobID firstJob = new JobID();
+		JobID secondJob = new JobID();
+
+		QosReport report = new QosReport(firstJob);
+		QosReporterID.Edge reporterID = QosReporterID.forEdge(new ChannelID());
+		report.addEdgeLatency(new EdgeLatency(reporterID, 2));
+
+		ChainUpdates chainUpdates = new ChainUpdates(secondJob);
+		chainUpdates.getUnchainedEdges().add(reporterID);
+
+		List<AbstractSerializableQosMessage> messages = new ArrayList<AbstractSerializableQosMessage>();
+		messages.add(report);
+		messages.add(chainUpdates);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new QosMessageBatch(messages).write(new DataOutputStream(bytes));
+
+		QosMessageBatch read = new QosMessageBatch();
+		read.read(new DataInputStream(new ByteArrayInputStream(bytes
+				.toByteArray())));
+
+		assertEquals(2, read.getMessages().size());
+		assertTrue(read.getMessages().get(0) instanceof QosReport);
+		assertEquals(firstJob, read.getMessages().get(0).getJobID());
+		assertEquals(1, ((QosReport) read.getMessages().get(0))
+				.getEdgeLatencies().size());
+
+		assertTrue(read.getMessages().get(1) instanceof ChainUpdates);
+		assertEquals(secondJob, read.getMessages().get(1).getJobID());
+		assertEquals(reporterID, ((ChainUpdates) read.getMessages().get(1))
+				.getUnchainedEdges().get(0));
+	}
+}
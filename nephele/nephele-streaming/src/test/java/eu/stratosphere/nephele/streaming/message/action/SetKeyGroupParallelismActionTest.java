@@ -0,0 +1,41 @@
+package eu.stratosphere.nephele.streaming.message.action;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+
+public class SetKeyGroupParallelismActionTest {
+
+	@Test
+	public void testParallelismAndVersionAreSerialized() throws IOException {
+		JobID jobID = new JobID();
+		ExecutionVertexID vertexID = new ExecutionVertexID();
+		GateID gateID = new GateID();
+
+		SetKeyGroupParallelismAction action = new SetKeyGroupParallelismAction(
+				jobID, vertexID, gateID, 7, 42L);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		action.write(new DataOutputStream(bytes));
+
+		SetKeyGroupParallelismAction read = new SetKeyGroupParallelismAction();
+		read.read(new DataInputStream(new ByteArrayInputStream(bytes
+				.toByteArray())));
+
+		assertEquals(jobID, read.getJobID());
+		assertEquals(vertexID, read.getVertexID());
+		assertEquals(gateID, read.getOutputGateID());
+		assertEquals(7, read.getParallelism());
+		assertEquals(42L, read.getVersion());
+	}
+}
@@ -0,0 +1,56 @@
+package eu.stratosphere.nephele.streaming.message.action;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+
+public class SetOutputBufferLifetimeTargetBatchActionTest {
+
+	@Test
+	public void testTargetsShareJobAndVersion() throws IOException {
+		JobID jobID = new JobID();
+		ExecutionVertexID vertexID = new ExecutionVertexID();
+		GateID gateID = new GateID();
+		ChannelID firstChannel = new ChannelID();
+		ChannelID secondChannel = new ChannelID();
+
+		SetOutputBufferLifetimeTargetBatchAction batch = new SetOutputBufferLifetimeTargetBatchAction(
+				jobID, 123456789L);
+		batch.addTarget(vertexID, gateID, firstChannel, 5);
+		batch.addTarget(vertexID, gateID, secondChannel, 300);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		batch.write(new DataOutputStream(bytes));
+
+		SetOutputBufferLifetimeTargetBatchAction read = new SetOutputBufferLifetimeTargetBatchAction();
+		read.read(new DataInputStream(new ByteArrayInputStream(bytes
+				.toByteArray())));
+
+		assertEquals(123456789L, read.getVersion());
+		assertEquals(2, read.getActions().size());
+
+		SetOutputBufferLifetimeTargetAction first = read.getActions().get(0);
+		assertEquals(jobID, first.getJobID());
+		assertEquals(vertexID, first.getVertexID());
+		assertEquals(gateID, first.getOutputGateID());
+		assertEquals(firstChannel, first.getSourceChannelID());
+		assertEquals(5, first.getOutputBufferLifetimeTarget());
+		assertEquals(123456789L, first.getVersion());
+
+		SetOutputBufferLifetimeTargetAction second = read.getActions().get(1);
+		assertEquals(secondChannel, second.getSourceChannelID());
+		assertEquals(300, second.getOutputBufferLifetimeTarget());
+		assertEquals(123456789L, second.getVersion());
+	}
+}
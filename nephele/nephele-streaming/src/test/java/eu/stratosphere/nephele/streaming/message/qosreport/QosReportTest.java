@@ -0,0 +1,256 @@
+package eu.stratosphere.nephele.streaming.message.qosreport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.message.action.VertexQosReporterConfig;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosReporterID;
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.Sample;
+
+public class QosReportTest {
+
+	private JobVertexID groupVertexID;
+
+	private QosReport report;
+
+	@Before
+	public void setup() {
+		this.groupVertexID = new JobVertexID();
+		this.report = new QosReport(new JobID());
+	}
+
+	private VertexStatistics addMember(double interReadTime,
+			double interArrivalTime, double consumptionRate,
+			double emissionRate) {
+
+		ExecutionVertexID vertexID = new ExecutionVertexID();
+		GateID inputGateID = new GateID();
+		GateID outputGateID = new GateID();
+
+		VertexQosReporterConfig config = new VertexQosReporterConfig(
+				this.groupVertexID, vertexID, null, null, 0, inputGateID, 0,
+				outputGateID, null, 0, "test");
+
+		VertexStatistics stats = new VertexStatistics(
+				QosReporterID.forVertex(vertexID, inputGateID, outputGateID),
+				new Sample(1000, 10, interReadTime, 1), consumptionRate,
+				emissionRate, new Sample(1000, 10, interArrivalTime, 1));
+
+		this.report.addVertexStatistics(stats,
+				new VertexStatisticsGroupKey(config));
+		return stats;
+	}
+
+	private VertexStatistics addMember(double interReadTime,
+			double inputBlockedFraction, double outputBlockedFraction) {
+
+		VertexStatistics stats = addMember(interReadTime, 1, 100, 100);
+		stats.setInputBlockedFraction(inputBlockedFraction);
+		stats.setOutputBlockedFraction(outputBlockedFraction);
+		return stats;
+	}
+
+	private QosReport roundTrip(QosReport toWrite) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		toWrite.write(new DataOutputStream(bytes));
+
+		QosReport read = new QosReport();
+		read.read(new DataInputStream(new ByteArrayInputStream(bytes
+				.toByteArray())));
+		return read;
+	}
+
+	@Test
+	public void testVertexStatisticsOfGroupAreKeptPerMember() throws IOException {
+		VertexStatistics first = addMember(1, 2, 100, 50);
+		VertexStatistics second = addMember(3, 4, 300, 150);
+
+		QosReport read = roundTrip(this.report);
+		assertEquals(2, read.getVertexStatistics().size());
+
+		HashMap<QosReporterID.Vertex, VertexStatistics> byReporter = new HashMap<QosReporterID.Vertex, VertexStatistics>();
+		for (VertexStatistics stats : read.getVertexStatistics()) {
+			byReporter.put(stats.getReporterID(), stats);
+		}
+
+		VertexStatistics readFirst = byReporter.get(first.getReporterID());
+		VertexStatistics readSecond = byReporter.get(second.getReporterID());
+
+		// vertex latency and rates are kept for each member, so that their
+		// skew can be evaluated by the Qos manager
+		assertEquals(1, readFirst.getInputGateInterReadTimeMillis().getMean(), 0);
+		assertEquals(3, readSecond.getInputGateInterReadTimeMillis().getMean(), 0);
+		assertEquals(100, readFirst.getRecordsConsumedPerSec(), 0.0001);
+		assertEquals(300, readSecond.getRecordsConsumedPerSec(), 0.0001);
+		assertEquals(50, readFirst.getRecordsEmittedPerSec(), 0.0001);
+		assertEquals(150, readSecond.getRecordsEmittedPerSec(), 0.0001);
+
+		// the record inter-arrival time is kept for each member as well, as
+		// fusing them would inflate the CV by the variance between the members
+		Sample firstInterArrivalTime = readFirst.getInterArrivalTimeMillis();
+		Sample secondInterArrivalTime = readSecond.getInterArrivalTimeMillis();
+		assertEquals(2, firstInterArrivalTime.getMean(), 0.0001);
+		assertEquals(4, secondInterArrivalTime.getMean(), 0.0001);
+		assertEquals(1, firstInterArrivalTime.getVariance(), 0.0001);
+		assertEquals(1, secondInterArrivalTime.getVariance(), 0.0001);
+		assertEquals(10, firstInterArrivalTime.getNoOfSamplePoints());
+		assertEquals(10, secondInterArrivalTime.getNoOfSamplePoints());
+	}
+
+	@Test
+	public void testGroupedReportIsSmaller() throws IOException {
+		QosReport ungrouped = new QosReport(new JobID());
+		for (int i = 0; i < 8; i++) {
+			ungrouped.addVertexStatistics(addMember(i, i, i, i));
+		}
+
+		ByteArrayOutputStream groupedBytes = new ByteArrayOutputStream();
+		this.report.write(new DataOutputStream(groupedBytes));
+		ByteArrayOutputStream ungroupedBytes = new ByteArrayOutputStream();
+		ungrouped.write(new DataOutputStream(ungroupedBytes));
+
+		// each member after the first saves the group size, the gate
+		// combination and the sampling duration of the inter-arrival time
+		assertEquals(7 * 5, ungroupedBytes.size() - groupedBytes.size());
+		assertEquals(8, roundTrip(ungrouped).getVertexStatistics().size());
+	}
+
+	@Test
+	public void testBlockedFractionsOfGroupAreKeptPerMember() throws IOException {
+		VertexStatistics first = addMember(1, 0.1, 0.5);
+		VertexStatistics second = addMember(2, 0.3, 0.7);
+
+		QosReport read = roundTrip(this.report);
+		assertEquals(2, read.getVertexStatistics().size());
+		for (VertexStatistics stats : read.getVertexStatistics()) {
+			VertexStatistics written = stats.getReporterID().equals(
+					first.getReporterID()) ? first : second;
+			assertEquals(written.getInputBlockedFraction(),
+					stats.getInputBlockedFraction(), 0.0001);
+			assertEquals(written.getOutputBlockedFraction(),
+					stats.getOutputBlockedFraction(), 0.0001);
+		}
+	}
+
+	@Test
+	public void testBlockedFraction() {
+		assertEquals(0.25, VertexStatistics.toBlockedFraction(500000000, 2), 0);
+		assertEquals(1, VertexStatistics.toBlockedFraction(3000000000L, 2), 0);
+		assertEquals(0, VertexStatistics.toBlockedFraction(1000, 0), 0);
+	}
+
+	private int serializedSize(QosReport toWrite) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		toWrite.write(new DataOutputStream(bytes));
+		return bytes.size();
+	}
+
+	private QosReport createEdgeReport(JobID jobID, QosReporterID.Edge... reporterIDs) {
+		QosReport edgeReport = new QosReport(jobID);
+		for (QosReporterID.Edge reporterID : reporterIDs) {
+			edgeReport.addEdgeLatency(new EdgeLatency(reporterID, 12.5));
+			edgeReport.addEdgeStatistics(new EdgeStatistics(reporterID, 10,
+					5, 100, 2000));
+		}
+		return edgeReport;
+	}
+
+	@Test
+	public void testReporterIDsAreReplacedWithHandles() throws IOException {
+		JobID jobID = new JobID();
+		QosReporterID.Edge edge = QosReporterID.forEdge(new ChannelID());
+		QosReporterIDEncoder encoder = new QosReporterIDEncoder();
+
+		QosReport first = createEdgeReport(jobID, edge);
+		first.encodeReporterIDs(encoder);
+		int definingSize = serializedSize(first);
+		roundTrip(first);
+
+		QosReport second = createEdgeReport(jobID, edge);
+		second.encodeReporterIDs(encoder);
+		assertTrue(serializedSize(second) < definingSize);
+
+		QosReport read = roundTrip(second);
+		assertEquals(1, read.getEdgeLatencies().size());
+		EdgeLatency latency = read.getEdgeLatencies().iterator().next();
+		assertEquals(edge, latency.getReporterID());
+		assertEquals(12.5, latency.getEdgeLatency(), 0);
+
+		EdgeStatistics stats = read.getEdgeStatistics().iterator().next();
+		assertEquals(edge, stats.getReporterID());
+		assertEquals(2000, stats.getRecordsPerSecond(), 0);
+
+		QosReporterIDDecoder.releaseDecoders(jobID);
+	}
+
+	@Test
+	public void testRecordsWithUnknownHandlesAreDropped() throws IOException {
+		JobID jobID = new JobID();
+		QosReporterID.Edge known = QosReporterID.forEdge(new ChannelID());
+		QosReporterID.Edge lost = QosReporterID.forEdge(new ChannelID());
+		QosReporterIDEncoder encoder = new QosReporterIDEncoder();
+
+		// the report defining the handle of the lost reporter is not delivered
+		createEdgeReport(jobID, lost).encodeReporterIDs(encoder);
+
+		QosReport report = createEdgeReport(jobID, known, lost);
+		report.encodeReporterIDs(encoder);
+
+		QosReport read = roundTrip(report);
+		assertEquals(1, read.getEdgeLatencies().size());
+		assertEquals(known, read.getEdgeLatencies().iterator().next()
+				.getReporterID());
+		assertEquals(1, read.getEdgeStatistics().size());
+
+		QosReporterIDDecoder.releaseDecoders(jobID);
+	}
+
+	@Test
+	public void testReplacementEncoderRedefinesReportersAndReleasesDecoder()
+			throws IOException {
+		JobID jobID = new JobID();
+		QosReporterID.Edge edge = QosReporterID.forEdge(new ChannelID());
+		QosReporterIDEncoder encoder = new QosReporterIDEncoder();
+
+		QosReport first = createEdgeReport(jobID, edge);
+		first.encodeReporterIDs(encoder);
+		roundTrip(first);
+		assertEquals(edge, QosReporterIDDecoder.getDecoder(jobID,
+				encoder.getDictionaryID()).resolve(0));
+
+		long now = System.currentTimeMillis();
+		assertFalse(encoder.needsReplacement(now));
+		assertTrue(encoder.needsReplacement(now
+				+ QosReporterIDEncoder.RESYNC_INTERVAL));
+
+		QosReporterIDEncoder replacement = new QosReporterIDEncoder(encoder);
+		QosReport second = createEdgeReport(jobID, edge);
+		second.encodeReporterIDs(replacement);
+		QosReport read = roundTrip(second);
+		assertEquals(edge, read.getEdgeLatencies().iterator().next()
+				.getReporterID());
+
+		// the decoder of the superseded encoder has been released
+		assertNull(QosReporterIDDecoder.getDecoder(jobID,
+				encoder.getDictionaryID()).resolve(0));
+
+		QosReporterIDDecoder.releaseDecoders(jobID);
+	}
+}
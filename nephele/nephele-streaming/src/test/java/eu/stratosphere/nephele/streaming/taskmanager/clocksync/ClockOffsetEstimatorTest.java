@@ -0,0 +1,81 @@
+package eu.stratosphere.nephele.streaming.taskmanager.clocksync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClockOffsetEstimatorTest {
+
+	private ClockOffsetEstimator estimator;
+
+	@Before
+	public void setup() {
+		this.estimator = new ClockOffsetEstimator();
+	}
+
+	/**
+	 * Simulates a measurement against a reference clock that is ahead of the
+	 * local clock by (offset + drift * localTime), with the given one-way
+	 * delays.
+	 */
+	private void measure(long localTime, long offset, double drift,
+			long requestDelay, long responseDelay) {
+
+		long originate = localTime;
+		long receive = toReference(originate + requestDelay, offset, drift);
+		long transmit = receive + 10;
+		long destination = originate + requestDelay + 10 + responseDelay;
+
+		this.estimator.addMeasurement(originate, receive, transmit,
+				destination);
+	}
+
+	private long toReference(long localTime, long offset, double drift) {
+		return localTime + offset + Math.round(drift * localTime);
+	}
+
+	@Test
+	public void testNoEstimate() {
+		assertFalse(this.estimator.hasEstimate());
+		assertEquals(1234, this.estimator.toReferenceTime(1234));
+		assertEquals(-1, this.estimator.getMaxError());
+	}
+
+	@Test
+	public void testConstantOffsetWithSymmetricDelay() {
+		measure(1000000, -5000, 0, 200, 200);
+
+		assertTrue(this.estimator.hasEstimate());
+		assertEquals(-5000, this.estimator.getOffset(1000000));
+		assertEquals(200, this.estimator.getMaxError());
+	}
+
+	@Test
+	public void testHighDelaySamplesAreDiscarded() {
+		for (int i = 0; i < 8; i++) {
+			measure(1000000 * (i + 1), 3000, 0, 100, 100);
+		}
+		// strongly asymmetric delay would shift the offset by 20ms
+		measure(9000000, 3000, 0, 40000, 100);
+
+		assertEquals(3000, this.estimator.getOffset(9000000));
+	}
+
+	@Test
+	public void testDriftIsEstimated() {
+		double drift = 50e-6;
+		for (int i = 0; i < 16; i++) {
+			measure(2000000L * i, 1000, drift, 100, 100);
+		}
+
+		assertEquals(drift, this.estimator.getDrift(), 1e-6);
+
+		// extrapolate 10 seconds beyond the last measurement
+		long localTime = 2000000L * 15 + 10000000L;
+		assertEquals(toReference(localTime, 1000, drift),
+				this.estimator.toReferenceTime(localTime), 5);
+	}
+}
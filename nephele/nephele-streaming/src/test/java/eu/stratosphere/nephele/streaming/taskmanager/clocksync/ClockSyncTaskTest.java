@@ -0,0 +1,82 @@
+package eu.stratosphere.nephele.streaming.taskmanager.clocksync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.nephele.plugins.PluginCommunication;
+import eu.stratosphere.nephele.streaming.message.ClockSyncMessage;
+import eu.stratosphere.nephele.streaming.util.MicrosecondClock;
+
+public class ClockSyncTaskTest {
+
+	/**
+	 * Fails the first requests with a runtime exception and answers the
+	 * following ones like a job manager with the same clock.
+	 */
+	private static class FailingJobManager implements PluginCommunication {
+
+		private final AtomicInteger noOfRequests = new AtomicInteger();
+
+		private final int noOfFailingRequests;
+
+		public FailingJobManager(int noOfFailingRequests) {
+			this.noOfFailingRequests = noOfFailingRequests;
+		}
+
+		@Override
+		public void sendData(IOReadableWritable data) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public IOReadableWritable requestData(IOReadableWritable data)
+				throws IOException {
+
+			if (this.noOfRequests.incrementAndGet() <= this.noOfFailingRequests) {
+				throw new IllegalStateException("Job manager component not ready");
+			}
+
+			ClockSyncMessage response = new ClockSyncMessage(
+					((ClockSyncMessage) data).getOriginateTimestamp());
+			long now = MicrosecondClock.currentTimeMicros();
+			response.setReceiveTimestamp(now);
+			response.setTransmitTimestamp(now);
+			return response;
+		}
+	}
+
+	@Test
+	public void testTaskKeepsRunningAfterRuntimeException() throws Exception {
+		FailingJobManager jobManager = new FailingJobManager(2);
+		ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+
+		ScheduledExecutorService executor = Executors
+				.newSingleThreadScheduledExecutor();
+		try {
+			executor.scheduleAtFixedRate(new ClockSyncTask(jobManager,
+					estimator), 0, 5, TimeUnit.MILLISECONDS);
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!estimator.hasEstimate()
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertTrue(jobManager.noOfRequests.get() > 2);
+		assertTrue(estimator.hasEstimate());
+		assertEquals(0, estimator.getOffset(MicrosecondClock
+				.currentTimeMicros()), 1000);
+	}
+}
@@ -0,0 +1,248 @@
+package eu.stratosphere.nephele.streaming.taskmanager.qosmanager;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetAddress;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.io.DistributionPattern;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobVertexID;
+import eu.stratosphere.nephele.streaming.JobGraphLatencyConstraint;
+import eu.stratosphere.nephele.streaming.JobGraphSequence;
+import eu.stratosphere.nephele.streaming.message.qosreport.VertexStatistics;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.EdgeQosData;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosEdge;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGate;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGraph;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGraphMember;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGroupEdge;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosGroupVertex;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.QosVertex;
+import eu.stratosphere.nephele.streaming.taskmanager.qosmodel.VertexQosData;
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.Sample;
+
+/**
+ * Tests that {@link QosConstraintViolationFinder} only sums up those sequences
+ * again that contain a member whose Qos data has changed since the previous
+ * scan.
+ *
+ * The constrained sequence is a -> b -> c, where a, b and c have 2, 3 and 2
+ * members that are wired bipartitely, hence there are 2 * 3 * 2 = 12
+ * sequences. The constraint is violated by all of them.
+ */
+public class QosConstraintViolationFinderRescanTest {
+
+	private QosGroupVertex a;
+
+	private QosGroupVertex b;
+
+	private QosGroupVertex c;
+
+	private QosGraph qosGraph;
+
+	private JobGraphLatencyConstraint constraint;
+
+	private int noOfViolations;
+
+	private final QosConstraintViolationListener listener = new QosConstraintViolationListener() {
+		@Override
+		public void handleViolatedConstraint(
+				JobGraphLatencyConstraint constraint,
+				List<QosGraphMember> sequenceMembers,
+				QosSequenceLatencySummary qosSummary) {
+			noOfViolations++;
+		}
+	};
+
+	@Before
+	public void setUp() throws Exception {
+		this.a = createGroupVertex("a", 2);
+		this.b = createGroupVertex("b", 3);
+		this.c = createGroupVertex("c", 2);
+		wire(new QosGroupEdge(DistributionPattern.BIPARTITE, this.a, this.b,
+				0, 0));
+		wire(new QosGroupEdge(DistributionPattern.BIPARTITE, this.b, this.c,
+				0, 0));
+
+		JobGraphSequence sequence = new JobGraphSequence();
+		sequence.addEdge(this.a.getJobVertexID(), 0, this.b.getJobVertexID(),
+				0);
+		sequence.addVertex(this.b.getJobVertexID(), "b", 0, 0);
+		sequence.addEdge(this.b.getJobVertexID(), 0, this.c.getJobVertexID(),
+				0);
+		this.constraint = new JobGraphLatencyConstraint(sequence, 1);
+		this.qosGraph = new QosGraph(this.a, this.constraint);
+
+		for (QosVertex member : this.a.getMembers()) {
+			member.getQosData().prepareForReportsOnOutputGate(0);
+			member.getQosData().addVertexStatisticsMeasurement(-1, 0, 2000,
+					new VertexStatistics(null, 50));
+			for (QosEdge edge : member.getOutputGate(0).getEdges()) {
+				edge.getQosData().addLatencyMeasurement(2000, 10);
+			}
+		}
+		for (QosVertex member : this.b.getMembers()) {
+			member.getQosData().prepareForReportsOnGateCombination(0, 0);
+			addVertexMeasurement(member, 2000, 5);
+			for (QosEdge edge : member.getOutputGate(0).getEdges()) {
+				edge.getQosData().addLatencyMeasurement(2000, 20);
+			}
+		}
+		for (QosVertex member : this.c.getMembers()) {
+			member.getQosData().prepareForReportsOnInputGate(0);
+			member.getQosData().addVertexStatisticsMeasurement(
+					0,
+					-1,
+					2000,
+					new VertexStatistics(null, new Sample(1000, 100, 1, 0),
+							50, new Sample(1000, 100, 1.0 / 50, 0)));
+		}
+	}
+
+	@Test
+	public void testUnchangedSequencesAreNotSummedAgain() {
+		QosConstraintViolationFinder finder = createFinder(0);
+
+		QosConstraintViolationReport report = scan(finder);
+		assertEquals(12, finder.getNoOfSummedSequences());
+		assertEquals(12, this.noOfViolations);
+		assertEquals(12, report.getNoOfSequences());
+		assertEquals(35, report.getMeanSequenceLatency(), 1e-9);
+
+		report = scan(finder);
+		assertEquals(0, finder.getNoOfSummedSequences());
+		assertEquals(0, this.noOfViolations);
+		assertSameReport(scan(createFinder(0)), report);
+
+		// 2 sequences lead over the edge b0 -> c0
+		QosEdge edge = this.b.getMember(0).getOutputGate(0).getEdge(0);
+		edge.getQosData().addLatencyMeasurement(3000, 80);
+		report = scan(finder);
+		assertEquals(2, finder.getNoOfSummedSequences());
+		assertEquals(2, this.noOfViolations);
+		assertEquals(10 + 5 + 50, report.getMaxSequenceLatency(), 1e-9);
+		assertSameReport(scan(createFinder(0)), report);
+
+		// 4 sequences lead over the vertex b1
+		addVertexMeasurement(this.b.getMember(1), 3000, 65);
+		report = scan(finder);
+		assertEquals(4, finder.getNoOfSummedSequences());
+		assertEquals(4, this.noOfViolations);
+		assertSameReport(scan(createFinder(0)), report);
+
+		report = scan(finder);
+		assertEquals(0, finder.getNoOfSummedSequences());
+		assertSameReport(scan(createFinder(0)), report);
+	}
+
+	@Test
+	public void testSequencesOfInactiveMembersAreDroppedAndRestored() {
+		// only the Qos data of the edge a0 -> b0 is older than 1500
+		QosEdge staleEdge = this.a.getMember(0).getOutputGate(0).getEdge(0);
+		staleEdge.setQosData(new EdgeQosData(staleEdge));
+		staleEdge.getQosData().setIsInChain(true);
+		staleEdge.getQosData().addLatencyMeasurement(1000, 10);
+
+		QosConstraintViolationFinder finder = createFinder(0);
+		assertEquals(12, scan(finder).getNoOfSequences());
+
+		// dropping the stale Qos data removes the 2 sequences over the edge
+		// without summing up any other sequence
+		finder.setInactivityThresholdTime(1500);
+		QosConstraintViolationReport report = scan(finder);
+		assertEquals(10, report.getNoOfSequences());
+		assertEquals(0, finder.getNoOfSummedSequences());
+		assertSameReport(scan(createFinder(1500)), report);
+
+		staleEdge.getQosData().addLatencyMeasurement(2000, 10);
+		report = scan(finder);
+		assertEquals(12, report.getNoOfSequences());
+		assertEquals(2, finder.getNoOfSummedSequences());
+		assertSameReport(scan(createFinder(1500)), report);
+	}
+
+	private QosConstraintViolationFinder createFinder(
+			long inactivityThresholdTime) {
+
+		return new QosConstraintViolationFinder(this.constraint.getID(),
+				this.qosGraph, this.listener, inactivityThresholdTime);
+	}
+
+	private QosConstraintViolationReport scan(
+			QosConstraintViolationFinder finder) {
+
+		this.noOfViolations = 0;
+		return finder.scanSequencesForQosConstraintViolations();
+	}
+
+	private void assertSameReport(QosConstraintViolationReport expected,
+			QosConstraintViolationReport actual) {
+
+		assertEquals(expected.getNoOfSequences(), actual.getNoOfSequences());
+		assertEquals(expected.getNoOfSequencesAboveConstraint(),
+				actual.getNoOfSequencesAboveConstraint());
+		assertEquals(expected.getNoOfSequencesBelowConstraint(),
+				actual.getNoOfSequencesBelowConstraint());
+		assertEquals(expected.getMinSequenceLatency(),
+				actual.getMinSequenceLatency(), 1e-9);
+		assertEquals(expected.getMaxSequenceLatency(),
+				actual.getMaxSequenceLatency(), 1e-9);
+		assertEquals(expected.getMeanSequenceLatency(),
+				actual.getMeanSequenceLatency(), 1e-9);
+	}
+
+	private void addVertexMeasurement(QosVertex member, long timestamp,
+			double latency) {
+
+		member.getQosData().addVertexStatisticsMeasurement(
+				0,
+				0,
+				timestamp,
+				new VertexStatistics(null, new Sample(1000, 100, latency, 0),
+						50, 50, new Sample(1000, 100, 1.0 / 50, 0)));
+	}
+
+	private QosGroupVertex createGroupVertex(String name, int noOfMembers)
+			throws Exception {
+
+		QosGroupVertex groupVertex = new QosGroupVertex(new JobVertexID(), name);
+		for (int i = 0; i < noOfMembers; i++) {
+			QosVertex member = new QosVertex(new ExecutionVertexID(), name
+					+ i, new InstanceConnectionInfo(InetAddress.getLocalHost(),
+					1, 1), i);
+			member.setQosData(new VertexQosData(member));
+			groupVertex.setGroupMember(member);
+		}
+		return groupVertex;
+	}
+
+	private void wire(QosGroupEdge groupEdge) {
+		for (QosVertex source : groupEdge.getSourceVertex().getMembers()) {
+			QosGate outputGate = new QosGate(new GateID(), 0);
+			source.setOutputGate(outputGate);
+
+			for (QosVertex target : groupEdge.getTargetVertex().getMembers()) {
+				QosGate inputGate = target.getInputGate(0);
+				if (inputGate == null) {
+					inputGate = new QosGate(new GateID(), 0);
+					target.setInputGate(inputGate);
+				}
+
+				QosEdge edge = new QosEdge(new ChannelID(), new ChannelID(),
+						outputGate.getNumberOfEdges(),
+						inputGate.getNumberOfEdges());
+				edge.setInputGate(inputGate);
+				edge.setOutputGate(outputGate);
+				edge.setQosData(new EdgeQosData(edge));
+				edge.getQosData().setIsInChain(true);
+			}
+		}
+	}
+}
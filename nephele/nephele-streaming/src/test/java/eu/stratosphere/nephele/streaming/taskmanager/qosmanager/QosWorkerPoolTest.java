@@ -0,0 +1,83 @@
+package eu.stratosphere.nephele.streaming.taskmanager.qosmanager;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link QosWorkerPool}.
+ */
+public class QosWorkerPoolTest {
+
+	private QosWorkerPool workers;
+
+	@Before
+	public void setup() {
+		this.workers = new QosWorkerPool("QosWorkerPoolTest", 3);
+	}
+
+	@After
+	public void tearDown() {
+		this.workers.shutdown();
+	}
+
+	/**
+	 * Tasks submitted to the same worker must be applied in submission order,
+	 * and must all be visible after awaitQuiescence() returns.
+	 */
+	@Test
+	public void testTasksOfWorkerAreAppliedInOrder() throws Exception {
+		final List<List<Integer>> applied = new ArrayList<List<Integer>>();
+		for (int i = 0; i < this.workers.getNoOfWorkers(); i++) {
+			applied.add(new ArrayList<Integer>());
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			final int workerIndex = i % this.workers.getNoOfWorkers();
+			final int value = i;
+			this.workers.execute(workerIndex, new Runnable() {
+				@Override
+				public void run() {
+					applied.get(workerIndex).add(value);
+				}
+			});
+		}
+
+		this.workers.awaitQuiescence();
+
+		for (int i = 0; i < this.workers.getNoOfWorkers(); i++) {
+			List<Integer> values = applied.get(i);
+			assertEquals(1000 / 3 + (i < 1000 % 3 ? 1 : 0), values.size());
+			for (int j = 0; j < values.size(); j++) {
+				assertEquals(i + j * 3, values.get(j).intValue());
+			}
+		}
+	}
+
+	@Test
+	public void testInvokeAllPreservesTaskOrder() throws Exception {
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 10; i++) {
+			final int value = i;
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return value * value;
+				}
+			});
+		}
+
+		List<Integer> results = this.workers.invokeAll(tasks);
+
+		assertEquals(10, results.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i * i, results.get(i).intValue());
+		}
+	}
+}
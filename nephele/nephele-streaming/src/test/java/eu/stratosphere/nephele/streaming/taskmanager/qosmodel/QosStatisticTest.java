@@ -1,9 +1,12 @@
 package eu.stratosphere.nephele.streaming.taskmanager.qosmodel;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Random;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Before;
@@ -185,6 +188,84 @@ public class QosStatisticTest {
 		assertVariance(this.qosStatisticWithVar, total.getVariance());
 	}
 
+	@Test
+	public void testOldestAndNewestTimestampOverfull() {
+		for (int i = 1; i <= 10; i++) {
+			this.qosStatistic.addValue(i * 10, i);
+		}
+
+		assertEquals(4, this.qosStatistic.getOldestTimestamp());
+		assertEquals(10, this.qosStatistic.getNewestTimestamp());
+		assertEquals(40.0, this.qosStatistic.getOldestValue().getMean(), 0);
+		assertEquals(100.0, this.qosStatistic.getNewestValue().getMean(), 0);
+		assertMean(this.qosStatistic, 70);
+	}
+
+	@Test
+	public void testPrimitiveAddValueWithVariance() {
+		this.qosStatisticWithVar.addValue(18, 0, 2, 1);
+		this.qosStatisticWithVar.addValue(15, 0, 3, 2);
+		this.qosStatisticWithVar.addValue(35, 0, 4, 3);
+
+		assertMean(this.qosStatisticWithVar, 24.555555555);
+		assertVariance(this.qosStatisticWithVar, 99.52778);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddStaleValue() {
+		this.qosStatistic.addValue(1, 5);
+		this.qosStatistic.addValue(2, 5);
+	}
+
+	/**
+	 * Feeds the same random stream of values into a statistic and into a
+	 * straightforward recomputation over a linked list of the values in the
+	 * window (the computation the ring buffer has replaced), and checks that
+	 * both yield the same mean and variance after every value.
+	 */
+	@Test
+	public void testRingBufferMatchesRecomputationOverWindow() {
+		Random random = new Random(42);
+		int windowSize = 5;
+		QosStatistic statistic = new QosStatistic(windowSize, true);
+		LinkedList<QosValue> window = new LinkedList<QosValue>();
+
+		for (int i = 1; i <= 1000; i++) {
+			QosValue value = createQosValue(i, random.nextDouble() * 100,
+					random.nextDouble() * 50, 2 + random.nextInt(20));
+			statistic.addValue(value);
+			window.add(value);
+			if (window.size() > windowSize) {
+				window.removeFirst();
+			}
+
+			int sumOfWeights = 0;
+			double sumOfWeightedMeans = 0;
+			for (QosValue windowValue : window) {
+				sumOfWeights += windowValue.getWeight();
+				sumOfWeightedMeans += windowValue.getWeight()
+						* windowValue.getMean();
+			}
+			double mean = sumOfWeightedMeans / sumOfWeights;
+
+			double sumOfSquares = 0;
+			for (QosValue windowValue : window) {
+				double meanDiff = windowValue.getMean() - mean;
+				sumOfSquares += (windowValue.getWeight() - 1)
+						* windowValue.getVariance() + meanDiff * meanDiff
+						* windowValue.getWeight();
+			}
+			double variance = sumOfSquares / (sumOfWeights - 1);
+
+			assertMean(statistic, mean);
+			assertVariance(statistic, variance);
+			assertEquals(window.getFirst().getTimestamp(),
+					statistic.getOldestTimestamp());
+			assertEquals(window.getLast().getTimestamp(),
+					statistic.getNewestTimestamp());
+		}
+	}
+
 	private QosValue createQosValueFromDataset(long timestamp, double[] dataset) {
 		BernoulliSampler sampler = new BernoulliSampler(0.1);
 		for (double val : dataset) {
@@ -0,0 +1,59 @@
+package eu.stratosphere.nephele.streaming.taskmanager.qosreporter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.BernoulliSampleDesign;
+
+public class BernoulliSampleDesignTest {
+
+	private int runInterval(BernoulliSampleDesign design, int trials) {
+		int samples = 0;
+		for (int i = 0; i < trials; i++) {
+			if (design.shouldSample()) {
+				samples++;
+			}
+		}
+		design.reset();
+		return samples;
+	}
+
+	@Test
+	public void testFixedProbabilityWithoutTarget() {
+		BernoulliSampleDesign design = new BernoulliSampleDesign(0.1);
+		runInterval(design, 100000);
+		assertEquals(0.1, design.getSamplingProbability(), 0);
+	}
+
+	@Test
+	public void testProbabilityIsLoweredOnHighRates() {
+		BernoulliSampleDesign design = new BernoulliSampleDesign(0.1, 100);
+		runInterval(design, 1000000);
+		assertEquals(1e-4, design.getSamplingProbability(), 1e-9);
+
+		int samples = runInterval(design, 1000000);
+		// expected 100 samples, standard deviation 10
+		assertEquals(100, samples, 60);
+	}
+
+	@Test
+	public void testProbabilityIsRaisedOnLowRates() {
+		BernoulliSampleDesign design = new BernoulliSampleDesign(0.1, 100);
+		runInterval(design, 50);
+		assertEquals(1, design.getSamplingProbability(), 0);
+		assertEquals(50, runInterval(design, 50));
+	}
+
+	@Test
+	public void testProbabilityFollowsRateChanges() {
+		BernoulliSampleDesign design = new BernoulliSampleDesign(0.1, 100);
+		runInterval(design, 1000);
+		assertEquals(0.1, design.getSamplingProbability(), 1e-9);
+
+		for (int i = 0; i < 20; i++) {
+			runInterval(design, 10000);
+		}
+		assertEquals(0.01, design.getSamplingProbability(), 1e-4);
+	}
+}
@@ -0,0 +1,142 @@
+package eu.stratosphere.nephele.streaming.taskmanager.qosreporter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.streaming.taskmanager.qosreporter.sampling.QuantileSketch;
+
+public class QuantileSketchTest {
+
+	private static final double EPSILON = 2 * QuantileSketch.RELATIVE_ACCURACY;
+
+	private QuantileSketch sketch;
+
+	@Before
+	public void setup() {
+		this.sketch = new QuantileSketch();
+	}
+
+	@Test
+	public void testEmptySketch() {
+		assertEquals(0, this.sketch.getCount());
+		assertEquals(-1, this.sketch.getQuantile(0.5), 0);
+	}
+
+	@Test
+	public void testQuantilesAreWithinRelativeAccuracy() {
+		for (int i = 1; i <= 1000; i++) {
+			this.sketch.add(i);
+		}
+
+		assertEquals(1000, this.sketch.getCount());
+		assertRelativelyEquals(500, this.sketch.getQuantile(0.5));
+		assertRelativelyEquals(950, this.sketch.getQuantile(0.95));
+		assertRelativelyEquals(990, this.sketch.getQuantile(0.99));
+		assertRelativelyEquals(1000, this.sketch.getQuantile(1));
+	}
+
+	@Test
+	public void testZeroValues() {
+		for (int i = 0; i < 10; i++) {
+			this.sketch.add(0);
+		}
+		this.sketch.add(100);
+
+		assertEquals(0, this.sketch.getQuantile(0.5), 0);
+		assertRelativelyEquals(100, this.sketch.getQuantile(1));
+	}
+
+	@Test
+	public void testMerge() {
+		QuantileSketch other = new QuantileSketch();
+		for (int i = 1; i <= 500; i++) {
+			this.sketch.add(i);
+			other.add(i + 500);
+		}
+		other.add(0);
+
+		this.sketch.merge(other);
+		assertEquals(1001, this.sketch.getCount());
+		assertRelativelyEquals(500, this.sketch.getQuantile(0.5));
+		assertRelativelyEquals(990, this.sketch.getQuantile(0.99));
+	}
+
+	@Test
+	public void testRescale() {
+		for (int i = 1; i <= 1000; i++) {
+			this.sketch.add(i);
+		}
+
+		QuantileSketch rescaled = this.sketch.rescale(10);
+		assertEquals(1000, rescaled.getCount());
+		assertRelativelyEquals(9900, rescaled.getQuantile(0.99));
+	}
+
+	@Test
+	public void testSerialization() throws IOException {
+		this.sketch.add(0);
+		for (int i = 1; i <= 1000; i++) {
+			this.sketch.add(i / 10.0);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		this.sketch.write(new DataOutputStream(bytes));
+
+		QuantileSketch deserialized = new QuantileSketch();
+		deserialized.read(new DataInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())));
+
+		assertEquals(this.sketch.getCount(), deserialized.getCount());
+		for (double q = 0; q <= 1; q += 0.05) {
+			assertEquals(this.sketch.getQuantile(q), deserialized.getQuantile(q), 0);
+		}
+	}
+
+	/**
+	 * Feeds the same random stream of latencies into several sketches, which
+	 * are merged like the sketches of different reporters, and checks their
+	 * quantiles against the exact quantiles of the sorted stream.
+	 */
+	@Test
+	public void testMergedSketchesMatchExactQuantiles() {
+		Random random = new Random(42);
+		int noOfValues = 10000;
+		double[] values = new double[noOfValues];
+		QuantileSketch[] reporterSketches = new QuantileSketch[4];
+		for (int i = 0; i < reporterSketches.length; i++) {
+			reporterSketches[i] = new QuantileSketch();
+		}
+
+		for (int i = 0; i < noOfValues; i++) {
+			// exponentially distributed latencies with a mean of 20
+			values[i] = -20 * Math.log(1 - random.nextDouble());
+			reporterSketches[i % reporterSketches.length].add(values[i]);
+		}
+
+		for (QuantileSketch reporterSketch : reporterSketches) {
+			this.sketch.merge(reporterSketch);
+		}
+		Arrays.sort(values);
+
+		assertEquals(noOfValues, this.sketch.getCount());
+		for (double q : new double[] { 0, 0.1, 0.5, 0.9, 0.95, 0.99, 0.999, 1 }) {
+			double exact = values[(int) Math.floor(q * (noOfValues - 1))];
+			assertEquals(exact, this.sketch.getQuantile(q), exact
+					* QuantileSketch.RELATIVE_ACCURACY * 1.000001);
+		}
+	}
+
+	private void assertRelativelyEquals(double expected, double actual) {
+		assertEquals(expected, actual, expected * EPSILON);
+	}
+}
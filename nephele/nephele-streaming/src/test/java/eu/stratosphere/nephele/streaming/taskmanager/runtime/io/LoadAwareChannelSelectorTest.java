@@ -0,0 +1,165 @@
+package eu.stratosphere.nephele.streaming.taskmanager.runtime.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.types.StringRecord;
+
+public class LoadAwareChannelSelectorTest {
+
+	private LoadAwareChannelSelector<StringRecord> selector;
+
+	private long now;
+
+	/**
+	 * Simulates network connections which transmit the queued buffers of each
+	 * channel at a fixed rate. A buffer is queued for every 8 records written
+	 * into a channel.
+	 */
+	private static class SimulatedNetwork implements OutputChannelBacklog {
+
+		private final long[] transmissionNanos;
+
+		private final int[] recordsInBuffer;
+
+		private final int[] queued;
+
+		private final long[] transmitted;
+
+		private final long[] nextTransmissionNanos;
+
+		public SimulatedNetwork(long[] transmissionNanos) {
+			this.transmissionNanos = transmissionNanos;
+			this.recordsInBuffer = new int[transmissionNanos.length];
+			this.queued = new int[transmissionNanos.length];
+			this.transmitted = new long[transmissionNanos.length];
+			this.nextTransmissionNanos = new long[transmissionNanos.length];
+		}
+
+		public void recordWritten(int channel, long now) {
+			if (++this.recordsInBuffer[channel] == 8) {
+				this.recordsInBuffer[channel] = 0;
+				if (this.queued[channel]++ == 0) {
+					this.nextTransmissionNanos[channel] = now
+							+ this.transmissionNanos[channel];
+				}
+			}
+			advance(now);
+		}
+
+		public void advance(long now) {
+			for (int i = 0; i < this.queued.length; i++) {
+				while (this.queued[i] > 0
+						&& this.nextTransmissionNanos[i] <= now) {
+					this.queued[i]--;
+					this.transmitted[i]++;
+					this.nextTransmissionNanos[i] += this.transmissionNanos[i];
+				}
+			}
+		}
+
+		@Override
+		public int getNumberOfQueuedNetworkBuffers(int channelIndex) {
+			return this.queued[channelIndex];
+		}
+
+		@Override
+		public long getNumberOfTransmittedNetworkBuffers(int channelIndex) {
+			return this.transmitted[channelIndex];
+		}
+	}
+
+	@Before
+	public void setup() {
+		this.selector = new LoadAwareChannelSelector<StringRecord>();
+		this.now = 1000000;
+	}
+
+	/**
+	 * Writes the given number of records, one every 1000ns, where writing a
+	 * record costs the given number of nanoseconds on each channel.
+	 */
+	private int[] writeRecords(int noOfRecords, long[] costs) {
+		int[] recordsPerChannel = new int[costs.length];
+		for (int i = 0; i < noOfRecords; i++) {
+			int channel = this.selector.selectChannels(null, costs.length)[0];
+			recordsPerChannel[channel]++;
+
+			this.now += 1000;
+			this.selector.recordWritten(channel, costs[channel], this.now);
+		}
+		return recordsPerChannel;
+	}
+
+	@Test
+	public void testRoundRobinWithoutCosts() {
+		for (int i = 0; i < 8; i++) {
+			assertEquals(i % 4, this.selector.selectChannels(null, 4)[0]);
+		}
+	}
+
+	@Test
+	public void testEvenCostsAreBalanced() {
+		int[] recordsPerChannel = writeRecords(40000, new long[] { 3000,
+				3000, 3000, 3000 });
+
+		for (int records : recordsPerChannel) {
+			assertEquals(10000, records, 500);
+		}
+	}
+
+	@Test
+	public void testSlowChannelIsAvoided() {
+		int[] recordsPerChannel = writeRecords(40000, new long[] { 2000,
+				2000, 20000, 2000 });
+
+		// the slow channel only gets as many records as it can hand off,
+		// i.e. one every 20000ns
+		assertTrue(recordsPerChannel[2] < 2500);
+		for (int channel : new int[] { 0, 1, 3 }) {
+			assertTrue(recordsPerChannel[channel] > 11000);
+		}
+	}
+
+	@Test
+	public void testBackloggedRemoteChannelIsAvoided() {
+		// writing is equally cheap on all channels, but the connection of
+		// channel 2 only transmits one buffer (8 records) every 100000ns
+		SimulatedNetwork network = new SimulatedNetwork(new long[] { 0, 0,
+				100000, 0 });
+		this.selector.setOutputChannelBacklog(network);
+
+		int[] recordsPerChannel = new int[4];
+		for (int i = 0; i < 40000; i++) {
+			int channel = this.selector.selectChannels(null, 4)[0];
+			recordsPerChannel[channel]++;
+
+			this.now += 1000;
+			network.recordWritten(channel, this.now);
+			this.selector.recordWritten(channel, 1000, this.now);
+		}
+
+		// the backlogged channel only gets about as many records as its
+		// connection transmits, i.e. 8 every 100000ns
+		assertTrue(recordsPerChannel[2] < 3500);
+		assertTrue(network.getNumberOfQueuedNetworkBuffers(2) < 10);
+		for (int channel : new int[] { 0, 1, 3 }) {
+			assertTrue(recordsPerChannel[channel] > 11000);
+		}
+	}
+
+	@Test
+	public void testAddedChannelIsNotFlooded() {
+		writeRecords(40000, new long[] { 3000, 3000, 3000, 3000 });
+
+		int[] recordsPerChannel = writeRecords(50000, new long[] { 3000,
+				3000, 3000, 3000, 3000 });
+		assertEquals(3000, this.selector.getCostPerRecordNanos(4), 10);
+		for (int records : recordsPerChannel) {
+			assertEquals(10000, records, 500);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package eu.stratosphere.nephele.streaming.taskmanager.runtime.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.DefaultChannelSelector;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.OutputGate;
+import eu.stratosphere.nephele.io.RuntimeOutputGate;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedOutputChannelBroker;
+import eu.stratosphere.nephele.io.channels.bytebuffered.NetworkOutputChannel;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.streaming.message.action.SetOutputBufferLifetimeTargetAction;
+import eu.stratosphere.nephele.types.StringRecord;
+
+public class StreamOutputGateTest {
+
+	private JobID jobID;
+
+	private StreamOutputGate<StringRecord> gate;
+
+	private NetworkOutputChannel<StringRecord> channel;
+
+	/**
+	 * Simulates the network connection of a remote channel, which queues a
+	 * buffer for every 8 records and transmits queued buffers either at once
+	 * or never.
+	 */
+	private static class SimulatedConnection implements
+			ByteBufferedOutputChannelBroker {
+
+		private final boolean stalled;
+
+		private int recordsInBuffer;
+
+		private int queued;
+
+		private long transmitted;
+
+		public SimulatedConnection(boolean stalled) {
+			this.stalled = stalled;
+		}
+
+		public void recordWritten() {
+			if (++this.recordsInBuffer == 8) {
+				this.recordsInBuffer = 0;
+				if (this.stalled) {
+					this.queued++;
+				} else {
+					this.transmitted++;
+				}
+			}
+		}
+
+		@Override
+		public Buffer requestEmptyWriteBuffer() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void releaseWriteBuffer(Buffer buffer) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean hasDataLeftToTransmit() {
+			return this.queued > 0;
+		}
+
+		@Override
+		public void transferEventToInputChannel(AbstractEvent event) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void limitBufferSize(int bufferSize) {
+		}
+
+		@Override
+		public int getNumberOfQueuedNetworkBuffers() {
+			return this.queued;
+		}
+
+		@Override
+		public long getNumberOfTransmittedNetworkBuffers() {
+			return this.transmitted;
+		}
+	}
+
+	/**
+	 * Simulates writing records into channels, where writing a record
+	 * into each channel takes the given number of nanoseconds, and reports the
+	 * given time spent waiting for the task's own buffers.
+	 */
+	private static class SimulatedOutputGate extends
+			RuntimeOutputGate<StringRecord> {
+
+		private final StreamChannelSelector<StringRecord> selector;
+
+		private final long[] costsNanos;
+
+		private final long[] blockedNanos;
+
+		private final int[] recordsPerChannel;
+
+		private SimulatedConnection[] connections;
+
+		private OutputGate<StringRecord> streamOutputGate;
+
+		public SimulatedOutputGate(JobID jobID,
+				StreamChannelSelector<StringRecord> selector,
+				long[] costsNanos, long[] blockedNanos) {
+			super(jobID, new GateID(), StringRecord.class, 0, selector, false);
+			this.selector = selector;
+			this.costsNanos = costsNanos;
+			this.blockedNanos = blockedNanos;
+			this.recordsPerChannel = new int[costsNanos.length];
+		}
+
+		@Override
+		public void writeRecord(StringRecord record) throws IOException,
+				InterruptedException {
+
+			int channel = this.selector.selectChannels(record,
+					this.costsNanos.length)[0];
+			this.recordsPerChannel[channel]++;
+			if (this.connections != null) {
+				this.connections[channel].recordWritten();
+			}
+
+			if (this.blockedNanos[channel] > 0) {
+				long start = System.nanoTime();
+				spin(this.blockedNanos[channel]);
+				this.streamOutputGate.outputBufferRequestBlocked(channel,
+						System.nanoTime() - start);
+			}
+			spin(this.costsNanos[channel]);
+		}
+
+		private static void spin(long nanos) {
+			long deadline = System.nanoTime() + nanos;
+			while (System.nanoTime() - deadline < 0) {
+				// busy wait to simulate the cost of the write
+			}
+		}
+	}
+
+	/**
+	 * Writes 20000 records through a stream output gate with a load-aware
+	 * channel selector and returns the simulated gate it wraps.
+	 */
+	private SimulatedOutputGate writeRecordsLoadAware(long[] costsNanos,
+			long[] blockedNanos) throws Exception {
+		return writeRecordsLoadAware(costsNanos, blockedNanos, null);
+	}
+
+	/**
+	 * Writes 20000 records through a stream output gate with a load-aware
+	 * channel selector, where the channels are connected through the given
+	 * simulated network connections, and returns the simulated gate it wraps.
+	 */
+	private SimulatedOutputGate writeRecordsLoadAware(long[] costsNanos,
+			long[] blockedNanos, SimulatedConnection[] connections)
+			throws Exception {
+
+		StreamChannelSelector<StringRecord> selector = new StreamChannelSelector<StringRecord>(
+				new LoadAwareChannelSelector<StringRecord>());
+		SimulatedOutputGate wrappedGate = new SimulatedOutputGate(this.jobID,
+				selector, costsNanos, blockedNanos);
+		StreamOutputGate<StringRecord> loadAwareGate = new StreamOutputGate<StringRecord>(
+				wrappedGate, selector);
+		wrappedGate.streamOutputGate = loadAwareGate;
+		wrappedGate.connections = connections;
+		for (int i = 0; i < costsNanos.length; i++) {
+			NetworkOutputChannel<StringRecord> channel = loadAwareGate
+					.createNetworkOutputChannel(loadAwareGate,
+							new ChannelID(), new ChannelID());
+			if (connections != null) {
+				channel.setByteBufferedOutputChannelBroker(connections[i]);
+			}
+		}
+
+		StringRecord record = new StringRecord("test");
+		for (int i = 0; i < 20000; i++) {
+			loadAwareGate.writeRecord(record);
+		}
+		return wrappedGate;
+	}
+
+	@Before
+	public void setup() {
+		this.jobID = new JobID();
+		RuntimeOutputGate<StringRecord> wrappedGate = new RuntimeOutputGate<StringRecord>(
+				this.jobID, new GateID(), StringRecord.class, 0,
+				new DefaultChannelSelector<StringRecord>(), false);
+
+		this.gate = new StreamOutputGate<StringRecord>(wrappedGate,
+				new StreamChannelSelector<StringRecord>(
+						new DefaultChannelSelector<StringRecord>()));
+		this.channel = this.gate.createNetworkOutputChannel(this.gate,
+				new ChannelID(), new ChannelID());
+		this.gate.createNetworkOutputChannel(this.gate, new ChannelID(),
+				new ChannelID());
+	}
+
+	private void setTarget(int target, long version) throws Exception {
+		this.gate.enqueueQosAction(new SetOutputBufferLifetimeTargetAction(
+				this.jobID, new ExecutionVertexID(), this.gate.getGateID(),
+				this.channel.getID(), target, version));
+		this.gate.handlePendingQosActions();
+	}
+
+	@Test
+	public void testStaleTargetIsIgnoredAndNewerTargetIsApplied()
+			throws Exception {
+		setTarget(10, 200);
+		assertEquals(10, this.channel.getFlushDeadline());
+
+		// computed by an earlier adjustment, but delivered later
+		setTarget(20, 100);
+		assertEquals(10, this.channel.getFlushDeadline());
+
+		setTarget(30, 300);
+		assertEquals(30, this.channel.getFlushDeadline());
+	}
+
+	@Test
+	public void testUnversionedTargetIsAlwaysApplied() throws Exception {
+		setTarget(10, 200);
+		setTarget(20, SetOutputBufferLifetimeTargetAction.UNVERSIONED);
+		assertEquals(20, this.channel.getFlushDeadline());
+
+		setTarget(30, 100);
+		assertEquals(30, this.channel.getFlushDeadline());
+	}
+
+	@Test
+	public void testVersionIsPrunedWithSuspendedChannel() throws Exception {
+		setTarget(10, 200);
+
+		this.gate.setOutputChannelSuspended(0, true);
+		this.gate.setOutputChannelSuspended(0, false);
+
+		setTarget(20, 100);
+		assertEquals(20, this.channel.getFlushDeadline());
+	}
+
+	@Test
+	public void testSlowLocalChannelIsAvoided() throws Exception {
+		SimulatedOutputGate wrappedGate = writeRecordsLoadAware(new long[] {
+				2000, 2000, 20000, 2000 }, new long[4]);
+		LoadAwareChannelSelector<StringRecord> selector = wrappedGate.selector
+				.getLoadAwareChannelSelector();
+
+		int[] recordsPerChannel = wrappedGate.recordsPerChannel;
+		for (int i = 0; i < recordsPerChannel.length; i++) {
+			if (i != 2) {
+				assertTrue(selector.getCostPerRecordNanos(2) > 5 * selector
+						.getCostPerRecordNanos(i));
+				assertTrue(recordsPerChannel[i] > recordsPerChannel[2]);
+			}
+		}
+	}
+
+	@Test
+	public void testBackloggedRemoteChannelIsAvoided() throws Exception {
+		SimulatedConnection[] connections = new SimulatedConnection[] {
+				new SimulatedConnection(false), new SimulatedConnection(false),
+				new SimulatedConnection(true), new SimulatedConnection(false) };
+		SimulatedOutputGate wrappedGate = writeRecordsLoadAware(new long[] {
+				2000, 2000, 2000, 2000 }, new long[4], connections);
+
+		// the write returns at once on all channels, but the connection of
+		// channel 2 never transmits its buffers
+		int[] recordsPerChannel = wrappedGate.recordsPerChannel;
+		assertTrue(recordsPerChannel[2] < 1000);
+		for (int i = 0; i < recordsPerChannel.length; i++) {
+			if (i != 2) {
+				assertTrue(recordsPerChannel[i] > 5000);
+			}
+		}
+	}
+
+	@Test
+	public void testWaitForOwnBuffersIsNotCountedAsCost() throws Exception {
+		SimulatedOutputGate wrappedGate = writeRecordsLoadAware(new long[] {
+				2000, 2000, 2000, 2000 }, new long[] { 0, 0, 20000, 0 });
+		LoadAwareChannelSelector<StringRecord> selector = wrappedGate.selector
+				.getLoadAwareChannelSelector();
+
+		for (int i = 0; i < wrappedGate.recordsPerChannel.length; i++) {
+			assertTrue(selector.getCostPerRecordNanos(i) < 2 * selector
+					.getCostPerRecordNanos(0));
+			assertEquals(5000, wrappedGate.recordsPerChannel[i], 1000);
+		}
+	}
+}